@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.asset.AssetConfig;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.NullRenderer;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared fixtures for the benchmark suites.  Everything here runs headless
+ * against a {@link NullRenderer}, so no display or GL context is needed.
+ */
+public final class BenchmarkSupport {
+
+    /**
+     * Fixed seed so that every run, and every release, benchmarks exactly
+     * the same scene.
+     */
+    public static final long SEED = 0x6A4D45L;
+
+    private BenchmarkSupport() {
+    }
+
+    public static AssetManager createAssetManager() {
+        Logger.getLogger(AssetConfig.class.getName()).setLevel(Level.OFF);
+        return new DesktopAssetManager(true);
+    }
+
+    public static RenderManager createRenderManager() {
+        return new RenderManager(new NullRenderer());
+    }
+
+    /**
+     * Builds a scene of <code>nodeCount</code> nodes, each holding
+     * <code>geometriesPerNode</code> box geometries, nested
+     * <code>depth</code> levels deep below the returned root.
+     */
+    public static Node createScene(int nodeCount, int geometriesPerNode, int depth, Material material) {
+        Random random = new Random(SEED);
+        Mesh mesh = new Box(0.5f, 0.5f, 0.5f);
+        Node root = new Node("Root");
+        for (int i = 0; i < nodeCount; i++) {
+            Node parent = root;
+            for (int d = 0; d < depth; d++) {
+                Node child = new Node("Node-" + i + "-" + d);
+                randomizeTransform(random, child);
+                parent.attachChild(child);
+                parent = child;
+            }
+            for (int g = 0; g < geometriesPerNode; g++) {
+                Geometry geom = new Geometry("Geom-" + i + "-" + g, mesh);
+                randomizeTransform(random, geom);
+                if (material != null) {
+                    geom.setMaterial(material);
+                }
+                parent.attachChild(geom);
+            }
+        }
+        return root;
+    }
+
+    public static void randomizeTransform(Random random, Spatial spatial) {
+        spatial.setLocalTranslation(randomVector(random, 100f));
+        spatial.setLocalRotation(randomRotation(random));
+    }
+
+    public static Vector3f randomVector(Random random, float extent) {
+        return new Vector3f((random.nextFloat() * 2f - 1f) * extent,
+                            (random.nextFloat() * 2f - 1f) * extent,
+                            (random.nextFloat() * 2f - 1f) * extent);
+    }
+
+    public static Quaternion randomRotation(Random random) {
+        return new Quaternion().fromAngles(random.nextFloat() * FastMath.TWO_PI,
+                                           random.nextFloat() * FastMath.TWO_PI,
+                                           random.nextFloat() * FastMath.TWO_PI);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with <code>-rf csv</code>, typically
+ * the runs of two engine releases, and prints the relative change of every
+ * benchmark present in both.  Exits with status 1 if any benchmark got slower
+ * by more than the given threshold, so it can gate a release build.
+ *
+ * <p>Usage: <code>ResultDiff baseline.csv current.csv [thresholdPercent]</code>
+ */
+public final class ResultDiff {
+
+    private ResultDiff() {
+    }
+
+    /**
+     * A single row of a JMH CSV result file.
+     */
+    static final class Result {
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Result(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+
+        /**
+         * Throughput modes are "higher is better", all others are times.
+         */
+        boolean isThroughput() {
+            return "thrpt".equals(mode);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ResultDiff <baseline.csv> <current.csv> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+
+        Map<String, Result> baseline = read(new File(args[0]));
+        Map<String, Result> current = read(new File(args[1]));
+
+        int regressions = 0;
+        System.out.println(String.format(Locale.ROOT, "%-80s %14s %14s %9s", "Benchmark", "Baseline", "Current", "Change"));
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            Result after = entry.getValue();
+            double change = (after.score - before.score) / before.score * 100.0;
+            // Normalize so that a positive value always means "slower".
+            double slowdown = after.isThroughput() ? -change : change;
+            // Differences inside the combined error margins are noise.
+            boolean significant = Math.abs(after.score - before.score) > before.error + after.error;
+            String flag = "";
+            if (significant && slowdown > threshold) {
+                flag = "  REGRESSION";
+                regressions++;
+            } else if (significant && slowdown < -threshold) {
+                flag = "  improved";
+            }
+            System.out.println(String.format(Locale.ROOT, "%-80s %14.3f %14.3f %+8.1f%% %s%s",
+                    entry.getKey(), before.score, after.score, change, after.unit, flag));
+        }
+
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+
+    static Map<String, Result> read(File file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            List<String> header = parseLine(reader.readLine());
+            int benchmarkIdx = header.indexOf("Benchmark");
+            int modeIdx = header.indexOf("Mode");
+            int scoreIdx = header.indexOf("Score");
+            int errorIdx = header.indexOf("Score Error (99.9%)");
+            int unitIdx = header.indexOf("Unit");
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                List<String> cols = parseLine(line);
+
+                // Parameters follow the fixed columns as "Param: name"
+                StringBuilder key = new StringBuilder(cols.get(benchmarkIdx));
+                for (int i = unitIdx + 1; i < header.size(); i++) {
+                    key.append(' ').append(header.get(i).replace("Param: ", ""))
+                       .append('=').append(cols.get(i));
+                }
+                double error = errorIdx < 0 || cols.get(errorIdx).equals("NaN")
+                             ? 0 : Double.parseDouble(cols.get(errorIdx));
+                results.put(key.toString(), new Result(cols.get(modeIdx),
+                                                       Double.parseDouble(cols.get(scoreIdx)),
+                                                       error, cols.get(unitIdx)));
+            }
+        }
+        return results;
+    }
+
+    private static List<String> parseLine(String line) {
+        List<String> cols = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                cols.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        cols.add(sb.toString());
+        return cols;
+    }
+}
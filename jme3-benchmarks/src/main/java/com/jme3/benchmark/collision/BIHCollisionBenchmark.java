@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark.collision;
+
+import com.jme3.benchmark.BenchmarkSupport;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.collision.CollisionResults;
+import com.jme3.collision.bih.BIHTree;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.shape.Sphere;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BIHTree} construction and ray / bounding volume queries
+ * against a tessellated sphere through {@link Geometry#collideWith}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BIHCollisionBenchmark {
+
+    private static final int QUERY_COUNT = 64;
+
+    @Param({"32", "128"})
+    public int samples;
+
+    private Sphere mesh;
+    private Geometry geom;
+    private Ray[] rays;
+    private BoundingSphere[] volumes;
+    private final CollisionResults results = new CollisionResults();
+
+    @Setup
+    public void setUp() {
+        mesh = new Sphere(samples, samples, 10f);
+        geom = new Geometry("Sphere", mesh);
+        geom.updateGeometricState();
+        mesh.createCollisionData();
+
+        Random random = new Random(BenchmarkSupport.SEED);
+        rays = new Ray[QUERY_COUNT];
+        volumes = new BoundingSphere[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            Vector3f origin = BenchmarkSupport.randomVector(random, 50f);
+            Vector3f target = BenchmarkSupport.randomVector(random, 5f);
+            rays[i] = new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+            volumes[i] = new BoundingSphere(1.5f, BenchmarkSupport.randomVector(random, 10f));
+        }
+    }
+
+    @Benchmark
+    public BIHTree construct() {
+        BIHTree tree = new BIHTree(mesh);
+        tree.construct();
+        return tree;
+    }
+
+    @Benchmark
+    public int rayCollisions() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            results.clear();
+            hits += geom.collideWith(ray, results);
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int boundingVolumeCollisions() {
+        int hits = 0;
+        for (BoundingSphere volume : volumes) {
+            results.clear();
+            hits += geom.collideWith(volume, results);
+        }
+        return hits;
+    }
+}
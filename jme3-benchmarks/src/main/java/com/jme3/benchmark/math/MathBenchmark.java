@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark.math;
+
+import com.jme3.benchmark.BenchmarkSupport;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Covers the {@link Vector3f}, {@link Quaternion} and {@link Matrix4f}
+ * operations used on every frame by transforms, bounds and culling.
+ * The "Local" variants write into a preallocated store, the others measure
+ * the allocating convenience methods.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark {
+
+    private Vector3f v1;
+    private Vector3f v2;
+    private Vector3f vStore;
+    private Quaternion q1;
+    private Quaternion q2;
+    private Quaternion qStore;
+    private Matrix4f m1;
+    private Matrix4f m2;
+    private Matrix4f mStore;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkSupport.SEED);
+        v1 = BenchmarkSupport.randomVector(random, 10f);
+        v2 = BenchmarkSupport.randomVector(random, 10f);
+        vStore = new Vector3f();
+        q1 = BenchmarkSupport.randomRotation(random);
+        q2 = BenchmarkSupport.randomRotation(random);
+        qStore = new Quaternion();
+        m1 = new Matrix4f();
+        m1.setTransform(v1, Vector3f.UNIT_XYZ, q1.toRotationMatrix());
+        m2 = new Matrix4f();
+        m2.setTransform(v2, Vector3f.UNIT_XYZ, q2.toRotationMatrix());
+        mStore = new Matrix4f();
+    }
+
+    @Benchmark
+    public Vector3f vectorAdd() {
+        return v1.add(v2);
+    }
+
+    @Benchmark
+    public Vector3f vectorAddLocal() {
+        return vStore.set(v1).addLocal(v2);
+    }
+
+    @Benchmark
+    public Vector3f vectorCrossLocal() {
+        return vStore.set(v1).crossLocal(v2);
+    }
+
+    @Benchmark
+    public Vector3f vectorNormalizeLocal() {
+        return vStore.set(v1).normalizeLocal();
+    }
+
+    @Benchmark
+    public Quaternion quaternionMult() {
+        return q1.mult(q2, qStore);
+    }
+
+    @Benchmark
+    public Vector3f quaternionRotateVector() {
+        return q1.mult(v1, vStore);
+    }
+
+    @Benchmark
+    public Quaternion quaternionSlerp() {
+        return qStore.slerp(q1, q2, 0.37f);
+    }
+
+    @Benchmark
+    public Quaternion quaternionFromAngles() {
+        return qStore.fromAngles(0.3f, 1.1f, 2.7f);
+    }
+
+    @Benchmark
+    public Matrix4f matrixMult() {
+        return m1.mult(m2, mStore);
+    }
+
+    @Benchmark
+    public Matrix4f matrixInvert() {
+        return m1.invert(mStore);
+    }
+
+    @Benchmark
+    public Vector3f matrixTransformVector() {
+        return m1.mult(v1, vStore);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark.network;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.serializing.Quantize;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.serializing.serializers.CompactFieldSerializer;
+import com.jme3.network.serializing.serializers.CompactStringSerializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the default field encoding with the compact encoding for the
+ * same state update, in time per message and in bytes per message.  The
+ * message size is reported as the "bytesPerMessage" secondary result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactSerializerBenchmark {
+
+    @Serializable
+    public static class DefaultStateMessage extends AbstractMessage {
+        private int entityId;
+        private long timestamp;
+        private float health;
+        private boolean visible;
+        private boolean crouching;
+        private String name;
+        private Vector3f position;
+        private Vector3f velocity;
+        private Quaternion rotation;
+
+        public DefaultStateMessage() {
+        }
+    }
+
+    @Serializable(serializer = CompactFieldSerializer.class)
+    public static class CompactStateMessage extends AbstractMessage {
+        private int entityId;
+        private long timestamp;
+        @Quantize(0.01f)
+        private float health;
+        private boolean visible;
+        private boolean crouching;
+        private String name;
+        @Quantize(0.001f)
+        private Vector3f position;
+        @Quantize(0.01f)
+        private Vector3f velocity;
+        @Quantize
+        private Quaternion rotation;
+
+        public CompactStateMessage() {
+        }
+    }
+
+    /**
+     * Reports the size of the last written message once per iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class MessageSize {
+        public long bytesPerMessage;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerMessage = 0;
+        }
+    }
+
+    @Param({"default", "compact", "compactClassIds"})
+    public String encoding;
+
+    private Object message;
+    private ByteBuffer writeBuffer;
+    private ByteBuffer readBuffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        Serializer.registerClasses(DefaultStateMessage.class, CompactStateMessage.class);
+        CompactStringSerializer.registerStrings("Jaime");
+        Serializer.setCompactClassIds("compactClassIds".equals(encoding));
+
+        Vector3f position = new Vector3f(12.5f, 0.8f, -40.25f);
+        Vector3f velocity = new Vector3f(0.5f, 0, -0.5f);
+        Quaternion rotation = new Quaternion().fromAngles(0, 1.2f, 0);
+        if ("default".equals(encoding)) {
+            DefaultStateMessage m = new DefaultStateMessage();
+            m.entityId = 42;
+            m.timestamp = 123456789L;
+            m.health = 0.75f;
+            m.visible = true;
+            m.name = "Jaime";
+            m.position = position;
+            m.velocity = velocity;
+            m.rotation = rotation;
+            message = m;
+        } else {
+            CompactStateMessage m = new CompactStateMessage();
+            m.entityId = 42;
+            m.timestamp = 123456789L;
+            m.health = 0.75f;
+            m.visible = true;
+            m.name = "Jaime";
+            m.position = position;
+            m.velocity = velocity;
+            m.rotation = rotation;
+            message = m;
+        }
+        writeBuffer = ByteBuffer.allocate(32767);
+        readBuffer = ByteBuffer.allocate(32767);
+        Serializer.writeClassAndObject(readBuffer, message);
+        readBuffer.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer write(MessageSize size) throws IOException {
+        writeBuffer.clear();
+        Serializer.writeClassAndObject(writeBuffer, message);
+        size.bytesPerMessage = writeBuffer.position();
+        return writeBuffer;
+    }
+
+    @Benchmark
+    public Object read() throws IOException {
+        readBuffer.rewind();
+        return Serializer.readClassAndObject(readBuffer);
+    }
+}
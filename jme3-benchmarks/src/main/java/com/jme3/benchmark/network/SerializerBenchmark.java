@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark.network;
+
+import com.jme3.math.Vector3f;
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing and reading a typical state update message through the
+ * networking {@link Serializer}, which is what every send and receive pays
+ * per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Serializable
+    public static class StateMessage extends AbstractMessage {
+        private int entityId;
+        private long timestamp;
+        private float health;
+        private boolean visible;
+        private String name;
+        private Vector3f position;
+        private Vector3f velocity;
+
+        public StateMessage() {
+        }
+
+        public StateMessage(int entityId, long timestamp, float health, boolean visible,
+                            String name, Vector3f position, Vector3f velocity) {
+            this.entityId = entityId;
+            this.timestamp = timestamp;
+            this.health = health;
+            this.visible = visible;
+            this.name = name;
+            this.position = position;
+            this.velocity = velocity;
+        }
+    }
+
+    private StateMessage message;
+    private ByteBuffer writeBuffer;
+    private ByteBuffer readBuffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        Serializer.registerClass(StateMessage.class);
+        message = new StateMessage(42, 123456789L, 0.75f, true, "Jaime",
+                                   new Vector3f(1, 2, 3), new Vector3f(0.5f, 0, -0.5f));
+        writeBuffer = ByteBuffer.allocate(32767);
+        readBuffer = ByteBuffer.allocate(32767);
+        Serializer.writeClassAndObject(readBuffer, message);
+        readBuffer.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer write() throws IOException {
+        writeBuffer.clear();
+        Serializer.writeClassAndObject(writeBuffer, message);
+        return writeBuffer;
+    }
+
+    @Benchmark
+    public Object read() throws IOException {
+        readBuffer.rewind();
+        return Serializer.readClassAndObject(readBuffer);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark.renderer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.benchmark.BenchmarkSupport;
+import com.jme3.material.Material;
+import com.jme3.material.TechniqueDef;
+import com.jme3.math.ColorRGBA;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.TransparentComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link GeometryList#sort()} for the opaque and transparent
+ * buckets.  Before each invocation the list is refilled in a shuffled order
+ * and the cached queue distances are reset, exactly as
+ * {@link com.jme3.renderer.queue.RenderQueue} does every frame. Both the
+ * comparator based sort and the key based radix sort are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryListSortBenchmark {
+
+    @Param({"1000", "20000"})
+    public int geometryCount;
+
+    @Param({"16"})
+    public int materialCount;
+
+    @Param({"false", "true"})
+    public boolean sortKeys;
+
+    private Geometry[] geometries;
+    private GeometryList opaqueList;
+    private GeometryList transparentList;
+
+    @Setup
+    public void setUp() {
+        AssetManager assetManager = BenchmarkSupport.createAssetManager();
+        RenderManager renderManager = BenchmarkSupport.createRenderManager();
+        Random random = new Random(BenchmarkSupport.SEED);
+
+        Material[] materials = new Material[materialCount];
+        for (int i = 0; i < materialCount; i++) {
+            String def = (i % 2 == 0) ? "Common/MatDefs/Misc/Unshaded.j3md"
+                                      : "Common/MatDefs/Light/Lighting.j3md";
+            materials[i] = new Material(assetManager, def);
+            if (i % 2 == 0) {
+                materials[i].setColor("Color", new ColorRGBA(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1f));
+            }
+            materials[i].selectTechnique(TechniqueDef.DEFAULT_TECHNIQUE_NAME, renderManager);
+        }
+
+        Mesh mesh = new Box(0.5f, 0.5f, 0.5f);
+        geometries = new Geometry[geometryCount];
+        for (int i = 0; i < geometryCount; i++) {
+            Geometry geom = new Geometry("Geom-" + i, mesh);
+            geom.setLocalTranslation(BenchmarkSupport.randomVector(random, 500f));
+            geom.setMaterial(materials[random.nextInt(materialCount)]);
+            geom.updateGeometricState();
+            geometries[i] = geom;
+        }
+
+        Camera cam = new Camera(1280, 720);
+        cam.setFrustumPerspective(45f, 1280f / 720f, 1f, 1000f);
+
+        opaqueList = new GeometryList(new OpaqueComparator());
+        opaqueList.setCamera(cam);
+        opaqueList.setSortKeysEnabled(sortKeys);
+        transparentList = new GeometryList(new TransparentComparator());
+        transparentList.setCamera(cam);
+        transparentList.setSortKeysEnabled(sortKeys);
+    }
+
+    @Setup(Level.Invocation)
+    public void fillLists() {
+        Random random = new Random(BenchmarkSupport.SEED);
+        for (int i = geometries.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Geometry tmp = geometries[i];
+            geometries[i] = geometries[j];
+            geometries[j] = tmp;
+        }
+        opaqueList.clear();
+        transparentList.clear();
+        for (Geometry geom : geometries) {
+            geom.queueDistance = Float.NEGATIVE_INFINITY;
+            opaqueList.add(geom);
+            transparentList.add(geom);
+        }
+    }
+
+    @Benchmark
+    public GeometryList sortOpaque() {
+        opaqueList.sort();
+        return opaqueList;
+    }
+
+    @Benchmark
+    public GeometryList sortTransparent() {
+        transparentList.sort();
+        return transparentList;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark.scene;
+
+import com.jme3.benchmark.BenchmarkSupport;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Spatial#updateGeometricState()} for a scene where the
+ * whole tree is dirty (the root moved) and for one where only a tenth of
+ * the leaves moved, which is the typical case for animated actors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SceneUpdateBenchmark {
+
+    @Param({"1000", "10000"})
+    public int nodeCount;
+
+    @Param({"3"})
+    public int depth;
+
+    private Node root;
+    private List<Spatial> movingLeaves;
+    private float offset;
+
+    @Setup
+    public void setUp() {
+        root = BenchmarkSupport.createScene(nodeCount, 2, depth, null);
+        root.updateGeometricState();
+
+        movingLeaves = new ArrayList<>();
+        List<Spatial> leaves = new ArrayList<>();
+        collectLeaves(root, leaves);
+        for (int i = 0; i < leaves.size(); i += 10) {
+            movingLeaves.add(leaves.get(i));
+        }
+    }
+
+    private static void collectLeaves(Spatial spatial, List<Spatial> store) {
+        if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                collectLeaves(child, store);
+            }
+        } else {
+            store.add(spatial);
+        }
+    }
+
+    @Benchmark
+    public Node fullTreeUpdate() {
+        offset = -offset + 0.01f;
+        root.setLocalTranslation(offset, 0, 0);
+        root.updateGeometricState();
+        return root;
+    }
+
+    @Benchmark
+    public Node sparseLeafUpdate() {
+        offset = -offset + 0.01f;
+        for (int i = 0; i < movingLeaves.size(); i++) {
+            movingLeaves.get(i).move(offset, 0, 0);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+
+    @Benchmark
+    public Node logicalStateUpdate() {
+        root.updateLogicalState(0.016f);
+        return root;
+    }
+}
@@ -165,6 +165,9 @@ public class MorphControl extends AbstractControl implements Savable {
                 // setting the eight of the merged targets
                 matWeights[nbGPUTargets - 1] = cpuWeightSum;
             }
+            // the weights were written in place, set them again so the
+            // material picks up the new version
+            m.setParam("MorphWeights", VarType.FloatArray, matWeights);
             geom.setDirtyMorph(false);
         }
     }
@@ -37,6 +37,7 @@ import com.jme3.math.*;
 import com.jme3.scene.*;
 import com.jme3.shader.VarType;
 import com.jme3.util.SafeArrayList;
+import com.jme3.util.MathArena;
 import com.jme3.util.TempVars;
 import com.jme3.util.clone.Cloner;
 import com.jme3.util.clone.JmeCloneable;
@@ -543,21 +544,31 @@ public final class Bone implements Savable, JmeCloneable {
             attachNode.setLocalTranslation(modelPos);
             attachNode.setLocalRotation(modelRot);
             attachNode.setLocalScale(modelScale);
-            attachNode.getLocalTransform().combineWithParent(attachNode.getParent().getWorldTransform().invert());
+            try (MathArena arena = MathArena.open()) {
+                Transform inverse = arena.transform();
+                inverse.fromTransformMatrix(attachParent.getWorldTransform()
+                        .toTransformMatrix(arena.matrix4f()).invertLocal());
+                attachNode.getLocalTransform().combineWithParent(inverse);
+            }
 
         } else {
             Spatial loopSpatial = targetGeometry;
-            Transform combined = new Transform(modelPos, modelRot, modelScale);
-            /*
-             * Climb the scene graph applying local transforms until the
-             * attachments node's parent is reached.
-             */
-            while (loopSpatial != attachParent && loopSpatial != null) {
-                Transform localTransform = loopSpatial.getLocalTransform();
-                combined.combineWithParent(localTransform);
-                loopSpatial = loopSpatial.getParent();
+            try (MathArena arena = MathArena.open()) {
+                Transform combined = arena.transform();
+                combined.setTranslation(modelPos);
+                combined.setRotation(modelRot);
+                combined.setScale(modelScale);
+                /*
+                 * Climb the scene graph applying local transforms until the
+                 * attachments node's parent is reached.
+                 */
+                while (loopSpatial != attachParent && loopSpatial != null) {
+                    Transform localTransform = loopSpatial.getLocalTransform();
+                    combined.combineWithParent(localTransform);
+                    loopSpatial = loopSpatial.getParent();
+                }
+                attachNode.setLocalTransform(combined);
             }
-            attachNode.setLocalTransform(combined);
         }
     }
 
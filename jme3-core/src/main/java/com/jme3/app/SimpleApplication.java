@@ -41,6 +41,7 @@ import com.jme3.input.KeyInput;
 import com.jme3.input.controls.ActionListener;
 import com.jme3.input.controls.KeyTrigger;
 import com.jme3.profile.AppStep;
+import com.jme3.profile.TraceProfiler;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.queue.RenderQueue.Bucket;
 import com.jme3.scene.Node;
@@ -72,6 +73,8 @@ public abstract class SimpleApplication extends LegacyApplication {
     public static final String INPUT_MAPPING_MEMORY = DebugKeysAppState.INPUT_MAPPING_MEMORY;
     public static final String INPUT_MAPPING_HIDE_STATS = "SIMPLEAPP_HideStats";
 
+    private static final String FRAME_SCOPE = "Frame";
+
     protected Node rootNode = new Node("Root Node");
     protected Node guiNode = new Node("Gui Node");
     protected BitmapText fpsText;
@@ -243,9 +246,12 @@ public abstract class SimpleApplication extends LegacyApplication {
     @Override
     public void update() {
         if (prof!=null) prof.appStep(AppStep.BeginFrame);
+        TraceProfiler trace = TraceProfiler.getCurrent();
+        if (trace != null) trace.begin(TraceProfiler.Category.Frame, FRAME_SCOPE, null);
 
         super.update(); // makes sure to execute AppTasks
         if (speed == 0 || paused) {
+            if (trace != null) trace.end(TraceProfiler.Category.Frame, FRAME_SCOPE, null);
             return;
         }
 
@@ -275,6 +281,7 @@ public abstract class SimpleApplication extends LegacyApplication {
         stateManager.postRender();
 
         if (prof!=null) prof.appStep(AppStep.EndFrame);
+        if (trace != null) trace.end(TraceProfiler.Category.Frame, FRAME_SCOPE, null);
     }
 
     public void setDisplayFps(boolean show) {
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app;
+
+import com.jme3.app.state.BaseAppState;
+import com.jme3.input.InputManager;
+import com.jme3.input.KeyInput;
+import com.jme3.input.controls.ActionListener;
+import com.jme3.input.controls.KeyTrigger;
+import com.jme3.profile.TraceProfiler;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *  Records a {@link TraceProfiler} trace while enabled. Pressing F7 writes
+ *  the recorded events to a Chrome trace file in the trace directory, which
+ *  can be opened with chrome://tracing or https://ui.perfetto.dev.
+ *
+ *  @see TraceProfiler
+ */
+public class TraceProfilerState extends BaseAppState {
+
+    private static final Logger logger = Logger.getLogger(TraceProfilerState.class.getName());
+
+    public static final String INPUT_MAPPING_WRITE_TRACE = "TraceProfilerState_WriteTrace";
+
+    private final TraceProfiler profiler;
+    private File directory = new File(".");
+
+    private final ActionListener keyListener = new ActionListener() {
+        @Override
+        public void onAction(String name, boolean value, float tpf) {
+            if (value) {
+                writeTrace();
+            }
+        }
+    };
+
+    /**
+     *  Creates a state that keeps the last 2^18 events, enough for a few
+     *  seconds of a typical scene.
+     */
+    public TraceProfilerState() {
+        this(1 << 18);
+    }
+
+    public TraceProfilerState(int capacity) {
+        this.profiler = new TraceProfiler(capacity);
+    }
+
+    public TraceProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     *  Sets the directory {@link #writeTrace() } writes to, defaults to
+     *  the working directory.
+     */
+    public void setTraceDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    public File getTraceDirectory() {
+        return directory;
+    }
+
+    /**
+     *  Writes the recorded events to a new file in the trace directory.
+     *
+     *  @return the written file, or null if writing failed
+     */
+    public File writeTrace() {
+        File file = new File(directory, "jme3-trace-" + System.currentTimeMillis() + ".json");
+        try {
+            writeTrace(file);
+            logger.log(Level.INFO, "Wrote trace to {0}", file.getAbsolutePath());
+            return file;
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to write trace to " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     *  Writes the recorded events to the given file in the Chrome trace
+     *  event format.
+     */
+    public void writeTrace(File file) throws IOException {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            profiler.writeChromeTrace(out);
+        }
+    }
+
+    @Override
+    protected void initialize(Application app) {
+        InputManager inputManager = app.getInputManager();
+        if (inputManager != null) {
+            inputManager.addMapping(INPUT_MAPPING_WRITE_TRACE, new KeyTrigger(KeyInput.KEY_F7));
+            inputManager.addListener(keyListener, INPUT_MAPPING_WRITE_TRACE);
+        }
+    }
+
+    @Override
+    protected void cleanup(Application app) {
+        InputManager inputManager = app.getInputManager();
+        if (inputManager != null) {
+            if (inputManager.hasMapping(INPUT_MAPPING_WRITE_TRACE)) {
+                inputManager.deleteMapping(INPUT_MAPPING_WRITE_TRACE);
+            }
+            inputManager.removeListener(keyListener);
+        }
+    }
+
+    @Override
+    protected void onEnable() {
+        TraceProfiler.setCurrent(profiler);
+    }
+
+    @Override
+    protected void onDisable() {
+        if (TraceProfiler.getCurrent() == profiler) {
+            TraceProfiler.setCurrent(null);
+        }
+    }
+}
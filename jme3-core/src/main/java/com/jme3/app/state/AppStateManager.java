@@ -33,6 +33,7 @@ package com.jme3.app.state;
  
 import com.jme3.app.Application;
 import com.jme3.profile.AppProfiler;
+import com.jme3.profile.TraceProfiler;
 import com.jme3.renderer.RenderManager;
 import com.jme3.util.SafeArrayList;
 import java.util.Arrays;
@@ -349,12 +350,15 @@ public class AppStateManager {
 
         // Update enabled states    
         AppState[] array = getStates();
+        TraceProfiler trace = TraceProfiler.getCurrent();
         for (AppState state : array){
             if (state.isEnabled()) {
                 if (app.getAppProfiler() != null) {
                     app.getAppProfiler().appSubStep(state.getClass().getSimpleName());
                 }
+                if (trace != null) trace.begin(TraceProfiler.Category.AppState, state.getClass(), null);
                 state.update(tpf);
+                if (trace != null) trace.end(TraceProfiler.Category.AppState, state.getClass(), null);
             }
         }
     }
@@ -365,9 +369,12 @@ public class AppStateManager {
      */
     public void render(RenderManager rm){
         AppState[] array = getStates();
+        TraceProfiler trace = TraceProfiler.getCurrent();
         for (AppState state : array){
             if (state.isEnabled()) {
+                if (trace != null) trace.begin(TraceProfiler.Category.AppState, state.getClass(), "render");
                 state.render(rm);
+                if (trace != null) trace.end(TraceProfiler.Category.AppState, state.getClass(), "render");
             }
         }
     }
@@ -377,9 +384,12 @@ public class AppStateManager {
      */
     public void postRender(){
         AppState[] array = getStates();
+        TraceProfiler trace = TraceProfiler.getCurrent();
         for (AppState state : array){
             if (state.isEnabled()) {
+                if (trace != null) trace.begin(TraceProfiler.Category.AppState, state.getClass(), "postRender");
                 state.postRender();
+                if (trace != null) trace.end(TraceProfiler.Category.AppState, state.getClass(), "postRender");
             }
         }
     }
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app.state;
+
+import com.jme3.material.MatParam;
+import com.jme3.material.MatParamTexture;
+import com.jme3.material.Material;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Renderer;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphVisitorAdapter;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>UploadQueueState</code> hands assets that were loaded in the
+ * background to the renderer, spread over several frames.
+ * <p>
+ * Assets can be enqueued from any thread. Every frame the state uploads
+ * textures and vertex buffers, and compiles the shaders of materials,
+ * until the frame budget is used up, so that streaming in a large scene
+ * does not stall a single frame. At least one upload is done per frame.
+ * The future returned by {@link #enqueue(Object)} completes on the render
+ * thread once everything of the asset has been uploaded, the asset can be
+ * attached to the scene from there without hitches.
+ *
+ * @see com.jme3.asset.AssetLoadScheduler
+ */
+public class UploadQueueState extends AbstractAppState {
+
+    private static final Logger logger = Logger.getLogger(UploadQueueState.class.getName());
+
+    private final ConcurrentLinkedQueue<Upload> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile long frameBudget = 2000000L;
+    private boolean preloadMaterials = true;
+
+    /**
+     * Sets how much time may be spent on uploads per frame, the default is
+     * 2 milliseconds.
+     *
+     * @param millis the budget in milliseconds
+     */
+    public void setFrameBudget(float millis) {
+        frameBudget = (long) (millis * 1000000f);
+    }
+
+    public float getFrameBudget() {
+        return frameBudget / 1000000f;
+    }
+
+    /**
+     * Sets whether the shaders of materials are compiled along with their
+     * textures, true by default. Materials are preloaded for the default
+     * technique without the overrides of the scene they will be attached
+     * to.
+     *
+     * @param preloadMaterials true to compile shaders
+     */
+    public void setPreloadMaterials(boolean preloadMaterials) {
+        this.preloadMaterials = preloadMaterials;
+    }
+
+    public boolean isPreloadMaterials() {
+        return preloadMaterials;
+    }
+
+    /**
+     * @return the number of uploads that have not been done yet
+     */
+    public int getPendingUploads() {
+        return pending.get();
+    }
+
+    /**
+     * Queues the GPU data of the asset for upload. Spatials upload the
+     * meshes and materials of all of their geometries, materials their
+     * textures, meshes their vertex buffers. Other assets have nothing to
+     * upload and complete right away.
+     *
+     * @param <T> the type of the asset
+     * @param asset the asset
+     * @return a future that completes with the asset once it is uploaded
+     */
+    public <T> CompletableFuture<T> enqueue(T asset) {
+        final Batch<T> batch = new Batch<>(asset);
+        final List<Upload> uploads = new ArrayList<>();
+        final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        if (asset instanceof Spatial) {
+            ((Spatial) asset).depthFirstTraversal(new SceneGraphVisitorAdapter() {
+                @Override
+                public void visit(Geometry geom) {
+                    addMesh(geom.getMesh(), batch, uploads, seen);
+                    addMaterial(geom.getMaterial(), geom, batch, uploads, seen);
+                }
+            });
+        } else if (asset instanceof Material) {
+            addMaterial((Material) asset, null, batch, uploads, seen);
+        } else if (asset instanceof Mesh) {
+            addMesh((Mesh) asset, batch, uploads, seen);
+        } else if (asset instanceof Texture) {
+            addTexture((Texture) asset, batch, uploads, seen);
+        }
+
+        if (uploads.isEmpty()) {
+            batch.future.complete(asset);
+        } else {
+            batch.remaining.set(uploads.size());
+            pending.addAndGet(uploads.size());
+            queue.addAll(uploads);
+        }
+        return batch.future;
+    }
+
+    private void addMesh(Mesh mesh, Batch<?> batch, List<Upload> uploads, Set<Object> seen) {
+        if (mesh == null || !seen.add(mesh)) {
+            return;
+        }
+        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+            if (vb.getData() != null && vb.getUsage() != VertexBuffer.Usage.CpuOnly) {
+                uploads.add(new Upload(batch, vb, null));
+            }
+        }
+    }
+
+    private void addMaterial(Material material, Geometry geom, Batch<?> batch, List<Upload> uploads, Set<Object> seen) {
+        if (material == null || !seen.add(material)) {
+            return;
+        }
+        for (MatParam param : material.getParams()) {
+            if (param instanceof MatParamTexture) {
+                addTexture(((MatParamTexture) param).getTextureValue(), batch, uploads, seen);
+            }
+        }
+        if (preloadMaterials && geom != null) {
+            uploads.add(new Upload(batch, material, geom));
+        }
+    }
+
+    private void addTexture(Texture texture, Batch<?> batch, List<Upload> uploads, Set<Object> seen) {
+        if (texture != null && texture.getImage() != null && seen.add(texture.getImage())) {
+            uploads.add(new Upload(batch, texture, null));
+        }
+    }
+
+    @Override
+    public void render(RenderManager rm) {
+        long start = System.nanoTime();
+        Upload upload;
+        while ((upload = queue.poll()) != null) {
+            pending.decrementAndGet();
+            upload.run(rm);
+            if (System.nanoTime() - start >= frameBudget) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        super.cleanup();
+        Upload upload;
+        while ((upload = queue.poll()) != null) {
+            pending.decrementAndGet();
+            upload.batch.future.cancel(false);
+        }
+    }
+
+    private static class Batch<T> {
+
+        final T asset;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final AtomicInteger remaining = new AtomicInteger();
+
+        Batch(T asset) {
+            this.asset = asset;
+        }
+
+        void uploaded() {
+            if (remaining.decrementAndGet() == 0) {
+                future.complete(asset);
+            }
+        }
+    }
+
+    private static class Upload {
+
+        final Batch<?> batch;
+        final Object target;
+        final Geometry geometry;
+
+        Upload(Batch<?> batch, Object target, Geometry geometry) {
+            this.batch = batch;
+            this.target = target;
+            this.geometry = geometry;
+        }
+
+        void run(RenderManager rm) {
+            if (batch.future.isDone()) {
+                return;
+            }
+            try {
+                Renderer renderer = rm.getRenderer();
+                if (target instanceof VertexBuffer) {
+                    VertexBuffer vb = (VertexBuffer) target;
+                    if (vb.getId() == -1 || vb.isUpdateNeeded()) {
+                        renderer.updateBufferData(vb);
+                    }
+                } else if (target instanceof Texture) {
+                    Image image = ((Texture) target).getImage();
+                    if (image.getId() == -1 || image.isUpdateNeeded()) {
+                        renderer.setTexture(0, (Texture) target);
+                    }
+                } else {
+                    ((Material) target).preload(rm, geometry);
+                }
+                batch.uploaded();
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, "Unable to upload " + target, ex);
+                batch.future.completeExceptionally(ex);
+            }
+        }
+    }
+}
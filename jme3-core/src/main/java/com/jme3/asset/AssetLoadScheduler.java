@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>AssetLoadScheduler</code> loads assets on a pool of background
+ * threads and loads their dependencies concurrently.
+ * <p>
+ * Loaders request the assets they depend on, e.g. the materials,
+ * textures and shader node definitions of a model, while they run, so
+ * these are normally loaded one after the other on the loading thread.
+ * The scheduler records which assets each asset it loads requests
+ * directly. When the asset is loaded again, or when the dependencies are
+ * known up front through {@link #addDependencies(AssetKey, Collection)},
+ * every dependency is loaded as soon as its own dependencies are loaded,
+ * and the asset itself once all of its dependencies are, so each loader
+ * finds the assets it requests in the cache.
+ * <p>
+ * Requests for a key that is already being loaded share the load. Keys
+ * without a cache are always loaded separately, since the result of a load
+ * can only be shared through the cache.
+ * <p>
+ * The returned futures complete on a loading thread. To hand the loaded
+ * data to the renderer without stalls, pass them on to a
+ * {@link com.jme3.app.state.UploadQueueState}:
+ * <pre>
+ * scheduler.loadAsset(new ModelKey("Scenes/Level1.j3o"))
+ *          .thenCompose(uploadQueue::enqueue);
+ * </pre>
+ */
+public class AssetLoadScheduler {
+
+    private static final Logger logger = Logger.getLogger(AssetLoadScheduler.class.getName());
+
+    private final AssetManager owner;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final ConcurrentHashMap<AssetKey<?>, CompletableFuture<?>> inFlight
+            = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<AssetKey<?>, Set<AssetKey<?>>> dependencies
+            = new ConcurrentHashMap<>();
+    private final ThreadLocal<LoadLog> loadLog = new ThreadLocal<>();
+    private final DependencyRecorder recorder = new DependencyRecorder();
+
+    /**
+     * Creates a scheduler with one loading thread per processor.
+     *
+     * @param owner the asset manager that loads the assets
+     */
+    public AssetLoadScheduler(AssetManager owner) {
+        this(owner, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new LoadingThreadFactory()), true);
+    }
+
+    /**
+     * Creates a scheduler that loads on the given executor, which is not
+     * shut down by {@link #shutdown()}.
+     *
+     * @param owner the asset manager that loads the assets
+     * @param executor the executor that runs the loads
+     */
+    public AssetLoadScheduler(AssetManager owner, ExecutorService executor) {
+        this(owner, executor, false);
+    }
+
+    private AssetLoadScheduler(AssetManager owner, ExecutorService executor, boolean ownsExecutor) {
+        this.owner = owner;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        owner.addAssetEventListener(recorder);
+    }
+
+    /**
+     * Loads the asset and its known dependencies in the background.
+     *
+     * @param <T> the type of the asset
+     * @param key the key of the asset
+     * @return a future that completes with the asset, or exceptionally if
+     * it could not be loaded
+     */
+    public <T> CompletableFuture<T> loadAsset(AssetKey<T> key) {
+        if (!isCached(key)) {
+            return load(key);
+        }
+        CompletableFuture<?> running = inFlight.get(key);
+        if (running != null) {
+            // The asset is in the cache once the running load is done,
+            // smart assets are cloned per request by the asset manager
+            return running.thenApplyAsync(asset -> owner.loadAsset(key), executor);
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            return running.thenApplyAsync(asset -> owner.loadAsset(key), executor);
+        }
+        load(key).whenComplete((asset, error) -> {
+            inFlight.remove(key, future);
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(asset);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Loads all of the assets, see {@link #loadAsset(AssetKey)}.
+     *
+     * @param keys the keys of the assets
+     * @return a future that completes when all assets are loaded
+     */
+    public CompletableFuture<List<Object>> loadAssets(Collection<? extends AssetKey<?>> keys) {
+        List<CompletableFuture<?>> futures = new ArrayList<>(keys.size());
+        for (AssetKey<?> key : keys) {
+            futures.add(loadAsset(key));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<Object> assets = new ArrayList<>(futures.size());
+                    for (CompletableFuture<?> f : futures) {
+                        assets.add(f.join());
+                    }
+                    return assets;
+                });
+    }
+
+    private <T> CompletableFuture<T> load(AssetKey<T> key) {
+        Set<AssetKey<?>> deps = dependencies.get(key);
+        if (deps == null || deps.isEmpty()) {
+            return CompletableFuture.supplyAsync(() -> loadNow(key), executor);
+        }
+
+        List<CompletableFuture<?>> loads = new ArrayList<>(deps.size());
+        for (AssetKey<?> dep : deps) {
+            // Each dependency waits for its own dependencies in turn
+            loads.add(prefetch(dep));
+        }
+        // Failed dependencies are left to the loader of the asset, which
+        // may handle them, the loaded ones are kept referenced by the list
+        // until the asset is loaded so that weak caches hold on to them
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]))
+                .handleAsync((ignored, error) -> {
+                    T asset = loadNow(key);
+                    loads.clear();
+                    return asset;
+                }, executor);
+    }
+
+    private CompletableFuture<?> prefetch(AssetKey<?> key) {
+        CompletableFuture<?> running = inFlight.get(key);
+        if (running != null) {
+            return running;
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            return running;
+        }
+        load(key).whenComplete((asset, error) -> {
+            inFlight.remove(key, future);
+            if (error != null) {
+                logger.log(Level.FINE, "Unable to preload dependency " + key, error);
+                future.completeExceptionally(error);
+            } else {
+                future.complete(asset);
+            }
+        });
+        return future;
+    }
+
+    private boolean isCached(AssetKey<?> key) {
+        if (owner instanceof DesktopAssetManager) {
+            return ((DesktopAssetManager) owner).getCacheType(key) != null;
+        }
+        return key.getCacheType() != null;
+    }
+
+    private <T> T loadNow(AssetKey<T> key) {
+        LoadLog previous = loadLog.get();
+        LoadLog log = new LoadLog();
+        loadLog.set(log);
+        try {
+            return owner.loadAsset(key);
+        } finally {
+            if (previous == null) {
+                loadLog.remove();
+            } else {
+                loadLog.set(previous);
+            }
+            recordDependencies(log);
+        }
+    }
+
+    /**
+     * Turns the events of a load into direct dependencies. A requested key
+     * was loaded, rather than found in the cache, if the next event for it
+     * is its assetLoaded() event. The keys requested until then are its
+     * own dependencies.
+     */
+    private void recordDependencies(LoadLog log) {
+        int size = log.keys.size();
+        boolean[] missed = new boolean[size];
+        Map<AssetKey<?>, Boolean> nextIsLoaded = new HashMap<>();
+        for (int i = size - 1; i >= 0; i--) {
+            AssetKey<?> key = log.keys.get(i);
+            boolean loaded = log.loaded.get(i);
+            if (!loaded) {
+                missed[i] = Boolean.TRUE.equals(nextIsLoaded.get(key));
+            }
+            nextIsLoaded.put(key, loaded);
+        }
+
+        ArrayDeque<AssetKey<?>> stack = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            AssetKey<?> key = log.keys.get(i);
+            if (log.loaded.get(i)) {
+                // Also drops the keys of loads that failed
+                if (stack.contains(key)) {
+                    while (!stack.pop().equals(key)) {
+                    }
+                }
+                continue;
+            }
+            if (isCached(key)) {
+                // Assets without a cache would be loaded twice, their own
+                // dependencies are attributed to the closest cached parent
+                for (AssetKey<?> parent : stack) {
+                    if (isCached(parent)) {
+                        addDependency(parent, key);
+                        break;
+                    }
+                }
+            }
+            if (missed[i]) {
+                stack.push(key);
+            }
+        }
+    }
+
+    private void addDependency(AssetKey<?> key, AssetKey<?> dep) {
+        // Loads wait for their dependencies, a cycle would never finish
+        if (dep.equals(key) || collectDependencies(dep, new HashSet<AssetKey<?>>()).contains(key)) {
+            return;
+        }
+        dependencies.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(dep);
+    }
+
+    private Set<AssetKey<?>> collectDependencies(AssetKey<?> key, Set<AssetKey<?>> store) {
+        Set<AssetKey<?>> deps = dependencies.get(key);
+        if (deps != null) {
+            for (AssetKey<?> dep : deps) {
+                if (store.add(dep)) {
+                    collectDependencies(dep, store);
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Adds keys that are loaded before the asset, e.g. from a list of
+     * dependencies saved by a previous run. Keys that already depend on the
+     * asset are skipped.
+     *
+     * @param key the key of the asset
+     * @param dependencyKeys the keys the asset depends on directly
+     */
+    public void addDependencies(AssetKey<?> key, Collection<? extends AssetKey<?>> dependencyKeys) {
+        for (AssetKey<?> dep : dependencyKeys) {
+            addDependency(key, dep);
+        }
+    }
+
+    /**
+     * Returns the keys known to be loaded along with the asset, directly
+     * or indirectly.
+     *
+     * @param key the key of the asset
+     * @return the keys, empty if none are known
+     */
+    public Set<AssetKey<?>> getDependencies(AssetKey<?> key) {
+        return Collections.unmodifiableSet(collectDependencies(key, new HashSet<AssetKey<?>>()));
+    }
+
+    /**
+     * Forgets all recorded dependencies.
+     */
+    public void clearDependencies() {
+        dependencies.clear();
+    }
+
+    /**
+     * Stops recording dependencies and shuts down the loading threads if
+     * they were created by this scheduler.
+     */
+    public void shutdown() {
+        owner.removeAssetEventListener(recorder);
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The keys requested and loaded on a loading thread while it loads an
+     * asset, in order.
+     */
+    private static class LoadLog {
+        final List<AssetKey<?>> keys = new ArrayList<>();
+        final List<Boolean> loaded = new ArrayList<>();
+
+        void add(AssetKey<?> key, boolean isLoaded) {
+            keys.add(key);
+            loaded.add(isLoaded);
+        }
+    }
+
+    /**
+     * Logs the keys that are requested and loaded on a loading thread
+     * while it loads an asset.
+     */
+    private class DependencyRecorder implements AssetEventListener {
+
+        @Override
+        public void assetRequested(AssetKey key) {
+            LoadLog log = loadLog.get();
+            if (log != null) {
+                log.add(key, false);
+            }
+        }
+
+        @Override
+        public void assetLoaded(AssetKey key) {
+            LoadLog log = loadLog.get();
+            if (log != null) {
+                log.add(key, true);
+            }
+        }
+
+        @Override
+        public void assetDependencyNotFound(AssetKey parentKey, AssetKey dependentAssetKey) {
+        }
+    }
+
+    private static class LoadingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger nextThreadId = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "jME3-asset-loader-" + nextThreadId.getAndIncrement());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    }
+}
@@ -53,6 +53,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -76,6 +77,9 @@ public class DesktopAssetManager implements AssetManager {
     private List<ClassLoader> classLoaders =
             Collections.synchronizedList(new ArrayList<ClassLoader>());
 
+    private final ConcurrentHashMap<Class<?>, Class<? extends AssetCache>> cacheTypes =
+            new ConcurrentHashMap<Class<?>, Class<? extends AssetCache>>();
+
     public DesktopAssetManager(){
         this(null);
     }
@@ -209,9 +213,58 @@ public class DesktopAssetManager implements AssetManager {
         return info;
     }
     
+    /**
+     * Caches the assets of a key type, and its subtypes, in a different
+     * cache than the one its {@link AssetKey#getCacheType()} names, e.g. to
+     * keep textures in a {@link com.jme3.asset.cache.BoundedAssetCache}.
+     *
+     * @param keyType the key type, e.g. <code>TextureKey.class</code>
+     * @param cacheType the cache type, or null to use the cache of the key
+     * again
+     */
+    public void setCacheType(Class<? extends AssetKey> keyType, Class<? extends AssetCache> cacheType) {
+        if (cacheType == null) {
+            cacheTypes.remove(keyType);
+        } else {
+            cacheTypes.put(keyType, cacheType);
+        }
+    }
+
+    /**
+     * Returns the cache type used for the key.
+     *
+     * @param key the asset key
+     * @return the cache type, or null if the asset is not cached
+     * @see #setCacheType(java.lang.Class, java.lang.Class)
+     */
+    public Class<? extends AssetCache> getCacheType(AssetKey<?> key) {
+        if (!cacheTypes.isEmpty()) {
+            for (Class<?> c = key.getClass(); c != Object.class; c = c.getSuperclass()) {
+                Class<? extends AssetCache> cacheType = cacheTypes.get(c);
+                if (cacheType != null) {
+                    return cacheType;
+                }
+            }
+        }
+        return key.getCacheType();
+    }
+
+    /**
+     * Returns the cache instance of the given type, creating it if it does
+     * not exist yet. E.g. to pin assets or read the statistics of a
+     * {@link com.jme3.asset.cache.BoundedAssetCache}.
+     *
+     * @param <T> the cache type
+     * @param cacheType the cache class
+     * @return the cache used by this asset manager
+     */
+    public <T extends AssetCache> T getCache(Class<T> cacheType) {
+        return handler.getCache(cacheType);
+    }
+
     @Override
     public <T> T getFromCache(AssetKey<T> key) {
-        AssetCache cache = handler.getCache(key.getCacheType());
+        AssetCache cache = handler.getCache(getCacheType(key));
         if (cache != null) {
             T asset = cache.getFromCache(key);
             if (asset != null) {
@@ -226,7 +279,7 @@ public class DesktopAssetManager implements AssetManager {
     
     @Override
     public <T> void addToCache(AssetKey<T> key, T asset) {
-        AssetCache cache = handler.getCache(key.getCacheType());
+        AssetCache cache = handler.getCache(getCacheType(key));
         if (cache != null) {
             cache.addToCache(key, asset);
             cache.notifyNoAssetClone();
@@ -237,7 +290,7 @@ public class DesktopAssetManager implements AssetManager {
     
     @Override
     public <T> boolean deleteFromCache(AssetKey<T> key) {
-        AssetCache cache = handler.getCache(key.getCacheType());
+        AssetCache cache = handler.getCache(getCacheType(key));
         if (cache != null) {
             return cache.deleteFromCache(key);
         } else {
@@ -367,7 +420,7 @@ public class DesktopAssetManager implements AssetManager {
             listener.assetRequested(key);
         }
         
-        AssetCache cache = handler.getCache(key.getCacheType());
+        AssetCache cache = handler.getCache(getCacheType(key));
         AssetProcessor proc = handler.getProcessor(key.getProcessorType());
         
         Object obj = cache != null ? cache.getFromCache(key) : null;
@@ -38,6 +38,9 @@ import java.util.concurrent.*;
  * within the Content Manager system. A pool of threads and a task queue
  * is used to load resource data and perform I/O while the application's
  * render thread is active. 
+ *
+ * @see AssetLoadScheduler for loading the dependencies of assets in
+ * parallel
  */
 public class ThreadingManager {
 
@@ -0,0 +1,606 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.audio.AudioBuffer;
+import com.jme3.material.MatParam;
+import com.jme3.material.MatParamTexture;
+import com.jme3.material.Material;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphVisitorAdapter;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>BoundedAssetCache</code> is an asset cache that keeps the estimated
+ * size of its assets within a byte budget. Assets are evicted in least
+ * recently used order, or with {@link EvictionPolicy#TINY_LFU} by how often
+ * they were requested recently.
+ * <p>
+ * The size of an asset is estimated when it is added, from the data of its
+ * images, vertex buffers and audio buffers, see
+ * {@link #estimateSize(java.lang.Object)}. Pinned assets are never evicted
+ * but count against the budget. Evicting an asset only drops the reference
+ * of the cache, assets that are still used elsewhere stay in memory.
+ * <p>
+ * The asset manager creates caches with their empty constructor, to use a
+ * different budget or policy extend this class and return the subclass
+ * from {@link AssetKey#getCacheType()} or register it with
+ * {@link com.jme3.asset.DesktopAssetManager#setCacheType(java.lang.Class, java.lang.Class)}.
+ * The instance can be obtained from
+ * {@link com.jme3.asset.DesktopAssetManager#getCache(java.lang.Class)}
+ * to pin assets and read the statistics.
+ */
+public class BoundedAssetCache implements AssetCache {
+
+    private static final Logger logger = Logger.getLogger(BoundedAssetCache.class.getName());
+
+    /**
+     * The budget of caches created with the empty constructor.
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * Size of assets whose size cannot be estimated.
+     */
+    protected static final long UNKNOWN_SIZE = 1024;
+
+    public enum EvictionPolicy {
+        /**
+         * Evicts the least recently used asset.
+         */
+        LRU,
+        /**
+         * Window TinyLFU, new assets enter a small LRU window and are only
+         * kept beyond it if they were requested more often recently than
+         * the asset they would replace. Resists scans of assets that are
+         * used once, like the textures of a level that is only passed
+         * through.
+         */
+        TINY_LFU
+    }
+
+    private enum Region {
+        WINDOW, PROBATION, PROTECTED, PINNED
+    }
+
+    private final EvictionPolicy policy;
+    private final FrequencySketch sketch;
+    private final HashMap<AssetKey, Node> nodes = new HashMap<AssetKey, Node>();
+    private final Set<AssetKey> pinnedKeys = new HashSet<AssetKey>();
+    private final NodeList window = new NodeList();
+    private final NodeList probation = new NodeList();
+    private final NodeList protectedList = new NodeList();
+
+    private long maxBytes;
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long evictedBytes;
+
+    /**
+     * Creates an LRU cache with a budget of {@link #DEFAULT_MAX_BYTES}.
+     */
+    public BoundedAssetCache() {
+        this(DEFAULT_MAX_BYTES, EvictionPolicy.LRU);
+    }
+
+    /**
+     * @param maxBytes the budget in bytes
+     * @param policy how assets are selected for eviction
+     */
+    public BoundedAssetCache(long maxBytes, EvictionPolicy policy) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes cannot be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+        this.sketch = policy == EvictionPolicy.TINY_LFU ? new FrequencySketch() : null;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return policy;
+    }
+
+    /**
+     * Sets the budget, evicting assets if the cache holds more.
+     *
+     * @param maxBytes the budget in bytes
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes cannot be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public synchronized <T> void addToCache(AssetKey<T> key, T obj) {
+        Node old = nodes.remove(key);
+        if (old != null) {
+            unlink(old);
+            totalBytes -= old.size;
+        }
+        Node node = new Node(key, obj, estimateSize(obj));
+        nodes.put(key, node);
+        totalBytes += node.size;
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        if (pinnedKeys.contains(key)) {
+            node.region = Region.PINNED;
+        } else {
+            insert(node);
+        }
+        evict();
+    }
+
+    @Override
+    public <T> void registerAssetClone(AssetKey<T> key, T clone) {
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getFromCache(AssetKey<T> key) {
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        Node node = nodes.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        onAccess(node);
+        return (T) node.asset;
+    }
+
+    @Override
+    public synchronized boolean deleteFromCache(AssetKey key) {
+        Node node = nodes.remove(key);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        totalBytes -= node.size;
+        return true;
+    }
+
+    @Override
+    public synchronized void clearCache() {
+        nodes.clear();
+        window.clear();
+        probation.clear();
+        protectedList.clear();
+        totalBytes = 0;
+    }
+
+    @Override
+    public void notifyNoAssetClone() {
+    }
+
+    /**
+     * Keeps the asset of the key from being evicted, also if it is only
+     * added later. The asset still counts against the budget.
+     *
+     * @param key the key of the asset
+     */
+    public synchronized void pin(AssetKey key) {
+        pinnedKeys.add(key);
+        Node node = nodes.get(key);
+        if (node != null && node.region != Region.PINNED) {
+            unlink(node);
+            node.region = Region.PINNED;
+        }
+    }
+
+    /**
+     * Allows the asset of the key to be evicted again.
+     *
+     * @param key the key of the asset
+     */
+    public synchronized void unpin(AssetKey key) {
+        pinnedKeys.remove(key);
+        Node node = nodes.get(key);
+        if (node != null && node.region == Region.PINNED) {
+            insert(node);
+            evict();
+        }
+    }
+
+    public synchronized boolean isPinned(AssetKey key) {
+        return pinnedKeys.contains(key);
+    }
+
+    /**
+     * @return the estimated size of the cached assets in bytes
+     */
+    public synchronized long getSize() {
+        return totalBytes;
+    }
+
+    public synchronized int getAssetCount() {
+        return nodes.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        evictedBytes = 0;
+    }
+
+    /**
+     * Estimates how much memory the asset uses. Counts the data of images,
+     * vertex buffers and audio buffers, for textures, meshes, materials and
+     * spatials the data they reference, data shared within the asset is
+     * counted once. Other assets count as {@link #UNKNOWN_SIZE}.
+     *
+     * @param asset the asset
+     * @return the estimated size in bytes
+     */
+    protected long estimateSize(Object asset) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        long size = sizeOf(asset, seen);
+        return size > 0 ? size : UNKNOWN_SIZE;
+    }
+
+    private static long sizeOf(Object asset, final Set<Object> seen) {
+        if (asset == null || !seen.add(asset)) {
+            return 0;
+        }
+        if (asset instanceof Spatial) {
+            final long[] size = new long[1];
+            ((Spatial) asset).depthFirstTraversal(new SceneGraphVisitorAdapter() {
+                @Override
+                public void visit(Geometry geom) {
+                    size[0] += sizeOf(geom.getMesh(), seen);
+                    size[0] += sizeOf(geom.getMaterial(), seen);
+                }
+            });
+            return size[0];
+        } else if (asset instanceof Material) {
+            long size = 0;
+            for (MatParam param : ((Material) asset).getParams()) {
+                if (param instanceof MatParamTexture) {
+                    size += sizeOf(((MatParamTexture) param).getTextureValue(), seen);
+                }
+            }
+            return size;
+        } else if (asset instanceof Texture) {
+            return sizeOf(((Texture) asset).getImage(), seen);
+        } else if (asset instanceof Image) {
+            Image image = (Image) asset;
+            long size = 0;
+            for (ByteBuffer data : image.getData()) {
+                if (data != null) {
+                    size += data.capacity();
+                }
+            }
+            if (size == 0 && image.getFormat() != null) {
+                size = (long) image.getWidth() * image.getHeight() * Math.max(1, image.getDepth())
+                        * image.getFormat().getBitsPerPixel() / 8;
+            }
+            return size;
+        } else if (asset instanceof Mesh) {
+            long size = 0;
+            for (VertexBuffer vb : ((Mesh) asset).getBufferList().getArray()) {
+                Buffer data = vb.getData();
+                if (data != null) {
+                    size += (long) data.capacity() * vb.getFormat().getComponentSize();
+                }
+            }
+            return size;
+        } else if (asset instanceof AudioBuffer) {
+            ByteBuffer data = ((AudioBuffer) asset).getData();
+            return data == null ? 0 : data.capacity();
+        } else if (asset instanceof byte[]) {
+            return ((byte[]) asset).length;
+        } else if (asset instanceof String) {
+            return 2L * ((String) asset).length();
+        }
+        return 0;
+    }
+
+    private void insert(Node node) {
+        if (policy == EvictionPolicy.LRU) {
+            probation.addLast(node, Region.PROBATION);
+        } else {
+            window.addLast(node, Region.WINDOW);
+        }
+    }
+
+    private void unlink(Node node) {
+        switch (node.region) {
+            case WINDOW:
+                window.remove(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedList.remove(node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onAccess(Node node) {
+        switch (node.region) {
+            case WINDOW:
+                window.remove(node);
+                window.addLast(node, Region.WINDOW);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                if (policy == EvictionPolicy.LRU) {
+                    probation.addLast(node, Region.PROBATION);
+                } else {
+                    protectedList.addLast(node, Region.PROTECTED);
+                    long maxProtected = (maxBytes - windowBytes()) * 4 / 5;
+                    while (protectedList.bytes > maxProtected && protectedList.size > 1) {
+                        Node demoted = protectedList.first();
+                        protectedList.remove(demoted);
+                        probation.addLast(demoted, Region.PROBATION);
+                    }
+                }
+                break;
+            case PROTECTED:
+                protectedList.remove(node);
+                protectedList.addLast(node, Region.PROTECTED);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private long windowBytes() {
+        return maxBytes / 100;
+    }
+
+    private void evict() {
+        if (policy == EvictionPolicy.LRU) {
+            Node victim;
+            while (totalBytes > maxBytes && (victim = probation.first()) != null) {
+                evict(victim);
+            }
+            return;
+        }
+
+        // Assets leaving the window are candidates for the main space
+        Node candidate = null;
+        while (window.bytes > windowBytes() && window.size > 0) {
+            Node node = window.first();
+            window.remove(node);
+            probation.addLast(node, Region.PROBATION);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+
+        while (totalBytes > maxBytes) {
+            Node victim = probation.first();
+            if (victim == null) {
+                victim = protectedList.first();
+            }
+            if (victim == null) {
+                victim = window.first();
+            }
+            if (victim == null) {
+                // Only pinned assets left
+                break;
+            }
+            if (candidate == null || candidate == victim || victim.region != Region.PROBATION) {
+                if (candidate == victim) {
+                    candidate = probation.next(victim);
+                }
+                evict(victim);
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim);
+            } else {
+                Node next = probation.next(candidate);
+                evict(candidate);
+                candidate = next;
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        unlink(node);
+        nodes.remove(node.key);
+        totalBytes -= node.size;
+        evictions++;
+        evictedBytes += node.size;
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "Evicted {0} ({1} bytes)", new Object[]{node.key, node.size});
+        }
+    }
+
+    private static final class Node {
+
+        final AssetKey key;
+        final Object asset;
+        final long size;
+        Region region;
+        Node prev;
+        Node next;
+
+        Node(AssetKey key, Object asset, long size) {
+            this.key = key;
+            this.asset = asset;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Doubly linked list of nodes, least recently used first.
+     */
+    private static final class NodeList {
+
+        final Node head = new Node(null, null, 0);
+        long bytes;
+        int size;
+
+        NodeList() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        Node first() {
+            return head.next == head ? null : head.next;
+        }
+
+        Node next(Node node) {
+            return node.next == head ? null : node.next;
+        }
+
+        void addLast(Node node, Region region) {
+            node.region = region;
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+            bytes += node.size;
+            size++;
+        }
+
+        void remove(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            bytes -= node.size;
+            size--;
+        }
+
+        void clear() {
+            head.prev = head;
+            head.next = head;
+            bytes = 0;
+            size = 0;
+        }
+    }
+
+    /**
+     * Approximate recent request counts of keys, a count-min sketch with
+     * 4 bit counters that are halved periodically so that old requests
+     * fade out.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+
+        private final byte[] table = new byte[1 << 14];
+        private final int sampleSize = 10 * (table.length >> 2);
+        private int additions;
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = indexOf(hash, i);
+                if (table[index] < 15) {
+                    table[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] >>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, table[indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & (table.length - 1);
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
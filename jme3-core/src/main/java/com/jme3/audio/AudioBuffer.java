@@ -31,6 +31,7 @@
  */
 package com.jme3.audio;
 
+import com.jme3.util.BufferCategory;
 import com.jme3.util.BufferUtils;
 import com.jme3.util.NativeObject;
 
@@ -96,6 +97,7 @@ public class AudioBuffer extends AudioData {
         }
 
         this.audioData = data;
+        BufferUtils.setBufferCategory(data, BufferCategory.Audio);
         updateNeeded = true;
     }
 
@@ -138,10 +138,10 @@ public class BoundingBox extends BoundingVolume {
 
         TempVars vars = TempVars.get();
 
-        Vector3f min = vars.vect1.set(new Vector3f(Float.POSITIVE_INFINITY,
-                Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY));
-        Vector3f max = vars.vect2.set(new Vector3f(Float.NEGATIVE_INFINITY,
-                Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY));
+        Vector3f min = vars.vect1.set(Float.POSITIVE_INFINITY,
+                Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+        Vector3f max = vars.vect2.set(Float.NEGATIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
 
         Vector3f point;
         for (int i = start; i < end; i++) {
@@ -43,6 +43,13 @@ public final class FormatVersion {
      */
     public static final int VERSION = 2;
     
+    /**
+     * Version number of streaming exports, which write the class and
+     * location tables after the object data. Only streaming exports use it
+     * so that regular files can still be read by older runtimes.
+     */
+    public static final int STREAMING_VERSION = 3;
+    
     /**
      * Signature of the format. Currently "JME3" as ASCII
      */
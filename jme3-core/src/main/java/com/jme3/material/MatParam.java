@@ -52,6 +52,7 @@ public class MatParam implements Savable, Cloneable {
     protected String name;
     protected String prefixedName;
     protected Object value;
+    protected int version;
 
     /**
      * Create a new material parameter. For internal use only.
@@ -123,10 +124,29 @@ public class MatParam implements Savable, Cloneable {
      * It is assumed the value is of the same {@link MatParam#getVarType() type}
      * as this material parameter.
      *
+     * Every call counts as a change, see {@link #getVersion()}. Values
+     * that are modified in place must be set again for the change to reach
+     * the shader.
+     *
      * @param value the value of this material parameter.
      */
     public void setValue(Object value) {
         this.value = value;
+        version++;
+    }
+
+    /**
+     * Returns the change counter of this material parameter.
+     * <p>
+     * The counter is incremented each time the value is set. Uniforms
+     * remember the parameter and version they were last set from, which
+     * lets the material skip parameters that did not change since the
+     * last draw without comparing their values.
+     *
+     * @return the change counter of this material parameter.
+     */
+    public int getVersion() {
+        return version;
     }
 
 
@@ -61,6 +61,7 @@ public class MatParamTexture extends MatParam {
     public void setTextureValue(Texture value) {
         this.value = value;
         this.texture = value;
+        version++;
     }
     
     @Override
@@ -70,6 +71,7 @@ public class MatParamTexture extends MatParam {
         }
         this.value = value;
         this.texture = (Texture) value;
+        version++;
     }
 
     /**
@@ -813,7 +813,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
                     int unit = renderer.setTexture((Texture) override.getValue());
                     uniform.setValue(VarType.Int, unit);
                 } else {
-                    uniform.setValue(type, override.getValue());
+                    uniform.setValue(type, override.getValue(), override, override.getVersion());
                 }
             } else {
                 uniform.clearValue();
@@ -859,7 +859,9 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
                     uniform.setValue(VarType.Int, unit);
                     //unit++;
                 } else {
-                    uniform.setValue(type, param.getValue());
+                    // skipped without comparing if the uniform already
+                    // holds this version of the parameter
+                    uniform.setValue(type, param.getValue(), param, param.getVersion());
                 }
             }
         }
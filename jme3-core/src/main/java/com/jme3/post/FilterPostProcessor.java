@@ -259,6 +259,8 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
             Filter filter = filters.get(i);
             if (prof != null) prof.spStep(SpStep.ProcPostFrame, FPP, filter.getName());
             if (filter.isEnabled()) {
+                TraceProfiler trace = TraceProfiler.getCurrent();
+                if (trace != null) trace.begin(TraceProfiler.Category.SceneProcessor, filter.getClass(), filter.getName());
                 if (filter.getPostRenderPasses() != null) {
                     for (Iterator<Filter.Pass> it1 = filter.getPostRenderPasses().iterator(); it1.hasNext();) {
                         Filter.Pass pass = it1.next();
@@ -322,6 +324,7 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
                     tex.setMagFilter(Texture.MagFilter.Nearest);
                     tex.setMinFilter(Texture.MinFilter.NearestNoMipMaps);
                 }
+                if (trace != null) trace.end(TraceProfiler.Category.SceneProcessor, filter.getClass(), filter.getName());
             }
         }
     }
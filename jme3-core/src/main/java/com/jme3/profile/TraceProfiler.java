@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.profile;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *  Records nested, timed scopes into a fixed size ring buffer that can
+ *  be summarized or written as a Chrome trace (chrome://tracing, Perfetto).
+ *  <p>
+ *  The engine opens scopes for the frame, every enabled app state, every
+ *  control update, every viewport, every scene processor step and every
+ *  bucket flush while a profiler is {@link #setCurrent(com.jme3.profile.TraceProfiler) current}.
+ *  Applications can open their own scopes with the
+ *  {@link Category#User User} category.
+ *  <p>
+ *  Recording does not allocate and does not lock, so scopes can be
+ *  opened from several threads, for example by controls updated below a
+ *  {@link com.jme3.scene.ParallelNode}. Scope labels are stored by
+ *  reference and only turned into names when the trace is read: a Class
+ *  is named by its simple name, any other object by toString(). Once the
+ *  ring buffer is full, the oldest events are overwritten.
+ *
+ *  @see com.jme3.app.TraceProfilerState
+ */
+public final class TraceProfiler {
+
+    /**
+     *  The kind of scope, written as the trace event category.
+     */
+    public enum Category {
+        Frame, AppState, Control, ViewPort, SceneProcessor, Bucket, User
+    }
+
+    private static final byte BEGIN = 0;
+    private static final byte END = 1;
+
+    private static volatile TraceProfiler current;
+
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLongArray published;
+    private final long[] times;
+    private final long[] threads;
+    private final byte[] phases;
+    private final Category[] categories;
+    private final Object[] labels;
+    private final Object[] details;
+    private final long start = System.nanoTime();
+
+    /**
+     *  Creates a profiler that keeps the last events.
+     *
+     *  @param capacity the number of events to keep, rounded up to
+     *  the next power of two.
+     */
+    public TraceProfiler(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        published = new AtomicLongArray(size);
+        times = new long[size];
+        threads = new long[size];
+        phases = new byte[size];
+        categories = new Category[size];
+        labels = new Object[size];
+        details = new Object[size];
+    }
+
+    /**
+     *  Returns the profiler the engine currently records into, or null
+     *  if tracing is disabled.
+     */
+    public static TraceProfiler getCurrent() {
+        return current;
+    }
+
+    /**
+     *  Sets the profiler the engine records into, null disables tracing.
+     */
+    public static void setCurrent(TraceProfiler profiler) {
+        current = profiler;
+    }
+
+    /**
+     *  Returns the number of events the ring buffer keeps.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     *  Returns the number of events recorded since creation or the
+     *  last {@link #clear() }, including overwritten ones.
+     */
+    public long getRecordedCount() {
+        return cursor.get();
+    }
+
+    /**
+     *  Opens a scope on the calling thread.
+     *
+     *  @param category the kind of scope
+     *  @param label what is being timed, usually a Class or a constant String
+     *  @param detail optional additional information like a spatial or
+     *  viewport name, may be null.
+     */
+    public void begin(Category category, Object label, Object detail) {
+        record(BEGIN, category, label, detail);
+    }
+
+    /**
+     *  Closes the scope most recently opened on the calling thread. The
+     *  arguments should be the same as for the matching begin() call.
+     */
+    public void end(Category category, Object label, Object detail) {
+        record(END, category, label, detail);
+    }
+
+    private void record(byte phase, Category category, Object label, Object detail) {
+        long seq = cursor.getAndIncrement();
+        int slot = (int) (seq & mask);
+        // invalidate the slot while it is being written
+        published.set(slot, 0);
+        times[slot] = System.nanoTime();
+        threads[slot] = Thread.currentThread().getId();
+        phases[slot] = phase;
+        categories[slot] = category;
+        labels[slot] = label;
+        details[slot] = detail;
+        published.lazySet(slot, seq + 1);
+    }
+
+    /**
+     *  Discards all recorded events. Must not be called while other
+     *  threads are recording.
+     */
+    public void clear() {
+        for (int i = 0; i <= mask; i++) {
+            published.set(i, 0);
+            labels[i] = null;
+            details[i] = null;
+        }
+        cursor.set(0);
+    }
+
+    /**
+     *  Aggregates the closed scopes that are still in the ring buffer by
+     *  name, sorted by total time, longest first. Allocates, meant for
+     *  displaying results rather than for every frame.
+     */
+    public List<ScopeSummary> summarize() {
+        final Map<String, ScopeSummary> byName = new LinkedHashMap<>();
+        visit(new EventVisitor() {
+            @Override
+            public void scope(long thread, Category category, String name, long begin, long end, int depth) {
+                ScopeSummary summary = byName.get(name);
+                if (summary == null) {
+                    summary = new ScopeSummary(name, category);
+                    byName.put(name, summary);
+                }
+                summary.add(end - begin);
+            }
+
+            @Override
+            public void event(long thread, boolean begin, Category category, String name, long time) {
+            }
+        });
+        List<ScopeSummary> result = new ArrayList<>(byName.values());
+        Collections.sort(result, new Comparator<ScopeSummary>() {
+            @Override
+            public int compare(ScopeSummary a, ScopeSummary b) {
+                return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+            }
+        });
+        return result;
+    }
+
+    /**
+     *  Writes the events that are still in the ring buffer in the Chrome
+     *  trace event format. Events that lost their matching begin event
+     *  because it was overwritten are skipped, as are events overwritten
+     *  while the trace is being written.
+     *
+     *  @param out the writer to write the JSON document to, not closed.
+     */
+    public void writeChromeTrace(final Writer out) throws IOException {
+        final StringBuilder sb = new StringBuilder(256);
+        final IOException[] error = new IOException[1];
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        visit(new EventVisitor() {
+            private boolean first = true;
+
+            @Override
+            public void scope(long thread, Category category, String name, long begin, long end, int depth) {
+            }
+
+            @Override
+            public void event(long thread, boolean begin, Category category, String name, long time) {
+                if (error[0] != null) {
+                    return;
+                }
+                sb.setLength(0);
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                sb.append("\n{\"name\":\"");
+                escape(sb, name);
+                sb.append("\",\"cat\":\"").append(category.name())
+                        .append("\",\"ph\":\"").append(begin ? 'B' : 'E')
+                        .append("\",\"ts\":").append((time - start) / 1000L)
+                        .append('.').append(pad((time - start) % 1000L))
+                        .append(",\"pid\":1,\"tid\":").append(thread).append('}');
+                try {
+                    out.write(sb.toString());
+                } catch (IOException ex) {
+                    error[0] = ex;
+                }
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        out.write("\n]}\n");
+        out.flush();
+    }
+
+    private static String pad(long micros) {
+        if (micros < 10) {
+            return "00" + micros;
+        } else if (micros < 100) {
+            return "0" + micros;
+        }
+        return Long.toString(micros);
+    }
+
+    private static void escape(StringBuilder sb, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    private static String nameOf(Object label, Object detail) {
+        String name;
+        if (label instanceof Class) {
+            name = ((Class<?>) label).getSimpleName();
+        } else {
+            name = String.valueOf(label);
+        }
+        if (detail != null) {
+            name = name + " (" + detail + ")";
+        }
+        return name;
+    }
+
+    private interface EventVisitor {
+
+        void event(long thread, boolean begin, Category category, String name, long time);
+
+        void scope(long thread, Category category, String name, long begin, long end, int depth);
+    }
+
+    /**
+     *  Walks the consistent events in recording order, tracking the open
+     *  scopes of every thread so unmatched end events can be dropped.
+     */
+    private void visit(EventVisitor visitor) {
+        long last = cursor.get();
+        long first = Math.max(0, last - (mask + 1));
+        Map<Long, List<OpenScope>> open = new HashMap<>();
+        for (long seq = first; seq < last; seq++) {
+            int slot = (int) (seq & mask);
+            if (published.get(slot) != seq + 1) {
+                continue;
+            }
+            long time = times[slot];
+            long thread = threads[slot];
+            byte phase = phases[slot];
+            Category category = categories[slot];
+            Object label = labels[slot];
+            Object detail = details[slot];
+            if (published.get(slot) != seq + 1) {
+                // overwritten while reading
+                continue;
+            }
+            List<OpenScope> stack = open.get(thread);
+            if (stack == null) {
+                stack = new ArrayList<>();
+                open.put(thread, stack);
+            }
+            if (phase == BEGIN) {
+                String name = nameOf(label, detail);
+                stack.add(new OpenScope(name, time));
+                visitor.event(thread, true, category, name, time);
+            } else if (!stack.isEmpty()) {
+                int depth = stack.size() - 1;
+                OpenScope scope = stack.remove(depth);
+                visitor.event(thread, false, category, scope.name, time);
+                visitor.scope(thread, category, scope.name, scope.time, time, depth);
+            }
+        }
+    }
+
+    private static final class OpenScope {
+
+        private final String name;
+        private final long time;
+
+        private OpenScope(String name, long time) {
+            this.name = name;
+            this.time = time;
+        }
+    }
+
+    /**
+     *  Count and duration of all closed scopes sharing a name.
+     */
+    public static final class ScopeSummary {
+
+        private final String name;
+        private final Category category;
+        private int count;
+        private long total;
+        private long max;
+
+        private ScopeSummary(String name, Category category) {
+            this.name = name;
+            this.category = category;
+        }
+
+        private void add(long nanos) {
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Category getCategory() {
+            return category;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return total;
+        }
+
+        public long getMaxNanos() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return name + " [" + category + "] x" + count + " total " + total / 1000L + "us max " + max / 1000L + "us";
+        }
+    }
+}
@@ -35,6 +35,7 @@ import com.jme3.bounding.BoundingBox;
 import com.jme3.bounding.BoundingVolume;
 import com.jme3.export.*;
 import com.jme3.math.*;
+import com.jme3.util.MathArena;
 import com.jme3.util.TempVars;
 import java.io.IOException;
 import java.util.logging.Level;
@@ -120,6 +121,12 @@ public class Camera implements Savable, Cloneable {
      * MAX_WORLD_PLANES holds the maximum planes allowed by the system.
      */
     private static final int MAX_WORLD_PLANES = 6;
+    /**
+     * Plane state with every frustum plane marked as checked, as returned by
+     * {@link #contains(com.jme3.bounding.BoundingVolume, int) } for a volume
+     * that is fully inside the frustum.
+     */
+    public static final int PLANE_STATE_INSIDE = (1 << FRUSTUM_PLANES) - 1;
     /**
      * Camera's location
      */
@@ -1054,6 +1061,52 @@ public class Camera implements Savable, Cloneable {
         return rVal;
     }
     
+    /**
+     * Tests a bounding volume against the planes of the camera's frustum like
+     * {@link #contains(com.jme3.bounding.BoundingVolume) }, but the plane
+     * state is passed in and the updated state returned instead of using the
+     * camera's own plane state. This makes it safe for several threads to
+     * cull against the same camera at the same time, as long as each thread
+     * tests different bounding volumes.
+     *
+     * @param bound the bound to check for culling
+     * @param planeState the plane state of the bound's parent, 0 for the
+     * root of the scene
+     * @return the plane state to use for the bound's children, or -1 if the
+     * bound is outside of the frustum. {@link #PLANE_STATE_INSIDE} means the
+     * bound is fully inside.
+     */
+    public int contains(BoundingVolume bound, int planeState) {
+        if (bound == null) {
+            return PLANE_STATE_INSIDE;
+        }
+
+        int mask;
+        for (int planeCounter = FRUSTUM_PLANES; planeCounter >= 0; planeCounter--) {
+            if (planeCounter == bound.getCheckPlane()) {
+                continue; // we have already checked this plane at first iteration
+            }
+            int planeId = (planeCounter == FRUSTUM_PLANES) ? bound.getCheckPlane() : planeCounter;
+
+            mask = 1 << (planeId);
+            if ((planeState & mask) == 0) {
+                Plane.Side side = bound.whichSide(worldPlane[planeId]);
+
+                if (side == Plane.Side.Negative) {
+                    //object is outside of frustum
+                    bound.setCheckPlane(planeId);
+                    return -1;
+                } else if (side == Plane.Side.Positive) {
+                    //object is visible on *this* plane, so mark this plane
+                    //so that we don't check it for sub nodes.
+                    planeState |= mask;
+                }
+            }
+        }
+
+        return planeState;
+    }
+
     public Plane getWorldPlane(int planeId) {
         return worldPlane[planeId];
     }
@@ -1358,16 +1411,18 @@ public class Camera implements Savable, Cloneable {
             store = new Vector3f();
         }
  
-        Matrix4f inverseMat = new Matrix4f(viewProjectionMatrix);
-        inverseMat.invertLocal();
+        try (MathArena arena = MathArena.open()) {
+            Matrix4f inverseMat = arena.matrix4f(viewProjectionMatrix);
+            inverseMat.invertLocal();
 
-        store.set(
-                (screenPosition.x / getWidth() - viewPortLeft) / (viewPortRight - viewPortLeft) * 2 - 1,
-                (screenPosition.y / getHeight() - viewPortBottom) / (viewPortTop - viewPortBottom) * 2 - 1,
-                projectionZPos * 2 - 1);
+            store.set(
+                    (screenPosition.x / getWidth() - viewPortLeft) / (viewPortRight - viewPortLeft) * 2 - 1,
+                    (screenPosition.y / getHeight() - viewPortBottom) / (viewPortTop - viewPortBottom) * 2 - 1,
+                    projectionZPos * 2 - 1);
 
-        float w = inverseMat.multProj(store, store);      
-        store.multLocal(1f / w);
+            float w = inverseMat.multProj(store, store);
+            store.multLocal(1f / w);
+        }
 
         return store;
     }
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.buffer.DrawIndirectBuffer;
+import com.jme3.buffer.FieldBuffer;
+import com.jme3.buffer.ShaderStorageBuffer;
+import com.jme3.buffer.UntypedBuffer;
+import com.jme3.buffer.pmb.MultiBufferRingBuffer;
+import com.jme3.buffer.pmb.RingBuffer;
+import com.jme3.buffer.pmb.RingBuffer.RingBufferBlock;
+import com.jme3.light.LightList;
+import com.jme3.material.MatParam;
+import com.jme3.material.Material;
+import com.jme3.material.Technique;
+import com.jme3.material.TechniqueDef;
+import com.jme3.math.Matrix4f;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.instancing.InstancedGeometry;
+
+/**
+ * Merges consecutive entries of a sorted {@link GeometryList} into single
+ * multi draw indirect calls.
+ * <p>
+ * Geometries are merged when they share the same {@link Material} instance
+ * (and therefore the same shader, parameters and render state), draw from
+ * the same vertex and index buffers and are lit by the same lights. Meshes
+ * that only differ in their {@link Mesh#setDrawOffset(int) draw offset} and
+ * {@link Mesh#setDrawCount(int) draw count} on shared buffers merge as
+ * well. For every merged geometry, the world matrix is written into a
+ * persistently mapped {@link RingBuffer} next to a draw command whose
+ * <code>baseInstance</code> is the index of that matrix. The group is then
+ * drawn by rendering its first geometry with the ring's
+ * {@link DrawIndirectBuffer} temporarily attached to its mesh.
+ * <p>
+ * Only materials that opt in are batched: the material definition must
+ * declare a Boolean {@value #BATCHING_PARAM} parameter, which has to be
+ * set to true, and a BufferObject {@value #DRAW_DATA_PARAM} parameter that
+ * receives the per-draw data. The shader has to read the world matrix from
+ * that buffer instead of <code>g_WorldMatrix</code>, see
+ * <code>Common/ShaderLib/DrawBatching.glsllib</code>. Materials that do not
+ * opt in, as well as instanced, level of detail and hybrid meshes, are
+ * rendered one by one as before.
+ *
+ * @see RenderManager#setDrawBatcher(com.jme3.renderer.DrawBatcher)
+ */
+public class DrawBatcher {
+
+    /**
+     * Name of the Boolean material parameter that enables batching.
+     */
+    public static final String BATCHING_PARAM = "UseDrawBatching";
+    /**
+     * Name of the BufferObject material parameter that receives the
+     * per-draw data.
+     */
+    public static final String DRAW_DATA_PARAM = "DrawData";
+    /**
+     * Size in bytes of the per-draw data, a column major world matrix.
+     */
+    public static final int DRAW_DATA_SIZE = 16 * 4;
+    /**
+     * Size in bytes of a draw command slot. Commands for meshes without
+     * index buffer only use the first 16 bytes.
+     */
+    public static final int COMMAND_STRIDE = 5 * 4;
+
+    private final RingBuffer ring;
+    private final int maxDraws;
+    private final int commandStart;
+    private final DrawIndirectBuffer[] elementCommands;
+    private final DrawIndirectBuffer[] arrayCommands;
+    private final ShaderStorageBuffer[] drawData;
+    private final UntypedBuffer[] viewSources;
+
+    private RingBufferBlock block = null;
+    private int drawCount = 0;
+
+    /**
+     * Creates a new DrawBatcher backed by a {@link MultiBufferRingBuffer}.
+     *
+     * @param renderer the renderer to create the buffers with
+     * @param maxDraws the maximum number of draws one block of the ring can
+     * hold
+     * @param blocks the number of blocks in the ring, usually 2 or 3
+     */
+    public DrawBatcher(Renderer renderer, int maxDraws, int blocks) {
+        this(createRingBuffer(renderer, maxDraws, blocks), maxDraws);
+    }
+
+    /**
+     * Creates a new DrawBatcher that writes into the given ring buffer. Each
+     * block of the ring must be at least {@link #getBlockSize(int) } bytes.
+     *
+     * @param ring the ring buffer to write draw data and commands into
+     * @param maxDraws the maximum number of draws one block can hold
+     */
+    public DrawBatcher(RingBuffer ring, int maxDraws) {
+        if (maxDraws < 1) {
+            throw new IllegalArgumentException("maxDraws must be at least 1");
+        }
+        if (ring.getBlockSize() < getBlockSize(maxDraws)) {
+            throw new IllegalArgumentException("ring blocks need at least " + getBlockSize(maxDraws)
+                    + " bytes for " + maxDraws + " draws but have " + ring.getBlockSize());
+        }
+        this.ring = ring;
+        this.maxDraws = maxDraws;
+        this.commandStart = maxDraws * DRAW_DATA_SIZE;
+        int blocks = ring.getBlockCount();
+        elementCommands = new DrawIndirectBuffer[blocks];
+        arrayCommands = new DrawIndirectBuffer[blocks];
+        drawData = new ShaderStorageBuffer[blocks];
+        viewSources = new UntypedBuffer[blocks];
+    }
+
+    private static RingBuffer createRingBuffer(Renderer renderer, int maxDraws, int blocks) {
+        if (!renderer.getCaps().contains(Caps.MultiDrawIndirect)
+                || !renderer.getCaps().contains(Caps.ShaderStorageBufferObject)) {
+            throw new UnsupportedOperationException("Hardware does not support MultiDrawIndirect with ShaderStorageBuffers");
+        }
+        return new MultiBufferRingBuffer(renderer, getBlockSize(maxDraws), blocks);
+    }
+
+    /**
+     * Returns the number of bytes a ring buffer block needs to hold the
+     * given number of draws. The size is a multiple of
+     * {@link #DRAW_DATA_SIZE} so blocks of a single buffer ring stay aligned.
+     *
+     * @param maxDraws the number of draws
+     * @return the block size in bytes
+     */
+    public static int getBlockSize(int maxDraws) {
+        int bytes = maxDraws * (DRAW_DATA_SIZE + COMMAND_STRIDE);
+        return (bytes + DRAW_DATA_SIZE - 1) / DRAW_DATA_SIZE * DRAW_DATA_SIZE;
+    }
+
+    /**
+     * Returns the ring buffer the draw data and commands are written into.
+     *
+     * @return the ring buffer
+     */
+    public RingBuffer getRingBuffer() {
+        return ring;
+    }
+
+    /**
+     * Returns the maximum number of draws one block of the ring can hold,
+     * which is also the largest number of geometries merged into one call.
+     *
+     * @return the maximum number of draws per block
+     */
+    public int getMaxDraws() {
+        return maxDraws;
+    }
+
+    /**
+     * Renders the given list, merging consecutive geometries where possible.
+     * Geometries that cannot be batched are rendered with
+     * {@link RenderManager#renderGeometry(com.jme3.scene.Geometry) }.
+     *
+     * @param list the sorted list to render
+     * @param rm the render manager
+     */
+    public void render(GeometryList list, RenderManager rm) {
+        boolean filtered = rm.getLightFilter() != null;
+        int size = list.size();
+        int i = 0;
+        while (i < size) {
+            Geometry first = list.get(i);
+            if (!isBatchable(first, rm)) {
+                rm.renderGeometry(first);
+                i++;
+                continue;
+            }
+            int limit = Math.min(size, i + maxDraws);
+            int end = i + 1;
+            while (end < limit && isBatchable(list.get(end), rm) && canMerge(first, list.get(end), filtered)) {
+                end++;
+            }
+            renderBatch(list, i, end, rm);
+            i = end;
+        }
+    }
+
+    /**
+     * Returns true if the given geometry can be drawn through a batch, that
+     * is its material opted in and its mesh can be drawn with a single
+     * indirect command. Selects the default technique on materials that have
+     * not been rendered yet.
+     *
+     * @param geom the geometry to check
+     * @param rm the render manager
+     * @return true if the geometry can be batched
+     */
+    public static boolean isBatchable(Geometry geom, RenderManager rm) {
+        Material material = geom.getMaterial();
+        MatParam enabled = material.getParam(BATCHING_PARAM);
+        if (enabled == null || !Boolean.TRUE.equals(enabled.getValue())
+                || material.getMaterialDef().getMaterialParam(DRAW_DATA_PARAM) == null) {
+            return false;
+        }
+        Mesh mesh = geom.getMesh();
+        if (mesh.getMode() == Mesh.Mode.Hybrid || mesh.isDrawIndirect()
+                || mesh.getNumLodLevels() > 0 || mesh.getInstanceCount() > 1
+                || geom instanceof InstancedGeometry
+                || !geom.getWorldMatParamOverrides().isEmpty()) {
+            return false;
+        }
+        if (material.getActiveTechnique() == null) {
+            material.selectTechnique(TechniqueDef.DEFAULT_TECHNIQUE_NAME, rm);
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if two batchable geometries can be drawn by the same
+     * multi draw indirect call.
+     *
+     * @param first the first geometry of the batch
+     * @param geom the geometry to append
+     * @param lightsFiltered true if a light filter is active, lit geometries
+     * then only merge when neither of them is lit
+     * @return true if the geometry can be appended to the batch
+     */
+    public static boolean canMerge(Geometry first, Geometry geom, boolean lightsFiltered) {
+        Material material = first.getMaterial();
+        if (geom.getMaterial() != material) {
+            return false;
+        }
+        Mesh a = first.getMesh();
+        Mesh b = geom.getMesh();
+        if (a != b && (a.getMode() != b.getMode() || !shareBuffers(a, b))) {
+            return false;
+        }
+        Technique technique = material.getActiveTechnique();
+        if (technique.getDef().getLightMode() == TechniqueDef.LightMode.Disable) {
+            return true;
+        }
+        LightList la = first.getWorldLightList();
+        LightList lb = geom.getWorldLightList();
+        if (la.size() == 0 && lb.size() == 0) {
+            return true;
+        }
+        if (lightsFiltered || la.size() != lb.size()) {
+            return false;
+        }
+        for (int i = 0; i < la.size(); i++) {
+            if (la.get(i) != lb.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean shareBuffers(Mesh a, Mesh b) {
+        VertexBuffer[] buffers = a.getBufferList().getArray();
+        if (buffers.length != b.getBufferList().size()) {
+            return false;
+        }
+        for (VertexBuffer vb : buffers) {
+            if (b.getBuffer(vb.getBufferType()) != vb) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void renderBatch(GeometryList list, int start, int end, RenderManager rm) {
+        int count = end - start;
+        if (block == null || drawCount + count > maxDraws) {
+            nextBlock();
+        }
+        int offset = block.getOffset();
+        int baseInstance = offset / DRAW_DATA_SIZE + drawCount;
+        for (int i = 0; i < count; i++) {
+            Geometry geom = list.get(start + i);
+            int draw = drawCount + i;
+            writeDrawData(draw * DRAW_DATA_SIZE, geom.isIgnoreTransform() ? Matrix4f.IDENTITY : geom.getWorldMatrix());
+            writeCommand(commandStart + draw * COMMAND_STRIDE, geom.getMesh(), baseInstance + i);
+        }
+
+        Geometry first = list.get(start);
+        Mesh mesh = first.getMesh();
+        Material material = first.getMaterial();
+        int index = block.getIndex();
+        MatParam param = material.getParam(DRAW_DATA_PARAM);
+        if (param == null || param.getValue() != drawData[index]) {
+            material.setShaderStorageBuffer(DRAW_DATA_PARAM, drawData[index]);
+        }
+        mesh.setDrawIndirectBuffer(mesh.getBuffer(VertexBuffer.Type.Index) != null ? elementCommands[index] : arrayCommands[index]);
+        mesh.setDrawIndirectParameters(offset + commandStart + drawCount * COMMAND_STRIDE, COMMAND_STRIDE, count);
+        try {
+            rm.renderGeometry(first);
+        } finally {
+            mesh.removeDrawIndirectBuffer();
+            mesh.setDrawIndirectParameters(0L, 0, 0);
+        }
+        drawCount += count;
+    }
+
+    private void nextBlock() {
+        if (block != null) {
+            block.finish();
+        }
+        block = ring.next();
+        drawCount = 0;
+        if (block.getOffset() % DRAW_DATA_SIZE != 0) {
+            throw new IllegalStateException("ring buffer blocks must be aligned to " + DRAW_DATA_SIZE + " bytes");
+        }
+        int index = block.getIndex();
+        UntypedBuffer buffer = block.getBuffer();
+        if (viewSources[index] != buffer) {
+            elementCommands[index] = buffer.asDrawIndirectBuffer(DrawIndirectBuffer.DrawIndirectMode.DrawIndices);
+            arrayCommands[index] = buffer.asDrawIndirectBuffer(DrawIndirectBuffer.DrawIndirectMode.Draw);
+            drawData[index] = buffer.asShaderStorageBuffer(FieldBuffer.FieldBufferWriter.NULL_WRITER);
+            viewSources[index] = buffer;
+        }
+    }
+
+    private void writeDrawData(int position, Matrix4f m) {
+        block.setPosition(position);
+        block.putFloat(m.m00).putFloat(m.m10).putFloat(m.m20).putFloat(m.m30)
+                .putFloat(m.m01).putFloat(m.m11).putFloat(m.m21).putFloat(m.m31)
+                .putFloat(m.m02).putFloat(m.m12).putFloat(m.m22).putFloat(m.m32)
+                .putFloat(m.m03).putFloat(m.m13).putFloat(m.m23).putFloat(m.m33);
+    }
+
+    private void writeCommand(int position, Mesh mesh, int baseInstance) {
+        block.setPosition(position);
+        VertexBuffer indices = mesh.getBuffer(VertexBuffer.Type.Index);
+        if (indices != null) {
+            // count, instanceCount, firstIndex, baseVertex, baseInstance
+            int firstIndex = mesh.getDrawOffset() / indices.getFormat().getComponentSize();
+            block.putInt(mesh.getDrawCount()).putInt(1).putInt(firstIndex).putInt(0).putInt(baseInstance);
+        } else {
+            // count, instanceCount, first, baseInstance
+            block.putInt(mesh.getVertexCount()).putInt(1).putInt(mesh.getDrawOffset()).putInt(baseInstance);
+        }
+    }
+
+    /**
+     * Finishes the block that is currently written to, so the ring buffer
+     * can reuse it once the GPU consumed the draws that read from it. The
+     * next batch starts a new block.
+     */
+    public void flush() {
+        if (block != null) {
+            block.finish();
+            block = null;
+        }
+    }
+}
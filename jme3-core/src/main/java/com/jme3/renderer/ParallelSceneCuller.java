@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Culls a scene graph against a camera using a fork-join pool.
+ * <p>
+ * Nodes with more than {@link #getSplitThreshold() split threshold} children
+ * have their children divided into batches that are culled concurrently.
+ * Each batch tracks its own camera plane state, see
+ * {@link Spatial#checkCulling(com.jme3.renderer.Camera, int) }, and collects
+ * the visible spatials into its own shard. The shards are concatenated in
+ * scene graph order, so the result is exactly the list of spatials the
+ * serial traversal in {@link RenderManager#renderScene(com.jme3.scene.Spatial, com.jme3.renderer.ViewPort) }
+ * would visit, in the same order.
+ * <p>
+ * Enable it with {@link RenderManager#setParallelCuller(com.jme3.renderer.ParallelSceneCuller) }.
+ * The scene must not be modified while it is being culled.
+ */
+public class ParallelSceneCuller {
+
+    public static final int DEFAULT_SPLIT_THRESHOLD = 64;
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
+    private final ForkJoinPool pool;
+    private final ConcurrentLinkedQueue<Shard> freeShards = new ConcurrentLinkedQueue<>();
+    private int splitThreshold = DEFAULT_SPLIT_THRESHOLD;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Creates a culler running on the common fork-join pool.
+     */
+    public ParallelSceneCuller() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a culler running on the given pool.
+     *
+     * @param pool The pool to run the culling tasks on.
+     */
+    public ParallelSceneCuller(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Sets the number of children above which the children of a node are
+     * culled in parallel. Smaller nodes are culled by the thread that
+     * reached them.
+     *
+     * @param splitThreshold The number of children, must be at least 1.
+     */
+    public void setSplitThreshold(int splitThreshold) {
+        if (splitThreshold < 1) {
+            throw new IllegalArgumentException("splitThreshold must be at least 1");
+        }
+        this.splitThreshold = splitThreshold;
+    }
+
+    public int getSplitThreshold() {
+        return splitThreshold;
+    }
+
+    /**
+     * Sets the maximum number of sibling subtrees culled by a single task.
+     *
+     * @param batchSize The number of siblings, must be at least 1.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Culls the scene against the camera and adds every spatial that passed
+     * culling to the store, parents before their children and siblings in
+     * child order. The camera's own plane state is not used or modified.
+     *
+     * @param scene The root of the scene to cull.
+     * @param cam The camera to cull against.
+     * @param store The list receiving the visible spatials.
+     */
+    public void cull(Spatial scene, Camera cam, List<Spatial> store) {
+        Output out = pool.invoke(new RootTask(scene, cam));
+        for (Shard shard = out.head; shard != null; ) {
+            store.addAll(shard.spatials);
+            Shard next = shard.next;
+            shard.spatials.clear();
+            shard.next = null;
+            freeShards.offer(shard);
+            shard = next;
+        }
+    }
+
+    private void cullSubScene(Spatial scene, Camera cam, int planeState, Output out) {
+        planeState = scene.checkCulling(cam, planeState);
+        if (planeState == -1) {
+            return;
+        }
+
+        out.add(scene);
+        if (scene instanceof Node) {
+            List<Spatial> children = ((Node) scene).getChildren();
+            int size = children.size();
+            if (size > splitThreshold) {
+                out.append(new CullTask(children, 0, size, cam, planeState).invoke());
+            } else {
+                for (int i = 0; i < size; i++) {
+                    cullSubScene(children.get(i), cam, planeState, out);
+                }
+            }
+        }
+    }
+
+    private Shard obtainShard() {
+        Shard shard = freeShards.poll();
+        return shard != null ? shard : new Shard();
+    }
+
+    /**
+     * A chunk of the visible spatials, linked in scene graph order.
+     */
+    private static final class Shard {
+        final ArrayList<Spatial> spatials = new ArrayList<>();
+        Shard next;
+    }
+
+    /**
+     * The ordered result of one task, a chain of shards.
+     */
+    private final class Output {
+        final Shard head;
+        Shard tail;
+
+        Output() {
+            head = tail = obtainShard();
+        }
+
+        void add(Spatial spatial) {
+            tail.spatials.add(spatial);
+        }
+
+        void append(Output other) {
+            tail.next = other.head;
+            tail = other.tail;
+        }
+    }
+
+    private final class RootTask extends RecursiveTask<Output> {
+        private final Spatial scene;
+        private final Camera cam;
+
+        RootTask(Spatial scene, Camera cam) {
+            this.scene = scene;
+            this.cam = cam;
+        }
+
+        @Override
+        protected Output compute() {
+            Output out = new Output();
+            cullSubScene(scene, cam, 0, out);
+            return out;
+        }
+    }
+
+    private final class CullTask extends RecursiveTask<Output> {
+        private final List<Spatial> children;
+        private final int from;
+        private final int to;
+        private final Camera cam;
+        private final int planeState;
+
+        CullTask(List<Spatial> children, int from, int to, Camera cam, int planeState) {
+            this.children = children;
+            this.from = from;
+            this.to = to;
+            this.cam = cam;
+            this.planeState = planeState;
+        }
+
+        @Override
+        protected Output compute() {
+            if (to - from > batchSize) {
+                int mid = (from + to) >>> 1;
+                CullTask left = new CullTask(children, from, mid, cam, planeState);
+                left.fork();
+                Output right = new CullTask(children, mid, to, cam, planeState).compute();
+                Output out = left.join();
+                out.append(right);
+                return out;
+            }
+
+            Output out = new Output();
+            for (int i = from; i < to; i++) {
+                cullSubScene(children.get(i), cam, planeState, out);
+            }
+            return out;
+        }
+    }
+}
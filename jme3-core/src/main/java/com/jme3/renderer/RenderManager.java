@@ -91,6 +91,9 @@ public class RenderManager {
     private LightFilter lightFilter = new DefaultLightFilter();
     private TechniqueDef.LightMode preferredLightMode = TechniqueDef.LightMode.MultiPass;
     private int singlePassLightBatchSize = 1;
+    private ParallelSceneCuller parallelCuller = null;
+    private final ArrayList<Spatial> visibleSpatials = new ArrayList<>();
+    private DrawBatcher drawBatcher = null;
 
 
     /**
@@ -622,12 +625,20 @@ public class RenderManager {
      * For every geometry in the list, the 
      * {@link #renderGeometry(com.jme3.scene.Geometry) } method is called.
      * 
+     * If a {@link #setDrawBatcher(com.jme3.renderer.DrawBatcher) draw batcher}
+     * is set and neither a forced material nor a forced technique is active,
+     * consecutive geometries that can share a draw call are merged by it.
+     * 
      * @param gl The geometry list to render.
      * 
      * @see GeometryList
      * @see #renderGeometry(com.jme3.scene.Geometry) 
      */
     public void renderGeometryList(GeometryList gl) {
+        if (drawBatcher != null && forcedMaterial == null && forcedTechnique == null) {
+            drawBatcher.render(gl, this);
+            return;
+        }
         for (int i = 0; i < gl.size(); i++) {
             renderGeometry(gl.get(i));
         }
@@ -705,12 +716,39 @@ public class RenderManager {
      * contain the flattened scene graph.
      */
     public void renderScene(Spatial scene, ViewPort vp) {
+        if (parallelCuller != null) {
+            renderSceneParallel(scene, vp);
+            return;
+        }
         //reset of the camera plane state for proper culling (must be 0 for the first note of the scene to be rendered)
         vp.getCamera().setPlaneState(0);
         //rendering the scene
         renderSubScene(scene, vp);
     }
     
+    // culls the scene on the parallel culler's pool, then renders the controls
+    // and queues the geometries of the visible spatials on this thread in
+    // scene graph order
+    private void renderSceneParallel(Spatial scene, ViewPort vp) {
+        parallelCuller.cull(scene, vp.getCamera(), visibleSpatials);
+        try {
+            for (int i = 0; i < visibleSpatials.size(); i++) {
+                Spatial spatial = visibleSpatials.get(i);
+                spatial.runControlRender(this, vp);
+                if (spatial instanceof Geometry) {
+                    Geometry gm = (Geometry) spatial;
+                    if (gm.getMaterial() == null) {
+                        throw new IllegalStateException("No material is set for Geometry: " + gm.getName());
+                    }
+
+                    vp.getQueue().addToQueue(gm, spatial.getQueueBucket());
+                }
+            }
+        } finally {
+            visibleSpatials.clear();
+        }
+    }
+
     // recursively renders the scene
     private void renderSubScene(Spatial scene, ViewPort vp) {
 
@@ -794,6 +832,59 @@ public class RenderManager {
         vp.getQueue().clear();
     }
 
+    /**
+     * Sets the culler used by {@link #renderScene(com.jme3.scene.Spatial, com.jme3.renderer.ViewPort) }
+     * to cull large scenes on several threads.
+     * <p>
+     * With a culler set, the scene is first culled on the culler's pool and
+     * the visible geometries are then queued on the render thread in the
+     * same order as the serial traversal produces, so the resulting render
+     * queue is identical. Like in the serial traversal,
+     * {@link com.jme3.scene.control.Control#render(com.jme3.renderer.RenderManager, com.jme3.renderer.ViewPort) }
+     * is only called for the controls of spatials that passed culling, in
+     * scene graph order, but only after the whole scene has been culled, so
+     * changes a control makes to the culling of its subtree take effect on
+     * the next frame.
+     *
+     * @param parallelCuller The culler to use, or null to cull serially on
+     * the render thread (the default).
+     */
+    public void setParallelCuller(ParallelSceneCuller parallelCuller) {
+        this.parallelCuller = parallelCuller;
+    }
+
+    /**
+     * Returns the culler set with {@link #setParallelCuller(com.jme3.renderer.ParallelSceneCuller) }.
+     *
+     * @return The parallel culler, or null if culling is serial.
+     */
+    public ParallelSceneCuller getParallelCuller() {
+        return parallelCuller;
+    }
+
+    /**
+     * Sets the batcher used by {@link #renderGeometryList(com.jme3.renderer.queue.GeometryList) }
+     * to merge consecutive queue entries into multi draw indirect calls.
+     * <p>
+     * Only geometries whose material opted in are merged, see
+     * {@link DrawBatcher} for the requirements on the material and shader.
+     *
+     * @param drawBatcher The batcher to use, or null to issue one draw call
+     * per geometry (the default).
+     */
+    public void setDrawBatcher(DrawBatcher drawBatcher) {
+        this.drawBatcher = drawBatcher;
+    }
+
+    /**
+     * Returns the batcher set with {@link #setDrawBatcher(com.jme3.renderer.DrawBatcher) }.
+     *
+     * @return The draw batcher, or null if batching is disabled.
+     */
+    public DrawBatcher getDrawBatcher() {
+        return drawBatcher;
+    }
+
     /**
      * Sets the light filter to use when rendering lit Geometries.
      * 
@@ -1067,6 +1158,8 @@ public class RenderManager {
             return;
         }
         if (prof!=null) prof.vpStep(VpStep.BeginRender, vp, null);
+        TraceProfiler trace = TraceProfiler.getCurrent();
+        if (trace != null) trace.begin(TraceProfiler.Category.ViewPort, vp.getName(), null);
                 
         SafeArrayList<SceneProcessor> processors = vp.getProcessors();
         if (processors.isEmpty()) {
@@ -1081,7 +1174,9 @@ public class RenderManager {
                 }
                 proc.setProfiler(this.prof);
                 if (prof != null) prof.spStep(SpStep.ProcPreFrame, proc.getClass().getSimpleName());
+                if (trace != null) trace.begin(TraceProfiler.Category.SceneProcessor, proc.getClass(), "preFrame");
                 proc.preFrame(tpf);
+                if (trace != null) trace.end(TraceProfiler.Category.SceneProcessor, proc.getClass(), "preFrame");
             }
         }
 
@@ -1113,7 +1208,9 @@ public class RenderManager {
             if (prof!=null) prof.vpStep(VpStep.PostQueue, vp, null);
             for (SceneProcessor proc : processors.getArray()) {
                 if (prof != null) prof.spStep(SpStep.ProcPostQueue, proc.getClass().getSimpleName());
+                if (trace != null) trace.begin(TraceProfiler.Category.SceneProcessor, proc.getClass(), "postQueue");
                 proc.postQueue(vp.getQueue());
+                if (trace != null) trace.end(TraceProfiler.Category.SceneProcessor, proc.getClass(), "postQueue");
             }
         }
 
@@ -1124,7 +1221,9 @@ public class RenderManager {
             if (prof!=null) prof.vpStep(VpStep.PostFrame, vp, null);
             for (SceneProcessor proc : processors.getArray()) {
                 if (prof != null) prof.spStep(SpStep.ProcPostFrame, proc.getClass().getSimpleName());
+                if (trace != null) trace.begin(TraceProfiler.Category.SceneProcessor, proc.getClass(), "postFrame");
                 proc.postFrame(vp.getOutputFrameBuffer());
+                if (trace != null) trace.end(TraceProfiler.Category.SceneProcessor, proc.getClass(), "postFrame");
             }
             if (prof != null) prof.vpStep(VpStep.ProcEndRender, vp, null);
         }
@@ -1134,6 +1233,7 @@ public class RenderManager {
         clearQueue(vp);
 
         if (prof!=null) prof.vpStep(VpStep.EndRender, vp, null);
+        if (trace != null) trace.end(TraceProfiler.Category.ViewPort, vp.getName(), null);
     }
     
     /**
@@ -37,6 +37,7 @@ import java.util.NoSuchElementException;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
 import com.jme3.util.ListSort;
+import com.jme3.util.RadixSort;
 
 /**
  * This class is a special purpose list of {@link Geometry} objects for render
@@ -54,6 +55,9 @@ public class GeometryList implements Iterable<Geometry>{
     private ListSort listSort;
     private int size;
     private GeometryComparator comparator;
+    private boolean sortKeysEnabled = false;
+    private RadixSort<Geometry> radixSort;
+    private long[] sortKeys;
 
     /**
      * Initializes the GeometryList to use the given {@link GeometryComparator}
@@ -80,6 +84,29 @@ public class GeometryList implements Iterable<Geometry>{
         return comparator;
     }
 
+    /**
+     * Enables sorting by key. When enabled and the comparator is a
+     * {@link SortKeyComparator}, {@link #sort() } computes one key per
+     * geometry and radix sorts the list by key, which gives the same order
+     * as sorting with the comparator but without a comparison per pair of
+     * geometries. Other comparators are still used as comparators.
+     * <p>
+     * Disabled by default.
+     *
+     * @param sortKeysEnabled true to sort by key
+     */
+    public void setSortKeysEnabled(boolean sortKeysEnabled) {
+        this.sortKeysEnabled = sortKeysEnabled;
+    }
+
+    /**
+     * @return true if the list sorts by key when its comparator supports it
+     * @see #setSortKeysEnabled(boolean)
+     */
+    public boolean isSortKeysEnabled() {
+        return sortKeysEnabled;
+    }
+
     /**
      * Set the camera that will be set on the geometry comparators
      * via {@link GeometryComparator#setCamera(com.jme3.renderer.Camera)}.
@@ -151,7 +178,9 @@ public class GeometryList implements Iterable<Geometry>{
      */
     @SuppressWarnings("unchecked")
     public void sort() {
-        if (size > 1) {
+        if (size > 1 && sortKeysEnabled && comparator instanceof SortKeyComparator) {
+            sortByKey((SortKeyComparator) comparator);
+        } else if (size > 1) {
             // sort the spatial list using the comparator
             if(listSort.getLength() != size){
                 listSort.allocateStack(size);
@@ -160,6 +189,19 @@ public class GeometryList implements Iterable<Geometry>{
         }
     }
 
+    private void sortByKey(SortKeyComparator keyComparator) {
+        if (radixSort == null) {
+            radixSort = new RadixSort<>();
+        }
+        if (sortKeys == null || sortKeys.length < geometries.length) {
+            sortKeys = new long[geometries.length];
+        }
+        for (int i = 0; i < size; i++) {
+            sortKeys[i] = keyComparator.getSortKey(geometries[i]);
+        }
+        radixSort.sort(geometries, sortKeys, size);
+    }
+
     @Override
     public Iterator<Geometry> iterator() {
         return new Iterator<Geometry>() {
@@ -40,12 +40,17 @@ import com.jme3.scene.Geometry;
  * 
  * @author Kirill Vainer
  */
-public class NullComparator implements GeometryComparator {
+public class NullComparator implements SortKeyComparator {
     @Override
     public int compare(Geometry o1, Geometry o2) {
         return 0;
     }
 
+    @Override
+    public long getSortKey(Geometry geom) {
+        return 0;
+    }
+
     @Override
     public void setCamera(Camera cam) {
     }
@@ -32,6 +32,7 @@
 package com.jme3.renderer.queue;
 
 import com.jme3.post.SceneProcessor;
+import com.jme3.profile.TraceProfiler;
 import com.jme3.renderer.Camera;
 import com.jme3.renderer.RenderManager;
 import com.jme3.scene.Geometry;
@@ -50,6 +51,7 @@ public class RenderQueue {
     private GeometryList transparentList;
     private GeometryList translucentList;
     private GeometryList skyList;
+    private boolean sortKeysEnabled = false;
 
     /**
      * Creates a new RenderQueue, the default {@link GeometryComparator comparators}
@@ -186,24 +188,53 @@ public class RenderQueue {
         switch (bucket) {
             case Gui:
                 guiList = new GeometryList(c);
+                guiList.setSortKeysEnabled(sortKeysEnabled);
                 break;
             case Opaque:
                 opaqueList = new GeometryList(c);
+                opaqueList.setSortKeysEnabled(sortKeysEnabled);
                 break;
             case Sky:
                 skyList = new GeometryList(c);
+                skyList.setSortKeysEnabled(sortKeysEnabled);
                 break;
             case Transparent:
                 transparentList = new GeometryList(c);
+                transparentList.setSortKeysEnabled(sortKeysEnabled);
                 break;
             case Translucent:
                 translucentList = new GeometryList(c);
+                translucentList.setSortKeysEnabled(sortKeysEnabled);
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown bucket type: " + bucket);
         }
     }
 
+    /**
+     * Enables or disables sorting by key for all buckets, see
+     * {@link GeometryList#setSortKeysEnabled(boolean) }. All the default
+     * comparators support it.
+     *
+     * @param sortKeysEnabled true to sort by key
+     */
+    public void setSortKeysEnabled(boolean sortKeysEnabled) {
+        this.sortKeysEnabled = sortKeysEnabled;
+        opaqueList.setSortKeysEnabled(sortKeysEnabled);
+        guiList.setSortKeysEnabled(sortKeysEnabled);
+        transparentList.setSortKeysEnabled(sortKeysEnabled);
+        translucentList.setSortKeysEnabled(sortKeysEnabled);
+        skyList.setSortKeysEnabled(sortKeysEnabled);
+    }
+
+    /**
+     * @return true if the buckets sort by key when their comparator supports it
+     * @see #setSortKeysEnabled(boolean)
+     */
+    public boolean isSortKeysEnabled() {
+        return sortKeysEnabled;
+    }
+
     /**
      *  Returns the current GeometryComparator used by the specified bucket,
      *  one of Gui, Opaque, Sky, Transparent, or Translucent.
@@ -260,11 +291,9 @@ public class RenderQueue {
     private void renderGeometryList(GeometryList list, RenderManager rm, Camera cam, boolean clear) {
         list.setCamera(cam); // select camera for sorting
         list.sort();
+        rm.renderGeometryList(list);
         for (int i = 0; i < list.size(); i++) {
-            Geometry obj = list.get(i);
-            assert obj != null;
-            rm.renderGeometry(obj);
-            obj.queueDistance = Float.NEGATIVE_INFINITY;
+            list.get(i).queueDistance = Float.NEGATIVE_INFINITY;
         }
         if (clear) {
             list.clear();
@@ -297,6 +326,8 @@ public class RenderQueue {
     }
 
     public void renderQueue(Bucket bucket, RenderManager rm, Camera cam, boolean clear) {
+        TraceProfiler trace = TraceProfiler.getCurrent();
+        if (trace != null) trace.begin(TraceProfiler.Category.Bucket, bucket, cam.getName());
         switch (bucket) {
             case Gui:
                 renderGeometryList(guiList, rm, cam, clear);
@@ -317,6 +348,7 @@ public class RenderQueue {
             default:
                 throw new UnsupportedOperationException("Unsupported bucket type: " + bucket);
         }
+        if (trace != null) trace.end(TraceProfiler.Category.Bucket, bucket, cam.getName());
     }
     
     public GeometryList getList(Bucket bucket) {
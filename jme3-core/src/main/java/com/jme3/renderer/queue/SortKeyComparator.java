@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.queue;
+
+import com.jme3.scene.Geometry;
+
+/**
+ * A {@link GeometryComparator} that can also describe its ordering with a
+ * 64-bit key per geometry.
+ * <p>
+ * When {@link GeometryList#setSortKeysEnabled(boolean) key sorting} is
+ * enabled, the list asks for the key of every geometry once per sort and
+ * orders the geometries by ascending unsigned key with a radix sort, instead
+ * of calling {@link #compare(java.lang.Object, java.lang.Object) } for every
+ * comparison. Implementations must return keys that order geometries
+ * exactly like <code>compare</code> does, including ties, so that both
+ * sort modes give the same result.
+ *
+ * @see com.jme3.util.RadixSort#sortableBits(float)
+ */
+public interface SortKeyComparator extends GeometryComparator {
+
+    /**
+     * Returns the sort key of the geometry, for the camera last given to
+     * {@link #setCamera(com.jme3.renderer.Camera) }.
+     *
+     * @param geom The geometry to compute the key of
+     * @return The key, compared as an unsigned long
+     */
+    public long getSortKey(Geometry geom);
+}
@@ -34,8 +34,9 @@ package com.jme3.renderer.queue;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
+import com.jme3.util.RadixSort;
 
-public class TransparentComparator implements GeometryComparator {
+public class TransparentComparator implements SortKeyComparator {
 
     private Camera cam;
     private final Vector3f tempVec = new Vector3f();
@@ -100,4 +101,12 @@ public class TransparentComparator implements GeometryComparator {
         else
             return -1;
     }
+
+    /**
+     * The distance to the camera, farthest first.
+     */
+    @Override
+    public long getSortKey(Geometry geom) {
+        return ~RadixSort.sortableBits(distanceToCam(geom)) & 0xFFFFFFFFL;
+    }
 }
@@ -145,6 +145,15 @@ public class Geometry extends Spatial {
         return super.checkCulling(cam);
     }
 
+    @Override
+    public int checkCulling(Camera cam, int planeState) {
+        if (isGrouped()) {
+            setLastFrustumIntersection(Camera.FrustumIntersect.Outside);
+            return -1;
+        }
+        return super.checkCulling(cam, planeState);
+    }
+
     /**
      * @return If ignoreTransform mode is set.
      *
@@ -320,6 +329,14 @@ public class Geometry extends Spatial {
     @Override
     protected void updateWorldTransforms() {
         super.updateWorldTransforms();
+        onWorldTransformUpdated();
+    }
+
+    /**
+     * Updates the state derived from the world transform, called after the
+     * world transform has been recomputed.
+     */
+    void onWorldTransformUpdated() {
         computeWorldMatrix();
 
         if (isGrouped()) {
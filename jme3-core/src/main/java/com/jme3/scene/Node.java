@@ -183,12 +183,13 @@ public class Node extends Spatial {
         super.setParent(parent);
     }
 
-    private void addUpdateChildren(SafeArrayList<Spatial> results) {
+    void addUpdateChildren(SafeArrayList<Spatial> results) {
         for (Spatial child : children.getArray()) {
             if (child.requiresUpdates()) {
                 results.add(child);
             }
-            if (child instanceof Node) {
+            // A ParallelNode updates its own subtree
+            if (child instanceof Node && !(child instanceof ParallelNode)) {
                 ((Node) child).addUpdateChildren(results);
             }
         }
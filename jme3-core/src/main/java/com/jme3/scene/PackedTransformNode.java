@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.util.clone.Cloner;
+import java.util.Arrays;
+
+/**
+ * A <code>Node</code> that computes the world transforms of its whole
+ * subtree in a single linear pass over packed arrays.
+ * <p>
+ * The subtree is laid out parent-before-child (depth first, this node at
+ * index 0) and the world transform of every spatial is kept in one flat
+ * float array of {@link #STRIDE} floats per spatial: translation, rotation
+ * (x, y, z, w) and scale. During {@link #updateGeometricState() } the
+ * transforms flagged for refresh are combined with the packed world
+ * transform of their parent in index order, which reads and writes the
+ * array sequentially instead of following parent pointers. The results are
+ * written back to each spatial, so {@link Spatial#getWorldTranslation() }
+ * and friends work as usual and give exactly the same values as a regular
+ * <code>Node</code>.
+ * <p>
+ * The layout is rebuilt automatically whenever a spatial is attached to or
+ * detached from the subtree. Spatials of classes other than <code>Node</code>
+ * and <code>Geometry</code> compute their world transform through their own
+ * {@link Spatial#updateWorldTransforms() } as before.
+ */
+public class PackedTransformNode extends Node {
+
+    /**
+     * Number of floats per spatial in {@link #getWorldTransforms() }.
+     */
+    public static final int STRIDE = 10;
+    /**
+     * Offset of the world translation (x, y, z) within a spatial's stride.
+     */
+    public static final int TRANSLATION = 0;
+    /**
+     * Offset of the world rotation (x, y, z, w) within a spatial's stride.
+     */
+    public static final int ROTATION = 3;
+    /**
+     * Offset of the world scale (x, y, z) within a spatial's stride.
+     */
+    public static final int SCALE = 7;
+
+    private transient Spatial[] spatials;
+    private transient int[] parents;
+    private transient float[] world;
+    private transient int[] stamps;
+    private transient int pass;
+    private transient int count;
+    private transient boolean layoutValid = false;
+
+    /**
+     * Serialization only. Do not use.
+     */
+    public PackedTransformNode() {
+        this(null);
+    }
+
+    public PackedTransformNode(String name) {
+        super(name);
+    }
+
+    @Override
+    void invalidateUpdateList() {
+        layoutValid = false;
+        super.invalidateUpdateList();
+    }
+
+    /**
+     * @return the number of spatials in the packed layout, including this node
+     */
+    public int getSpatialCount() {
+        validateLayout();
+        return count;
+    }
+
+    /**
+     * @param index the index in the packed layout
+     * @return the spatial stored at the given index
+     */
+    public Spatial getSpatial(int index) {
+        validateLayout();
+        return spatials[index];
+    }
+
+    /**
+     * @param index the index in the packed layout
+     * @return the index of the spatial's parent, always smaller than the
+     * given index, or -1 for this node
+     */
+    public int getParentIndex(int index) {
+        validateLayout();
+        return parents[index];
+    }
+
+    /**
+     * Returns the packed world transforms, {@link #STRIDE} floats per
+     * spatial. The array is only up to date after
+     * {@link #updateGeometricState() } and must not be modified.
+     *
+     * @return the packed world transforms
+     */
+    public float[] getWorldTransforms() {
+        validateLayout();
+        return world;
+    }
+
+    /**
+     * @param index the index in the packed layout
+     * @param store the vector to store the result in, or null for a new one
+     * @return the packed world translation of the spatial at the index
+     */
+    public Vector3f getWorldTranslation(int index, Vector3f store) {
+        validateLayout();
+        if (store == null) {
+            store = new Vector3f();
+        }
+        int o = index * STRIDE + TRANSLATION;
+        return store.set(world[o], world[o + 1], world[o + 2]);
+    }
+
+    private void validateLayout() {
+        if (layoutValid) {
+            return;
+        }
+
+        count = 0;
+        countSpatials(this);
+        if (spatials == null || spatials.length < count) {
+            spatials = new Spatial[count];
+            parents = new int[count];
+            world = new float[count * STRIDE];
+            stamps = new int[count];
+        } else {
+            Arrays.fill(spatials, count, spatials.length, null);
+        }
+
+        int size = layout(this, -1, 0);
+        assert size == count;
+        for (int i = 0; i < count; i++) {
+            // refreshed when first needed
+            stamps[i] = pass - 1;
+        }
+        layoutValid = true;
+    }
+
+    private void countSpatials(Spatial spatial) {
+        count++;
+        if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                countSpatials(child);
+            }
+        }
+    }
+
+    private int layout(Spatial spatial, int parentIndex, int index) {
+        int self = index++;
+        spatials[self] = spatial;
+        parents[self] = parentIndex;
+        if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                index = layout(child, self, index);
+            }
+        }
+        return index;
+    }
+
+    private static boolean isPackable(Spatial spatial) {
+        Class<?> type = spatial.getClass();
+        return type == Node.class || type == Geometry.class;
+    }
+
+    @Override
+    public void updateGeometricState() {
+        if (refreshFlags != 0) {
+            updatePackedTransforms();
+        }
+        super.updateGeometricState();
+    }
+
+    private void updatePackedTransforms() {
+        validateLayout();
+        pass++;
+        for (int i = 0; i < count; i++) {
+            Spatial spatial = spatials[i];
+            if ((spatial.refreshFlags & RF_TRANSFORM) == 0) {
+                continue;
+            }
+
+            int p = parents[i];
+            if (p < 0 || !isPackable(spatial)) {
+                spatial.updateWorldTransforms();
+                pack(spatial.worldTransform, i);
+            } else {
+                if (stamps[p] != pass) {
+                    // The parent was not refreshed in this pass, its world
+                    // transform might have been updated by other means.
+                    pack(spatials[p].worldTransform, p);
+                    stamps[p] = pass;
+                }
+                combine(spatial.localTransform, p * STRIDE, i * STRIDE);
+                unpack(i, spatial.worldTransform);
+                spatial.refreshFlags &= ~RF_TRANSFORM;
+                if (spatial instanceof Geometry) {
+                    ((Geometry) spatial).onWorldTransformUpdated();
+                }
+            }
+            stamps[i] = pass;
+        }
+    }
+
+    /**
+     * Same arithmetic, in the same order, as
+     * {@link Transform#combineWithParent(com.jme3.math.Transform) }.
+     */
+    private void combine(Transform local, int parent, int out) {
+        float[] w = world;
+        Vector3f lt = local.getTranslation();
+        Quaternion lr = local.getRotation();
+        Vector3f ls = local.getScale();
+
+        float psx = w[parent + SCALE], psy = w[parent + SCALE + 1], psz = w[parent + SCALE + 2];
+        float x = w[parent + ROTATION], y = w[parent + ROTATION + 1],
+              z = w[parent + ROTATION + 2], qw = w[parent + ROTATION + 3];
+
+        // scale
+        w[out + SCALE] = ls.x * psx;
+        w[out + SCALE + 1] = ls.y * psy;
+        w[out + SCALE + 2] = ls.z * psz;
+
+        // rotation, parent * local
+        float rw = lr.getW(), rx = lr.getX(), ry = lr.getY(), rz = lr.getZ();
+        w[out + ROTATION] = x * rw + y * rz - z * ry + qw * rx;
+        w[out + ROTATION + 1] = -x * rz + y * rw + z * rx + qw * ry;
+        w[out + ROTATION + 2] = x * ry - y * rx + z * rw + qw * rz;
+        w[out + ROTATION + 3] = -x * rx - y * ry - z * rz + qw * rw;
+
+        // translation, scaled and rotated by the parent
+        float vx = lt.x * psx, vy = lt.y * psy, vz = lt.z * psz;
+        float tempX = qw * qw * vx + 2 * y * qw * vz - 2 * z * qw * vy + x * x * vx
+                + 2 * y * x * vy + 2 * z * x * vz - z * z * vx - y * y * vx;
+        float tempY = 2 * x * y * vx + y * y * vy + 2 * z * y * vz + 2 * qw * z
+                * vx - z * z * vy + qw * qw * vy - 2 * x * qw * vz - x * x
+                * vy;
+        float tempZ = 2 * x * z * vx + 2 * y * z * vy + z * z * vz - 2 * qw * y * vx
+                - y * y * vz + 2 * qw * x * vy - x * x * vz + qw * qw * vz;
+        w[out + TRANSLATION] = tempX + w[parent + TRANSLATION];
+        w[out + TRANSLATION + 1] = tempY + w[parent + TRANSLATION + 1];
+        w[out + TRANSLATION + 2] = tempZ + w[parent + TRANSLATION + 2];
+    }
+
+    private void pack(Transform transform, int index) {
+        int o = index * STRIDE;
+        Vector3f t = transform.getTranslation();
+        Quaternion r = transform.getRotation();
+        Vector3f s = transform.getScale();
+        world[o + TRANSLATION] = t.x;
+        world[o + TRANSLATION + 1] = t.y;
+        world[o + TRANSLATION + 2] = t.z;
+        world[o + ROTATION] = r.getX();
+        world[o + ROTATION + 1] = r.getY();
+        world[o + ROTATION + 2] = r.getZ();
+        world[o + ROTATION + 3] = r.getW();
+        world[o + SCALE] = s.x;
+        world[o + SCALE + 1] = s.y;
+        world[o + SCALE + 2] = s.z;
+    }
+
+    private void unpack(int index, Transform store) {
+        int o = index * STRIDE;
+        store.getTranslation().set(world[o + TRANSLATION], world[o + TRANSLATION + 1], world[o + TRANSLATION + 2]);
+        store.getRotation().set(world[o + ROTATION], world[o + ROTATION + 1],
+                                world[o + ROTATION + 2], world[o + ROTATION + 3]);
+        store.getScale().set(world[o + SCALE], world[o + SCALE + 1], world[o + SCALE + 2]);
+    }
+
+    @Override
+    public void cloneFields(Cloner cloner, Object original) {
+        super.cloneFields(cloner, original);
+        this.spatials = null;
+        this.parents = null;
+        this.world = null;
+        this.stamps = null;
+        this.layoutValid = false;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.util.SafeArrayList;
+import com.jme3.util.clone.Cloner;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A <code>Node</code> that updates the subtrees of its children concurrently
+ * on a fork-join pool.
+ * <p>
+ * Both {@link #updateLogicalState(float) } and {@link #updateGeometricState() }
+ * hand each child subtree to the pool, in batches of
+ * {@link #getBatchSize() batch size} children. Within a subtree the update
+ * runs exactly like it does for a regular <code>Node</code>, and the world
+ * bound of this node is merged from its children in child order afterwards,
+ * so transforms, bounds and light lists are identical to a serial update.
+ * <p>
+ * The subtrees must be independent: controls of one subtree must not modify
+ * or read the state of another subtree during their update, and nothing may
+ * be attached or detached from outside the subtree being updated. This
+ * makes it a good fit for e.g. many independently animated characters.
+ * A <code>ParallelNode</code> can be used as a root node (for example with
+ * {@link com.jme3.app.state.RootNodeAppState#RootNodeAppState(com.jme3.scene.Node) })
+ * or attached anywhere below one, except below a {@link GeometryGroupNode},
+ * in which case it falls back to a serial update.
+ * <p>
+ * While the children are updated, refresh flags that their subtrees
+ * propagate to this node are collected atomically and set on this node and
+ * its ancestors by the updating thread once all children are done.
+ */
+public class ParallelNode extends Node {
+
+    public static final int DEFAULT_BATCH_SIZE = 8;
+
+    private transient ForkJoinPool pool;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * The spatials requiring logical updates, one array per child,
+     * in the same order as the root node's update list would have them.
+     */
+    private transient Spatial[][] childUpdateLists;
+    private transient boolean childUpdateListsValid = false;
+
+    /**
+     * The refresh flags propagated from the children while they are
+     * updated concurrently.
+     */
+    private transient AtomicInteger deferredRefresh = new AtomicInteger();
+    private transient boolean deferringRefresh = false;
+
+    /**
+     * Serialization only. Do not use.
+     */
+    public ParallelNode() {
+        this(null);
+    }
+
+    /**
+     * Creates a node updating its children on the common fork-join pool.
+     *
+     * @param name the name of the scene element
+     */
+    public ParallelNode(String name) {
+        this(name, null);
+    }
+
+    /**
+     * Creates a node updating its children on the given pool.
+     *
+     * @param name the name of the scene element
+     * @param pool the pool to update on, or null for the common pool
+     */
+    public ParallelNode(String name, ForkJoinPool pool) {
+        super(name);
+        this.pool = pool;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return the pool the children are updated on, the common fork-join
+     * pool unless another pool was set
+     */
+    public ForkJoinPool getPool() {
+        return pool != null ? pool : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Sets the maximum number of child subtrees updated by a single task.
+     *
+     * @param batchSize the number of children, must be at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    void invalidateUpdateList() {
+        childUpdateListsValid = false;
+        super.invalidateUpdateList();
+    }
+
+    private Spatial[][] getChildUpdateLists() {
+        if (childUpdateListsValid) {
+            return childUpdateLists;
+        }
+
+        Spatial[] array = children.getArray();
+        childUpdateLists = new Spatial[array.length][];
+        SafeArrayList<Spatial> list = new SafeArrayList<>(Spatial.class);
+        for (int i = 0; i < array.length; i++) {
+            Spatial child = array[i];
+            list.clear();
+            if (child.requiresUpdates()) {
+                list.add(child);
+            }
+            if (child instanceof Node && !(child instanceof ParallelNode)) {
+                ((Node) child).addUpdateChildren(list);
+            }
+            childUpdateLists[i] = list.getArray();
+        }
+        childUpdateListsValid = true;
+        return childUpdateLists;
+    }
+
+    private boolean isInGeometryGroup() {
+        for (Node node = parent; node != null; node = node.parent) {
+            if (node instanceof GeometryGroupNode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    boolean deferRefresh(int flags) {
+        if (!deferringRefresh) {
+            return false;
+        }
+        deferredRefresh.getAndAccumulate(flags, (a, b) -> a | b);
+        return true;
+    }
+
+    private void invoke(ForkJoinTask<?> task) {
+        deferringRefresh = true;
+        try {
+            if (ForkJoinTask.inForkJoinPool()) {
+                // Nested parallel nodes, already running on a pool
+                task.invoke();
+            } else {
+                getPool().invoke(task);
+            }
+        } finally {
+            deferringRefresh = false;
+        }
+
+        int flags = deferredRefresh.getAndSet(0);
+        if (flags != 0) {
+            setAncestorRefresh(flags);
+        }
+    }
+
+    @Override
+    public void updateLogicalState(float tpf) {
+        runControlUpdate(tpf);
+
+        Spatial[][] lists = getChildUpdateLists();
+        if (lists.length > 1 && !isInGeometryGroup()) {
+            invoke(new LogicalUpdateTask(lists, 0, lists.length, tpf));
+        } else {
+            for (Spatial[] list : lists) {
+                for (Spatial s : list) {
+                    s.updateLogicalState(tpf);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void updateGeometricState() {
+        Spatial[] array = children.getArray();
+        if (refreshFlags == 0 || array.length < 2 || isInGeometryGroup()) {
+            super.updateGeometricState();
+            return;
+        }
+
+        // Same as Node.updateGeometricState() except for the children
+        if ((refreshFlags & RF_LIGHTLIST) != 0) {
+            updateWorldLightList();
+        }
+        if ((refreshFlags & RF_TRANSFORM) != 0) {
+            updateWorldTransforms();
+        }
+        if ((refreshFlags & RF_MATPARAM_OVERRIDE) != 0) {
+            updateMatParamOverrides();
+        }
+
+        refreshFlags &= ~RF_CHILD_LIGHTLIST;
+        invoke(new GeometricUpdateTask(array, 0, array.length));
+
+        if ((refreshFlags & RF_BOUND) != 0) {
+            updateWorldBound();
+        }
+
+        assert refreshFlags == 0;
+    }
+
+    @Override
+    public void cloneFields(Cloner cloner, Object original) {
+        super.cloneFields(cloner, original);
+        this.childUpdateLists = null;
+        this.childUpdateListsValid = false;
+        this.deferredRefresh = new AtomicInteger();
+        this.deferringRefresh = false;
+    }
+
+    @Override
+    public void write(JmeExporter e) throws IOException {
+        super.write(e);
+        OutputCapsule oc = e.getCapsule(this);
+        oc.write(batchSize, "batchSize", DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public void read(JmeImporter e) throws IOException {
+        super.read(e);
+        InputCapsule ic = e.getCapsule(this);
+        batchSize = ic.readInt("batchSize", DEFAULT_BATCH_SIZE);
+    }
+
+    private final class LogicalUpdateTask extends RecursiveAction {
+        private final Spatial[][] lists;
+        private final int from;
+        private final int to;
+        private final float tpf;
+
+        LogicalUpdateTask(Spatial[][] lists, int from, int to, float tpf) {
+            this.lists = lists;
+            this.from = from;
+            this.to = to;
+            this.tpf = tpf;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > batchSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new LogicalUpdateTask(lists, from, mid, tpf),
+                          new LogicalUpdateTask(lists, mid, to, tpf));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                for (Spatial s : lists[i]) {
+                    s.updateLogicalState(tpf);
+                }
+            }
+        }
+    }
+
+    private final class GeometricUpdateTask extends RecursiveAction {
+        private final Spatial[] array;
+        private final int from;
+        private final int to;
+
+        GeometricUpdateTask(Spatial[] array, int from, int to) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > batchSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new GeometricUpdateTask(array, from, mid),
+                          new GeometricUpdateTask(array, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                array[i].updateGeometricState();
+            }
+        }
+    }
+}
@@ -42,6 +42,7 @@ import com.jme3.light.LightList;
 import com.jme3.material.MatParamOverride;
 import com.jme3.material.Material;
 import com.jme3.math.*;
+import com.jme3.profile.TraceProfiler;
 import com.jme3.renderer.Camera;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
@@ -286,6 +287,9 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         // to update lights.
         Spatial p = parent;
         while (p != null) {
+            if (p.deferRefresh(RF_CHILD_LIGHTLIST)) {
+                return;
+            }
             if ((p.refreshFlags & RF_CHILD_LIGHTLIST) != 0) {
                 // The parent already has this flag,
                 // so must all ancestors.
@@ -300,6 +304,9 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         refreshFlags |= RF_MATPARAM_OVERRIDE;
         Spatial p = parent;
         while (p != null) {
+            if (p.deferRefresh(RF_MATPARAM_OVERRIDE)) {
+                return;
+            }
             if ((p.refreshFlags & RF_MATPARAM_OVERRIDE) != 0) {
                 return;
             }
@@ -318,6 +325,9 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
 
         Spatial p = parent;
         while (p != null) {
+            if (p.deferRefresh(RF_BOUND)) {
+                return;
+            }
             if ((p.refreshFlags & RF_BOUND) != 0) {
                 return;
             }
@@ -327,6 +337,39 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         }
     }
 
+    /**
+     * Defers setting refresh flags propagated from a descendant, see
+     * {@link ParallelNode}.
+     *
+     * @param flags the flags a descendant is setting on its ancestors
+     * @return true if this spatial took the flags and the propagation
+     * must stop here
+     */
+    boolean deferRefresh(int flags) {
+        return false;
+    }
+
+    /**
+     * Sets the given refresh flags on this spatial and its ancestors,
+     * the same way the setXXXRefresh() methods do for their parents.
+     *
+     * @param flags the flags to set
+     */
+    void setAncestorRefresh(int flags) {
+        Spatial p = this;
+        while (p != null) {
+            if (p.deferRefresh(flags)) {
+                return;
+            }
+            if ((p.refreshFlags & flags) == flags) {
+                return;
+            }
+
+            p.refreshFlags |= flags;
+            p = p.parent;
+        }
+    }
+
     /**
      * (Internal use only) Forces a refresh of the given types of data.
      *
@@ -390,6 +433,58 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         return frustrumIntersects != Camera.FrustumIntersect.Outside;
     }
 
+    /**
+     * Checks the spatial with the camera to see if it should be culled, like
+     * {@link #checkCulling(com.jme3.renderer.Camera) }, but with the camera
+     * plane state passed in explicitly so that separate subtrees can be
+     * culled concurrently against the same camera.
+     * <p>
+     * This method is called by the {@link com.jme3.renderer.ParallelSceneCuller}.
+     * Usually it should not be called directly.
+     *
+     * @param cam The camera to check against.
+     * @param planeState The plane state returned for the parent, 0 for the
+     * root of the scene.
+     * @return The plane state to use for the children, or -1 if the spatial
+     * is outside the camera frustum (should not be rendered).
+     */
+    public int checkCulling(Camera cam, int planeState) {
+        if (refreshFlags != 0) {
+            throw new IllegalStateException("Scene graph is not properly updated for rendering.\n"
+                    + "State was changed after rootNode.updateGeometricState() call. \n"
+                    + "Make sure you do not modify the scene from another thread!\n"
+                    + "Problem spatial name: " + getName());
+        }
+
+        CullHint cm = getCullHint();
+        assert cm != CullHint.Inherit;
+        if (cm == Spatial.CullHint.Always) {
+            setLastFrustumIntersection(Camera.FrustumIntersect.Outside);
+            return -1;
+        } else if (cm == Spatial.CullHint.Never) {
+            setLastFrustumIntersection(Camera.FrustumIntersect.Intersects);
+            return planeState;
+        }
+
+        // check to see if we can cull this node
+        frustrumIntersects = (parent != null ? parent.frustrumIntersects
+                : Camera.FrustumIntersect.Intersects);
+
+        if (frustrumIntersects == Camera.FrustumIntersect.Intersects) {
+            if (getQueueBucket() == Bucket.Gui) {
+                return cam.containsGui(getWorldBound()) ? planeState : -1;
+            }
+            planeState = cam.contains(getWorldBound(), planeState);
+            if (planeState == -1) {
+                frustrumIntersects = Camera.FrustumIntersect.Outside;
+            } else if (planeState == Camera.PLANE_STATE_INSIDE) {
+                frustrumIntersects = Camera.FrustumIntersect.Inside;
+            }
+        }
+
+        return planeState;
+    }
+
     /**
      * Sets the name of this spatial.
      *
@@ -732,13 +827,16 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         updateWorldBound();
     }
 
-    private void runControlUpdate(float tpf) {
+    void runControlUpdate(float tpf) {
         if (controls.isEmpty()) {
             return;
         }
 
+        TraceProfiler trace = TraceProfiler.getCurrent();
         for (Control c : controls.getArray()) {
+            if (trace != null) trace.begin(TraceProfiler.Category.Control, c.getClass(), name);
             c.update(tpf);
+            if (trace != null) trace.end(TraceProfiler.Category.Control, c.getClass(), name);
         }
     }
 
@@ -35,6 +35,7 @@ import com.jme3.buffer.UntypedBuffer;
 import com.jme3.export.*;
 import com.jme3.math.FastMath;
 import com.jme3.renderer.Renderer;
+import com.jme3.util.BufferCategory;
 import com.jme3.util.BufferUtils;
 import com.jme3.util.NativeObject;
 import java.io.IOException;
@@ -742,6 +743,7 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
         this.format = format;
         this.componentsLength = components * format.getComponentSize();
         this.lastLimit = data.limit();
+        BufferUtils.setBufferCategory(data, getBufferCategory());
         setUpdateNeeded();
     }
 
@@ -777,10 +779,17 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
             lastLimit = data.limit();
         }
 
+        if (data != null && data != this.data) {
+            BufferUtils.setBufferCategory(data, getBufferCategory());
+        }
         this.data = data;
         setUpdateNeeded();
     }
 
+    private BufferCategory getBufferCategory() {
+        return bufType == Type.Index ? BufferCategory.Index : BufferCategory.Vertex;
+    }
+
     /**
      * Returns true if the data size of the VertexBuffer has changed.
      * Internal use only.
@@ -44,6 +44,7 @@ import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
+import com.jme3.util.MathArena;
 import java.io.IOException;
 
 public class BillboardControl extends AbstractControl {
@@ -193,12 +194,14 @@ public class BillboardControl extends AbstractControl {
         left.set(camera.getLeft()).negateLocal();
         orient.fromAxes(left, camera.getUp(), look);
         Node parent = spatial.getParent();
-        Quaternion rot=new Quaternion().fromRotationMatrix(orient);
-        if ( parent != null ) {
-            rot =  parent.getWorldRotation().inverse().multLocal(rot);
-            rot.normalizeLocal();
+        try (MathArena arena = MathArena.open()) {
+            Quaternion rot = arena.quaternion().fromRotationMatrix(orient);
+            if ( parent != null ) {
+                rot = arena.quaternion(parent.getWorldRotation()).inverseLocal().multLocal(rot);
+                rot.normalizeLocal();
+            }
+            spatial.setLocalRotation(rot);
         }
-        spatial.setLocalRotation(rot);
         fixRefreshFlags();
     }
 
@@ -393,6 +393,12 @@ public class InstancedGeometry extends Geometry {
         return super.checkCulling(cam);
     }
 
+    @Override
+    public int checkCulling(Camera cam, int planeState) {
+        this.cam = cam;
+        return super.checkCulling(cam, planeState);
+    }
+
     /**
      *  Called internally by com.jme3.util.clone.Cloner.  Do not call directly.
      */
@@ -70,6 +70,13 @@ public class Uniform extends ShaderVariable {
      */
     protected boolean setByCurrentMaterial = false;
 
+    /**
+     * Source and version the current value was set from, used to skip
+     * values that did not change. Null if the value was set directly.
+     */
+    protected Object valueSource;
+    protected int valueVersion;
+
     @Override
     public int hashCode() {
         int hash = 5;
@@ -141,6 +148,7 @@ public class Uniform extends ShaderVariable {
 
     public void clearValue(){
         updateNeeded = true;
+        valueSource = null;
 
         if (multiData != null){           
             multiData.clear();
@@ -211,6 +219,7 @@ public class Uniform extends ShaderVariable {
         }
 
         setByCurrentMaterial = true;
+        valueSource = null;
 
         switch (type){
             case Matrix3:
@@ -402,6 +411,47 @@ public class Uniform extends ShaderVariable {
         updateNeeded = true;
     }
 
+    /**
+     * Sets the value from a versioned source, e.g. a
+     * {@link com.jme3.material.MatParam} and its change counter.
+     * <p>
+     * If the uniform was last set from the same source with the same
+     * version, it still holds that value and the call only marks the
+     * uniform as set by the current material, without comparing or
+     * copying the value.
+     *
+     * @param type the type of the value
+     * @param value the value
+     * @param source the object the value belongs to
+     * @param version the version of the value in its source
+     */
+    public void setValue(VarType type, Object value, Object source, int version) {
+        if (source == valueSource && version == valueVersion
+                && source != null && type == varType) {
+            setByCurrentMaterial = true;
+            return;
+        }
+
+        setValue(type, value);
+
+        if (location != LOC_NOT_DEFINED) {
+            valueSource = source;
+            valueVersion = version;
+        }
+    }
+
+    /**
+     * Returns true if the current value was set from the given source with
+     * the given version.
+     *
+     * @param source the object the value belongs to
+     * @param version the version of the value in its source
+     * @return true if the uniform holds that version of the value
+     */
+    public boolean isValueFrom(Object source, int version) {
+        return source != null && source == valueSource && version == valueVersion;
+    }
+
     public void setVector4Length(int length){
         if (location == -1) {
             return;
@@ -412,6 +462,7 @@ public class Uniform extends ShaderVariable {
         varType = VarType.Vector4Array;
         updateNeeded = true;
         setByCurrentMaterial = true;
+        valueSource = null;
     }
 
     public void setVector4InArray(float x, float y, float z, float w, int index){
@@ -428,6 +479,7 @@ public class Uniform extends ShaderVariable {
         multiData.rewind();
         updateNeeded = true;
         setByCurrentMaterial = true;
+        valueSource = null;
     }
     
     public boolean isUpdateNeeded(){
@@ -442,12 +494,14 @@ public class Uniform extends ShaderVariable {
         setByCurrentMaterial = false;
         location = -2;
         updateNeeded = true;
+        valueSource = null;
     }
 
     public void deleteNativeBuffers() {
         if (value instanceof Buffer) {
             BufferUtils.destroyDirectBuffer((Buffer)value);
             value = null; // ????
+            valueSource = null;
         }
     }
 }
@@ -41,6 +41,7 @@ import com.jme3.renderer.Caps;
 import com.jme3.renderer.Renderer;
 import com.jme3.texture.image.ColorSpace;
 import com.jme3.texture.image.LastTextureState;
+import com.jme3.util.BufferCategory;
 import com.jme3.util.BufferUtils;
 import com.jme3.util.NativeObject;
 import java.io.IOException;
@@ -735,6 +736,7 @@ public class Image extends NativeObject implements Savable /*, Cloneable*/ {
         this.depth = depth;
         this.mipMapSizes = mipMapSizes;
         this.colorSpace = colorSpace;
+        setDataCategory(data);
     }
 
     /**
@@ -788,6 +790,7 @@ public class Image extends NativeObject implements Savable /*, Cloneable*/ {
         if (data != null){
             this.data = new ArrayList<ByteBuffer>(1);
             this.data.add(data);
+            setDataCategory(data);
         }
         this.mipMapSizes = mipMapSizes;
         this.colorSpace = colorSpace;
@@ -910,6 +913,7 @@ public class Image extends NativeObject implements Savable /*, Cloneable*/ {
      */
     public void setData(ArrayList<ByteBuffer> data) {
         this.data = data;
+        setDataCategory(data);
         setUpdateNeeded();
     }
 
@@ -923,13 +927,29 @@ public class Image extends NativeObject implements Savable /*, Cloneable*/ {
     public void setData(ByteBuffer data) {
         this.data = new ArrayList<ByteBuffer>(1);
         this.data.add(data);
+        setDataCategory(data);
         setUpdateNeeded();
     }
 
+    private static void setDataCategory(List<ByteBuffer> data) {
+        if (data != null) {
+            for (ByteBuffer buffer : data) {
+                setDataCategory(buffer);
+            }
+        }
+    }
+
+    private static void setDataCategory(ByteBuffer data) {
+        if (data != null) {
+            BufferUtils.setBufferCategory(data, BufferCategory.Image);
+        }
+    }
+
     public void addData(ByteBuffer data) {
         if (this.data == null)
             this.data = new ArrayList<ByteBuffer>(1);
         this.data.add(data);
+        setDataCategory(data);
         setUpdateNeeded();
     }
 
@@ -939,6 +959,7 @@ public class Image extends NativeObject implements Savable /*, Cloneable*/ {
                 this.data.add(null);
             }
             this.data.set(index, data);
+            setDataCategory(data);
             setUpdateNeeded();
         } else {
             throw new IllegalArgumentException("index must be greater than or equal to 0.");
@@ -41,6 +41,7 @@ import java.io.UnsupportedEncodingException;
 import java.lang.ref.PhantomReference;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -50,6 +51,7 @@ import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.ShortBuffer;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * <code>BufferUtils</code> is a helper class for generating nio buffers from
@@ -69,6 +71,7 @@ public final class BufferUtils {
     private static ReferenceQueue<Buffer> removeCollected = new ReferenceQueue<Buffer>();
     private static ConcurrentHashMap<BufferInfo, BufferInfo> trackedBuffers = new ConcurrentHashMap<BufferInfo, BufferInfo>();
     static ClearReferences cleanupthread;
+    private static final CopyOnWriteArrayList<ForeignRegion> foreignRegions = new CopyOnWriteArrayList<ForeignRegion>();
 
     /**
      * Set it to true if you want to enable direct memory tracking for debugging
@@ -1283,9 +1286,75 @@ public final class BufferUtils {
         if (!isDirect(toBeDestroyed)) {
             return;
         }
+        if (!foreignRegions.isEmpty() && isForeignMemory(toBeDestroyed)) {
+            return;
+        }
         allocator.destroyDirectBuffer(toBeDestroyed);
     }
 
+    /**
+     * Registers direct memory that is not owned by the allocator, e.g. a
+     * memory mapped file. {@link #destroyDirectBuffer(Buffer)} ignores
+     * buffers that are views of the region, destroying one of them would
+     * release the whole region while other views still use it. The region
+     * is forgotten once it is garbage collected.
+     *
+     * @param region the direct buffer spanning the memory (not null)
+     * @return true if the region is registered, false if buffer addresses
+     * are not accessible on this JVM, views of the region must not be
+     * handed out then
+     */
+    public static boolean registerForeignMemory(ByteBuffer region) {
+        if (!region.isDirect() || !PooledBufferAllocator.isPoolingSupported()) {
+            return false;
+        }
+        for (ForeignRegion r : foreignRegions) {
+            if (r.get() == null) {
+                foreignRegions.remove(r);
+            }
+        }
+        long start = PooledBufferAllocator.addressOf(region);
+        foreignRegions.add(new ForeignRegion(region, start, start + region.capacity()));
+        return true;
+    }
+
+    private static boolean isForeignMemory(Buffer buffer) {
+        if (!PooledBufferAllocator.isPoolingSupported()) {
+            return false;
+        }
+        long address = PooledBufferAllocator.addressOf(buffer);
+        for (ForeignRegion r : foreignRegions) {
+            if (address >= r.start && address < r.end && r.get() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the allocator used for direct buffers, e.g. to query the
+     * memory counters of a {@link PooledBufferAllocator}.
+     *
+     * @return the allocator
+     */
+    public static BufferAllocator getAllocator() {
+        return allocator;
+    }
+
+    /**
+     * Tells the allocator what a direct buffer is used for, allocators that
+     * track memory usage count it in that category from now on. Does nothing
+     * for other allocators or buffers that are not direct.
+     *
+     * @param buffer the buffer (not null)
+     * @param category what the buffer is used for
+     */
+    public static void setBufferCategory(Buffer buffer, BufferCategory category) {
+        if (allocator instanceof PooledBufferAllocator) {
+            ((PooledBufferAllocator) allocator).setCategory(buffer, category);
+        }
+    }
+
     /**
      * Test whether the specified buffer is direct.
      *
@@ -1296,6 +1365,18 @@ public final class BufferUtils {
         return buf.isDirect();
     }
 
+    private static class ForeignRegion extends WeakReference<ByteBuffer> {
+
+        final long start;
+        final long end;
+
+        ForeignRegion(ByteBuffer region, long start, long end) {
+            super(region);
+            this.start = start;
+            this.end = end;
+        }
+    }
+
     private static class BufferInfo extends PhantomReference<Buffer> {
 
         private Class type;
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import com.jme3.math.Matrix3f;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+
+/**
+ * Thread local pool of temporary math objects that are handed out within a
+ * scope and reused once the scope is closed.
+ * <p>
+ * Unlike {@link TempVars}, the number of objects is not fixed, the pools
+ * grow to whatever a thread needs at most and stay at that size, so steady
+ * state usage does not allocate:
+ * <pre>
+ * try (MathArena arena = MathArena.open()) {
+ *     Vector3f dir = arena.vector3f(target).subtractLocal(origin);
+ *     Quaternion rot = arena.quaternion();
+ *     ...
+ * }
+ * </pre>
+ * Scopes can be nested, closing a scope releases everything taken since it
+ * was opened. Objects taken from the arena must not be kept or passed to
+ * another thread after the scope is closed.
+ */
+public final class MathArena implements AutoCloseable {
+
+    private static final int INITIAL_SIZE = 8;
+
+    private static final ThreadLocal<MathArena> arenaLocal = new ThreadLocal<MathArena>() {
+        @Override
+        protected MathArena initialValue() {
+            return new MathArena();
+        }
+    };
+
+    /**
+     * Growable stack of reusable instances of one type.
+     */
+    private abstract static class Pool<T> {
+
+        Object[] items = new Object[INITIAL_SIZE];
+        int count = 0;
+        int created = 0;
+
+        abstract T create();
+
+        @SuppressWarnings("unchecked")
+        T next() {
+            if (count == items.length) {
+                items = Arrays.copyOf(items, count * 2);
+            }
+            Object item = items[count];
+            if (item == null) {
+                item = create();
+                items[count] = item;
+                created++;
+            }
+            count++;
+            return (T) item;
+        }
+    }
+
+    private final Pool<Vector3f> vectors = new Pool<Vector3f>() {
+        @Override
+        Vector3f create() {
+            return new Vector3f();
+        }
+    };
+    private final Pool<Quaternion> quaternions = new Pool<Quaternion>() {
+        @Override
+        Quaternion create() {
+            return new Quaternion();
+        }
+    };
+    private final Pool<Matrix3f> matrices3 = new Pool<Matrix3f>() {
+        @Override
+        Matrix3f create() {
+            return new Matrix3f();
+        }
+    };
+    private final Pool<Matrix4f> matrices4 = new Pool<Matrix4f>() {
+        @Override
+        Matrix4f create() {
+            return new Matrix4f();
+        }
+    };
+    private final Pool<Transform> transforms = new Pool<Transform>() {
+        @Override
+        Transform create() {
+            return new Transform();
+        }
+    };
+    private final Pool<?>[] pools = {vectors, quaternions, matrices3, matrices4, transforms};
+
+    /**
+     * Pool sizes at the time each open scope was opened.
+     */
+    private int[] marks = new int[pools.length * INITIAL_SIZE];
+    private int depth = 0;
+
+    private MathArena() {
+    }
+
+    /**
+     * Opens a new scope on the arena of the current thread. The returned
+     * arena must be closed on the same thread, preferably with a
+     * try-with-resources statement.
+     *
+     * @return the arena of the current thread
+     */
+    public static MathArena open() {
+        MathArena arena = arenaLocal.get();
+        int base = arena.depth * arena.pools.length;
+        if (base == arena.marks.length) {
+            arena.marks = Arrays.copyOf(arena.marks, base * 2);
+        }
+        for (int i = 0; i < arena.pools.length; i++) {
+            arena.marks[base + i] = arena.pools[i].count;
+        }
+        arena.depth++;
+        return arena;
+    }
+
+    /**
+     * Closes the innermost open scope, all objects taken since it was opened
+     * are returned to the arena.
+     *
+     * @throws IllegalStateException if no scope is open
+     */
+    @Override
+    public void close() {
+        if (depth == 0) {
+            throw new IllegalStateException("No open MathArena scope to close!");
+        }
+        depth--;
+        int base = depth * pools.length;
+        for (int i = 0; i < pools.length; i++) {
+            pools[i].count = marks[base + i];
+        }
+    }
+
+    private void checkOpen() {
+        if (depth == 0) {
+            throw new IllegalStateException("MathArena is used outside of an open scope!");
+        }
+    }
+
+    /**
+     * @return a zero vector valid until the current scope is closed
+     */
+    public Vector3f vector3f() {
+        checkOpen();
+        return vectors.next().set(0, 0, 0);
+    }
+
+    /**
+     * @return a vector set to the given values valid until the current scope
+     * is closed
+     */
+    public Vector3f vector3f(float x, float y, float z) {
+        checkOpen();
+        return vectors.next().set(x, y, z);
+    }
+
+    /**
+     * @return a copy of the given vector valid until the current scope is
+     * closed
+     */
+    public Vector3f vector3f(Vector3f source) {
+        checkOpen();
+        return vectors.next().set(source);
+    }
+
+    /**
+     * @return an identity rotation valid until the current scope is closed
+     */
+    public Quaternion quaternion() {
+        checkOpen();
+        Quaternion quat = quaternions.next();
+        quat.loadIdentity();
+        return quat;
+    }
+
+    /**
+     * @return a copy of the given rotation valid until the current scope is
+     * closed
+     */
+    public Quaternion quaternion(Quaternion source) {
+        checkOpen();
+        return quaternions.next().set(source);
+    }
+
+    /**
+     * @return an identity matrix valid until the current scope is closed
+     */
+    public Matrix3f matrix3f() {
+        checkOpen();
+        Matrix3f mat = matrices3.next();
+        mat.loadIdentity();
+        return mat;
+    }
+
+    /**
+     * @return a copy of the given matrix valid until the current scope is
+     * closed
+     */
+    public Matrix3f matrix3f(Matrix3f source) {
+        checkOpen();
+        return matrices3.next().set(source);
+    }
+
+    /**
+     * @return an identity matrix valid until the current scope is closed
+     */
+    public Matrix4f matrix4f() {
+        checkOpen();
+        Matrix4f mat = matrices4.next();
+        mat.loadIdentity();
+        return mat;
+    }
+
+    /**
+     * @return a copy of the given matrix valid until the current scope is
+     * closed
+     */
+    public Matrix4f matrix4f(Matrix4f source) {
+        checkOpen();
+        return matrices4.next().set(source);
+    }
+
+    /**
+     * @return an identity transform valid until the current scope is closed
+     */
+    public Transform transform() {
+        checkOpen();
+        Transform transform = transforms.next();
+        transform.loadIdentity();
+        return transform;
+    }
+
+    /**
+     * @return a copy of the given transform valid until the current scope is
+     * closed
+     */
+    public Transform transform(Transform source) {
+        checkOpen();
+        return transforms.next().set(source);
+    }
+
+    /**
+     * @return the number of nested scopes currently open on this arena
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns how many objects this arena has created so far. The number
+     * stops growing once the pools are large enough for the peak usage of
+     * the thread.
+     *
+     * @return the number of pooled objects
+     */
+    public int getCreatedCount() {
+        int created = 0;
+        for (Pool<?> pool : pools) {
+            created += pool.created;
+        }
+        return created;
+    }
+}
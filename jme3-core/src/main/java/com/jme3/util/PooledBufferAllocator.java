@@ -0,0 +1,637 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Allocator that carves direct buffers out of large pooled slabs instead of
+ * allocating and freeing each buffer on its own.
+ * <p>
+ * Requests are rounded up to power of two size classes, each size class
+ * hands out blocks from its own slabs and recycles destroyed blocks, which
+ * keeps native memory from fragmenting when meshes and textures are
+ * created and destroyed frequently. Requests larger than the maximum block
+ * size are allocated individually. Slabs are kept for the lifetime of the
+ * allocator.
+ * <p>
+ * The allocator keeps live and peak byte counters per
+ * {@link BufferCategory}. Buffers start out as {@link BufferCategory#Other}
+ * and are reassigned when handed to a VertexBuffer, Image or AudioBuffer.
+ * <p>
+ * Each block is handed out as a buffer of its own, not as a slice of the
+ * slab, so views created from it keep it reachable and are traced back to
+ * it through the buffer they were created from when they are destroyed.
+ * Live blocks are keyed by the identity of that buffer, through weak
+ * references. Destroying a buffer twice, or destroying a view of a block
+ * that was already recycled, leaves the current owner of the block alone.
+ * Addresses are only used to create the block buffers and to tell whether
+ * a buffer points into a slab. Such buffers that do not belong to a live
+ * block are never passed on to the fallback allocator, since that would
+ * release the whole slab.
+ * <p>
+ * Buffers that are garbage collected without being destroyed are found
+ * when their weak reference is cleared. They are counted as leaks and
+ * their blocks are returned to the pool.
+ * <p>
+ * Enable it by setting the system property
+ * {@value BufferAllocatorFactory#PROPERTY_BUFFER_ALLOCATOR_IMPLEMENTATION}
+ * to <code>com.jme3.util.PooledBufferAllocator</code>. Creating buffers
+ * requires access to the buffer internals, if they are not accessible on
+ * the running JVM the allocator falls back to unpooled allocation.
+ */
+public final class PooledBufferAllocator implements BufferAllocator {
+
+    private static final Logger LOGGER = Logger.getLogger(PooledBufferAllocator.class.getName());
+
+    /**
+     * Default size of a slab, 1 MiB.
+     */
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    /**
+     * Default size of the largest pooled block, 256 KiB.
+     */
+    public static final int DEFAULT_MAX_BLOCK_SIZE = 1 << 18;
+
+    /**
+     * The smallest size class is 64 bytes.
+     */
+    private static final int MIN_BLOCK_SHIFT = 6;
+
+    private static final MethodHandle GET_LONG;
+    private static final MethodHandle PUT_LONG;
+    private static final MethodHandle PUT_INT;
+    private static final MethodHandle GET_OBJECT;
+    private static final MethodHandle ALLOCATE_INSTANCE;
+    private static final MethodHandle OBJECT_FIELD_OFFSET;
+    private static final long ADDRESS_OFFSET;
+    private static final long MARK_OFFSET;
+    private static final long LIMIT_OFFSET;
+    private static final long CAPACITY_OFFSET;
+    private static final Class<?> DIRECT_BYTE_BUFFER = ByteBuffer.allocateDirect(0).getClass();
+
+    /**
+     * Offset of the field a direct buffer keeps the buffer it was created
+     * from in, per buffer class, or -1 if the class has no such field.
+     */
+    private static final ClassValue<Long> ATTACHMENT_OFFSET = new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                try {
+                    return fieldOffset(c.getDeclaredField("att"));
+                } catch (NoSuchFieldException ex) {
+                    // look further up
+                }
+            }
+            return -1L;
+        }
+    };
+
+    static {
+        MethodHandle getLong = null;
+        MethodHandle putLong = null;
+        MethodHandle putInt = null;
+        MethodHandle getObject = null;
+        MethodHandle allocateInstance = null;
+        MethodHandle objectFieldOffset = null;
+        long address = -1;
+        long mark = -1;
+        long limit = -1;
+        long capacity = -1;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            objectFieldOffset = lookup.findVirtual(unsafeClass, "objectFieldOffset",
+                    MethodType.methodType(long.class, Field.class)).bindTo(unsafe);
+            getLong = lookup.findVirtual(unsafeClass, "getLong",
+                    MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+            putLong = lookup.findVirtual(unsafeClass, "putLong",
+                    MethodType.methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+            putInt = lookup.findVirtual(unsafeClass, "putInt",
+                    MethodType.methodType(void.class, Object.class, long.class, int.class)).bindTo(unsafe);
+            getObject = lookup.findVirtual(unsafeClass, "getObject",
+                    MethodType.methodType(Object.class, Object.class, long.class)).bindTo(unsafe);
+            allocateInstance = lookup.findVirtual(unsafeClass, "allocateInstance",
+                    MethodType.methodType(Object.class, Class.class)).bindTo(unsafe);
+            address = (long) objectFieldOffset.invokeExact(Buffer.class.getDeclaredField("address"));
+            mark = (long) objectFieldOffset.invokeExact(Buffer.class.getDeclaredField("mark"));
+            limit = (long) objectFieldOffset.invokeExact(Buffer.class.getDeclaredField("limit"));
+            capacity = (long) objectFieldOffset.invokeExact(Buffer.class.getDeclaredField("capacity"));
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "Buffer internals are not accessible, buffers will not be pooled", t);
+            getLong = null;
+        }
+        GET_LONG = getLong;
+        PUT_LONG = putLong;
+        PUT_INT = putInt;
+        GET_OBJECT = getObject;
+        ALLOCATE_INSTANCE = allocateInstance;
+        OBJECT_FIELD_OFFSET = objectFieldOffset;
+        ADDRESS_OFFSET = address;
+        MARK_OFFSET = mark;
+        LIMIT_OFFSET = limit;
+        CAPACITY_OFFSET = capacity;
+    }
+
+    private static final boolean POOLING_SUPPORTED = GET_LONG != null && checkBufferCreation();
+
+    // creates a buffer on the memory of a regular direct buffer and checks
+    // that both see the same bytes
+    private static boolean checkBufferCreation() {
+        try {
+            ByteBuffer memory = ByteBuffer.allocateDirect(16);
+            ByteBuffer buffer = createBuffer(addressOf(memory) + 8, 8);
+            buffer.putInt(4, 0x01020304);
+            if (buffer.capacity() == 8 && buffer.limit() == 8 && buffer.position() == 0
+                    && buffer.isDirect() && !buffer.isReadOnly()
+                    && memory.getInt(12) == 0x01020304
+                    && buffer.order() == ByteOrder.BIG_ENDIAN
+                    && attachmentOf(buffer.asFloatBuffer()) == buffer) {
+                return true;
+            }
+            LOGGER.log(Level.WARNING, "Buffers cannot be created on pooled memory, buffers will not be pooled");
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "Buffers cannot be created on pooled memory, buffers will not be pooled", t);
+        }
+        return false;
+    }
+
+    /**
+     * A block of a slab, or an individually allocated buffer if
+     * <code>slab</code> is null.
+     */
+    private static final class Block {
+
+        final ByteBuffer slab;
+        final int offset;
+        final int sizeClass;
+        int size;
+        BufferCategory category;
+        Tracker tracker;
+
+        Block(ByteBuffer slab, int offset, int sizeClass) {
+            this.slab = slab;
+            this.offset = offset;
+            this.sizeClass = sizeClass;
+        }
+    }
+
+    /**
+     * The key of a live block, compares the buffer the block was handed out
+     * as by identity. Also notices buffers that became unreachable without
+     * being destroyed, views of the buffer keep it reachable.
+     */
+    private static final class Tracker extends WeakReference<ByteBuffer> {
+
+        final Block block;
+        final int hash;
+
+        Tracker(ByteBuffer buffer, ReferenceQueue<ByteBuffer> queue, Block block) {
+            super(buffer, queue);
+            this.block = block;
+            this.hash = System.identityHashCode(buffer);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Tracker)) {
+                return false;
+            }
+            ByteBuffer buffer = get();
+            return buffer != null && buffer == ((Tracker) obj).get();
+        }
+    }
+
+    private final BufferAllocator fallback = new ReflectionAllocator();
+    private final int slabSize;
+    private final int maxBlockSize;
+
+    private final ArrayDeque<Block>[] freeBlocks;
+    private final ByteBuffer[] slabs;
+    private final int[] slabOffsets;
+    private final ArrayList<ByteBuffer> allSlabs = new ArrayList<>();
+    private final HashMap<Tracker, Block> liveBlocks = new HashMap<>();
+    private final ReferenceQueue<ByteBuffer> leaked = new ReferenceQueue<>();
+
+    private final long[] liveBytes = new long[BufferCategory.values().length];
+    private final long[] peakBytes = new long[BufferCategory.values().length];
+    private long totalLiveBytes = 0;
+    private long totalPeakBytes = 0;
+    private long reservedBytes = 0;
+    private int leakCount = 0;
+
+    /**
+     * Creates an allocator with {@link #DEFAULT_SLAB_SIZE} slabs and blocks of
+     * up to {@link #DEFAULT_MAX_BLOCK_SIZE} bytes.
+     */
+    public PooledBufferAllocator() {
+        this(DEFAULT_SLAB_SIZE, DEFAULT_MAX_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates an allocator.
+     *
+     * @param slabSize the size of a slab in bytes, a power of two
+     * @param maxBlockSize the largest request that is served from a slab,
+     * a power of two not larger than the slab size
+     */
+    @SuppressWarnings("unchecked")
+    public PooledBufferAllocator(int slabSize, int maxBlockSize) {
+        if (Integer.bitCount(slabSize) != 1 || Integer.bitCount(maxBlockSize) != 1) {
+            throw new IllegalArgumentException("Slab size and maximum block size must be powers of two");
+        }
+        if (maxBlockSize > slabSize || maxBlockSize < 1 << MIN_BLOCK_SHIFT) {
+            throw new IllegalArgumentException("Maximum block size must be between "
+                    + (1 << MIN_BLOCK_SHIFT) + " and the slab size");
+        }
+        this.slabSize = slabSize;
+        this.maxBlockSize = maxBlockSize;
+
+        int classes = Integer.numberOfTrailingZeros(maxBlockSize) - MIN_BLOCK_SHIFT + 1;
+        freeBlocks = new ArrayDeque[classes];
+        for (int i = 0; i < classes; i++) {
+            freeBlocks[i] = new ArrayDeque<>();
+        }
+        slabs = new ByteBuffer[classes];
+        slabOffsets = new int[classes];
+    }
+
+    /**
+     * @return true if buffers are pooled, false if the buffer internals are
+     * not accessible on this JVM and every buffer is allocated individually
+     */
+    public static boolean isPoolingSupported() {
+        return POOLING_SUPPORTED;
+    }
+
+    static long addressOf(Buffer buffer) {
+        try {
+            return (long) GET_LONG.invokeExact((Object) buffer, ADDRESS_OFFSET);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Unable to read buffer address", t);
+        }
+    }
+
+    private static long fieldOffset(Field field) {
+        try {
+            return (long) OBJECT_FIELD_OFFSET.invokeExact(field);
+        } catch (Throwable t) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Creates a direct buffer on the given memory that is not attached to
+     * any other buffer, like the ones created by JNI's NewDirectByteBuffer.
+     */
+    private static ByteBuffer createBuffer(long address, int capacity) {
+        try {
+            ByteBuffer buffer = (ByteBuffer) (Object) ALLOCATE_INSTANCE.invokeExact((Class<?>) DIRECT_BYTE_BUFFER);
+            PUT_LONG.invokeExact((Object) buffer, ADDRESS_OFFSET, address);
+            PUT_INT.invokeExact((Object) buffer, MARK_OFFSET, -1);
+            PUT_INT.invokeExact((Object) buffer, LIMIT_OFFSET, capacity);
+            PUT_INT.invokeExact((Object) buffer, CAPACITY_OFFSET, capacity);
+            // the byte order fields are not initialized
+            return buffer.order(ByteOrder.BIG_ENDIAN);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Unable to create buffer", t);
+        }
+    }
+
+    /**
+     * @return the buffer the given buffer was created from, or null
+     */
+    private static Object attachmentOf(Buffer buffer) {
+        long offset = ATTACHMENT_OFFSET.get(buffer.getClass());
+        if (offset < 0) {
+            return null;
+        }
+        try {
+            return (Object) GET_OBJECT.invokeExact((Object) buffer, offset);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the live block of a buffer handed out by this allocator, or of
+     * a view of one.
+     */
+    private Block findBlock(Buffer buffer) {
+        Object current = buffer;
+        // views of views are attached to their parent on older JVMs
+        for (int depth = 0; depth < 8 && current instanceof Buffer; depth++) {
+            if (current instanceof ByteBuffer) {
+                Block block = liveBlocks.get(new Tracker((ByteBuffer) current, null, null));
+                if (block != null) {
+                    return block;
+                }
+            }
+            current = attachmentOf((Buffer) current);
+        }
+        return null;
+    }
+
+    private boolean isSlabMemory(Buffer buffer) {
+        long address = addressOf(buffer);
+        for (int i = 0; i < allSlabs.size(); i++) {
+            ByteBuffer slab = allSlabs.get(i);
+            long start = addressOf(slab);
+            if (address >= start && address < start + slab.capacity()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int sizeClassOf(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift - MIN_BLOCK_SHIFT, 0);
+    }
+
+    private static int blockSizeOf(int sizeClass) {
+        return 1 << (sizeClass + MIN_BLOCK_SHIFT);
+    }
+
+    /**
+     * Allocate a direct ByteBuffer of the specified size. The buffer is
+     * zeroed, like one returned by {@link ByteBuffer#allocateDirect(int)}.
+     *
+     * @param size in bytes (&ge;0)
+     * @return a new direct buffer
+     */
+    @Override
+    public ByteBuffer allocate(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative: " + size);
+        }
+        if (!POOLING_SUPPORTED) {
+            return fallback.allocate(size);
+        }
+
+        synchronized (this) {
+            reclaimLeaked();
+
+            Block block;
+            ByteBuffer buffer;
+            if (size > maxBlockSize) {
+                block = new Block(null, 0, -1);
+                buffer = fallback.allocate(size);
+                reservedBytes += size;
+            } else {
+                int sizeClass = sizeClassOf(size);
+                block = freeBlocks[sizeClass].poll();
+                boolean recycled = block != null;
+                if (!recycled) {
+                    block = carve(sizeClass);
+                }
+                buffer = createBuffer(addressOf(block.slab) + block.offset, size);
+                if (recycled) {
+                    clear(buffer);
+                }
+            }
+
+            block.size = size;
+            block.category = BufferCategory.Other;
+            block.tracker = new Tracker(buffer, leaked, block);
+            liveBlocks.put(block.tracker, block);
+            addLive(BufferCategory.Other, size);
+            return buffer;
+        }
+    }
+
+    private Block carve(int sizeClass) {
+        int blockSize = blockSizeOf(sizeClass);
+        ByteBuffer slab = slabs[sizeClass];
+        if (slab == null || slabOffsets[sizeClass] + blockSize > slab.capacity()) {
+            slab = ByteBuffer.allocateDirect(slabSize);
+            slabs[sizeClass] = slab;
+            allSlabs.add(slab);
+            slabOffsets[sizeClass] = 0;
+            reservedBytes += slabSize;
+        }
+        Block block = new Block(slab, slabOffsets[sizeClass], sizeClass);
+        slabOffsets[sizeClass] += blockSize;
+        return block;
+    }
+
+    private static void clear(ByteBuffer buffer) {
+        int size = buffer.capacity();
+        int i = 0;
+        for (; i + 8 <= size; i += 8) {
+            buffer.putLong(i, 0L);
+        }
+        for (; i < size; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    /**
+     * De-allocate a direct buffer. Blocks of a slab are returned to the pool,
+     * buffers that were not allocated by this allocator are destroyed as
+     * usual. Buffers pointing into a slab that do not belong to a live
+     * block, e.g. ones that were already destroyed, are ignored.
+     *
+     * @param toBeDestroyed the buffer to de-allocate, or a view of it
+     * (not null)
+     */
+    @Override
+    public void destroyDirectBuffer(Buffer toBeDestroyed) {
+        if (!POOLING_SUPPORTED) {
+            fallback.destroyDirectBuffer(toBeDestroyed);
+            return;
+        }
+
+        synchronized (this) {
+            reclaimLeaked();
+
+            Block block = findBlock(toBeDestroyed);
+            if (block == null) {
+                if (isSlabMemory(toBeDestroyed)) {
+                    LOGGER.log(Level.WARNING, "Ignoring a buffer that is not live anymore: {0}", toBeDestroyed);
+                } else {
+                    fallback.destroyDirectBuffer(toBeDestroyed);
+                }
+                return;
+            }
+            ByteBuffer buffer = block.tracker.get();
+            liveBlocks.remove(block.tracker);
+            block.tracker.clear();
+            block.tracker = null;
+            release(block);
+            if (block.slab == null) {
+                fallback.destroyDirectBuffer(buffer);
+            }
+        }
+    }
+
+    private void release(Block block) {
+        addLive(block.category, -block.size);
+        if (block.slab != null) {
+            freeBlocks[block.sizeClass].push(block);
+        } else {
+            reservedBytes -= block.size;
+        }
+    }
+
+    private void reclaimLeaked() {
+        Reference<? extends ByteBuffer> ref;
+        while ((ref = leaked.poll()) != null) {
+            Tracker tracker = (Tracker) ref;
+            Block block = tracker.block;
+            if (block.tracker != tracker) {
+                continue;
+            }
+            liveBlocks.remove(tracker);
+            block.tracker = null;
+            leakCount++;
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "{0} buffer of {1} bytes was not destroyed",
+                        new Object[]{block.category, block.size});
+            }
+            release(block);
+        }
+    }
+
+    private void addLive(BufferCategory category, long bytes) {
+        int index = category.ordinal();
+        liveBytes[index] += bytes;
+        if (liveBytes[index] > peakBytes[index]) {
+            peakBytes[index] = liveBytes[index];
+        }
+        totalLiveBytes += bytes;
+        if (totalLiveBytes > totalPeakBytes) {
+            totalPeakBytes = totalLiveBytes;
+        }
+    }
+
+    /**
+     * Assigns a buffer allocated by this allocator to a category. Buffers
+     * allocated elsewhere are ignored.
+     *
+     * @param buffer the buffer, or a view of it
+     * @param category the category to count the buffer in
+     */
+    public void setCategory(Buffer buffer, BufferCategory category) {
+        if (!POOLING_SUPPORTED || !buffer.isDirect()) {
+            return;
+        }
+        synchronized (this) {
+            Block block = findBlock(buffer);
+            if (block == null || block.category == category) {
+                return;
+            }
+            addLive(block.category, -block.size);
+            block.category = category;
+            addLive(category, block.size);
+        }
+    }
+
+    /**
+     * @param category the category
+     * @return the number of bytes currently allocated in the category
+     */
+    public synchronized long getLiveBytes(BufferCategory category) {
+        return liveBytes[category.ordinal()];
+    }
+
+    /**
+     * @param category the category
+     * @return the largest number of bytes allocated in the category at
+     * any time
+     */
+    public synchronized long getPeakBytes(BufferCategory category) {
+        return peakBytes[category.ordinal()];
+    }
+
+    /**
+     * @return the number of bytes currently allocated in all categories
+     */
+    public synchronized long getLiveBytes() {
+        return totalLiveBytes;
+    }
+
+    /**
+     * @return the largest number of bytes allocated at any time
+     */
+    public synchronized long getPeakBytes() {
+        return totalPeakBytes;
+    }
+
+    /**
+     * Returns the native memory held by this allocator, all slabs plus the
+     * individually allocated buffers. This is larger than the live bytes
+     * since blocks are rounded up to their size class and freed blocks are
+     * kept for reuse.
+     *
+     * @return the number of bytes held
+     */
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * @return the number of buffers that were garbage collected without
+     * being destroyed
+     */
+    public synchronized int getLeakCount() {
+        reclaimLeaked();
+        return leakCount;
+    }
+}
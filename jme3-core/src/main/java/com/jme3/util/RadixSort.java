@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * Stable least-significant-digit radix sort of objects by 64-bit keys.
+ * <p>
+ * Keys are compared as unsigned longs. Like {@link ListSort}, a RadixSort is
+ * meant to be kept with the list it sorts: the temporary arrays grow with the
+ * list and are reused from one sort to the next, so sorting does not
+ * allocate once the list has reached its working size. Passes over digits
+ * that are identical for all keys are skipped, so keys that only use some of
+ * their bits cost less.
+ *
+ * @param <T> the type of the sorted objects
+ */
+public class RadixSort<T> {
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int MASK = RADIX - 1;
+    private static final int PASSES = Long.SIZE / RADIX_BITS;
+
+    /**
+     * Below this size insertion sort beats counting passes.
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private final int[] counts = new int[PASSES * RADIX];
+    private long[] tmpKeys = new long[0];
+    private T[] tmpArray;
+
+    /**
+     * Sorts the first <code>size</code> elements of the array by ascending
+     * unsigned key, keeping elements with equal keys in their original order.
+     * The keys are reordered along with the elements.
+     *
+     * @param array the elements to sort
+     * @param keys the key of each element, at the same index
+     * @param size the number of elements to sort
+     */
+    @SuppressWarnings("unchecked")
+    public void sort(T[] array, long[] keys, int size) {
+        if (size < 2) {
+            return;
+        }
+        if (size < INSERTION_SORT_THRESHOLD) {
+            insertionSort(array, keys, size);
+            return;
+        }
+
+        if (tmpKeys.length < size) {
+            tmpKeys = new long[size];
+            tmpArray = (T[]) Array.newInstance(array.getClass().getComponentType(), size);
+        }
+
+        // Histogram of every digit in a single pass over the keys
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < size; i++) {
+            long key = keys[i];
+            for (int pass = 0; pass < PASSES; pass++) {
+                counts[pass * RADIX + (int) ((key >>> (pass * RADIX_BITS)) & MASK)]++;
+            }
+        }
+
+        T[] srcArray = array;
+        long[] srcKeys = keys;
+        T[] dstArray = tmpArray;
+        long[] dstKeys = tmpKeys;
+        for (int pass = 0; pass < PASSES; pass++) {
+            int base = pass * RADIX;
+            int shift = pass * RADIX_BITS;
+
+            // All keys share this digit, the pass would not move anything
+            if (counts[base + (int) ((srcKeys[0] >>> shift) & MASK)] == size) {
+                continue;
+            }
+
+            // Turn the counts into start offsets
+            int offset = 0;
+            for (int d = 0; d < RADIX; d++) {
+                int count = counts[base + d];
+                counts[base + d] = offset;
+                offset += count;
+            }
+
+            for (int i = 0; i < size; i++) {
+                long key = srcKeys[i];
+                int dst = counts[base + (int) ((key >>> shift) & MASK)]++;
+                dstKeys[dst] = key;
+                dstArray[dst] = srcArray[i];
+            }
+
+            T[] a = srcArray;
+            srcArray = dstArray;
+            dstArray = a;
+            long[] k = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = k;
+        }
+
+        if (srcArray != array) {
+            System.arraycopy(srcArray, 0, array, 0, size);
+            System.arraycopy(srcKeys, 0, keys, 0, size);
+        }
+        // Do not keep references to the sorted objects
+        Arrays.fill(tmpArray, 0, size, null);
+    }
+
+    private static <T> void insertionSort(T[] array, long[] keys, int size) {
+        for (int i = 1; i < size; i++) {
+            long key = keys[i];
+            T value = array[i];
+            int j = i - 1;
+            while (j >= 0 && Long.compareUnsigned(keys[j], key) > 0) {
+                keys[j + 1] = keys[j];
+                array[j + 1] = array[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            array[j + 1] = value;
+        }
+    }
+
+    /**
+     * Maps a float to an int whose unsigned order matches the order of the
+     * floats, with -0 and 0 mapped to the same value. Useful to build keys
+     * from distances.
+     *
+     * @param value the float to map
+     * @return the unsigned sortable bits of the float
+     */
+    public static int sortableBits(float value) {
+        if (value == 0f) {
+            value = 0f;
+        }
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) | Integer.MIN_VALUE);
+    }
+}
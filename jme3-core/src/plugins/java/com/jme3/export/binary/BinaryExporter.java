@@ -41,6 +41,7 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -136,6 +137,13 @@ import java.util.logging.Logger;
  * 18. "field data" - 1...X bytes representing the field data. The data length
  * is dependent on the field type and contents.
  * </p>
+ * <p>
+ * STREAMING LAYOUT: Streaming exports (see {@link #setStreaming(boolean)})
+ * write -1 as the number of classes in 1, followed directly by the object
+ * data with class aliases 4 bytes wide. Then follow the alias width, items 1
+ * thru 14 and finally the offset of the alias width within the object data
+ * as four bytes.
+ * </p>
  *
  * @author Joshua Slack
  */
@@ -162,9 +170,69 @@ public class BinaryExporter implements JmeExporter {
     public static boolean debug = false;
     public static boolean useFastBufs = true;
 
+    private boolean streaming = false;
+    private ForkJoinPool pool;
+    private int maxBufferedBytes = 16 * 1024 * 1024;
+    private StreamingExport streamingExport;
+
     public BinaryExporter() {
     }
 
+    /**
+     * Enables streaming exports. Instead of keeping every capsule in memory
+     * until the whole graph is encoded, savables are encoded in parallel on
+     * a fork-join pool and written as soon as they are complete, the class
+     * and location tables follow the object data. Memory use is bounded by
+     * {@link #setMaxBufferedBytes(int)}. Files are written in format version
+     * {@link FormatVersion#STREAMING_VERSION} and can only be read by
+     * importers that know it, regular exports keep writing
+     * {@link FormatVersion#VERSION}.
+     * <p>
+     * The write methods of the exported savables run concurrently with each
+     * other, the scene must not be modified while it is saved. Unlike the
+     * regular export, different objects with equal content are not merged.
+     *
+     * @param streaming true to use streaming exports
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Sets the pool that encodes savables of streaming exports.
+     *
+     * @param pool the pool, or null for the common pool
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return pool;
+    }
+
+    /**
+     * Sets how many bytes of encoded savables a streaming export may hold
+     * before they are written, the default is 16 MB. Objects larger than
+     * that are written one at a time.
+     *
+     * @param maxBufferedBytes the limit in bytes (&gt;0)
+     */
+    public void setMaxBufferedBytes(int maxBufferedBytes) {
+        if (maxBufferedBytes <= 0) {
+            throw new IllegalArgumentException("maxBufferedBytes must be positive: " + maxBufferedBytes);
+        }
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    public int getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
     public static BinaryExporter getInstance() {
         return new BinaryExporter();
     }
@@ -204,6 +272,17 @@ public class BinaryExporter implements JmeExporter {
         locationTable.clear();
         contentKeys.clear();
 
+        if (streaming) {
+            ForkJoinPool p = pool != null ? pool : ForkJoinPool.commonPool();
+            streamingExport = new StreamingExport(this, p, maxBufferedBytes);
+            try {
+                streamingExport.save(object, os);
+            } finally {
+                streamingExport = null;
+            }
+            return;
+        }
+
         // write signature and version
         os.write(ByteUtils.convertToBytes(FormatVersion.SIGNATURE));
         os.write(ByteUtils.convertToBytes(FormatVersion.VERSION));
@@ -211,49 +290,12 @@ public class BinaryExporter implements JmeExporter {
         int id = processBinarySavable(object);
 
         // write out tag table
-        int classTableSize = 0;
         int classNum = classes.keySet().size();
         int aliasSize = ((int) FastMath.log(classNum, 256) + 1); // make all
                                                                   // aliases a
                                                                   // fixed width
 
-        os.write(ByteUtils.convertToBytes(classNum));
-        for (String key : classes.keySet()) {
-            BinaryClassObject bco = classes.get(key);
-
-            // write alias
-            byte[] aliasBytes = fixClassAlias(bco.alias,
-                    aliasSize);
-            os.write(aliasBytes);
-            classTableSize += aliasSize;
-
-            // jME3 NEW: Write class hierarchy version numbers
-            os.write( bco.classHierarchyVersions.length );
-            for (int version : bco.classHierarchyVersions){
-                os.write(ByteUtils.convertToBytes(version));
-            }
-            classTableSize += 1 + bco.classHierarchyVersions.length * 4;
-
-            // write classname size & classname
-            byte[] classBytes = key.getBytes();
-            os.write(ByteUtils.convertToBytes(classBytes.length));
-            os.write(classBytes);
-            classTableSize += 4 + classBytes.length;
-
-            // for each field, write alias, type, and name
-            os.write(ByteUtils.convertToBytes(bco.nameFields.size()));
-            for (String fieldName : bco.nameFields.keySet()) {
-                BinaryClassField bcf = bco.nameFields.get(fieldName);
-                os.write(bcf.alias);
-                os.write(bcf.type);
-
-                // write classname size & classname
-                byte[] fNameBytes = fieldName.getBytes();
-                os.write(ByteUtils.convertToBytes(fNameBytes.length));
-                os.write(fNameBytes);
-                classTableSize += 2 + 4 + fNameBytes.length;
-            }
-        }
+        int classTableSize = writeClassTable(os, aliasSize);
 
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         // write out data to a separate stream
@@ -323,6 +365,52 @@ public class BinaryExporter implements JmeExporter {
         }
     }
 
+    /**
+     * Writes the class count and the class table, returns the size of the
+     * table in bytes.
+     */
+    protected int writeClassTable(OutputStream os, int aliasSize) throws IOException {
+        int classTableSize = 0;
+        os.write(ByteUtils.convertToBytes(classes.size()));
+        for (String key : classes.keySet()) {
+            BinaryClassObject bco = classes.get(key);
+
+            // write alias
+            byte[] aliasBytes = fixClassAlias(bco.alias,
+                    aliasSize);
+            os.write(aliasBytes);
+            classTableSize += aliasSize;
+
+            // jME3 NEW: Write class hierarchy version numbers
+            os.write( bco.classHierarchyVersions.length );
+            for (int version : bco.classHierarchyVersions){
+                os.write(ByteUtils.convertToBytes(version));
+            }
+            classTableSize += 1 + bco.classHierarchyVersions.length * 4;
+
+            // write classname size & classname
+            byte[] classBytes = key.getBytes();
+            os.write(ByteUtils.convertToBytes(classBytes.length));
+            os.write(classBytes);
+            classTableSize += 4 + classBytes.length;
+
+            // for each field, write alias, type, and name
+            os.write(ByteUtils.convertToBytes(bco.nameFields.size()));
+            for (String fieldName : bco.nameFields.keySet()) {
+                BinaryClassField bcf = bco.nameFields.get(fieldName);
+                os.write(bcf.alias);
+                os.write(bcf.type);
+
+                // write classname size & classname
+                byte[] fNameBytes = fieldName.getBytes();
+                os.write(ByteUtils.convertToBytes(fNameBytes.length));
+                os.write(fNameBytes);
+                classTableSize += 2 + 4 + fNameBytes.length;
+            }
+        }
+        return classTableSize;
+    }
+
     protected String getChunk(BinaryIdContentPair pair) {
         return new String(pair.getContent().bytes, 0, Math.min(64, pair
                 .getContent().bytes.length));
@@ -344,7 +432,7 @@ public class BinaryExporter implements JmeExporter {
         if (bytes.length != width) {
             byte[] newAlias = new byte[width];
             for (int x = width - bytes.length; x < width; x++)
-                newAlias[x] = bytes[x - bytes.length];
+                newAlias[x] = bytes[x - (width - bytes.length)];
             return newAlias;
         }
         return bytes;
@@ -365,9 +453,20 @@ public class BinaryExporter implements JmeExporter {
 
     @Override
     public BinaryOutputCapsule getCapsule(Savable object) {
+        if (streamingExport != null) {
+            return streamingExport.getCapsule(object);
+        }
         return contentTable.get(object).getContent();
     }
 
+    BinaryClassObject getClassObject(Class<? extends Savable> clazz) throws IOException {
+        BinaryClassObject bco = classes.get(clazz.getName());
+        if (bco == null) {
+            bco = createClassObject(clazz);
+        }
+        return bco;
+    }
+
     private BinaryClassObject createClassObject(Class<? extends Savable> clazz) throws IOException{
         BinaryClassObject bco = new BinaryClassObject();
         bco.alias = generateTag();
@@ -380,6 +479,9 @@ public class BinaryExporter implements JmeExporter {
     }
 
     public int processBinarySavable(Savable object) throws IOException {
+        if (streamingExport != null) {
+            return streamingExport.process(object);
+        }
         if (object == null) {
             return -1;
         }
@@ -35,9 +35,14 @@ import com.jme3.asset.AssetInfo;
 import com.jme3.asset.AssetManager;
 import com.jme3.export.*;
 import com.jme3.math.FastMath;
+import com.jme3.util.BufferUtils;
 import java.io.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.logging.Level;
@@ -68,11 +73,33 @@ public final class BinaryImporter implements JmeImporter {
 
     public static boolean debug = false;
 
-    private byte[] dataArray;
+    /**
+     * Files smaller than this are read into memory even when memory mapping
+     * is enabled, mapping them costs more than it saves.
+     */
+    public static final int MIN_MAPPED_SIZE = 64 * 1024;
+
+    /**
+     * Class count written by streaming exports, the tables are at the end
+     * of the file.
+     */
+    static final int TRAILING_TABLES = -1;
+
+    private static volatile boolean defaultMemoryMapped = false;
+
+    private ByteBuffer data;
+    private int dataOffset;
+    private boolean sliceBuffers;
+    private boolean memoryMapped = defaultMemoryMapped;
     private int aliasWidth;
     private int formatVersion;
 
     private static final boolean fastRead = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    /**
+     * The exporter does not align buffers, views of unaligned data are only
+     * handed out on architectures that load unaligned values in hardware.
+     */
+    private static final boolean unalignedAccess = System.getProperty("os.arch", "").matches("x86|i[3-6]86|amd64|x86_64|aarch64");
     
     public BinaryImporter() {
     }
@@ -90,6 +117,58 @@ public final class BinaryImporter implements JmeImporter {
         return new BinaryImporter();
     }
 
+    /**
+     * Sets whether new importers, including the ones the BinaryLoader uses
+     * for assets, memory map the files they load.
+     *
+     * @param enabled true to memory map by default
+     * @see #setMemoryMapped(boolean)
+     */
+    public static void setDefaultMemoryMapped(boolean enabled) {
+        defaultMemoryMapped = enabled;
+    }
+
+    public static boolean isDefaultMemoryMapped() {
+        return defaultMemoryMapped;
+    }
+
+    /**
+     * Sets whether files are memory mapped instead of read into a byte
+     * array. This applies to {@link #load(File)} and to assets that are
+     * loaded from the file system. With mapping, vertex, index and image
+     * buffers are returned as views of the mapping when the platform is
+     * little endian and the data can be accessed in place, so it is never
+     * copied and only paged in when used. These buffers are read only,
+     * meshes and images that are modified after loading have to be loaded
+     * without mapping or copy their buffers first. The mapping is released
+     * once all of the buffers are garbage collected.
+     *
+     * @param enabled true to memory map files
+     */
+    public void setMemoryMapped(boolean enabled) {
+        this.memoryMapped = enabled;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * @return true if the buffers currently being read may be returned as
+     * views of the loaded data
+     */
+    boolean canSliceBuffers() {
+        return sliceBuffers;
+    }
+
+    /**
+     * @return true if views may start at addresses that are not aligned to
+     * the size of their elements
+     */
+    static boolean canSliceUnaligned() {
+        return unalignedAccess;
+    }
+
     public void setAssetManager(AssetManager manager){
         this.assetManager = manager;
     }
@@ -109,6 +188,9 @@ public final class BinaryImporter implements JmeImporter {
         InputStream is = null;
         try {
             is = info.openStream();
+            if (memoryMapped && is instanceof FileInputStream) {
+                return load(((FileInputStream) is).getChannel(), null);
+            }
             Savable s = load(is);
             
             return s;
@@ -136,6 +218,98 @@ public final class BinaryImporter implements JmeImporter {
         contentTable.clear();
         BufferedInputStream bis = new BufferedInputStream(is);
         
+        int id = readHeader(bis, listener);
+
+        if (baos == null) {
+                baos = new ByteArrayOutputStream(4096);
+        } else {
+                baos.reset();
+        }
+        int size = -1;
+        byte[] cache = new byte[4096];
+        while((size = bis.read(cache)) != -1) {
+            baos.write(cache, 0, size);
+            if (listener != null) listener.readBytes(size);
+        }
+        bis = null;
+
+        data = ByteBuffer.wrap(baos.toByteArray());
+        dataOffset = 0;
+        sliceBuffers = false;
+        baos = null;
+
+        return readRoot(id);
+    }
+
+    /**
+     * Loads the savable from a memory mapping of the channel's file, see
+     * {@link #setMemoryMapped(boolean)}. Falls back to reading the file
+     * into memory if it is small or too large to be mapped at once. The
+     * channel can be closed once this returns.
+     */
+    public Savable load(FileChannel channel, ReadListener listener) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < MIN_MAPPED_SIZE || fileSize > Integer.MAX_VALUE) {
+            channel.position(0);
+            return load(Channels.newInputStream(channel), listener);
+        }
+        contentTable.clear();
+
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        InputStream header = new ByteBufferInputStream(mapping.duplicate());
+        int id = readHeader(header, listener);
+        if (listener != null) listener.readBytes(header.available());
+
+        data = mapping;
+        dataOffset = (int) fileSize - header.available();
+        // Without a way to protect views of the mapping from being
+        // destroyed the buffers have to be copied
+        sliceBuffers = fastRead && BufferUtils.registerForeignMemory(mapping);
+
+        return readRoot(id);
+    }
+
+    private Savable readRoot(int id) throws IOException {
+        try {
+            if (id == TRAILING_TABLES) {
+                id = readTrailer();
+            }
+            Savable rVal = readObject(id);
+            if (debug) {
+                logger.fine("Importer Stats: ");
+                logger.log(Level.FINE, "Tags: {0}", classes.size());
+                logger.log(Level.FINE, "Objects: {0}", locationTable.size());
+                logger.log(Level.FINE, "Data Size: {0}", data.capacity() - dataOffset);
+            }
+            return rVal;
+        } finally {
+            data = null;
+            sliceBuffers = false;
+        }
+    }
+
+    /**
+     * Reads the tables of a file written by a streaming export, which follow
+     * the object data. The last four bytes of the file hold their offset
+     * within the data.
+     */
+    private int readTrailer() throws IOException {
+        int end = data.limit() - 4;
+        ByteBuffer trailer = data.duplicate();
+        trailer.limit(end);
+        trailer.position(dataOffset + data.getInt(end));
+        InputStream bis = new ByteBufferInputStream(trailer);
+        aliasWidth = ByteUtils.readInt(bis);
+        int numClasses = ByteUtils.readInt(bis);
+        return readTables(bis, numClasses, null);
+    }
+
+    /**
+     * Reads the file header and returns the id of the root object, or
+     * TRAILING_TABLES if the class and location tables follow the object
+     * data.
+     */
+    private int readHeader(InputStream bis, ReadListener listener) throws IOException {
         int numClasses;
         
         // Try to read signature
@@ -146,9 +320,9 @@ public final class BinaryImporter implements JmeImporter {
             numClasses = ByteUtils.readInt(bis);
             
             // check if this binary is from the future
-            if (formatVersion > FormatVersion.VERSION){
+            if (formatVersion > FormatVersion.STREAMING_VERSION){
                 throw new IOException("The binary file is of newer version than expected! " + 
-                                      formatVersion + " > " + FormatVersion.VERSION);
+                                      formatVersion + " > " + FormatVersion.STREAMING_VERSION);
             }
         }else{
             // this is an old version J3O file
@@ -160,8 +334,19 @@ public final class BinaryImporter implements JmeImporter {
             formatVersion = 0; 
         }
         
-        int bytes = 4;
+        if (numClasses == TRAILING_TABLES && formatVersion >= FormatVersion.STREAMING_VERSION) {
+            return TRAILING_TABLES;
+        }
         aliasWidth = ((int)FastMath.log(numClasses, 256) + 1);
+        return readTables(bis, numClasses, listener);
+    }
+
+    /**
+     * Reads the class and location tables and returns the id of the
+     * root object.
+     */
+    private int readTables(InputStream bis, int numClasses, ReadListener listener) throws IOException {
+        int bytes = 4;
 
         classes.clear();
         for(int i = 0; i < numClasses; i++) {
@@ -225,32 +410,7 @@ public final class BinaryImporter implements JmeImporter {
         int id = ByteUtils.readInt(bis);
         bytes += 8;
         if (listener != null) listener.readBytes(bytes);
-
-        if (baos == null) {
-                baos = new ByteArrayOutputStream(bytes);
-        } else {
-                baos.reset();
-        }
-        int size = -1;
-        byte[] cache = new byte[4096];
-        while((size = bis.read(cache)) != -1) {
-            baos.write(cache, 0, size);
-            if (listener != null) listener.readBytes(size);
-        }
-        bis = null;
-
-        dataArray = baos.toByteArray();
-        baos = null;
-
-        Savable rVal = readObject(id);
-        if (debug) {
-            logger.fine("Importer Stats: ");
-            logger.log(Level.FINE, "Tags: {0}", numClasses);
-            logger.log(Level.FINE, "Objects: {0}", numLocs);
-            logger.log(Level.FINE, "Data Size: {0}", dataArray.length);
-        }
-        dataArray = null;
-        return rVal;
+        return id;
     }
 
     public Savable load(URL f) throws IOException {
@@ -271,6 +431,9 @@ public final class BinaryImporter implements JmeImporter {
     public Savable load(File f, ReadListener listener) throws IOException {
         FileInputStream fis = new FileInputStream(f);
         try {
+            if (memoryMapped) {
+                return load(fis.getChannel(), listener);
+            }
             return load(fis, listener);
         } finally {
             fis.close();
@@ -299,12 +462,12 @@ public final class BinaryImporter implements JmeImporter {
     }
 
     protected String readString(int length, int offset) throws IOException {
-        byte[] data = new byte[length];
+        byte[] bytes = new byte[length];
         for(int j = 0; j < length; j++) {
-            data[j] = dataArray[j+offset];
+            bytes[j] = data.get(j+offset);
         }
 
-        return new String(data);
+        return new String(bytes);
     }
 
     public Savable readObject(int id) {
@@ -314,7 +477,7 @@ public final class BinaryImporter implements JmeImporter {
         }
 
         try {
-            int loc = locationTable.get(id);
+            int loc = locationTable.get(id) + dataOffset;
 
             String alias = readString(aliasWidth, loc);
             loc+=aliasWidth;
@@ -326,7 +489,7 @@ public final class BinaryImporter implements JmeImporter {
                 return null;
             }
 
-            int dataLength = ByteUtils.convertIntFromBytes(dataArray, loc);
+            int dataLength = data.getInt(loc);
             loc+=4;
 
             Savable out = null;
@@ -337,7 +500,7 @@ public final class BinaryImporter implements JmeImporter {
             }
 
             BinaryInputCapsule cap = new BinaryInputCapsule(this, out, bco);
-            cap.setContent(dataArray, loc, loc+dataLength);
+            cap.setContent(data, loc, loc+dataLength);
 
             capsuleTable.put(out, cap);
             contentTable.put(id, out);
@@ -353,4 +516,36 @@ public final class BinaryImporter implements JmeImporter {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Reads the header of a memory mapped file.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -429,10 +429,14 @@ final class BinaryOutputCapsule implements OutputCapsule {
     }
 
     protected void writeAlias(String name, byte fieldType) throws IOException {
-        if (cObj.nameFields.get(name) == null)
-            generateAlias(name, fieldType);
+        byte alias;
+        // Streaming exports write objects of the same class concurrently
+        synchronized (cObj) {
+            if (cObj.nameFields.get(name) == null)
+                generateAlias(name, fieldType);
 
-        byte alias = cObj.nameFields.get(name).alias;
+            alias = cObj.nameFields.get(name).alias;
+        }
         write(alias);
     }
 
@@ -913,13 +917,15 @@ final class BinaryOutputCapsule implements OutputCapsule {
             write(NULL_OBJECT);
             return;
         }
-        value.rewind();
-        int length = value.limit();
+        // Streaming exports encode on several threads, so never touch
+        // the position of a buffer that other savables may share
+        FloatBuffer buf = value.duplicate();
+        buf.rewind();
+        int length = buf.limit();
         write(length);
         for (int x = 0; x < length; x++) {
-            writeForBuffer(value.get());
+            writeForBuffer(buf.get());
         }
-        value.rewind();
     }
 
     // int buffer
@@ -929,14 +935,14 @@ final class BinaryOutputCapsule implements OutputCapsule {
             write(NULL_OBJECT);
             return;
         }
-        value.rewind();
-        int length = value.limit();
+        IntBuffer buf = value.duplicate();
+        buf.rewind();
+        int length = buf.limit();
         write(length);
 
         for (int x = 0; x < length; x++) {
-            writeForBuffer(value.get());
+            writeForBuffer(buf.get());
         }
-        value.rewind();
     }
 
     // byte buffer
@@ -946,13 +952,13 @@ final class BinaryOutputCapsule implements OutputCapsule {
             write(NULL_OBJECT);
             return;
         }
-        value.rewind();
-        int length = value.limit();
+        ByteBuffer buf = value.duplicate();
+        buf.rewind();
+        int length = buf.limit();
         write(length);
         for (int x = 0; x < length; x++) {
-            writeForBuffer(value.get());
+            writeForBuffer(buf.get());
         }
-        value.rewind();
     }
 
     // short buffer
@@ -962,13 +968,13 @@ final class BinaryOutputCapsule implements OutputCapsule {
             write(NULL_OBJECT);
             return;
         }
-        value.rewind();
-        int length = value.limit();
+        ShortBuffer buf = value.duplicate();
+        buf.rewind();
+        int length = buf.limit();
         write(length);
         for (int x = 0; x < length; x++) {
-            writeForBuffer(value.get());
+            writeForBuffer(buf.get());
         }
-        value.rewind();
     }
 
     @Override
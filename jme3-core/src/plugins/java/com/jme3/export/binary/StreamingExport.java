@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import com.jme3.export.FormatVersion;
+import com.jme3.export.Savable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single streaming save of a {@link BinaryExporter}. Every savable is
+ * encoded by its own task on a fork-join pool, the id of a child is handed
+ * to its parent right away and the child is encoded in parallel. Encoded
+ * objects are written by the thread that called save as they complete,
+ * the class and location tables follow the object data.
+ * <p>
+ * The capsules waiting to be written are limited to a number of bytes,
+ * tasks that would exceed it wait until the writer caught up. Objects are
+ * only shared by identity, unlike the regular export equal content of
+ * different objects is written once per object.
+ */
+final class StreamingExport {
+
+    /**
+     * Alias width of streaming exports, the class count is unknown when
+     * the first object is written.
+     */
+    static final int ALIAS_WIDTH = 4;
+
+    private static final Entry END = new Entry(0, null);
+
+    private final BinaryExporter exporter;
+    private final ForkJoinPool pool;
+    private final int maxBufferedBytes;
+
+    private final IdentityHashMap<Savable, Entry> entries = new IdentityHashMap<>();
+    private int idCount = 1;
+
+    private final LinkedBlockingQueue<Entry> completed = new LinkedBlockingQueue<>();
+    private final Semaphore budget;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Throwable failure;
+
+    StreamingExport(BinaryExporter exporter, ForkJoinPool pool, int maxBufferedBytes) {
+        this.exporter = exporter;
+        this.pool = pool;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.budget = new Semaphore(maxBufferedBytes);
+    }
+
+    /**
+     * Writes the object and everything it references to the stream.
+     */
+    void save(Savable object, OutputStream os) throws IOException {
+        os.write(ByteUtils.convertToBytes(FormatVersion.SIGNATURE));
+        os.write(ByteUtils.convertToBytes(FormatVersion.STREAMING_VERSION));
+        os.write(ByteUtils.convertToBytes(BinaryImporter.TRAILING_TABLES));
+
+        int rootId = process(object);
+        HashMap<Integer, Integer> locationTable = new HashMap<>();
+        long location = 0;
+        Entry entry;
+        while (rootId != -1 && (entry = take()) != END) {
+            byte[] bytes = entry.capsule.bytes;
+            entry.capsule = null;
+            try {
+                if (failure == null) {
+                    if (location + ALIAS_WIDTH + 4 + bytes.length > Integer.MAX_VALUE) {
+                        throw new IOException("Streaming export exceeds 2 GB of object data");
+                    }
+                    locationTable.put(entry.id, (int) location);
+                    os.write(exporter.fixClassAlias(entry.classAlias, ALIAS_WIDTH));
+                    os.write(ByteUtils.convertToBytes(bytes.length));
+                    os.write(bytes);
+                    location += ALIAS_WIDTH + 4 + bytes.length;
+                }
+            } catch (IOException ex) {
+                // Keep draining so that no task stays blocked on the budget
+                fail(ex);
+            } finally {
+                budget.release(permits(bytes.length));
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure != null) {
+            throw new IOException("Unable to export savable", failure);
+        }
+
+        ByteUtils.writeInt(os, ALIAS_WIDTH);
+        exporter.writeClassTable(os, ALIAS_WIDTH);
+        ByteUtils.writeInt(os, locationTable.size());
+        for (Integer key : locationTable.keySet()) {
+            ByteUtils.writeInt(os, key);
+            ByteUtils.writeInt(os, locationTable.get(key));
+        }
+        // number of root ids and root id, like the regular header
+        ByteUtils.writeInt(os, 1);
+        ByteUtils.writeInt(os, rootId);
+        ByteUtils.writeInt(os, (int) location);
+    }
+
+    /**
+     * Returns the id of the object, scheduling it for encoding the first
+     * time it is seen.
+     */
+    int process(Savable object) throws IOException {
+        if (object == null) {
+            return -1;
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(object);
+            if (entry != null) {
+                return entry.id;
+            }
+            BinaryClassObject bco = exporter.getClassObject(object.getClass());
+            entry = new Entry(idCount++, bco.alias);
+            entry.capsule = new BinaryOutputCapsule(exporter, bco);
+            entries.put(object, entry);
+        }
+        pending.incrementAndGet();
+        EncodeTask task = new EncodeTask(object, entry);
+        if (ForkJoinTask.getPool() == pool) {
+            task.fork();
+        } else {
+            pool.execute(task);
+        }
+        return entry.id;
+    }
+
+    BinaryOutputCapsule getCapsule(Savable object) {
+        synchronized (entries) {
+            Entry entry = entries.get(object);
+            return entry == null ? null : entry.capsule;
+        }
+    }
+
+    private Entry take() throws IOException {
+        try {
+            return completed.take();
+        } catch (InterruptedException ex) {
+            fail(ex);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Streaming export interrupted");
+        }
+    }
+
+    private int permits(int size) {
+        return Math.max(1, Math.min(size, maxBufferedBytes));
+    }
+
+    private void fail(Throwable t) {
+        if (failure == null) {
+            failure = t;
+        }
+    }
+
+    private static final class Entry {
+
+        final int id;
+        final byte[] classAlias;
+        BinaryOutputCapsule capsule;
+
+        Entry(int id, byte[] classAlias) {
+            this.id = id;
+            this.classAlias = classAlias;
+        }
+    }
+
+    private final class EncodeTask extends RecursiveAction implements ForkJoinPool.ManagedBlocker {
+
+        private final Savable object;
+        private final Entry entry;
+        private int permits;
+
+        EncodeTask(Savable object, Entry entry) {
+            this.object = object;
+            this.entry = entry;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (failure == null) {
+                    object.write(exporter);
+                    entry.capsule.finish();
+                    permits = permits(entry.capsule.bytes.length);
+                    ForkJoinPool.managedBlock(this);
+                    completed.add(entry);
+                }
+            } catch (Throwable t) {
+                fail(t);
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    completed.add(END);
+                }
+            }
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            budget.acquire(permits);
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return budget.tryAcquire(permits);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app.state;
+
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link UploadQueueState} spreads uploads over frames.
+ */
+public class UploadQueueStateTest {
+
+    @Test
+    public void testUploadsAreSpreadOverFrames() {
+        RenderManager rm = TestUtil.createRenderManager();
+        UploadQueueState uploads = new UploadQueueState();
+        // Only one upload per frame
+        uploads.setFrameBudget(0);
+
+        Node scene = new Node("Scene");
+        Mesh mesh = new Box(1, 1, 1);
+        scene.attachChild(new Geometry("A", mesh));
+        scene.attachChild(new Geometry("B", mesh));
+        int buffers = mesh.getBufferList().size();
+
+        CompletableFuture<Node> future = uploads.enqueue(scene);
+        assertEquals(buffers, uploads.getPendingUploads());
+        for (int i = 0; i < buffers - 1; i++) {
+            uploads.render(rm);
+            assertFalse(future.isDone());
+        }
+        uploads.render(rm);
+        assertSame(scene, future.getNow(null));
+        assertEquals(0, uploads.getPendingUploads());
+    }
+
+    @Test
+    public void testNothingToUpload() {
+        UploadQueueState uploads = new UploadQueueState();
+        assertEquals("text", uploads.enqueue("text").getNow(null));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.system.JmeSystem;
+import com.jme3.system.MockJmeSystemDelegate;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies de-duplication and dependency loading of
+ * {@link AssetLoadScheduler}.
+ */
+public class AssetLoadSchedulerTest {
+
+    /**
+     * Each asset lists the assets it loads.
+     */
+    private static final Map<String, String> FILES = new HashMap<>();
+    private static final List<String> loads = Collections.synchronizedList(new ArrayList<String>());
+
+    static {
+        FILES.put("Level.dep", "A.dep B.dep");
+        FILES.put("A.dep", "C.dep");
+        FILES.put("B.dep", "C.dep");
+        FILES.put("C.dep", "");
+    }
+
+    public static class TestLocator implements AssetLocator {
+
+        @Override
+        public void setRootPath(String rootPath) {
+        }
+
+        @Override
+        public AssetInfo locate(AssetManager manager, AssetKey key) {
+            final String content = FILES.get(key.getName());
+            if (content == null) {
+                return null;
+            }
+            return new AssetInfo(manager, key) {
+                @Override
+                public InputStream openStream() {
+                    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+                }
+            };
+        }
+    }
+
+    public static class TestLoader implements AssetLoader {
+
+        @Override
+        public Object load(AssetInfo info) throws IOException {
+            String name = info.getKey().getName();
+            List<Object> children = new ArrayList<>();
+            String content = FILES.get(name);
+            for (String child : content.split(" ")) {
+                if (!child.isEmpty()) {
+                    children.add(info.getManager().loadAsset(new AssetKey<>(child)));
+                }
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            loads.add(name);
+            return children;
+        }
+    }
+
+    private AssetManager assetManager;
+    private ExecutorService executor;
+    private AssetLoadScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        JmeSystem.setSystemDelegate(new MockJmeSystemDelegate());
+        assetManager = new DesktopAssetManager();
+        assetManager.registerLocator("/", TestLocator.class);
+        assetManager.registerLoader(TestLoader.class, "dep");
+        // More threads than assets, independent of the processor count
+        executor = Executors.newFixedThreadPool(4);
+        scheduler = new AssetLoadScheduler(assetManager, executor);
+        loads.clear();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testConcurrentRequestsShareLoad() throws Exception {
+        AssetKey<Object> key = new AssetKey<>("C.dep");
+        CompletableFuture<Object> first = scheduler.loadAsset(key);
+        CompletableFuture<Object> second = scheduler.loadAsset(key);
+        assertSame(first.get(), second.get());
+        assertEquals(Arrays.asList("C.dep"), loads);
+    }
+
+    @Test
+    public void testDependenciesAreRecorded() throws Exception {
+        AssetKey<Object> level = new AssetKey<>("Level.dep");
+        scheduler.loadAsset(level).get();
+        assertEquals(Arrays.asList("C.dep", "A.dep", "B.dep", "Level.dep"), loads);
+        assertEquals(3, scheduler.getDependencies(level).size());
+        assertTrue(scheduler.getDependencies(level).contains(new AssetKey<>("C.dep")));
+
+        // Loaded again, each asset is loaded after its own dependencies
+        assetManager.clearCache();
+        loads.clear();
+        scheduler.loadAsset(level).get();
+        assertEquals(4, loads.size());
+        assertEquals("C.dep", loads.get(0));
+        assertEquals("Level.dep", loads.get(3));
+        assertEquals(1, Collections.frequency(loads, "C.dep"));
+    }
+
+    @Test
+    public void testKnownDependenciesLoadFirst() throws Exception {
+        AssetKey<Object> a = new AssetKey<>("A.dep");
+        scheduler.addDependencies(a, Arrays.asList(new AssetKey<>("C.dep")));
+        scheduler.loadAsset(a).get();
+        assertEquals(Arrays.asList("C.dep", "A.dep"), loads);
+    }
+
+    @Test
+    public void testMissingAssetFails() throws Exception {
+        try {
+            scheduler.loadAsset(new AssetKey<>("Missing.dep")).get();
+            fail("Missing asset loaded");
+        } catch (java.util.concurrent.ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof AssetNotFoundException);
+        }
+    }
+}
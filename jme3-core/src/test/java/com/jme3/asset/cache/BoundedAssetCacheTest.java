@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.cache.BoundedAssetCache.EvictionPolicy;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the budget, eviction and statistics of {@link BoundedAssetCache}.
+ */
+public class BoundedAssetCacheTest {
+
+    private static AssetKey<byte[]> key(String name) {
+        return new AssetKey<>(name);
+    }
+
+    @Test
+    public void testLruEvictsLeastRecentlyUsed() {
+        BoundedAssetCache cache = new BoundedAssetCache(300, EvictionPolicy.LRU);
+        cache.addToCache(key("a"), new byte[100]);
+        cache.addToCache(key("b"), new byte[100]);
+        cache.addToCache(key("c"), new byte[100]);
+        assertNotNull(cache.getFromCache(key("a")));
+        cache.addToCache(key("d"), new byte[100]);
+
+        assertNull(cache.getFromCache(key("b")));
+        assertNotNull(cache.getFromCache(key("a")));
+        assertEquals(300, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(100, cache.getEvictedBytes());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testPinnedAssetsAreKept() {
+        BoundedAssetCache cache = new BoundedAssetCache(150, EvictionPolicy.LRU);
+        cache.pin(key("a"));
+        cache.addToCache(key("a"), new byte[100]);
+        cache.addToCache(key("b"), new byte[100]);
+        assertNotNull(cache.getFromCache(key("a")));
+        assertNull(cache.getFromCache(key("b")));
+
+        cache.unpin(key("a"));
+        cache.addToCache(key("c"), new byte[100]);
+        assertNull(cache.getFromCache(key("a")));
+        assertNotNull(cache.getFromCache(key("c")));
+    }
+
+    @Test
+    public void testTinyLfuResistsScans() {
+        BoundedAssetCache cache = new BoundedAssetCache(1000, EvictionPolicy.TINY_LFU);
+        for (int i = 0; i < 5; i++) {
+            cache.addToCache(key("hot" + i), new byte[100]);
+        }
+        for (int n = 0; n < 5; n++) {
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(cache.getFromCache(key("hot" + i)));
+            }
+        }
+        // Assets that are used once do not push out the popular ones
+        for (int i = 0; i < 50; i++) {
+            cache.getFromCache(key("scan" + i));
+            cache.addToCache(key("scan" + i), new byte[100]);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.getFromCache(key("hot" + i)));
+        }
+        assertTrue(cache.getSize() <= 1000);
+    }
+
+    @Test
+    public void testSizeEstimation() {
+        BoundedAssetCache cache = new BoundedAssetCache();
+        Image image = new Image(Image.Format.RGBA8, 16, 16, BufferUtils.createByteBuffer(16 * 16 * 4), ColorSpace.Linear);
+        cache.addToCache(new AssetKey<Texture2D>("texture"), new Texture2D(image));
+        assertEquals(16 * 16 * 4, cache.getSize());
+
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, new float[30]);
+        mesh.setBuffer(Type.Index, 3, new short[12]);
+        cache.addToCache(new AssetKey<Mesh>("mesh"), mesh);
+        assertEquals(16 * 16 * 4 + 30 * 4 + 12 * 2, cache.getSize());
+    }
+
+    @Test
+    public void testSelectedPerKeyType() {
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.setCacheType(AssetKey.class, BoundedAssetCache.class);
+        assetManager.addToCache(key("a"), new byte[10]);
+
+        BoundedAssetCache cache = assetManager.getCache(BoundedAssetCache.class);
+        assertEquals(1, cache.getAssetCount());
+        assertNotNull(assetManager.getFromCache(key("a")));
+        assertEquals(1, cache.getHitCount());
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import com.jme3.export.FormatVersion;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.export.Savable;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.BufferUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that streaming exports can be read back by the importer.
+ */
+public class BinaryExporterStreamingTest {
+
+    private static Mesh createMesh(int vertexCount, float offset) {
+        FloatBuffer positions = BufferUtils.createFloatBuffer(vertexCount * 3);
+        for (int i = 0; i < vertexCount * 3; i++) {
+            positions.put(offset + i);
+        }
+        positions.flip();
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, positions);
+        mesh.updateBound();
+        return mesh;
+    }
+
+    private static Node createScene() {
+        Node root = new Node("Root");
+        Mesh shared = createMesh(100, 0);
+        for (int i = 0; i < 20; i++) {
+            Node group = new Node("Group " + i);
+            for (int j = 0; j < 10; j++) {
+                Mesh mesh = j == 0 ? shared : createMesh(50, i * 1000 + j);
+                group.attachChild(new Geometry("Geom " + i + "/" + j, mesh));
+            }
+            root.attachChild(group);
+        }
+        return root;
+    }
+
+    private static byte[] save(Node scene, BinaryExporter exporter) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.save(scene, out);
+        return out.toByteArray();
+    }
+
+    private static FloatBuffer positions(Geometry geometry) {
+        FloatBuffer data = (FloatBuffer) geometry.getMesh().getBuffer(Type.Position).getData();
+        FloatBuffer positions = data.duplicate();
+        positions.rewind();
+        return positions;
+    }
+
+    private static void assertSceneEquals(Node expected, Node actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getQuantity(), actual.getQuantity());
+        for (int i = 0; i < expected.getQuantity(); i++) {
+            Spatial a = expected.getChild(i);
+            Spatial b = actual.getChild(i);
+            if (a instanceof Node) {
+                assertSceneEquals((Node) a, (Node) b);
+            } else {
+                assertEquals(a.getName(), b.getName());
+                assertEquals(positions((Geometry) a), positions((Geometry) b));
+            }
+        }
+    }
+
+    @Test
+    public void testStreamingMatchesRegularExport() throws IOException {
+        Node scene = createScene();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BinaryExporter exporter = new BinaryExporter();
+            exporter.setStreaming(true);
+            exporter.setForkJoinPool(pool);
+            // Smaller than a single mesh so that encoding has to wait
+            exporter.setMaxBufferedBytes(512);
+
+            BinaryImporter streamedImporter = new BinaryImporter();
+            BinaryImporter regularImporter = new BinaryImporter();
+            Node streamed = (Node) streamedImporter.load(save(scene, exporter));
+            Node regular = (Node) regularImporter.load(save(scene, new BinaryExporter()));
+            assertEquals(FormatVersion.STREAMING_VERSION, streamedImporter.getFormatVersion());
+            // Regular files stay readable by older runtimes
+            assertEquals(2, regularImporter.getFormatVersion());
+            assertSceneEquals(regular, streamed);
+            assertSceneEquals(scene, streamed);
+
+            // Shared objects stay shared
+            Mesh first = ((Geometry) ((Node) streamed.getChild(0)).getChild(0)).getMesh();
+            Mesh second = ((Geometry) ((Node) streamed.getChild(7)).getChild(0)).getMesh();
+            assertSame(first, second);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testStreamingFileCanBeMapped() throws IOException {
+        File file = File.createTempFile("streamed", ".j3o");
+        file.deleteOnExit();
+        Node scene = createScene();
+        scene.attachChild(new Geometry("Large", createMesh(20000, 0)));
+
+        BinaryExporter exporter = new BinaryExporter();
+        exporter.setStreaming(true);
+        exporter.save(scene, file);
+
+        BinaryImporter importer = new BinaryImporter();
+        importer.setMemoryMapped(true);
+        assertSceneEquals(scene, (Node) importer.load(file));
+        assertEquals(3, importer.getFormatVersion());
+    }
+
+    /**
+     * Writes a buffer that it shares with other instances directly,
+     * without taking a copy first like VertexBuffer does.
+     */
+    public static class BufferHolder implements Savable {
+        private FloatBuffer buffer;
+        private BufferHolder[] children;
+
+        public BufferHolder() {
+        }
+
+        BufferHolder(FloatBuffer buffer, BufferHolder[] children) {
+            this.buffer = buffer;
+            this.children = children;
+        }
+
+        @Override
+        public void write(JmeExporter ex) throws IOException {
+            OutputCapsule oc = ex.getCapsule(this);
+            oc.write(buffer, "buffer", null);
+            oc.write(children, "children", null);
+        }
+
+        @Override
+        public void read(JmeImporter im) throws IOException {
+            InputCapsule ic = im.getCapsule(this);
+            buffer = ic.readFloatBuffer("buffer", null);
+            Savable[] read = ic.readSavableArray("children", null);
+            if (read != null) {
+                children = new BufferHolder[read.length];
+                System.arraycopy(read, 0, children, 0, read.length);
+            }
+        }
+    }
+
+    @Test
+    public void testSharedBufferEncodedConcurrently() throws IOException {
+        // Separate savables, encoded in parallel, all writing the same buffer
+        FloatBuffer shared = createMesh(5000, 0).getFloatBuffer(Type.Position);
+        BufferHolder[] children = new BufferHolder[64];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = new BufferHolder(shared, null);
+        }
+        BufferHolder root = new BufferHolder(null, children);
+        shared.position(42);
+
+        ForkJoinPool pool = new ForkJoinPool(8);
+        try {
+            BinaryExporter exporter = new BinaryExporter();
+            exporter.setStreaming(true);
+            exporter.setForkJoinPool(pool);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            exporter.save(root, out);
+
+            BufferHolder loaded = (BufferHolder) new BinaryImporter().load(out.toByteArray());
+            FloatBuffer expected = shared.duplicate();
+            expected.rewind();
+            assertEquals(children.length, loaded.children.length);
+            for (BufferHolder child : loaded.children) {
+                child.buffer.rewind();
+                assertEquals(expected, child.buffer);
+            }
+            assertEquals(42, shared.position());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.BufferUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that memory mapped loading produces the same data as reading the
+ * file into memory.
+ */
+public class BinaryImporterMappedTest {
+
+    private static Mesh createMesh(int vertexCount) {
+        FloatBuffer positions = BufferUtils.createFloatBuffer(vertexCount * 3);
+        for (int i = 0; i < vertexCount * 3; i++) {
+            positions.put(i * 0.5f);
+        }
+        IntBuffer indices = BufferUtils.createIntBuffer(vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            indices.put(vertexCount - 1 - i);
+        }
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, positions);
+        mesh.setBuffer(Type.Index, 3, indices);
+        mesh.updateBound();
+        return mesh;
+    }
+
+    private static Mesh load(File file, boolean mapped) throws IOException {
+        BinaryImporter importer = BinaryImporter.getInstance();
+        importer.setMemoryMapped(mapped);
+        return (Mesh) importer.load(file);
+    }
+
+    @Test
+    public void testMappedMatchesStream() throws IOException {
+        File file = File.createTempFile("mapped", ".j3o");
+        file.deleteOnExit();
+        BinaryExporter.getInstance().save(createMesh(20000), file);
+
+        Mesh streamed = load(file, false);
+        Mesh mapped = load(file, true);
+
+        FloatBuffer a = (FloatBuffer) streamed.getBuffer(Type.Position).getData();
+        FloatBuffer b = (FloatBuffer) mapped.getBuffer(Type.Position).getData();
+        assertTrue(b.isDirect());
+        assertEquals(a, b);
+        assertEquals(1.5f, b.get(3), 0f);
+        assertEquals(streamed.getBuffer(Type.Index).getData(), mapped.getBuffer(Type.Index).getData());
+        assertEquals(streamed.getBound().getCenter(), mapped.getBound().getCenter());
+    }
+
+    @Test
+    public void testDestroyingViewKeepsMapping() throws IOException {
+        File file = File.createTempFile("mapped", ".j3o");
+        file.deleteOnExit();
+        BinaryExporter.getInstance().save(createMesh(20000), file);
+
+        Mesh mapped = load(file, true);
+        FloatBuffer positions = (FloatBuffer) mapped.getBuffer(Type.Position).getData();
+        assertTrue(positions.isReadOnly());
+        BufferUtils.destroyDirectBuffer(mapped.getBuffer(Type.Index).getData());
+
+        assertEquals(1.5f, positions.get(3), 0f);
+        assertEquals(0, ((IntBuffer) mapped.getBuffer(Type.Index).getData()).get(19999));
+    }
+
+    @Test
+    public void testSmallFilesAreRead() throws IOException {
+        File file = File.createTempFile("mapped", ".j3o");
+        file.deleteOnExit();
+        BinaryExporter.getInstance().save(createMesh(10), file);
+
+        Mesh mapped = load(file, true);
+        assertEquals(load(file, false).getBuffer(Type.Position).getData(),
+                mapped.getBuffer(Type.Position).getData());
+    }
+}
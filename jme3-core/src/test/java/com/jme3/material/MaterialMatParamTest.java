@@ -33,6 +33,7 @@ package com.jme3.material;
 
 import com.jme3.asset.AssetManager;
 import com.jme3.light.LightList;
+import com.jme3.math.ColorRGBA;
 import com.jme3.math.Matrix4f;
 import com.jme3.renderer.RenderManager;
 import com.jme3.scene.Geometry;
@@ -400,6 +401,53 @@ public class MaterialMatParamTest {
         outTextures(tex1);
     }
 
+    @Test
+    public void testUnchangedParamIsSkipped() {
+        material("Common/MatDefs/Misc/Unshaded.j3md");
+        Material mat = geometry.getMaterial();
+        ColorRGBA color = new ColorRGBA(1, 0, 0, 1);
+
+        reset();
+        mat.setColor("Color", color);
+        MatParam param = mat.getParam("Color");
+        int version = param.getVersion();
+        outColor(ColorRGBA.Red);
+        Assert.assertTrue(usedShader.getUniform("m_Color").isValueFrom(param, version));
+
+        // modified in place without setting it again, the uniform keeps the
+        // previous value since the parameter is not compared
+        reset();
+        color.set(ColorRGBA.Green);
+        outColor(ColorRGBA.Red);
+
+        reset();
+        mat.setColor("Color", color);
+        Assert.assertNotEquals(version, param.getVersion());
+        outColor(ColorRGBA.Green);
+    }
+
+    @Test
+    public void testSharedShaderIsUpdated() {
+        material("Common/MatDefs/Misc/Unshaded.j3md");
+        Material red = geometry.getMaterial();
+        red.setColor("Color", ColorRGBA.Red);
+        Material blue = red.clone();
+        blue.setColor("Color", ColorRGBA.Blue);
+
+        reset();
+        outColor(ColorRGBA.Red);
+        Shader shader = usedShader;
+
+        reset();
+        geometry.setMaterial(blue);
+        outColor(ColorRGBA.Blue);
+        Assert.assertSame(shader, usedShader);
+
+        reset();
+        geometry.setMaterial(red);
+        outColor(ColorRGBA.Red);
+    }
+
     private static class Define {
 
         public String name;
@@ -561,6 +609,14 @@ public class MaterialMatParamTest {
         assertEquals(expectedDefineSource.toString(), actualDefineSource);
     }
 
+    private void outColor(ColorRGBA expected) {
+        if (!evaluated) {
+            evaluateTechniqueDef();
+        }
+
+        assertEquals(expected, usedShader.getUniform("m_Color").getValue());
+    }
+
     private void outUniforms(Uniform... uniforms) {
         if (!evaluated) {
             evaluateTechniqueDef();
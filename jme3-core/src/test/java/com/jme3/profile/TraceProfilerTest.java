@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.profile;
+
+import com.jme3.profile.TraceProfiler.Category;
+import com.jme3.profile.TraceProfiler.ScopeSummary;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Node;
+import com.jme3.scene.control.AbstractControl;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies recording, aggregation and export of {@link TraceProfiler}.
+ */
+public class TraceProfilerTest {
+
+    @After
+    public void tearDown() {
+        TraceProfiler.setCurrent(null);
+    }
+
+    private static ScopeSummary find(List<ScopeSummary> summaries, String name) {
+        for (ScopeSummary summary : summaries) {
+            if (summary.getName().equals(name)) {
+                return summary;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testNestedScopes() {
+        TraceProfiler profiler = new TraceProfiler(64);
+        for (int i = 0; i < 3; i++) {
+            profiler.begin(Category.Frame, "Frame", null);
+            profiler.begin(Category.User, String.class, "inner");
+            profiler.end(Category.User, String.class, "inner");
+            profiler.end(Category.Frame, "Frame", null);
+        }
+        assertEquals(12, profiler.getRecordedCount());
+
+        List<ScopeSummary> summaries = profiler.summarize();
+        assertEquals(2, summaries.size());
+        ScopeSummary frame = summaries.get(0);
+        assertEquals("Frame", frame.getName());
+        assertEquals(Category.Frame, frame.getCategory());
+        assertEquals(3, frame.getCount());
+        ScopeSummary inner = find(summaries, "String (inner)");
+        assertNotNull(inner);
+        assertEquals(3, inner.getCount());
+        assertTrue(frame.getTotalNanos() >= inner.getTotalNanos());
+    }
+
+    @Test
+    public void testOverwrittenBeginsAreDropped() {
+        TraceProfiler profiler = new TraceProfiler(4);
+        assertEquals(4, profiler.getCapacity());
+        profiler.begin(Category.Frame, "Frame", null);
+        profiler.begin(Category.User, "a", null);
+        profiler.end(Category.User, "a", null);
+        profiler.begin(Category.User, "b", null);
+        profiler.end(Category.User, "b", null);
+        profiler.end(Category.Frame, "Frame", null);
+
+        // only a's end, b and the frame end remain
+        List<ScopeSummary> summaries = profiler.summarize();
+        assertEquals(1, summaries.size());
+        assertEquals("b", summaries.get(0).getName());
+    }
+
+    @Test
+    public void testChromeTrace() throws IOException {
+        TraceProfiler profiler = new TraceProfiler(16);
+        profiler.begin(Category.Frame, "Frame", null);
+        profiler.begin(Category.User, "quote\"d", null);
+        profiler.end(Category.User, "quote\"d", null);
+        profiler.end(Category.Frame, "Frame", null);
+
+        StringWriter out = new StringWriter();
+        profiler.writeChromeTrace(out);
+        String json = out.toString();
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(json.trim().endsWith("]}"));
+        assertTrue(json.contains("\"name\":\"Frame\",\"cat\":\"Frame\",\"ph\":\"B\""));
+        assertTrue(json.contains("\"name\":\"quote\\\"d\",\"cat\":\"User\",\"ph\":\"E\""));
+        assertEquals(4, json.split("\"ph\"").length - 1);
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final TraceProfiler profiler = new TraceProfiler(1 << 16);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        profiler.begin(Category.User, "outer", null);
+                        profiler.begin(Category.User, "inner", null);
+                        profiler.end(Category.User, "inner", null);
+                        profiler.end(Category.User, "outer", null);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<ScopeSummary> summaries = profiler.summarize();
+        assertEquals(4000, find(summaries, "outer").getCount());
+        assertEquals(4000, find(summaries, "inner").getCount());
+    }
+
+    @Test
+    public void testControlUpdateScopes() {
+        TraceProfiler profiler = new TraceProfiler(64);
+        Node node = new Node("traced");
+        node.addControl(new AbstractControl() {
+            @Override
+            protected void controlUpdate(float tpf) {
+            }
+
+            @Override
+            protected void controlRender(RenderManager rm, ViewPort vp) {
+            }
+        });
+        node.updateLogicalState(0.1f);
+        assertEquals(0, profiler.getRecordedCount());
+
+        TraceProfiler.setCurrent(profiler);
+        node.updateLogicalState(0.1f);
+        List<ScopeSummary> summaries = profiler.summarize();
+        assertEquals(1, summaries.size());
+        assertEquals(Category.Control, summaries.get(0).getCategory());
+        assertTrue(summaries.get(0).getName().endsWith("(traced)"));
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.buffer.DrawIndirectBuffer;
+import com.jme3.buffer.TypedBuffer;
+import com.jme3.buffer.UntypedBuffer;
+import com.jme3.buffer.pmb.RingBuffer;
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.NullComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the grouping, command generation and buffer packing of the
+ * {@link DrawBatcher} against a renderer that records the issued draws.
+ */
+public class DrawBatcherTest {
+
+    private static final int MAX_DRAWS = 8;
+
+    private final List<Draw> draws = new ArrayList<>();
+    private final NullRenderer renderer = new NullRenderer() {
+        @Override
+        public void renderMesh(Mesh mesh, int lod, int count, VertexBuffer[] instanceData) {
+            draws.add(new Draw(mesh));
+        }
+    };
+    private final RenderManager renderManager = new RenderManager(renderer);
+    private AssetManager assetManager;
+    private HeapRingBuffer ring;
+
+    @Before
+    public void setUp() {
+        assetManager = TestUtil.createAssetManager();
+        ring = new HeapRingBuffer(DrawBatcher.getBlockSize(MAX_DRAWS), 2);
+        renderManager.setDrawBatcher(new DrawBatcher(ring, MAX_DRAWS));
+    }
+
+    private Material createMaterial(boolean batching) {
+        Material material = new Material(assetManager, "draw-batching.j3md");
+        material.setBoolean(DrawBatcher.BATCHING_PARAM, batching);
+        return material;
+    }
+
+    private Geometry createGeometry(Mesh mesh, Material material, float x) {
+        Geometry geom = new Geometry("geom", mesh);
+        geom.setMaterial(material);
+        geom.setLocalTranslation(x, 2f * x, 3f * x);
+        geom.updateGeometricState();
+        return geom;
+    }
+
+    private GeometryList createList(Geometry... geoms) {
+        GeometryList list = new GeometryList(new NullComparator());
+        for (Geometry geom : geoms) {
+            list.add(geom);
+        }
+        return list;
+    }
+
+    @Test
+    public void testMergesSharedMaterialAndMesh() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material material = createMaterial(true);
+        Geometry[] geoms = new Geometry[5];
+        for (int i = 0; i < geoms.length; i++) {
+            geoms[i] = createGeometry(mesh, material, i + 1);
+        }
+        renderManager.renderGeometryList(createList(geoms));
+
+        assertEquals(1, draws.size());
+        Draw draw = draws.get(0);
+        assertSame(mesh, draw.mesh);
+        assertNotNull(draw.indirect);
+        assertEquals(DrawIndirectBuffer.DrawIndirectMode.DrawIndices, draw.indirect.getDrawMode());
+        assertEquals(geoms.length, draw.count);
+        assertEquals(DrawBatcher.COMMAND_STRIDE, draw.stride);
+        assertFalse("indirect state must be restored", mesh.isDrawIndirect());
+
+        ByteBuffer data = ring.getBuffer().getCpuData();
+        for (int i = 0; i < geoms.length; i++) {
+            int cmd = (int) draw.offset + i * DrawBatcher.COMMAND_STRIDE;
+            assertEquals(mesh.getDrawCount(), data.getInt(cmd));
+            assertEquals(1, data.getInt(cmd + 4));
+            assertEquals(0, data.getInt(cmd + 8));
+            assertEquals(0, data.getInt(cmd + 12));
+            int baseInstance = data.getInt(cmd + 16);
+            assertEquals(i, baseInstance);
+
+            // column major world matrix, translation in the last column
+            int matrix = baseInstance * DrawBatcher.DRAW_DATA_SIZE;
+            Vector3f translation = geoms[i].getWorldTranslation();
+            assertEquals(1f, data.getFloat(matrix), 0f);
+            assertEquals(translation.x, data.getFloat(matrix + 48), 0f);
+            assertEquals(translation.y, data.getFloat(matrix + 52), 0f);
+            assertEquals(translation.z, data.getFloat(matrix + 56), 0f);
+            assertEquals(1f, data.getFloat(matrix + 60), 0f);
+        }
+        assertSame(ring.getBuffer(), ((TypedBuffer) material.getParam(DrawBatcher.DRAW_DATA_PARAM).getValue()).getUntypedBuffer());
+    }
+
+    @Test
+    public void testSplitsOnMaterialChange() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material a = createMaterial(true);
+        Material b = createMaterial(true);
+        renderManager.renderGeometryList(createList(
+                createGeometry(mesh, a, 1), createGeometry(mesh, a, 2),
+                createGeometry(mesh, b, 3),
+                createGeometry(mesh, a, 4)));
+
+        assertEquals(3, draws.size());
+        assertEquals(2, draws.get(0).count);
+        assertEquals(1, draws.get(1).count);
+        assertEquals(1, draws.get(2).count);
+
+        // commands of consecutive batches follow each other in the block
+        assertEquals(draws.get(0).offset + 2 * DrawBatcher.COMMAND_STRIDE, draws.get(1).offset);
+        assertEquals(draws.get(1).offset + DrawBatcher.COMMAND_STRIDE, draws.get(2).offset);
+        ByteBuffer data = ring.getBuffer().getCpuData();
+        assertEquals(3, data.getInt((int) draws.get(2).offset + 16));
+    }
+
+    @Test
+    public void testMaterialsWithoutOptInRenderOneByOne() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material material = createMaterial(false);
+        renderManager.renderGeometryList(createList(
+                createGeometry(mesh, material, 1), createGeometry(mesh, material, 2)));
+
+        assertEquals(2, draws.size());
+        assertNull(draws.get(0).indirect);
+        assertNull(draws.get(1).indirect);
+        assertEquals(0, ring.nextCalls);
+    }
+
+    @Test
+    public void testForcedTechniqueDisablesBatching() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material material = createMaterial(true);
+        renderManager.setForcedTechnique("Default");
+        renderManager.renderGeometryList(createList(
+                createGeometry(mesh, material, 1), createGeometry(mesh, material, 2)));
+        renderManager.setForcedTechnique(null);
+
+        assertEquals(2, draws.size());
+        assertNull(draws.get(0).indirect);
+    }
+
+    @Test
+    public void testMergesMeshesSharingBuffers() {
+        Box box = new Box(1, 1, 1);
+        Mesh first = new Mesh();
+        Mesh second = new Mesh();
+        for (VertexBuffer vb : box.getBufferList()) {
+            first.setBuffer(vb);
+            second.setBuffer(vb);
+        }
+        first.updateCounts();
+        second.updateCounts();
+        first.setDrawCount(12);
+        second.setDrawOffset(12 * 2);
+        second.setDrawCount(24);
+
+        Material material = createMaterial(true);
+        renderManager.renderGeometryList(createList(
+                createGeometry(first, material, 1), createGeometry(second, material, 2),
+                createGeometry(box, material, 3)));
+
+        assertEquals(1, draws.size());
+        assertSame(first, draws.get(0).mesh);
+        assertEquals(3, draws.get(0).count);
+        ByteBuffer data = ring.getBuffer().getCpuData();
+        int cmd = (int) draws.get(0).offset;
+        assertEquals(12, data.getInt(cmd));
+        assertEquals(0, data.getInt(cmd + 8));
+        cmd += DrawBatcher.COMMAND_STRIDE;
+        assertEquals(24, data.getInt(cmd));
+        assertEquals(12, data.getInt(cmd + 8));
+        cmd += DrawBatcher.COMMAND_STRIDE;
+        assertEquals(box.getDrawCount(), data.getInt(cmd));
+        assertEquals(0, data.getInt(cmd + 8));
+    }
+
+    @Test
+    public void testCanMergeChecksVertexBuffers() {
+        Material material = createMaterial(true);
+        Geometry a = createGeometry(new Box(1, 1, 1), material, 1);
+        Geometry b = createGeometry(new Box(1, 1, 1), material, 2);
+        Geometry c = createGeometry(a.getMesh(), material, 3);
+        assertTrue(DrawBatcher.isBatchable(a, renderManager));
+        assertFalse(DrawBatcher.canMerge(a, b, true));
+        assertTrue(DrawBatcher.canMerge(a, c, true));
+    }
+
+    @Test
+    public void testStartsNextBlockWhenFull() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material material = createMaterial(true);
+        Geometry[] geoms = new Geometry[MAX_DRAWS + 3];
+        for (int i = 0; i < geoms.length; i++) {
+            geoms[i] = createGeometry(mesh, material, i);
+        }
+        renderManager.renderGeometryList(createList(geoms));
+
+        assertEquals(2, draws.size());
+        assertEquals(MAX_DRAWS, draws.get(0).count);
+        assertEquals(3, draws.get(1).count);
+        assertEquals(2, ring.nextCalls);
+        assertEquals(1, ring.finishCalls);
+
+        // the second block starts after the first one
+        int blockSize = ring.getBlockSize();
+        ByteBuffer data = ring.getBuffer().getCpuData();
+        assertEquals(blockSize / DrawBatcher.DRAW_DATA_SIZE, data.getInt((int) draws.get(1).offset + 16));
+        assertTrue(draws.get(1).offset > blockSize);
+    }
+
+    private static class Draw {
+
+        private final Mesh mesh;
+        private final DrawIndirectBuffer indirect;
+        private final long offset;
+        private final int stride;
+        private final int count;
+
+        private Draw(Mesh mesh) {
+            this.mesh = mesh;
+            this.indirect = mesh.getDrawIndirectBuffer();
+            this.offset = mesh.getDrawIndirectOffset();
+            this.stride = mesh.getDrawIndirectStride();
+            this.count = mesh.getDrawIndirectCount();
+        }
+    }
+
+    /**
+     * Ring buffer on a single CPU side buffer, no GL needed.
+     */
+    private static class HeapRingBuffer implements RingBuffer {
+
+        private final UntypedBuffer buffer;
+        private final int blockSize;
+        private final int blocks;
+        private int current = -1;
+        private int nextCalls = 0;
+        private int finishCalls = 0;
+
+        private HeapRingBuffer(int blockSize, int blocks) {
+            this.blockSize = blockSize;
+            this.blocks = blocks;
+            buffer = UntypedBuffer.createNewBufferDataLazy(UntypedBuffer.MemoryMode.CpuGpu, UntypedBuffer.BufferDataUsage.DynamicDraw);
+            buffer.initialize(BufferUtils.createByteBuffer(blockSize * blocks));
+        }
+
+        @Override
+        public RingBufferBlock next() {
+            nextCalls++;
+            current = (current + 1) % blocks;
+            return new HeapBlock(current);
+        }
+
+        @Override
+        public void unmap() {
+        }
+
+        @Override
+        public int getBlockCount() {
+            return blocks;
+        }
+
+        @Override
+        public int getBlockSize() {
+            return blockSize;
+        }
+
+        @Override
+        public UntypedBuffer getBuffer() {
+            return buffer;
+        }
+
+        private class HeapBlock implements RingBufferBlock {
+
+            private final int index;
+            private int position;
+
+            private HeapBlock(int index) {
+                this.index = index;
+                this.position = getOffset();
+            }
+
+            private ByteBuffer data() {
+                return buffer.getCpuData();
+            }
+
+            @Override
+            public RingBufferBlock setPosition(int pos) {
+                position = getOffset() + pos;
+                return this;
+            }
+
+            @Override
+            public RingBufferBlock putLong(long value) {
+                data().putLong(position, value);
+                position += 8;
+                return this;
+            }
+
+            @Override
+            public RingBufferBlock putInt(int value) {
+                data().putInt(position, value);
+                position += 4;
+                return this;
+            }
+
+            @Override
+            public RingBufferBlock putShort(short value) {
+                data().putShort(position, value);
+                position += 2;
+                return this;
+            }
+
+            @Override
+            public RingBufferBlock putByte(byte value) {
+                data().put(position, value);
+                position++;
+                return this;
+            }
+
+            @Override
+            public RingBufferBlock putFloat(float value) {
+                data().putFloat(position, value);
+                position += 4;
+                return this;
+            }
+
+            @Override
+            public RingBufferBlock putDouble(double value) {
+                data().putDouble(position, value);
+                position += 8;
+                return this;
+            }
+
+            @Override
+            public RingBufferBlock putByte(ByteBuffer values) {
+                while (values.hasRemaining()) {
+                    putByte(values.get());
+                }
+                return this;
+            }
+
+            @Override
+            public RingBufferBlock putByte(byte[] values, int start, int length) {
+                for (int i = start; i < start + length; i++) {
+                    putByte(values[i]);
+                }
+                return this;
+            }
+
+            @Override
+            public int getLimit() {
+                return blockSize;
+            }
+
+            @Override
+            public int getOffset() {
+                return index * blockSize;
+            }
+
+            @Override
+            public void finish() {
+                finishCalls++;
+            }
+
+            @Override
+            public UntypedBuffer getBuffer() {
+                return buffer;
+            }
+
+            @Override
+            public int getPosition() {
+                return position;
+            }
+
+            @Override
+            public int getIndex() {
+                return index;
+            }
+        }
+    }
+}
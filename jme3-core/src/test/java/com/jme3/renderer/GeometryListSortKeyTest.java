@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.material.TechniqueDef;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.GeometryComparator;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.GuiComparator;
+import com.jme3.renderer.queue.NullComparator;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.TransparentComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import com.jme3.util.RadixSort;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that sorting a {@link GeometryList} by key gives the same order as
+ * sorting it with the comparator.
+ */
+public class GeometryListSortKeyTest {
+
+    private final Mesh mesh = new Box(1, 1, 1);
+    private final Camera cam = new Camera(640, 480);
+    private RenderManager renderManager;
+    private AssetManager assetManager;
+
+    @Before
+    public void setUp() {
+        assetManager = TestUtil.createAssetManager();
+        renderManager = TestUtil.createRenderManager();
+        cam.setFrustumPerspective(45f, 640f / 480f, 1f, 1000f);
+    }
+
+    private Geometry[] createGeometries(int count) {
+        Material[] materials = {
+            new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md"),
+            new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md"),
+            new Material(assetManager, "Common/MatDefs/Misc/Particle.j3md")
+        };
+        for (Material material : materials) {
+            material.selectTechnique(TechniqueDef.DEFAULT_TECHNIQUE_NAME, renderManager);
+        }
+
+        Random random = new Random(99);
+        Geometry[] geometries = new Geometry[count];
+        for (int i = 0; i < count; i++) {
+            Geometry geom = new Geometry("Geom-" + i, mesh);
+            // Coarse positions so that some distances tie
+            geom.setLocalTranslation(random.nextInt(20) - 10, random.nextInt(20) - 10, -random.nextInt(20));
+            geom.setMaterial(materials[random.nextInt(materials.length)]);
+            geom.updateGeometricState();
+            geometries[i] = geom;
+        }
+        return geometries;
+    }
+
+    private Geometry[] sort(Geometry[] geometries, GeometryComparator comparator, boolean byKey) {
+        GeometryList list = new GeometryList(comparator);
+        list.setCamera(cam);
+        list.setSortKeysEnabled(byKey);
+        for (Geometry geom : geometries) {
+            geom.queueDistance = Float.NEGATIVE_INFINITY;
+            list.add(geom);
+        }
+        list.sort();
+        Geometry[] result = new Geometry[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    private void testSameOrder(GeometryComparator comparator) {
+        for (int count : new int[]{5, 31, 500}) {
+            Geometry[] geometries = createGeometries(count);
+            Geometry[] expected = sort(geometries, comparator, false);
+            Geometry[] actual = sort(geometries, comparator, true);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testOpaqueSortKey() {
+        testSameOrder(new OpaqueComparator());
+    }
+
+    @Test
+    public void testTransparentSortKey() {
+        testSameOrder(new TransparentComparator());
+    }
+
+    @Test
+    public void testGuiSortKey() {
+        testSameOrder(new GuiComparator());
+    }
+
+    @Test
+    public void testNullSortKeyKeepsOrder() {
+        testSameOrder(new NullComparator());
+    }
+
+    @Test
+    public void testRadixSortIsStableAndUnsigned() {
+        Random random = new Random(5);
+        int size = 1000;
+        Long[] values = new Long[size];
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            // few distinct keys, spread over the sign bit
+            keys[i] = ((long) random.nextInt(8) << 61) | random.nextInt(4);
+            values[i] = (long) i;
+        }
+
+        Long[] expected = values.clone();
+        final long[] originalKeys = keys.clone();
+        Arrays.sort(expected, (a, b) -> Long.compareUnsigned(originalKeys[a.intValue()], originalKeys[b.intValue()]));
+
+        new RadixSort<Long>().sort(values, keys, size);
+        assertArrayEquals(expected, values);
+        for (int i = 1; i < size; i++) {
+            assertTrue(Long.compareUnsigned(keys[i - 1], keys[i]) <= 0);
+        }
+    }
+
+    @Test
+    public void testSortableBits() {
+        float[] values = {Float.NEGATIVE_INFINITY, -100f, -1f, -0f, 0f, 1e-10f, 1f, 100f, Float.POSITIVE_INFINITY};
+        for (int i = 1; i < values.length; i++) {
+            int a = RadixSort.sortableBits(values[i - 1]);
+            int b = RadixSort.sortableBits(values[i]);
+            if (values[i - 1] == values[i]) {
+                assertEquals(a, b);
+            } else {
+                assertTrue(Integer.compareUnsigned(a, b) < 0);
+            }
+        }
+        assertEquals(RadixSort.sortableBits(0f), RadixSort.sortableBits(new Vector3f().z));
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that culling with a {@link ParallelSceneCuller} produces the same
+ * render queue as the serial traversal.
+ */
+public class ParallelSceneCullerTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private RenderManager renderManager;
+    private Material material;
+    private Camera cam;
+
+    @Before
+    public void setUp() {
+        AssetManager assetManager = TestUtil.createAssetManager();
+        renderManager = TestUtil.createRenderManager();
+        material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+
+        cam = new Camera(640, 480);
+        cam.setFrustumPerspective(60f, 640f / 480f, 1f, 200f);
+        cam.setLocation(new Vector3f(0, 0, 0));
+        cam.lookAtDirection(Vector3f.UNIT_Z.negate(), Vector3f.UNIT_Y);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private Node createScene() {
+        Random random = new Random(1234);
+        Mesh mesh = new Box(1, 1, 1);
+        Node root = new Node("Root");
+        for (int i = 0; i < 200; i++) {
+            Node group = new Node("Group-" + i);
+            group.setLocalTranslation((random.nextFloat() - 0.5f) * 300f,
+                                      (random.nextFloat() - 0.5f) * 300f,
+                                      (random.nextFloat() - 0.5f) * 300f);
+            if (i % 17 == 0) {
+                group.setCullHint(Spatial.CullHint.Always);
+            } else if (i % 23 == 0) {
+                group.setCullHint(Spatial.CullHint.Never);
+            }
+            for (int j = 0; j < 10; j++) {
+                Geometry geom = new Geometry("Geom-" + i + "-" + j, mesh);
+                geom.setLocalTranslation((random.nextFloat() - 0.5f) * 40f,
+                                         (random.nextFloat() - 0.5f) * 40f,
+                                         (random.nextFloat() - 0.5f) * 40f);
+                geom.setMaterial(material);
+                if (j % 3 == 0) {
+                    geom.setQueueBucket(Bucket.Transparent);
+                }
+                group.attachChild(geom);
+            }
+            root.attachChild(group);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+
+    private static List<Geometry> toList(GeometryList list) {
+        List<Geometry> result = new ArrayList<>();
+        for (Geometry geom : list) {
+            result.add(geom);
+        }
+        return result;
+    }
+
+    @Test
+    public void testSameQueueAsSerialCulling() {
+        Node scene = createScene();
+
+        ViewPort serialVp = new ViewPort("Serial", cam);
+        renderManager.renderScene(scene, serialVp);
+
+        ParallelSceneCuller culler = new ParallelSceneCuller(pool);
+        culler.setSplitThreshold(4);
+        culler.setBatchSize(2);
+        renderManager.setParallelCuller(culler);
+        ViewPort parallelVp = new ViewPort("Parallel", cam);
+        renderManager.renderScene(scene, parallelVp);
+        renderManager.setParallelCuller(null);
+
+        for (Bucket bucket : new Bucket[]{Bucket.Opaque, Bucket.Transparent}) {
+            List<Geometry> serial = toList(serialVp.getQueue().getList(bucket));
+            List<Geometry> parallel = toList(parallelVp.getQueue().getList(bucket));
+            assertFalse(serial.isEmpty());
+            assertEquals(serial, parallel);
+        }
+    }
+
+    @Test
+    public void testFrustumIntersectionsMatchSerialCulling() {
+        Node scene = createScene();
+        List<Spatial> spatials = new ArrayList<>();
+        scene.depthFirstTraversal(spatials::add);
+        for (Spatial spatial : spatials) {
+            spatial.setLastFrustumIntersection(null);
+        }
+
+        renderManager.renderScene(scene, new ViewPort("Serial", cam));
+        List<Camera.FrustumIntersect> serial = new ArrayList<>();
+        for (Spatial spatial : spatials) {
+            serial.add(spatial.getLastFrustumIntersection());
+            spatial.setLastFrustumIntersection(null);
+        }
+
+        ParallelSceneCuller culler = new ParallelSceneCuller(pool);
+        culler.setSplitThreshold(4);
+        List<Spatial> visible = new ArrayList<>();
+        culler.cull(scene, cam, visible);
+
+        for (int i = 0; i < spatials.size(); i++) {
+            Spatial spatial = spatials.get(i);
+            assertEquals(spatial.getName(), serial.get(i), spatial.getLastFrustumIntersection());
+        }
+        assertTrue(visible.contains(scene));
+    }
+
+    @Test
+    public void testControlsRenderedLikeSerialCulling() {
+        Node scene = createScene();
+        List<Spatial> spatials = new ArrayList<>();
+        scene.depthFirstTraversal(spatials::add);
+        List<Spatial> rendered = new ArrayList<>();
+        for (Spatial spatial : spatials) {
+            spatial.addControl(new RecordingControl(rendered));
+        }
+
+        renderManager.renderScene(scene, new ViewPort("Serial", cam));
+        List<Spatial> serial = new ArrayList<>(rendered);
+        rendered.clear();
+
+        ParallelSceneCuller culler = new ParallelSceneCuller(pool);
+        culler.setSplitThreshold(4);
+        culler.setBatchSize(2);
+        renderManager.setParallelCuller(culler);
+        renderManager.renderScene(scene, new ViewPort("Parallel", cam));
+        renderManager.setParallelCuller(null);
+
+        assertFalse(serial.isEmpty());
+        assertTrue(serial.size() < spatials.size());
+        assertEquals(serial, rendered);
+    }
+
+    private static class RecordingControl extends AbstractControl {
+        private final List<Spatial> rendered;
+
+        RecordingControl(List<Spatial> rendered) {
+            this.rendered = rendered;
+        }
+
+        @Override
+        protected void controlUpdate(float tpf) {
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+            rendered.add(getSpatial());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.shape.Box;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link PackedTransformNode} computes exactly the same world
+ * transforms as a regular {@link Node}.
+ */
+public class PackedTransformNodeTest {
+
+    private final Mesh mesh = new Box(1, 1, 1);
+
+    private void populate(Node parent, Random random, int depth) {
+        for (int i = 0; i < 4; i++) {
+            Spatial child = depth == 0 ? new Geometry("Geom", mesh) : new Node("Node");
+            child.setLocalTranslation(random.nextFloat() * 10f, random.nextFloat() * 10f, random.nextFloat() * 10f);
+            child.setLocalRotation(new Quaternion().fromAngles(random.nextFloat(), random.nextFloat(), random.nextFloat()));
+            child.setLocalScale(0.5f + random.nextFloat(), 0.5f + random.nextFloat(), 0.5f + random.nextFloat());
+            parent.attachChild(child);
+            if (depth > 0) {
+                populate((Node) child, random, depth - 1);
+            }
+        }
+    }
+
+    private static List<Spatial> flatten(Spatial root) {
+        List<Spatial> result = new ArrayList<>();
+        root.depthFirstTraversal(result::add, Spatial.DFSMode.PRE_ORDER);
+        return result;
+    }
+
+    private static void assertSameTransforms(Spatial expected, Spatial actual) {
+        List<Spatial> serial = flatten(expected);
+        List<Spatial> packed = flatten(actual);
+        assertEquals(serial.size(), packed.size());
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(serial.get(i).getWorldTransform(), packed.get(i).getWorldTransform());
+            assertEquals(serial.get(i).getWorldBound().getCenter(), packed.get(i).getWorldBound().getCenter());
+            if (serial.get(i) instanceof Geometry) {
+                assertEquals(((Geometry) serial.get(i)).getWorldMatrix(), ((Geometry) packed.get(i)).getWorldMatrix());
+            }
+        }
+    }
+
+    @Test
+    public void testSameWorldTransformsAsNode() {
+        Node serial = new Node("Root");
+        PackedTransformNode packed = new PackedTransformNode("Root");
+        populate(serial, new Random(42), 3);
+        populate(packed, new Random(42), 3);
+
+        Node serialRoot = new Node("Outer");
+        Node packedRoot = new Node("Outer");
+        serialRoot.attachChild(serial);
+        packedRoot.attachChild(packed);
+        serialRoot.setLocalTranslation(1, 2, 3);
+        packedRoot.setLocalTranslation(1, 2, 3);
+
+        serialRoot.updateGeometricState();
+        packedRoot.updateGeometricState();
+        assertSameTransforms(serialRoot, packedRoot);
+
+        // Move a few spatials in the middle of the tree
+        Random random = new Random(7);
+        List<Spatial> serialList = flatten(serial);
+        List<Spatial> packedList = flatten(packed);
+        for (int frame = 0; frame < 10; frame++) {
+            for (int k = 0; k < 5; k++) {
+                int i = random.nextInt(serialList.size());
+                float dx = random.nextFloat();
+                serialList.get(i).move(dx, 0, -dx);
+                serialList.get(i).rotate(0, dx, 0);
+                packedList.get(i).move(dx, 0, -dx);
+                packedList.get(i).rotate(0, dx, 0);
+            }
+            serialRoot.updateGeometricState();
+            packedRoot.updateGeometricState();
+            assertSameTransforms(serialRoot, packedRoot);
+        }
+    }
+
+    @Test
+    public void testLayoutFollowsStructureChanges() {
+        PackedTransformNode packed = new PackedTransformNode("Root");
+        populate(packed, new Random(3), 2);
+        packed.updateGeometricState();
+        int count = packed.getSpatialCount();
+        assertEquals(1 + 4 + 16 + 64, count);
+        for (int i = 1; i < count; i++) {
+            int parent = packed.getParentIndex(i);
+            assertTrue(parent < i);
+            assertSame(packed.getSpatial(parent), packed.getSpatial(i).getParent());
+        }
+
+        Node inner = (Node) packed.getChild(2);
+        Node added = new Node("Added");
+        added.setLocalTranslation(5, 5, 5);
+        inner.attachChild(added);
+        packed.getChild(0).removeFromParent();
+        packed.updateGeometricState();
+        assertEquals(count + 1 - 21, packed.getSpatialCount());
+
+        Vector3f expected = inner.getWorldTransform().transformVector(new Vector3f(5, 5, 5), null);
+        assertEquals(expected, added.getWorldTranslation());
+        for (int i = 0; i < packed.getSpatialCount(); i++) {
+            if (packed.getSpatial(i) == added) {
+                assertEquals(added.getWorldTranslation(), packed.getWorldTranslation(i, null));
+            }
+        }
+    }
+
+    @Test
+    public void testChildUpdatedDirectly() {
+        Node serial = new Node("Root");
+        PackedTransformNode packed = new PackedTransformNode("Root");
+        populate(serial, new Random(11), 2);
+        populate(packed, new Random(11), 2);
+        serial.updateGeometricState();
+        packed.updateGeometricState();
+
+        // Update an inner node on its own, bypassing the packed pass
+        Node serialInner = (Node) serial.getChild(1);
+        Node packedInner = (Node) packed.getChild(1);
+        serialInner.move(3, 0, 0);
+        packedInner.move(3, 0, 0);
+        packedInner.updateGeometricState();
+        serialInner.updateGeometricState();
+
+        ((Node) serialInner.getChild(0)).getChild(0).move(0, 1, 0);
+        ((Node) packedInner.getChild(0)).getChild(0).move(0, 1, 0);
+        serial.updateGeometricState();
+        packed.updateGeometricState();
+        assertSameTransforms(serial, packed);
+    }
+}
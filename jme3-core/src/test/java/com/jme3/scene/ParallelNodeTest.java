@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.shape.Box;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that a {@link ParallelNode} updates its children exactly like a
+ * serial {@link Node} does.
+ */
+public class ParallelNodeTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final AtomicInteger updateCount = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Moves and spins its spatial, different speed per instance.
+     */
+    private class MoverControl extends AbstractControl {
+        private final float speed;
+
+        MoverControl(float speed) {
+            this.speed = speed;
+        }
+
+        @Override
+        protected void controlUpdate(float tpf) {
+            updateCount.incrementAndGet();
+            spatial.move(speed * tpf, 0, -speed * tpf);
+            spatial.rotate(0, speed * tpf, 0);
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+        }
+    }
+
+    private void populate(Node root, int actors) {
+        Mesh mesh = new Box(1, 2, 1);
+        for (int i = 0; i < actors; i++) {
+            Node actor = new Node("Actor-" + i);
+            actor.setLocalTranslation(i * 3f, 0, i % 7);
+            actor.addControl(new MoverControl(i * 0.1f));
+            for (int j = 0; j < 3; j++) {
+                Node limb = new Node("Limb-" + i + "-" + j);
+                limb.setLocalTranslation(j, 1, 0);
+                limb.setLocalRotation(new Quaternion().fromAngles(0, j * 0.3f, 0));
+                limb.addControl(new MoverControl(j * 0.5f));
+                limb.attachChild(new Geometry("Geom-" + i + "-" + j, mesh));
+                actor.attachChild(limb);
+            }
+            root.attachChild(actor);
+        }
+    }
+
+    private static List<Spatial> flatten(Spatial root) {
+        List<Spatial> result = new ArrayList<>();
+        root.depthFirstTraversal(result::add);
+        return result;
+    }
+
+    private static void assertSameState(Spatial expected, Spatial actual) {
+        List<Spatial> serial = flatten(expected);
+        List<Spatial> parallel = flatten(actual);
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            Spatial s = serial.get(i);
+            Spatial p = parallel.get(i);
+            assertEquals(s.getName(), p.getName());
+            assertEquals(s.getName(), s.getWorldTransform(), p.getWorldTransform());
+            BoundingVolume sb = s.getWorldBound();
+            BoundingVolume pb = p.getWorldBound();
+            assertEquals(s.getName(), sb.getCenter(), pb.getCenter());
+            assertEquals(s.getName(), sb.getVolume(), pb.getVolume(), 0f);
+        }
+    }
+
+    @Test
+    public void testParallelRootMatchesSerial() {
+        Node serial = new Node("Root");
+        ParallelNode parallel = new ParallelNode("Root", pool);
+        parallel.setBatchSize(2);
+        populate(serial, 50);
+        populate(parallel, 50);
+
+        for (int frame = 0; frame < 10; frame++) {
+            updateCount.set(0);
+            serial.updateLogicalState(0.016f);
+            serial.updateGeometricState();
+            int serialUpdates = updateCount.getAndSet(0);
+
+            parallel.updateLogicalState(0.016f);
+            parallel.updateGeometricState();
+            assertEquals(serialUpdates, updateCount.get());
+
+            assertSameState(serial, parallel);
+        }
+    }
+
+    @Test
+    public void testRefreshFlagsPropagatedToAncestors() {
+        Node serialRoot = new Node("Root");
+        Node serial = new Node("Actors");
+        serialRoot.attachChild(serial);
+        populate(serial, 40);
+
+        Node parallelRoot = new Node("Root");
+        ParallelNode parallel = new ParallelNode("Actors", pool);
+        parallel.setBatchSize(1);
+        parallelRoot.attachChild(parallel);
+        populate(parallel, 40);
+
+        for (int frame = 0; frame < 20; frame++) {
+            serialRoot.updateGeometricState();
+            parallelRoot.updateGeometricState();
+            assertEquals(0, parallel.refreshFlags);
+            assertEquals(0, parallelRoot.refreshFlags);
+
+            serialRoot.updateLogicalState(0.016f);
+            parallelRoot.updateLogicalState(0.016f);
+            assertEquals(serial.refreshFlags, parallel.refreshFlags);
+            assertEquals(serialRoot.refreshFlags, parallelRoot.refreshFlags);
+            assertTrue((parallelRoot.refreshFlags & Spatial.RF_BOUND) != 0);
+        }
+    }
+
+    @Test
+    public void testNestedParallelNodeUpdatedOnce() {
+        Node serialRoot = new Node("Root");
+        Node serial = new Node("Actors");
+        serialRoot.attachChild(serial);
+        serialRoot.setLocalTranslation(5, 0, 0);
+        populate(serial, 20);
+
+        Node parallelRoot = new Node("Root");
+        ParallelNode parallel = new ParallelNode("Actors", pool);
+        parallelRoot.attachChild(parallel);
+        parallelRoot.setLocalTranslation(5, 0, 0);
+        populate(parallel, 20);
+
+        for (int frame = 0; frame < 5; frame++) {
+            updateCount.set(0);
+            serialRoot.updateLogicalState(0.016f);
+            serialRoot.updateGeometricState();
+            int serialUpdates = updateCount.getAndSet(0);
+
+            parallelRoot.updateLogicalState(0.016f);
+            parallelRoot.updateGeometricState();
+            assertEquals(serialUpdates, updateCount.get());
+
+            assertSameState(serialRoot, parallelRoot);
+        }
+
+        // Structural changes below the parallel node must be picked up
+        Node late = new Node("Late");
+        late.addControl(new MoverControl(1f));
+        ((Node) parallel.getChild(0)).attachChild(late);
+        updateCount.set(0);
+        parallelRoot.updateLogicalState(0.016f);
+        assertEquals(20 * 4 + 1, updateCount.get());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies scoping and reuse of {@link MathArena}.
+ */
+public class MathArenaTest {
+
+    @Test
+    public void testObjectsAreReusedAfterClose() {
+        Vector3f first;
+        try (MathArena arena = MathArena.open()) {
+            first = arena.vector3f(1, 2, 3);
+            assertNotSame(first, arena.vector3f());
+        }
+        try (MathArena arena = MathArena.open()) {
+            Vector3f again = arena.vector3f();
+            assertSame(first, again);
+            assertEquals(Vector3f.ZERO, again);
+        }
+    }
+
+    @Test
+    public void testNestedScopes() {
+        try (MathArena outer = MathArena.open()) {
+            Matrix4f kept = outer.matrix4f();
+            Matrix4f inner;
+            try (MathArena arena = MathArena.open()) {
+                assertEquals(2, arena.getDepth());
+                inner = arena.matrix4f();
+                assertNotSame(kept, inner);
+            }
+            assertEquals(1, outer.getDepth());
+            assertSame(inner, outer.matrix4f());
+        }
+    }
+
+    @Test
+    public void testValuesAreReset() {
+        try (MathArena arena = MathArena.open()) {
+            arena.quaternion().set(1, 2, 3, 4);
+            arena.transform().setScale(5);
+        }
+        try (MathArena arena = MathArena.open()) {
+            assertEquals(Quaternion.IDENTITY, arena.quaternion());
+            assertTrue(arena.transform().isIdentity());
+            assertTrue(arena.matrix3f().isIdentity());
+        }
+    }
+
+    @Test
+    public void testSteadyStateDoesNotAllocate() {
+        int created = -1;
+        for (int frame = 0; frame < 3; frame++) {
+            try (MathArena arena = MathArena.open()) {
+                for (int i = 0; i < 100; i++) {
+                    arena.vector3f();
+                    arena.transform(Transform.IDENTITY);
+                }
+                if (frame == 0) {
+                    created = arena.getCreatedCount();
+                } else {
+                    assertEquals(created, arena.getCreatedCount());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testThreadsHaveOwnArenas() throws InterruptedException {
+        final Vector3f[] other = new Vector3f[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (MathArena arena = MathArena.open()) {
+                    other[0] = arena.vector3f();
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        try (MathArena arena = MathArena.open()) {
+            assertNotSame(other[0], arena.vector3f());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUseOutsideScope() {
+        MathArena arena;
+        try (MathArena open = MathArena.open()) {
+            arena = open;
+        }
+        arena.vector3f();
+    }
+}
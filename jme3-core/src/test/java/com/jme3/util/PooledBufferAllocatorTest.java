@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies pooling and accounting of {@link PooledBufferAllocator}.
+ */
+public class PooledBufferAllocatorTest {
+
+    private PooledBufferAllocator allocator;
+
+    @Before
+    public void setUp() {
+        assertTrue(PooledBufferAllocator.isPoolingSupported());
+        allocator = new PooledBufferAllocator(4096, 1024);
+    }
+
+    @Test
+    public void testBuffersShareSlab() {
+        ByteBuffer a = allocator.allocate(100);
+        ByteBuffer b = allocator.allocate(128);
+        assertTrue(a.isDirect());
+        assertEquals(100, a.capacity());
+        assertEquals(128, b.capacity());
+        assertEquals(4096, allocator.getReservedBytes());
+        assertEquals(228, allocator.getLiveBytes());
+
+        a.put(0, (byte) 1);
+        assertEquals(0, b.get(0));
+    }
+
+    @Test
+    public void testDestroyedBlocksAreRecycled() {
+        for (int i = 0; i < 100; i++) {
+            ByteBuffer buffer = allocator.allocate(1000);
+            assertEquals(0, buffer.getLong(0));
+            assertEquals(0, buffer.get(999));
+            buffer.putLong(0, -1L);
+            buffer.put(999, (byte) 1);
+            allocator.destroyDirectBuffer(buffer);
+        }
+        assertEquals(4096, allocator.getReservedBytes());
+        assertEquals(0, allocator.getLiveBytes());
+        assertEquals(1000, allocator.getPeakBytes());
+    }
+
+    @Test
+    public void testDestroyThroughView() {
+        FloatBuffer floats = allocator.allocate(64).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        assertEquals(64, allocator.getLiveBytes());
+        allocator.destroyDirectBuffer(floats);
+        assertEquals(0, allocator.getLiveBytes());
+    }
+
+    @Test
+    public void testDestroyTwiceKeepsNewOwner() {
+        ByteBuffer stale = allocator.allocate(64);
+        FloatBuffer staleView = stale.asFloatBuffer();
+        allocator.destroyDirectBuffer(stale);
+
+        ByteBuffer owner = allocator.allocate(64);
+        assertEquals(64, allocator.getLiveBytes());
+        allocator.destroyDirectBuffer(stale);
+        allocator.destroyDirectBuffer(staleView);
+        assertEquals(64, allocator.getLiveBytes());
+
+        // the block must not be handed out a second time
+        ByteBuffer other = allocator.allocate(64);
+        owner.put(0, (byte) 1);
+        assertEquals(0, other.get(0));
+    }
+
+    @Test
+    public void testViewKeepsBlockAlive() throws InterruptedException {
+        FloatBuffer floats = allocator.allocate(64).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        floats.put(0, 1f);
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        ByteBuffer other = allocator.allocate(64);
+        other.putFloat(0, 2f);
+        assertEquals(0, allocator.getLeakCount());
+        assertEquals(1f, floats.get(0), 0f);
+    }
+
+    @Test
+    public void testLargeBuffersAreAllocatedIndividually() {
+        ByteBuffer large = allocator.allocate(10000);
+        assertEquals(10000, large.capacity());
+        assertEquals(10000, allocator.getReservedBytes());
+        allocator.destroyDirectBuffer(large);
+        assertEquals(0, allocator.getReservedBytes());
+        assertEquals(0, allocator.getLiveBytes());
+    }
+
+    @Test
+    public void testCategories() {
+        ByteBuffer vertices = allocator.allocate(256);
+        ByteBuffer image = allocator.allocate(512);
+        assertEquals(768, allocator.getLiveBytes(BufferCategory.Other));
+
+        allocator.setCategory(vertices.asFloatBuffer(), BufferCategory.Vertex);
+        allocator.setCategory(image, BufferCategory.Image);
+        assertEquals(0, allocator.getLiveBytes(BufferCategory.Other));
+        assertEquals(256, allocator.getLiveBytes(BufferCategory.Vertex));
+        assertEquals(512, allocator.getLiveBytes(BufferCategory.Image));
+
+        allocator.destroyDirectBuffer(image);
+        assertEquals(0, allocator.getLiveBytes(BufferCategory.Image));
+        assertEquals(512, allocator.getPeakBytes(BufferCategory.Image));
+        assertEquals(768, allocator.getPeakBytes());
+    }
+
+    @Test
+    public void testForeignBuffersAreIgnored() {
+        ByteBuffer foreign = ByteBuffer.allocateDirect(64);
+        allocator.setCategory(foreign, BufferCategory.Audio);
+        assertEquals(0, allocator.getLiveBytes(BufferCategory.Audio));
+        allocator.destroyDirectBuffer(foreign);
+        assertEquals(0, allocator.getLiveBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSlabSize() {
+        new PooledBufferAllocator(1000, 512);
+    }
+}
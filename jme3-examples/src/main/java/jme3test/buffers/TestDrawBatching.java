@@ -0,0 +1,88 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package jme3test.buffers;
+
+import com.jme3.app.DetailedProfilerState;
+import com.jme3.app.SimpleApplication;
+import com.jme3.input.KeyInput;
+import com.jme3.input.controls.ActionListener;
+import com.jme3.input.controls.KeyTrigger;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.DrawBatcher;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Box;
+
+/**
+ *
+ * Renders several thousand boxes that share a Mesh and a Material. With the
+ * DrawBatcher set on the RenderManager, the opaque queue is merged into a few
+ * MultiDrawIndirect calls, the world matrices are streamed through a
+ * persistently mapped ring buffer. Press B to toggle batching and compare the
+ * frame times in the profiler.
+ */
+public class TestDrawBatching extends SimpleApplication implements ActionListener {
+
+    private static final int NUM_BOXES = 10_000;
+    private static final int MAX_DRAWS = 4_096;
+    private static final int BLOCKS = 3;
+
+    public static void main(String[] args) {
+        TestDrawBatching t = new TestDrawBatching();
+        t.start();
+    }
+
+    private DrawBatcher batcher;
+
+    @Override
+    public void simpleInitApp() {
+        if (!renderer.getCaps().contains(Caps.MultiDrawIndirect) || !renderer.getCaps().contains(Caps.BufferStorage)) {
+            throw new UnsupportedOperationException("Hardware doesnt support MultiDrawIndirect with persistently mapped buffers");
+        }
+        batcher = new DrawBatcher(renderer, MAX_DRAWS, BLOCKS);
+        renderManager.setDrawBatcher(batcher);
+
+        Mesh mesh = new Box(0.25f, 0.25f, 0.25f);
+        Material[] materials = new Material[4];
+        for (int i = 0; i < materials.length; i++) {
+            materials[i] = new Material(assetManager, "jme3test/mdi/DrawBatching.j3md");
+            materials[i].setColor("Color", ColorRGBA.randomColor());
+            materials[i].setBoolean("UseDrawBatching", true);
+        }
+        for (int i = 0; i < NUM_BOXES; i++) {
+            Geometry geo = new Geometry("box" + i, mesh);
+            geo.setMaterial(materials[i % materials.length]);
+            geo.setLocalTranslation(FastMath.nextRandomFloat() * 100f - 50f,
+                    FastMath.nextRandomFloat() * 100f - 50f,
+                    FastMath.nextRandomFloat() * 100f - 50f);
+            rootNode.attachChild(geo);
+        }
+
+        inputManager.addMapping("toggle", new KeyTrigger(KeyInput.KEY_B));
+        inputManager.addListener(this, "toggle");
+        stateManager.attach(new DetailedProfilerState());
+        flyCam.setMoveSpeed(20f);
+        cam.setLocation(new Vector3f(0f, 0f, 120f));
+    }
+
+    @Override
+    public void onAction(String name, boolean isPressed, float tpf) {
+        if (isPressed) {
+            //the materials keep reading from the DrawData buffer, so without batcher
+            //the boxes are drawn one by one with batching disabled in the shader
+            boolean enable = renderManager.getDrawBatcher() == null;
+            renderManager.setDrawBatcher(enable ? batcher : null);
+            for (Geometry geo : rootNode.descendantMatches(Geometry.class)) {
+                geo.getMaterial().setBoolean("UseDrawBatching", enable);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,10 @@
+uniform vec4 m_Color;
+
+in vec3 normal;
+
+out vec4 outFragColor;
+
+void main(void) {
+    float light = max(dot(normalize(normal), normalize(vec3(0.3, 1.0, 0.5))), 0.2);
+    outFragColor = vec4(m_Color.rgb * light, m_Color.a);
+}
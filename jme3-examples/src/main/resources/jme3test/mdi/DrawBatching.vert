@@ -0,0 +1,11 @@
+#import "Common/ShaderLib/DrawBatching.glsllib"
+
+in vec3 inPosition;
+in vec3 inNormal;
+
+out vec3 normal;
+
+void main(void) {
+    normal = TransformWorldNormal(inNormal);
+    gl_Position = TransformWorldViewProjection(vec4(inPosition, 1.0));
+}
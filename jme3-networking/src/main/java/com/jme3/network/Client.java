@@ -32,6 +32,7 @@
 package com.jme3.network;
 
 import com.jme3.network.service.ClientServiceManager;
+import com.jme3.network.stats.NetworkStats;
 
 
 /**
@@ -153,6 +154,15 @@ public interface Client extends MessageConnection
      *  Removes a previously registered error listener.
      */
     public void removeErrorListener( ErrorListener<? super Client> listener ); 
+ 
+    /**
+     *  Returns the traffic stats of this client.  Clients that don't
+     *  track their traffic return NetworkStats.NONE.
+     */
+    public default NetworkStats getStats()
+    {
+        return NetworkStats.NONE;
+    }
 }
 
 
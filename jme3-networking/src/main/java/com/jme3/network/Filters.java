@@ -33,6 +33,7 @@ package com.jme3.network;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 
 /**
@@ -111,7 +112,7 @@ public class Filters
         return new NotFilter<T>(f);
     }
  
-    private static class EqualToFilter<T> implements Filter<T>
+    private static class EqualToFilter<T> implements CandidateFilter<T>
     {
         private T value;
         
@@ -125,9 +126,15 @@ public class Filters
         {
             return value == input || (value != null && value.equals(input));
         }
+
+        @Override
+        public Collection<? extends T> getCandidates()
+        {
+            return Collections.singleton(value);
+        }
     }
     
-    private static class InFilter<T> implements Filter<T>
+    private static class InFilter<T> implements CandidateFilter<T>
     {
         private Collection<? extends T> collection;
         
@@ -141,6 +148,12 @@ public class Filters
         {
             return collection.contains(input);
         } 
+
+        @Override
+        public Collection<? extends T> getCandidates()
+        {
+            return collection;
+        }
     }
     
     private static class NotFilter<T> implements Filter<T>
@@ -31,6 +31,7 @@
  */
 package com.jme3.network;
 
+import com.jme3.network.stats.NetworkStats;
 import java.util.Set;
 
 /**
@@ -86,4 +87,14 @@ public interface HostedConnection extends MessageConnection
      *  for this client session.
      */
     public Set<String> attributeNames();     
+ 
+    /**
+     *  Returns the traffic stats of this connection, including the
+     *  depth of its outbound queues, or NetworkStats.NONE if the
+     *  connection doesn't track them.
+     */
+    public default NetworkStats getStats()
+    {
+        return NetworkStats.NONE;
+    }
 }
@@ -33,8 +33,9 @@ package com.jme3.network;
 
 import com.jme3.network.base.DefaultClient;
 import com.jme3.network.base.DefaultServer;
+import com.jme3.network.base.KernelFactory;
 import com.jme3.network.base.TcpConnectorFactory;
-import com.jme3.network.kernel.tcp.SelectorKernel;
+import com.jme3.network.kernel.Kernel;
 import com.jme3.network.kernel.tcp.SocketConnector;
 import com.jme3.network.kernel.udp.UdpConnector;
 import com.jme3.network.kernel.udp.UdpKernel;
@@ -88,11 +89,23 @@ public class Network
      *                  completely disable UDP traffic for this server.
      */
     public static Server createServer( String gameName, int version, int tcpPort, int udpPort ) throws IOException
+    {
+        return createServer( gameName, version, tcpPort, udpPort, KernelFactory.DEFAULT );
+    }
+
+    /**
+     *  Creates a named and versioned Server like createServer(String, int, int, int)
+     *  whose TCP kernels, including those of additional channels, are created by
+     *  the specified factory.  For example, a NioKernelFactory with several I/O
+     *  threads spreads the connections over multiple selectors.
+     */
+    public static Server createServer( String gameName, int version, int tcpPort, int udpPort,
+                                       KernelFactory kernelFactory ) throws IOException
     {
         UdpKernel fast = udpPort == -1 ? null : new UdpKernel(udpPort);
-        SelectorKernel reliable = new SelectorKernel(tcpPort);
+        Kernel reliable = kernelFactory.createKernel(0, tcpPort);
  
-        return new DefaultServer( gameName, version, reliable, fast );       
+        return new DefaultServer( gameName, version, reliable, fast, kernelFactory );
     }
     
     /**
@@ -34,6 +34,7 @@ package com.jme3.network;
 import java.util.Collection;
 
 import com.jme3.network.service.HostedServiceManager;
+import com.jme3.network.stats.NetworkStats;
 
 /**
  *  Represents a host that can send and receive messages to
@@ -188,6 +189,15 @@ public interface Server
      */
     public void removeMessageListener( MessageListener<? super HostedConnection> listener, Class... classes ); 
     
+    /**
+     *  Returns the traffic stats of this server.  The channel traffic
+     *  and round trip times are the totals of all connections.
+     *  Defaults to NetworkStats.NONE.
+     */
+    public default NetworkStats getStats()
+    {
+        return NetworkStats.NONE;
+    }
      
 }
 
@@ -36,6 +36,8 @@ import com.jme3.network.Message;
 import com.jme3.network.MessageListener;
 import com.jme3.network.kernel.Connector;
 import com.jme3.network.kernel.ConnectorException;
+import com.jme3.network.stats.NetworkStats;
+import com.jme3.network.stats.QueueGauge;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -68,6 +70,11 @@ public class ConnectorAdapter extends Thread
     private MessageProtocol protocol;
 
     private BlockingQueue<ByteBuffer> outbound;
+    private final QueueGauge outboundGauge = new QueueGauge();
+    
+    // Optional traffic stats and the channel to record them on
+    private volatile NetworkStats stats;
+    private int channel;
      
     // Writes messages out on a background thread
     private WriterThread writer;
@@ -116,6 +123,22 @@ public class ConnectorAdapter extends Thread
         writer.start();                                           
     }
  
+    /**
+     *  Sets the stats to which this adapter records the traffic
+     *  and outbound queue of the specified channel.
+     */
+    public void setStats( NetworkStats stats, int channel )
+    {
+        this.channel = channel;
+        this.stats = stats;
+        stats.setOutboundQueue(channel, outboundGauge);
+    }
+ 
+    public QueueGauge getOutboundQueue()
+    {
+        return outboundGauge;
+    }
+ 
     public void close()
     {
         go.set(false);
@@ -137,9 +160,17 @@ public class ConnectorAdapter extends Thread
  
     public void write( ByteBuffer data )
     {
+        NetworkStats current = stats;
+        if( current != null ) {
+            current.recordSent(channel, 1, data.remaining());
+        }
+        // Counted before it's queued so that the writer can never
+        // take the gauge below zero
+        outboundGauge.increment();
         try {
             outbound.put( data );
         } catch( InterruptedException e ) {
+            outboundGauge.decrement();
             throw new RuntimeException( "Interrupted while waiting for queue to drain", e );
         }
     }
@@ -170,12 +201,20 @@ public class ConnectorAdapter extends Thread
                     }
                 }
                 
+                int size = buffer.remaining();
                 messageBuffer.addBytes(buffer);
                 
                 Message m = null;
+                int count = 0;
                 while( (m = messageBuffer.pollMessage()) != null ) {
                     m.setReliable( reliable );
                     dispatch( m );
+                    count++;
+                }
+                
+                NetworkStats current = stats;
+                if( current != null ) {
+                    current.recordReceived(channel, count, size);
                 }
             }
         } catch( Exception e ) {
@@ -210,6 +249,7 @@ public class ConnectorAdapter extends Thread
             while( go.get() ) {
                 try {           
                     ByteBuffer data = outbound.take();
+                    outboundGauge.decrement();
                     write(data);                                       
                 } catch( InterruptedException e ) {
                     if( !go.get() )
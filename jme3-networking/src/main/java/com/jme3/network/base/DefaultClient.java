@@ -35,11 +35,13 @@ import com.jme3.network.*;
 import com.jme3.network.ClientStateListener.DisconnectInfo;
 import com.jme3.network.base.protocol.SerializerMessageProtocol;
 import com.jme3.network.kernel.Connector;
+import com.jme3.network.kernel.udp.UdpChannelMode;
 import com.jme3.network.message.ChannelInfoMessage;
 import com.jme3.network.message.ClientRegistrationMessage;
 import com.jme3.network.message.DisconnectMessage;
 import com.jme3.network.service.ClientServiceManager;
 import com.jme3.network.service.serializer.ClientSerializerRegistrationsService;
+import com.jme3.network.stats.NetworkStats;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.*;
@@ -84,7 +86,8 @@ public class DefaultClient implements Client
     private ConnectorFactory connectorFactory;
     
     private ClientServiceManager services;
-    private MessageProtocol protocol = new SerializerMessageProtocol();
+    private final NetworkStats stats = new NetworkStats();
+    private MessageProtocol protocol = new SerializerMessageProtocol(stats);
     
     public DefaultClient( String gameName, int version )
     {
@@ -116,14 +119,21 @@ public class DefaultClient implements Client
             throw new IllegalStateException( "Channels already exist." );
             
         this.connectorFactory = connectorFactory;
-        channels.add(new ConnectorAdapter(reliable, protocol, dispatcher, dispatcher, true));
+        channels.add(createAdapter(reliable, true, CHANNEL_DEFAULT_RELIABLE));
         if( fast != null ) {
-            channels.add(new ConnectorAdapter(fast, protocol, dispatcher, dispatcher, false));
+            channels.add(createAdapter(fast, false, CHANNEL_DEFAULT_UNRELIABLE));
         } else {
             // Add the null adapter to keep the indexes right
             channels.add(null);
         }
     }  
+ 
+    private ConnectorAdapter createAdapter( Connector connector, boolean reliable, int channel )
+    {
+        ConnectorAdapter result = new ConnectorAdapter(connector, protocol, dispatcher, dispatcher, reliable);
+        result.setStats(stats, channel);
+        return result;
+    }
 
     protected void checkRunning()
     {
@@ -229,6 +239,12 @@ public class DefaultClient implements Client
     {
         return services;
     }
+ 
+    @Override
+    public NetworkStats getStats()
+    {
+        return stats;
+    }
    
     @Override
     public void send( Message message )
@@ -430,12 +446,17 @@ public class DefaultClient implements Client
     }
  
     protected void configureChannels( long tempId, int[] ports ) {
+        configureChannels( tempId, ports, new UdpChannelMode[ports.length] );
+    }
+
+    protected void configureChannels( long tempId, int[] ports, UdpChannelMode[] modes ) {
 
         try {               
             for( int i = 0; i < ports.length; i++ ) {
-                Connector c = connectorFactory.createConnector( i, ports[i] );
-                ConnectorAdapter ca = new ConnectorAdapter(c, protocol, dispatcher, dispatcher, true);
+                Connector c = createConnector( i, ports[i], modes[i] );
+                boolean reliable = modes[i] == null || modes[i].isReliable();
                 int ch = channels.size(); 
+                ConnectorAdapter ca = createAdapter(c, reliable, ch - CH_FIRST);
                 channels.add( ca );
                 
                 // Need to send the connection its hook-up registration
@@ -452,6 +473,15 @@ public class DefaultClient implements Client
         }
     }
  
+    protected Connector createConnector( int channel, int port, UdpChannelMode mode ) throws IOException
+    {
+        if( mode == null ) 
+            return connectorFactory.createConnector( channel, port );
+        if( !(connectorFactory instanceof ChannelConnectorFactory) ) 
+            throw new IOException( "Connector factory does not support UDP channels:" + connectorFactory );
+        return ((ChannelConnectorFactory)connectorFactory).createConnector( channel, port, mode );
+    }
+ 
     protected void dispatch( Message m )
     {
         if( log.isLoggable(Level.FINER) ) {
@@ -484,7 +514,12 @@ public class DefaultClient implements Client
         } else if( m instanceof ChannelInfoMessage ) {
             // This is an interum step in the connection process and
             // now we need to add a bunch of connections
-            configureChannels( ((ChannelInfoMessage)m).getId(), ((ChannelInfoMessage)m).getPorts() );
+            ChannelInfoMessage cim = (ChannelInfoMessage)m;
+            UdpChannelMode[] modes = new UdpChannelMode[cim.getPorts().length];
+            for( int i = 0; i < modes.length; i++ ) {
+                modes[i] = cim.getMode(i);
+            }
+            configureChannels( cim.getId(), cim.getPorts(), modes );
             return; 
         } else if( m instanceof DisconnectMessage ) {
             // Can't do too much else yet
@@ -35,16 +35,24 @@ import com.jme3.network.*;
 import com.jme3.network.base.protocol.SerializerMessageProtocol;
 import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.Kernel;
+import com.jme3.network.kernel.NamedThreadFactory;
+import com.jme3.network.kernel.tcp.NioEndpoint;
+import com.jme3.network.kernel.udp.ReliableUdpKernel;
+import com.jme3.network.kernel.udp.UdpChannelMode;
 import com.jme3.network.message.ChannelInfoMessage;
 import com.jme3.network.message.ClientRegistrationMessage;
 import com.jme3.network.message.DisconnectMessage;
 import com.jme3.network.service.HostedServiceManager;
 import com.jme3.network.service.serializer.ServerSerializerRegistrationsService;
+import com.jme3.network.stats.NetworkStats;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -65,16 +73,21 @@ public class DefaultServer implements Server
     private static final int CH_RELIABLE = 0;
     private static final int CH_UNRELIABLE = 1;
     private static final int CH_FIRST = 2;
+
+    public static final int DEFAULT_RELIABLE_BATCH_SIZE = 16384;
+    public static final int DEFAULT_UNRELIABLE_BATCH_SIZE = 1400;
+    public static final long DEFAULT_MAX_BATCH_DELAY = 10;
     
     private boolean isRunning = false;
     private final AtomicInteger nextId = new AtomicInteger(0);
     private String gameName;
     private int version;
-    private final KernelFactory kernelFactory = KernelFactory.DEFAULT;
+    private final KernelFactory kernelFactory;
     private KernelAdapter reliableAdapter;
     private KernelAdapter fastAdapter;
     private final List<KernelAdapter> channels = new ArrayList<KernelAdapter>();
     private final List<Integer> alternatePorts = new ArrayList<Integer>();
+    private final List<UdpChannelMode> alternateModes = new ArrayList<UdpChannelMode>();
     private final Redispatch dispatcher = new Redispatch();
     private final Map<Integer,HostedConnection> connections = new ConcurrentHashMap<Integer,HostedConnection>();
     private final Map<Endpoint,HostedConnection> endpointConnections 
@@ -89,15 +102,43 @@ public class DefaultServer implements Server
     private final List<ConnectionListener> connectionListeners = new CopyOnWriteArrayList<ConnectionListener>();
     
     private HostedServiceManager services;
-    private MessageProtocol protocol = new SerializerMessageProtocol();
+    private final NetworkStats stats = new NetworkStats();
+    private MessageProtocol protocol = new SerializerMessageProtocol(stats);
+
+    /**
+     *  Per-thread scratch space for serializing messages that the
+     *  kernels or batches copy anyway, so the buffer can be reused
+     *  right after the send or broadcast call returns.
+     */
+    private final ThreadLocal<ByteBuffer> scratchBuffer = new ThreadLocal<ByteBuffer>();
+
+    private boolean batching = false;
+    private int reliableBatchSize = DEFAULT_RELIABLE_BATCH_SIZE;
+    private int unreliableBatchSize = DEFAULT_UNRELIABLE_BATCH_SIZE;
+    private long maxBatchDelay = DEFAULT_MAX_BATCH_DELAY;
+    private ScheduledExecutorService batchFlusher;
     
     public DefaultServer( String gameName, int version, Kernel reliable, Kernel fast )
+    {
+        this( gameName, version, reliable, fast, KernelFactory.DEFAULT );
+    }
+
+    /**
+     *  Creates a server that uses the specified factory to create the
+     *  kernels of any channels added with addChannel().
+     */
+    public DefaultServer( String gameName, int version, Kernel reliable, Kernel fast,
+                          KernelFactory kernelFactory )
     {
         if( reliable == null )
             throw new IllegalArgumentException( "Default server reqiures a reliable kernel instance." );
             
+        if( kernelFactory == null )
+            throw new IllegalArgumentException( "Kernel factory cannot be null." );
+
         this.gameName = gameName;
         this.version = version;
+        this.kernelFactory = kernelFactory;
         this.services = new HostedServiceManager(this);        
         addStandardServices();
         
@@ -134,6 +175,17 @@ public class DefaultServer implements Server
 
     @Override
     public int addChannel( int port )
+    {
+        return addChannel( port, null );
+    }
+
+    /**
+     *  Adds a channel like addChannel(int) that is hosted over UDP with
+     *  the delivery guarantees of the specified mode, or over TCP if the
+     *  mode is null.  Clients learn about the mode when they connect.
+     *  Messages received on a Sequenced channel are marked unreliable.
+     */
+    public int addChannel( int port, UdpChannelMode mode )
     {
         if( isRunning )
             throw new IllegalStateException( "Channels cannot be added once server is started." );
@@ -152,10 +204,13 @@ public class DefaultServer implements Server
             
         try {                                
             int result = alternatePorts.size(); 
-            alternatePorts.add(port);
             
-            Kernel kernel = kernelFactory.createKernel(result, port); 
-            channels.add( new KernelAdapter(this, kernel, protocol, dispatcher, true) );
+            Kernel kernel = mode == null ? kernelFactory.createKernel(result, port)
+                                         : createUdpChannelKernel(result, port, mode); 
+            alternatePorts.add(port);
+            alternateModes.add(mode);
+            boolean reliable = mode == null || mode.isReliable();
+            channels.add( new KernelAdapter(this, kernel, protocol, dispatcher, reliable) );
             
             return result;
         } catch( IOException e ) {
@@ -163,6 +218,107 @@ public class DefaultServer implements Server
         } 
     } 
 
+    /**
+     *  Turns on per-connection message batching.  When enabled, the messages
+     *  sent to a connection are accumulated per channel and written as a
+     *  single packet when flush() is called, when a batch fills up, or at
+     *  the latest after the max batch delay.  Receivers need no special
+     *  support since batches are just consecutive regular messages.
+     *  Must be set before the server is started.
+     */
+    public void setMessageBatching( boolean batching )
+    {
+        if( isRunning )
+            throw new IllegalStateException( "Batching cannot be changed once server is started." );
+        this.batching = batching;
+    }
+
+    public boolean isMessageBatching()
+    {
+        return batching;
+    }
+
+    /**
+     *  Sets the longest time in milliseconds that a batched message may
+     *  wait before it is flushed automatically.  A value of 0 disables
+     *  the automatic flushing, the application then has to call flush()
+     *  every tick.  Must be set before the server is started.
+     */
+    public void setMaxBatchDelay( long millis )
+    {
+        if( isRunning )
+            throw new IllegalStateException( "Batch delay cannot be changed once server is started." );
+        if( millis < 0 )
+            throw new IllegalArgumentException( "Delay cannot be negative:" + millis );
+        this.maxBatchDelay = millis;
+    }
+
+    public long getMaxBatchDelay()
+    {
+        return maxBatchDelay;
+    }
+
+    /**
+     *  Sets the maximum size of a batch for reliable and unreliable channels.
+     *  The unreliable size should stay below the network MTU so that each
+     *  batch still fits in a single datagram.  Must be set before the server
+     *  is started.
+     */
+    public void setBatchSizes( int reliableBatchSize, int unreliableBatchSize )
+    {
+        if( isRunning )
+            throw new IllegalStateException( "Batch sizes cannot be changed once server is started." );
+        if( reliableBatchSize <= 0 || unreliableBatchSize <= 0 )
+            throw new IllegalArgumentException( "Batch sizes must be positive." );
+        this.reliableBatchSize = reliableBatchSize;
+        this.unreliableBatchSize = unreliableBatchSize;
+    }
+
+    public int getReliableBatchSize()
+    {
+        return reliableBatchSize;
+    }
+
+    public int getUnreliableBatchSize()
+    {
+        return unreliableBatchSize;
+    }
+
+    /**
+     *  Sends any batched messages of all connections.  Applications that
+     *  enable batching will generally call this once at the end of each
+     *  tick.  Does nothing if batching is not enabled.
+     */
+    public void flush()
+    {
+        if( !batching )
+            return;
+        for( HostedConnection conn : connections.values() ) {
+            ((Connection)conn).flush();
+        }
+    }
+
+    protected void flushExpiredBatches()
+    {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(maxBatchDelay);
+        for( HostedConnection conn : connections.values() ) {
+            try {
+                ((Connection)conn).flushIfOlder(nanos);
+            } catch( RuntimeException e ) {
+                // Most likely the connection closed under us
+                log.log( Level.FINE, "Error flushing batch for:" + conn, e );
+            }
+        }
+    }
+
+    /**
+     *  Creates the kernel for a channel added with a UDP mode.
+     */
+    protected Kernel createUdpChannelKernel( int channel, int port, UdpChannelMode mode ) throws IOException
+    {
+        return new ReliableUdpKernel(port, mode);
+    }
+
     protected void checkChannel( int channel )
     {
         if( channel < MessageConnection.CHANNEL_DEFAULT_RELIABLE 
@@ -188,6 +344,19 @@ public class DefaultServer implements Server
         }
         
         isRunning = true;
+
+        if( batching && maxBatchDelay > 0 ) {
+            long period = Math.max(1, maxBatchDelay / 2);
+            batchFlusher = Executors.newSingleThreadScheduledExecutor(
+                                new NamedThreadFactory("DefaultServer-batchFlusher", true));
+            batchFlusher.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        flushExpiredBatches();
+                    }
+                }, period, period, TimeUnit.MILLISECONDS);
+        }
         
         // Start the services
         services.start();             
@@ -208,6 +377,11 @@ public class DefaultServer implements Server
         // First stop the services since we are about to
         // kill the connections they are using
         services.stop();
+
+        if( batchFlusher != null ) {
+            batchFlusher.shutdownNow();
+            batchFlusher = null;
+        }
  
         try {
             // Kill the adpaters, they will kill the kernels
@@ -240,19 +414,122 @@ public class DefaultServer implements Server
         if( connections.isEmpty() )
             return;
  
-        ByteBuffer buffer = protocol.toByteBuffer(message, null);
+        if( batching ) {
+            boolean reliable = message.isReliable() || fastAdapter == null;
+            batchBroadcast( filter, reliable ? CH_RELIABLE : CH_UNRELIABLE, message );
+            return;
+        }
+
+        ByteBuffer buffer = serialize(message);
+        boolean reliable = message.isReliable() || fastAdapter == null;
+
+        if( filter instanceof CandidateFilter ) {
+            candidateBroadcast( filter, reliable ? reliableAdapter : fastAdapter,
+                                reliable ? CH_RELIABLE : CH_UNRELIABLE,
+                                reliable ? MessageConnection.CHANNEL_DEFAULT_RELIABLE 
+                                         : MessageConnection.CHANNEL_DEFAULT_UNRELIABLE,
+                                buffer, reliable );
+            return;
+        }
  
-        FilterAdapter adapter = filter == null ? null : new FilterAdapter(filter);
+        // Always adapt the filter so that the per connection
+        // stats see each delivery
+        FilterAdapter adapter = new FilterAdapter(filter, 
+                                                  reliable ? MessageConnection.CHANNEL_DEFAULT_RELIABLE 
+                                                           : MessageConnection.CHANNEL_DEFAULT_UNRELIABLE,
+                                                  buffer.remaining());
                
-        if( message.isReliable() || fastAdapter == null ) {
-            // Don't need to copy the data because message protocol is already
-            // giving us a fresh buffer
-            reliableAdapter.broadcast( adapter, buffer, true, false );
+        // The kernels copy the data once and share that copy between
+        // all of the endpoints
+        if( reliable ) {
+            reliableAdapter.broadcast( adapter, buffer, true, true );
         } else {
-            fastAdapter.broadcast( adapter, buffer, false, false );
+            fastAdapter.broadcast( adapter, buffer, false, true );
         }               
     }
 
+    /**
+     *  Serializes the message into this thread's scratch buffer.  The
+     *  result is only valid until the next call on the same thread.
+     */
+    protected ByteBuffer serialize( Message message )
+    {
+        ByteBuffer buffer = scratchBuffer.get();
+        if( buffer == null ) {
+            // The size prefix is a signed short, so the receivers cannot
+            // read anything larger than this
+            buffer = ByteBuffer.allocate( 32767 + 2 );
+            scratchBuffer.set(buffer);
+        }
+        buffer.clear();
+        return protocol.toByteBuffer(message, buffer);
+    }
+
+    /**
+     *  Sends already serialized message data to the connections accepted
+     *  by a CandidateFilter.  Only the candidates are tested against the
+     *  filter and the kernel shares a single copy of the data between 
+     *  their endpoints, like it does for any other broadcast.  Each 
+     *  connection receives the message once, even if the filter lists 
+     *  it more than once.
+     */
+    protected void candidateBroadcast( Filter<? super HostedConnection> filter, KernelAdapter adapter,
+                                       int channel, int statsChannel, ByteBuffer buffer, 
+                                       boolean reliable )
+    {
+        List<Endpoint> endpoints = new ArrayList<Endpoint>();
+        Set<Connection> visited = Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>());
+        for( Object o : ((CandidateFilter<?>)filter).getCandidates() ) {
+            if( !(o instanceof Connection) )
+                continue;
+            Connection conn = (Connection)o;
+            if( !visited.add(conn) )
+                continue;
+            if( connections.get(conn.getId()) != conn || !filter.apply(conn) )
+                continue;
+            Endpoint p = conn.channels[channel];
+            if( p == null )
+                continue;
+            conn.getStats().recordSent(statsChannel, 1, buffer.remaining());
+            endpoints.add(p);
+        }
+        if( endpoints.isEmpty() )
+            return;
+        adapter.send( endpoints, buffer, reliable, true );
+    }
+
+    /**
+     *  Delivers the message to the filtered connections one connection
+     *  at a time, either through their batches or sent directly.  For a
+     *  CandidateFilter only its candidates are considered instead of
+     *  every connection, and each of them only once.
+     */
+    protected void batchBroadcast( Filter<? super HostedConnection> filter, int channel, Message message )
+    {
+        // Serialize once and let each connection's batch copy
+        // the bytes
+        ByteBuffer buffer = serialize(message);
+        if( filter instanceof CandidateFilter ) {
+            Set<Connection> visited = Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>());
+            for( Object o : ((CandidateFilter<?>)filter).getCandidates() ) {
+                if( !(o instanceof Connection) )
+                    continue;
+                Connection conn = (Connection)o;
+                if( !visited.add(conn) )
+                    continue;
+                if( connections.get(conn.getId()) != conn || !filter.apply(conn) )
+                    continue;
+                conn.batch(channel, buffer);
+            }
+            return;
+        }
+        for( HostedConnection conn : connections.values() ) {
+            if( filter != null && !filter.apply(conn) )
+                continue;
+            ((Connection)conn).batch(channel, buffer);
+        }
+    }
+
     @Override
     public void broadcast( int channel, Filter<? super HostedConnection> filter, Message message )
     {
@@ -264,12 +541,29 @@ public class DefaultServer implements Server
             return;
 
         checkChannel(channel);
+
+        if( batching ) {
+            batchBroadcast( filter, channel + CH_FIRST, message );
+            return;
+        }
         
-        ByteBuffer buffer = protocol.toByteBuffer(message, null);
+        ByteBuffer buffer = serialize(message);
+
+        if( filter instanceof CandidateFilter ) {
+            candidateBroadcast( filter, channels.get(channel+CH_FIRST), channel + CH_FIRST, channel,
+                                buffer, true );
+            return;
+        }
  
-        FilterAdapter adapter = filter == null ? null : new FilterAdapter(filter);
+        FilterAdapter adapter = new FilterAdapter(filter, channel, buffer.remaining());
+
+        channels.get(channel+CH_FIRST).broadcast( adapter, buffer, true, true );               
+    }
 
-        channels.get(channel+CH_FIRST).broadcast( adapter, buffer, true, false );               
+    @Override
+    public NetworkStats getStats()
+    {
+        return stats;
     }
 
     @Override
@@ -408,13 +702,16 @@ public class DefaultServer implements Server
                 
                 // Else send the extra channel information to the client
                 if( !alternatePorts.isEmpty() ) {
-                    ChannelInfoMessage cim = new ChannelInfoMessage( m.getId(), alternatePorts );
+                    ChannelInfoMessage cim = new ChannelInfoMessage( m.getId(), alternatePorts, alternateModes );
                     c.send(cim);
                 }
             }
 
             if( c.isComplete() ) {             
                 // Then we are fully connected
+                if( batching ) {
+                    c.enableBatching();
+                }
                 if( connections.put( c.getId(), c ) == null ) {
                 
                     for( Endpoint cp : c.channels ) {
@@ -454,6 +751,9 @@ public class DefaultServer implements Server
             m.setId(-1);
             m.setReliable(true);
             addedConnection.send(m);            
+            
+            // No reason to make the client wait for those
+            addedConnection.flush();            
         }            
     }
 
@@ -522,6 +822,8 @@ public class DefaultServer implements Server
         private boolean closed;
         private Endpoint[] channels;
         private int setChannelCount = 0; 
+        private volatile MessageBatch[] batches;
+        private final NetworkStats connectionStats = new NetworkStats(stats);
        
         private final Map<String,Object> sessionData = new ConcurrentHashMap<String,Object>();       
         
@@ -550,12 +852,71 @@ public class DefaultServer implements Server
             channels[channel] = p;
             if( p != null )
                 setChannelCount++;
+            if( p instanceof NioEndpoint )
+                connectionStats.setOutboundQueue(channel - CH_FIRST, ((NioEndpoint)p).getOutboundQueue());
         }
         
         boolean isComplete()
         {
             return setChannelCount == channels.length;
         }
+
+        void enableBatching()
+        {
+            MessageBatch[] result = new MessageBatch[channels.length];
+            for( int i = 0; i < channels.length; i++ ) {
+                if( channels[i] == null )
+                    continue;
+                boolean unreliable = i == CH_UNRELIABLE 
+                                     || (i >= CH_FIRST && alternateModes.get(i - CH_FIRST) == UdpChannelMode.Sequenced);
+                int size = unreliable ? unreliableBatchSize : reliableBatchSize;
+                result[i] = new MessageBatch(channels[i], size);
+            }
+            batches = result;
+        }
+
+        /**
+         *  Adds already serialized message data to the batch of the
+         *  specified internal channel or sends it right away if this
+         *  connection isn't batching.
+         */
+        void batch( int channel, ByteBuffer data )
+        {
+            connectionStats.recordSent(channel - CH_FIRST, 1, data.remaining());
+            MessageBatch[] current = batches;
+            if( current == null || current[channel] == null ) {
+                byte[] copy = new byte[data.remaining()];
+                data.duplicate().get(copy);
+                channels[channel].send(ByteBuffer.wrap(copy));
+                return;
+            }
+            current[channel].add(data);
+        }
+
+        /**
+         *  Sends any messages batched for this connection.
+         */
+        public void flush()
+        {
+            MessageBatch[] current = batches;
+            if( current == null || closed )
+                return;
+            for( MessageBatch b : current ) {
+                if( b != null )
+                    b.flush();
+            }
+        }
+
+        void flushIfOlder( long nanos )
+        {
+            MessageBatch[] current = batches;
+            if( current == null || closed )
+                return;
+            for( MessageBatch b : current ) {
+                if( b != null )
+                    b.flushIfOlder(nanos);
+            }
+        }
  
         @Override
         public Server getServer()
@@ -581,12 +942,15 @@ public class DefaultServer implements Server
             if( log.isLoggable(Level.FINER) ) {
                 log.log(Level.FINER, "send({0})", message);
             }
-            ByteBuffer buffer = protocol.toByteBuffer(message, null);
-            if( message.isReliable() || channels[CH_UNRELIABLE] == null ) {
-                channels[CH_RELIABLE].send( buffer );
-            } else {
-                channels[CH_UNRELIABLE].send( buffer );
+            int channel = message.isReliable() || channels[CH_UNRELIABLE] == null 
+                            ? CH_RELIABLE : CH_UNRELIABLE;
+            if( batches != null ) {
+                batch( channel, serialize(message) );
+                return;
             }
+            ByteBuffer buffer = protocol.toByteBuffer(message, null);
+            connectionStats.recordSent(channel - CH_FIRST, 1, buffer.remaining());
+            channels[channel].send( buffer );
         }
 
         @Override
@@ -596,7 +960,12 @@ public class DefaultServer implements Server
                 log.log(Level.FINER, "send({0}, {1})", new Object[]{channel, message});
             }
             checkChannel(channel);
+            if( batches != null ) {
+                batch( channel+CH_FIRST, serialize(message) );
+                return;
+            }
             ByteBuffer buffer = protocol.toByteBuffer(message, null);
+            connectionStats.recordSent(channel, 1, buffer.remaining());
             channels[channel+CH_FIRST].send(buffer);
         }
  
@@ -627,6 +996,7 @@ public class DefaultServer implements Server
             m.setReason( reason );
             m.setReliable( true );
             send( m );
+            flush();
             
             // Just close the reliable endpoint
             // fast will be cleaned up as a side-effect
@@ -639,6 +1009,21 @@ public class DefaultServer implements Server
             }
         }
         
+        @Override
+        public NetworkStats getStats()
+        {
+            return connectionStats;
+        }
+
+        /**
+         *  Records the messages received through the specified
+         *  internal channel.
+         */
+        void recordReceived( int channel, int messages, int bytes )
+        {
+            connectionStats.recordReceived(channel - CH_FIRST, messages, bytes);
+        }
+ 
         @Override
         public Object setAttribute( String name, Object value )
         {
@@ -680,10 +1065,24 @@ public class DefaultServer implements Server
     protected class FilterAdapter implements Filter<Endpoint>
     {
         private final Filter<? super HostedConnection> delegate;
+        private final int channel;
+        private final int bytes;
         
         public FilterAdapter( Filter<? super HostedConnection> delegate )
+        {
+            this(delegate, 0, -1);
+        }
+ 
+        /**
+         *  Creates an adapter that also records a sent message of the
+         *  specified size on the stats of each accepted connection.  The
+         *  delegate can be null to accept every connection.
+         */
+        public FilterAdapter( Filter<? super HostedConnection> delegate, int channel, int bytes )
         {
             this.delegate = delegate;
+            this.channel = channel;
+            this.bytes = bytes;
         }
         
         @Override
@@ -691,8 +1090,12 @@ public class DefaultServer implements Server
         {
             HostedConnection conn = getConnection( input );
             if( conn == null )
+                return delegate == null;
+            if( delegate != null && !delegate.apply(conn) )
                 return false;
-            return delegate.apply(conn);
+            if( bytes >= 0 )
+                conn.getStats().recordSent(channel, 1, bytes);
+            return true;
         } 
     }     
 }
@@ -41,6 +41,7 @@ import com.jme3.network.kernel.Envelope;
 import com.jme3.network.kernel.Kernel;
 import com.jme3.network.message.ClientRegistrationMessage;
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -80,6 +81,10 @@ public class KernelAdapter extends Thread
     // Marks the messages as reliable or not if they came
     // through this connector.
     private boolean reliable;
+ 
+    // The index of this adapter in the server's channels, looked up
+    // on first use
+    private int channel = -1;
     
     public KernelAdapter( DefaultServer server, Kernel kernel, MessageProtocol protocol, MessageListener<HostedConnection> messageDispatcher,
                           boolean reliable )
@@ -108,6 +113,12 @@ public class KernelAdapter extends Thread
     {
         kernel.broadcast( filter, data, reliable, copy );
     }                           
+
+    public void send( Collection<? extends Endpoint> endpoints, ByteBuffer data, boolean reliable, 
+                      boolean copy )
+    {
+        kernel.send( endpoints, data, reliable, copy );
+    }
  
     public void close() throws InterruptedException
     {
@@ -238,12 +249,29 @@ public class KernelAdapter extends Thread
         
         // Should be complete... and maybe we should check but we don't
         Message m = null;
+        int count = 0;
         while( (m = protocol.pollMessage()) != null ) {
             m.setReliable(reliable);
             dispatch(env.getSource(), m);
+            count++;
+        }
+        
+        // Traffic is only counted once the endpoint belongs to a
+        // fully registered connection
+        HostedConnection conn = getConnection(env.getSource());
+        if( conn instanceof DefaultServer.Connection ) {
+            ((DefaultServer.Connection)conn).recordReceived(getChannel(), count, data.length);
         }
     } 
 
+    private int getChannel()
+    {
+        if( channel < 0 ) {
+            channel = server.getChannel(this);
+        }
+        return channel;
+    }
+
     protected void createAndDispatch( EndpointEvent event )
     {
         // Only need to tell the server about disconnects 
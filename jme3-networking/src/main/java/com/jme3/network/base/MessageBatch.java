@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.base;
+
+import com.jme3.network.kernel.Endpoint;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ *  Coalesces the already framed messages sent to one endpoint into
+ *  a single buffer that is handed to the endpoint in one send() call
+ *  when flushed.  Since every message keeps its own length prefix, the
+ *  receiving MessageBuffer unpacks a batch exactly like any other run
+ *  of bytes and no protocol changes are needed on the other end.
+ *
+ *  <p>A batch never grows beyond its maximum size.  Adding a message
+ *  that doesn't fit flushes the batch first and a message that is
+ *  larger than the maximum size on its own is sent by itself.  For
+ *  unreliable endpoints the maximum size should stay below the MTU so
+ *  that a batch still fits in one datagram.</p>
+ *
+ *  @version   $Revision$
+ */
+public class MessageBatch
+{
+    private final Endpoint endpoint;
+    private final ByteBuffer pending;
+    private long firstMessageTime;
+
+    public MessageBatch( Endpoint endpoint, int maxSize )
+    {
+        if( endpoint == null )
+            throw new IllegalArgumentException( "Endpoint cannot be null." );
+        this.endpoint = endpoint;
+        this.pending = ByteBuffer.allocate(maxSize);
+    }
+
+    public Endpoint getEndpoint()
+    {
+        return endpoint;
+    }
+
+    /**
+     *  Appends the remaining bytes of the framed message data to
+     *  this batch.  The data is copied so the caller can reuse the buffer.
+     */
+    public synchronized void add( ByteBuffer data )
+    {
+        if( data.remaining() > pending.remaining() ) {
+            flush();
+            if( data.remaining() > pending.capacity() ) {
+                // Too big to batch at all
+                endpoint.send( copy(data.array(), data.position(), data.remaining()) );
+                return;
+            }
+        }
+
+        if( pending.position() == 0 ) {
+            firstMessageTime = System.nanoTime();
+        }
+        pending.put( data.array(), data.position(), data.remaining() );
+    }
+
+    /**
+     *  Sends everything accumulated so far as a single buffer.
+     *  Returns false if there was nothing to send.
+     */
+    public synchronized boolean flush()
+    {
+        if( pending.position() == 0 )
+            return false;
+
+        ByteBuffer data = copy(pending.array(), 0, pending.position());
+        pending.clear();
+        endpoint.send(data);
+        return true;
+    }
+
+    /**
+     *  Flushes this batch if its oldest message has been waiting
+     *  for at least the specified number of nanoseconds.
+     */
+    public synchronized boolean flushIfOlder( long nanos )
+    {
+        if( pending.position() == 0 || System.nanoTime() - firstMessageTime < nanos )
+            return false;
+        return flush();
+    }
+
+    /**
+     *  Returns the number of bytes currently waiting in this batch.
+     */
+    public synchronized int getPendingBytes()
+    {
+        return pending.position();
+    }
+
+    private static ByteBuffer copy( byte[] array, int offset, int length )
+    {
+        // Endpoints are free to hold on to the array, UDP does, so
+        // each send gets its own exactly sized copy
+        return ByteBuffer.wrap(Arrays.copyOfRange(array, offset, offset + length));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MessageBatch[" + endpoint + ", pending=" + getPendingBytes() + "]";
+    }
+}
@@ -32,22 +32,48 @@
 package com.jme3.network.base;
 
 import com.jme3.network.kernel.Kernel;
+import com.jme3.network.kernel.tcp.MultiSelectorKernel;
 import com.jme3.network.kernel.tcp.SelectorKernel;
 import java.io.IOException;
 
 
 /**
  *  KernelFactory implementation for creating TCP kernels
- *  using the NIO selector model.
+ *  using the NIO selector model.  By default the kernels use
+ *  a single selector thread, when created with a number of I/O
+ *  threads they use a MultiSelectorKernel instead.
  *
  *  @version   $Revision$
  *  @author    Paul Speed
  */
 public class NioKernelFactory implements KernelFactory
 {
+    private final int ioThreads;
+    private final MultiSelectorKernel.Balancing balancing;
+
+    public NioKernelFactory()
+    {
+        this( 0, MultiSelectorKernel.Balancing.LeastLoaded );
+    }
+
+    /**
+     *  Creates a factory for kernels that accept connections on one
+     *  thread and distribute them over the specified number of I/O
+     *  threads.  0 creates single threaded kernels.
+     */
+    public NioKernelFactory( int ioThreads, MultiSelectorKernel.Balancing balancing )
+    {
+        if( ioThreads < 0 )
+            throw new IllegalArgumentException( "Number of I/O threads cannot be negative." );
+        this.ioThreads = ioThreads;
+        this.balancing = balancing;
+    }
+
     @Override
     public Kernel createKernel( int channel, int port ) throws IOException
     {
+        if( ioThreads > 0 )
+            return new MultiSelectorKernel(port, ioThreads, balancing);
         return new SelectorKernel(port);
     }
 }
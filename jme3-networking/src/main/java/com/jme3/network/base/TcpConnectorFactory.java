@@ -33,17 +33,21 @@ package com.jme3.network.base;
 
 import com.jme3.network.kernel.Connector;
 import com.jme3.network.kernel.tcp.SocketConnector;
+import com.jme3.network.kernel.udp.ReliableUdpConnector;
+import com.jme3.network.kernel.udp.UdpChannelMode;
 import java.io.IOException;
 import java.net.InetAddress;
 
 
 /**
  *  Creates TCP connectors to a specific remote address.  
+ *  Channels that the server hosts over UDP get a ReliableUdpConnector
+ *  to the same address.
  *
  *  @version   $Revision$
  *  @author    Paul Speed
  */
-public class TcpConnectorFactory implements ConnectorFactory
+public class TcpConnectorFactory implements ChannelConnectorFactory
 {
     private InetAddress remoteAddress;
     
@@ -57,4 +61,12 @@ public class TcpConnectorFactory implements ConnectorFactory
     {
         return new SocketConnector( remoteAddress, port );        
     }    
+
+    @Override
+    public Connector createConnector( int channel, int port, UdpChannelMode mode ) throws IOException
+    {
+        if( mode == null )
+            return createConnector( channel, port );
+        return new ReliableUdpConnector( remoteAddress, port, mode );
+    }
 }
@@ -39,6 +39,7 @@ import com.jme3.network.Message;
 import com.jme3.network.base.MessageBuffer;
 import com.jme3.network.base.MessageProtocol;
 import com.jme3.network.serializing.Serializer;
+import com.jme3.network.stats.NetworkStats;
 
 /**
  *  Implements a MessageProtocol providing message serializer/deserialization
@@ -48,12 +49,31 @@ import com.jme3.network.serializing.Serializer;
  *  where two bytes represent the (short) length of the data
  *  and the rest is the raw data for the Serializers class.</p>
  *
+ *  <p>When created with a NetworkStats object, the size of each message
+ *  and the time it took to serialize or deserialize it are recorded
+ *  per message type.</p>
+ *
  *  @version   $Revision$
  *  @author    Paul Speed
  */ 
 public class SerializerMessageProtocol implements MessageProtocol {
  
+    private final NetworkStats stats;
+ 
     public SerializerMessageProtocol() {
+        this(null);
+    }
+ 
+    public SerializerMessageProtocol( NetworkStats stats ) {
+        this.stats = stats;
+    }
+ 
+    /**
+     *  Returns the stats that this protocol records its serialization
+     *  timings to or null if it doesn't record any.
+     */
+    public NetworkStats getStats() {
+        return stats;
     }
  
     /**
@@ -68,6 +88,7 @@ public class SerializerMessageProtocol implements MessageProtocol {
         ByteBuffer buffer = target == null ? ByteBuffer.allocate(32767 + 2) : target;
         
         try {
+            long start = stats == null ? 0 : System.nanoTime();
             buffer.position(2);
             Serializer.writeClassAndObject(buffer, message);
             buffer.flip();
@@ -75,6 +96,9 @@ public class SerializerMessageProtocol implements MessageProtocol {
             buffer.putShort(dataLength);
             buffer.position(0);
             
+            if( stats != null ) {
+                stats.recordSerialized(message.getClass(), buffer.remaining(), System.nanoTime() - start);
+            }
             return buffer;
         } catch( IOException e ) {
             throw new RuntimeException("Error serializing message", e);
@@ -88,7 +112,16 @@ public class SerializerMessageProtocol implements MessageProtocol {
     @Override
     public Message toMessage( ByteBuffer bytes ) {
         try {
-            return (Message)Serializer.readClassAndObject(bytes);
+            if( stats == null ) {
+                return (Message)Serializer.readClassAndObject(bytes);
+            }
+            long start = System.nanoTime();
+            int size = bytes.remaining() + 2;
+            Message result = (Message)Serializer.readClassAndObject(bytes);
+            if( result != null ) {
+                stats.recordDeserialized(result.getClass(), size, System.nanoTime() - start);
+            }
+            return result;
         } catch( IOException e ) {
             throw new RuntimeException("Error deserializing object, class ID:" + bytes.getShort(0), e);   
         }         
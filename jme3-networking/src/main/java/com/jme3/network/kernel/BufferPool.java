@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  A thread safe pool of direct ByteBuffers handed out as reference
+ *  counted PooledBuffers.  Buffers are grouped in power of two size
+ *  classes from MIN_SIZE up to the configured maximum size.  Requests
+ *  larger than the maximum get a plain direct buffer that is simply
+ *  dropped when released.
+ *
+ *  <p>Each size class keeps at most a fixed number of free buffers
+ *  around.  Buffers released beyond that count, or never released at
+ *  all, are left to the garbage collector like any other direct
+ *  buffer so a leaked reference can not exhaust the pool.</p>
+ *
+ *  @version   $Revision$
+ */
+public class BufferPool
+{
+    public static final int MIN_SIZE = 256;
+    public static final int DEFAULT_MAX_SIZE = 65536;
+    public static final int DEFAULT_MAX_FREE = 64;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+
+    private final int maxSize;
+    private final int maxFree;
+    private final ConcurrentLinkedQueue<PooledBuffer>[] free;
+    private final AtomicInteger[] freeCounts;
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    public BufferPool()
+    {
+        this( DEFAULT_MAX_SIZE, DEFAULT_MAX_FREE );
+    }
+
+    /**
+     *  Creates a pool that recycles buffers up to maxSize bytes, keeping
+     *  at most maxFree free buffers per size class.
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool( int maxSize, int maxFree )
+    {
+        if( maxSize < MIN_SIZE )
+            throw new IllegalArgumentException( "Maximum size must be at least " + MIN_SIZE + ":" + maxSize );
+        if( maxFree < 0 )
+            throw new IllegalArgumentException( "Maximum free count cannot be negative:" + maxFree );
+
+        this.maxSize = Integer.highestOneBit(maxSize - 1) << 1;
+        this.maxFree = maxFree;
+
+        int classes = sizeClass(this.maxSize) + 1;
+        this.free = new ConcurrentLinkedQueue[classes];
+        this.freeCounts = new AtomicInteger[classes];
+        for( int i = 0; i < classes; i++ ) {
+            free[i] = new ConcurrentLinkedQueue<PooledBuffer>();
+            freeCounts[i] = new AtomicInteger();
+        }
+    }
+
+    private static int sizeClass( int size )
+    {
+        if( size <= MIN_SIZE )
+            return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    /**
+     *  Returns a buffer with a reference count of one whose ByteBuffer
+     *  is cleared and limited to the requested size.
+     */
+    public PooledBuffer acquire( int size )
+    {
+        if( size < 0 )
+            throw new IllegalArgumentException( "Size cannot be negative:" + size );
+
+        if( size > maxSize ) {
+            allocated.incrementAndGet();
+            return new PooledBuffer(null, -1, ByteBuffer.allocateDirect(size));
+        }
+
+        int index = sizeClass(size);
+        PooledBuffer result = free[index].poll();
+        if( result != null ) {
+            freeCounts[index].decrementAndGet();
+            reused.incrementAndGet();
+        } else {
+            allocated.incrementAndGet();
+            result = new PooledBuffer(this, index, ByteBuffer.allocateDirect(MIN_SIZE << index));
+        }
+        result.reset(size);
+        return result;
+    }
+
+    /**
+     *  Convenience method that acquires a buffer just big enough for
+     *  the remaining bytes of data and copies them into it.  The position
+     *  of data is not changed.
+     */
+    public PooledBuffer copyOf( ByteBuffer data )
+    {
+        PooledBuffer result = acquire(data.remaining());
+        ByteBuffer buffer = result.getBuffer();
+        buffer.put(data.duplicate());
+        buffer.flip();
+        return result;
+    }
+
+    /**
+     *  Called by PooledBuffer when its last reference is released.
+     */
+    void recycle( PooledBuffer buffer, int index )
+    {
+        if( freeCounts[index].incrementAndGet() > maxFree ) {
+            freeCounts[index].decrementAndGet();
+            return;
+        }
+        free[index].add(buffer);
+    }
+
+    /**
+     *  Returns the number of direct buffers this pool has allocated
+     *  over its lifetime.
+     */
+    public long getAllocatedCount()
+    {
+        return allocated.get();
+    }
+
+    /**
+     *  Returns the number of acquire() calls that were served from
+     *  a previously released buffer.
+     */
+    public long getReusedCount()
+    {
+        return reused.get();
+    }
+
+    /**
+     *  Returns the number of buffers currently waiting to be reused.
+     */
+    public int getFreeCount()
+    {
+        int result = 0;
+        for( AtomicInteger count : freeCounts )
+            result += count.get();
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BufferPool[maxSize=" + maxSize + ", allocated=" + allocated
+                + ", reused=" + reused + ", free=" + getFreeCount() + "]";
+    }
+}
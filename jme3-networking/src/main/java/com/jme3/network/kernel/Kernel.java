@@ -33,6 +33,10 @@ package com.jme3.network.kernel;
 
 import com.jme3.network.Filter;
 import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 /**
  *  Defines the basic byte[] passing messaging
@@ -73,6 +77,29 @@ public interface Kernel
      */ 
     public void broadcast( Filter<? super Endpoint> filter, ByteBuffer data, boolean reliable, 
                            boolean copy );
+
+    /**
+     *  Dispatches the data to the specified endpoints of this kernel,
+     *  the same way broadcast() does for the endpoints matching a filter.
+     *  Endpoints that do not belong to this kernel are skipped and
+     *  endpoints listed more than once receive the data once.  The 
+     *  default implementation broadcasts with a filter accepting only 
+     *  the specified endpoints, kernels that can reach their endpoints
+     *  directly should override it to avoid visiting every endpoint.
+     */
+    public default void send( Collection<? extends Endpoint> endpoints, ByteBuffer data, 
+                              boolean reliable, boolean copy )
+    {
+        final Set<Endpoint> targets = Collections.newSetFromMap(new IdentityHashMap<Endpoint, Boolean>());
+        targets.addAll(endpoints);
+        broadcast( new Filter<Endpoint>() {
+                @Override
+                public boolean apply( Endpoint input )
+                {
+                    return targets.contains(input);
+                }
+            }, data, reliable, copy );
+    }
  
     /**
      *  Returns true if there are waiting envelopes.
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  A reference counted direct ByteBuffer obtained from a BufferPool.
+ *  The buffer is returned to its pool when the last reference is
+ *  released.  Code that wants to share the data, for example a kernel
+ *  queuing the same broadcast for several endpoints, retains the buffer
+ *  once per user and hands each of them its own view().
+ *
+ *  <p>The contents must not be modified once the buffer is shared.
+ *  Accessing the buffer after its last release is an error, as it may
+ *  already hold someone else's data.</p>
+ *
+ *  @version   $Revision$
+ */
+public class PooledBuffer
+{
+    private final BufferPool pool;
+    private final int sizeClass;
+    private final ByteBuffer buffer;
+    private final AtomicInteger refs = new AtomicInteger();
+
+    PooledBuffer( BufferPool pool, int sizeClass, ByteBuffer buffer )
+    {
+        this.pool = pool;
+        this.sizeClass = sizeClass;
+        this.buffer = buffer;
+        this.refs.set(1);
+    }
+
+    void reset( int size )
+    {
+        buffer.clear();
+        buffer.limit(size);
+        refs.set(1);
+    }
+
+    /**
+     *  Returns the underlying direct buffer for filling.  Its
+     *  position and limit belong to the owner that filled it.
+     */
+    public ByteBuffer getBuffer()
+    {
+        return buffer;
+    }
+
+    /**
+     *  Returns a new read-only view of the current position to
+     *  limit range that shares the content but tracks its own position.
+     */
+    public ByteBuffer view()
+    {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     *  Adds a reference to this buffer.
+     */
+    public PooledBuffer retain()
+    {
+        for( ;; ) {
+            int count = refs.get();
+            if( count <= 0 )
+                throw new IllegalStateException( "Buffer has already been released." );
+            if( refs.compareAndSet(count, count + 1) )
+                return this;
+        }
+    }
+
+    /**
+     *  Removes a reference from this buffer and returns true if it
+     *  was the last one, in which case the buffer went back to its pool.
+     */
+    public boolean release()
+    {
+        int count = refs.decrementAndGet();
+        if( count > 0 )
+            return false;
+        if( count < 0 )
+            throw new IllegalStateException( "Buffer has already been released." );
+        if( pool != null )
+            pool.recycle(this, sizeClass);
+        return true;
+    }
+
+    public int getRefCount()
+    {
+        return refs.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PooledBuffer[" + buffer.remaining() + "/" + buffer.capacity() + ", refs=" + refs.get() + "]";
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.tcp;
+
+import com.jme3.network.kernel.KernelException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ *  A SelectorKernel that spreads its connections over several
+ *  selector threads.  One thread only accepts new connections
+ *  and hands each of them to one of N I/O threads which then
+ *  do all of the reading and writing for that connection.
+ *
+ *  <p>Since a connection always stays on the same I/O thread,
+ *  its data is still read and written in order, just like
+ *  with the single threaded SelectorKernel.</p>
+ *
+ *  @version   $Revision$
+ */
+public class MultiSelectorKernel extends SelectorKernel
+{
+    static Logger log = Logger.getLogger(MultiSelectorKernel.class.getName());
+
+    /**
+     *  How new connections are assigned to the I/O threads.
+     */
+    public enum Balancing
+    {
+        /**
+         *  Connections are handed to the I/O threads in turn.
+         */
+        RoundRobin,
+
+        /**
+         *  Connections are handed to the I/O thread with the
+         *  fewest connections.
+         */
+        LeastLoaded
+    }
+
+    private final int ioThreadCount;
+    private final Balancing balancing;
+    private final AtomicInteger nextThread = new AtomicInteger();
+    private final Map<NioEndpoint,IoThread> owners = new ConcurrentHashMap<NioEndpoint,IoThread>();
+
+    private SelectorThread acceptor;
+    private IoThread[] ioThreads;
+
+    public MultiSelectorKernel( int port ) throws IOException
+    {
+        this( new InetSocketAddress(port), Runtime.getRuntime().availableProcessors(), Balancing.LeastLoaded );
+    }
+
+    public MultiSelectorKernel( int port, int ioThreadCount, Balancing balancing ) throws IOException
+    {
+        this( new InetSocketAddress(port), ioThreadCount, balancing );
+    }
+
+    public MultiSelectorKernel( InetAddress host, int port, int ioThreadCount, Balancing balancing )
+    {
+        this( new InetSocketAddress(host, port), ioThreadCount, balancing );
+    }
+
+    public MultiSelectorKernel( InetSocketAddress address, int ioThreadCount, Balancing balancing )
+    {
+        super(address);
+        if( ioThreadCount < 1 )
+            throw new IllegalArgumentException( "At least one I/O thread is required." );
+        if( balancing == null )
+            throw new IllegalArgumentException( "Balancing cannot be null." );
+        this.ioThreadCount = ioThreadCount;
+        this.balancing = balancing;
+    }
+
+    public int getIoThreadCount()
+    {
+        return ioThreadCount;
+    }
+
+    public Balancing getBalancing()
+    {
+        return balancing;
+    }
+
+    @Override
+    protected SelectorThread createSelectorThread()
+    {
+        return new AcceptorThread();
+    }
+
+    @Override
+    public void initialize()
+    {
+        if( acceptor != null )
+            throw new IllegalStateException( "Kernel already initialized." );
+
+        try {
+            ioThreads = new IoThread[ioThreadCount];
+            for( int i = 0; i < ioThreadCount; i++ ) {
+                ioThreads[i] = new IoThread(i);
+                ioThreads[i].connect();
+                ioThreads[i].start();
+            }
+
+            acceptor = createSelectorThread();
+            acceptor.connect();
+            acceptor.start();
+        } catch( IOException e ) {
+            throw new KernelException( "Error hosting:" + getAddress(), e );
+        }
+    }
+
+    @Override
+    public void terminate() throws InterruptedException
+    {
+        if( acceptor == null )
+            throw new IllegalStateException( "Kernel not initialized." );
+
+        try {
+            acceptor.close();
+            acceptor = null;
+
+            for( IoThread t : ioThreads ) {
+                t.close();
+            }
+            ioThreads = null;
+
+            // Need to let any caller waiting for a read() wakeup
+            wakeupReader();
+        } catch( IOException e ) {
+            throw new KernelException( "Error closing host connection:" + getAddress(), e );
+        }
+    }
+
+    @Override
+    protected void removeEndpoint( NioEndpoint p, SocketChannel c )
+    {
+        owners.remove(p);
+        super.removeEndpoint(p, c);
+    }
+
+    @Override
+    protected void closeEndpoint( NioEndpoint p ) throws IOException
+    {
+        IoThread t = owners.get(p);
+        if( t != null ) {
+            t.cancel(p);
+            return;
+        }
+
+        // Not fully registered yet, whichever thread has it
+        // will close it
+        IoThread[] threads = ioThreads;
+        if( threads != null ) {
+            for( IoThread io : threads ) {
+                io.cancel(p);
+            }
+        }
+    }
+
+    @Override
+    protected void wakeupSelector()
+    {
+        IoThread[] threads = ioThreads;
+        if( threads == null )
+            return;
+        for( IoThread t : threads ) {
+            t.wakeupSelector();
+        }
+    }
+
+    @Override
+    protected void wakeupSelector( NioEndpoint p )
+    {
+        IoThread t = owners.get(p);
+        if( t != null ) {
+            t.wakeupSelector();
+        } else {
+            wakeupSelector();
+        }
+    }
+
+    /**
+     *  Picks the I/O thread for a new connection.
+     */
+    protected IoThread nextIoThread()
+    {
+        if( balancing == Balancing.RoundRobin ) {
+            int index = (nextThread.getAndIncrement() & Integer.MAX_VALUE) % ioThreads.length;
+            return ioThreads[index];
+        }
+
+        IoThread result = ioThreads[0];
+        int load = result.getLoad();
+        for( int i = 1; i < ioThreads.length; i++ ) {
+            int l = ioThreads[i].getLoad();
+            if( l < load ) {
+                result = ioThreads[i];
+                load = l;
+            }
+        }
+        return result;
+    }
+
+    /**
+     *  Accepts new connections and passes them on to the
+     *  I/O threads instead of registering them itself.
+     */
+    protected class AcceptorThread extends SelectorThread
+    {
+        public AcceptorThread()
+        {
+            setName( "Acceptor@" + getAddress() );
+        }
+
+        @Override
+        protected NioEndpoint register( SocketChannel remoteChan ) throws IOException
+        {
+            nextIoThread().addChannel(remoteChan);
+            return null;
+        }
+    }
+
+    /**
+     *  Reads and writes the connections assigned to it.  Channels
+     *  are handed over through a queue since they can only be
+     *  registered from the thread that owns the selector.
+     */
+    protected class IoThread extends SelectorThread
+    {
+        private final ConcurrentLinkedQueue<SocketChannel> pending = new ConcurrentLinkedQueue<SocketChannel>();
+
+        public IoThread( int index )
+        {
+            setName( "Selector@" + getAddress() + "-" + index );
+        }
+
+        @Override
+        public void connect() throws IOException
+        {
+            // No server socket, just the selector
+            this.selector = SelectorProvider.provider().openSelector();
+        }
+
+        protected void addChannel( SocketChannel c )
+        {
+            pending.add(c);
+            wakeupSelector();
+        }
+
+        protected int getLoad()
+        {
+            return getEndpointCount() + pending.size();
+        }
+
+        @Override
+        protected NioEndpoint register( SocketChannel remoteChan ) throws IOException
+        {
+            NioEndpoint p = super.register(remoteChan);
+            owners.put(p, this);
+            return p;
+        }
+
+        @Override
+        protected void setupSelectorOptions()
+        {
+            SocketChannel c;
+            while( (c = pending.poll()) != null ) {
+                try {
+                    register(c);
+                } catch( IOException e ) {
+                    reportError(e);
+                    try {
+                        c.close();
+                    } catch( IOException ex ) {
+                        log.log( Level.FINE, "Error closing channel", ex );
+                    }
+                }
+            }
+            super.setupSelectorOptions();
+        }
+    }
+}
@@ -34,6 +34,8 @@ package com.jme3.network.kernel.tcp;
 import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.Kernel;
 import com.jme3.network.kernel.KernelException;
+import com.jme3.network.kernel.PooledBuffer;
+import com.jme3.network.stats.QueueGauge;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
@@ -44,6 +46,8 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  *  Endpoint implementation that encapsulates the
  *  channel IO based connection information and keeps
  *  track of the outbound data queue for the channel.
+ *  Copied outbound data lives in pooled direct buffers that
+ *  go back to the kernel's BufferPool once written.
  *
  *  @version   $Revision$
  *  @author    Paul Speed
@@ -55,7 +59,8 @@ public class NioEndpoint implements Endpoint
     private long id;
     private SocketChannel socket;
     private SelectorKernel kernel;
-    private ConcurrentLinkedQueue<ByteBuffer> outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+    private ConcurrentLinkedQueue<Pending> outbound = new ConcurrentLinkedQueue<Pending>();
+    private final QueueGauge outboundGauge = new QueueGauge();
     private boolean closing = false;
 
     public NioEndpoint( SelectorKernel kernel, long id, SocketChannel socket )
@@ -100,6 +105,15 @@ public class NioEndpoint implements Endpoint
         }
     }
 
+    /**
+     *  Returns the gauge tracking the number of buffers waiting
+     *  to be written to this endpoint's socket.
+     */
+    public QueueGauge getOutboundQueue()
+    {
+        return outboundGauge;
+    }
+
     @Override
     public long getId()
     {
@@ -128,21 +142,34 @@ public class NioEndpoint implements Endpoint
         // We create a ByteBuffer per endpoint since we
         // use it to track the data sent to each endpoint
         // separately.
-        ByteBuffer buffer;
         if( !copy ) {
-            buffer = data;
+            outbound.add(new Pending(data, null));
+            outboundGauge.increment();
         } else {
-            // Copy the buffer
-            buffer = ByteBuffer.allocate(data.remaining());
-            buffer.put(data);
-            buffer.flip();
+            // Copy the buffer into a pooled one that we own
+            PooledBuffer buffer = kernel.getBufferPool().copyOf(data);
+            outbound.add(new Pending(buffer.view(), buffer));
+            outboundGauge.increment();
+            data.position(data.limit());
         }
 
-        // Queue it up
-        outbound.add(buffer);
+        if( wakeup )
+            kernel.wakeupSelector(this);
+    }
+
+    /**
+     *  Queues a view of a shared pooled buffer, retaining it until
+     *  this endpoint has written it out.  This is how the kernel sends
+     *  one serialized broadcast to many endpoints without copying it.
+     */
+    protected void send( PooledBuffer shared, boolean wakeup )
+    {
+        shared.retain();
+        outbound.add(new Pending(shared.view(), shared));
+        outboundGauge.increment();
 
         if( wakeup )
-            kernel.wakeupSelector();
+            kernel.wakeupSelector(this);
     }
 
     /**
@@ -151,7 +178,25 @@ public class NioEndpoint implements Endpoint
      */
     protected ByteBuffer peekPending()
     {
-        return outbound.peek();
+        Pending top = outbound.peek();
+        return top == null ? null : top.data;
+    }
+
+    /**
+     *  Called by the SelectorKernel to collect the leading pending
+     *  buffers for a single gathering write.  Collection stops at the
+     *  close marker or when the array is full.  Returns the number of
+     *  buffers placed in the array.
+     */
+    protected int gatherPending( ByteBuffer[] target )
+    {
+        int count = 0;
+        for( Pending pending : outbound ) {
+            if( count == target.length || pending.data == CLOSE_MARKER )
+                break;
+            target[count++] = pending.data;
+        }
+        return count;
     }
 
     /**
@@ -160,7 +205,13 @@ public class NioEndpoint implements Endpoint
      */
     protected ByteBuffer removePending()
     {
-        return outbound.poll();
+        Pending top = outbound.poll();
+        if( top == null )
+            return null;
+        outboundGauge.decrement();
+        if( top.owner != null )
+            top.owner.release();
+        return top.data;
     }
 
     protected boolean hasPending()
@@ -185,4 +236,20 @@ public class NioEndpoint implements Endpoint
     {
         return "NioEndpoint[" + id + ", " + socket + "]";
     }
+
+    /**
+     *  A queued outbound buffer along with the pooled buffer,
+     *  if any, that must be released once it has been written.
+     */
+    private static class Pending
+    {
+        final ByteBuffer data;
+        final PooledBuffer owner;
+
+        Pending( ByteBuffer data, PooledBuffer owner )
+        {
+            this.data = data;
+            this.owner = owner;
+        }
+    }
 }
@@ -40,8 +40,13 @@ import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
@@ -58,10 +63,17 @@ public class SelectorKernel extends AbstractKernel
 {
     static Logger log = Logger.getLogger(SelectorKernel.class.getName());
 
+    /**
+     *  The maximum number of queued buffers handed to one
+     *  gathering write.
+     */
+    protected static final int MAX_GATHER = 64;
+
     private InetSocketAddress address;
     private SelectorThread thread;
 
     private Map<Long,NioEndpoint> endpoints = new ConcurrentHashMap<Long,NioEndpoint>();
+    private BufferPool bufferPool = new BufferPool();
 
     public SelectorKernel( InetAddress host, int port )
     {
@@ -78,6 +90,27 @@ public class SelectorKernel extends AbstractKernel
         this.address = address;
     }
 
+    protected InetSocketAddress getAddress()
+    {
+        return address;
+    }
+
+    /**
+     *  Sets the pool from which outbound data copies are taken.
+     *  Several kernels may share the same pool.
+     */
+    public void setBufferPool( BufferPool bufferPool )
+    {
+        if( bufferPool == null )
+            throw new IllegalArgumentException( "Buffer pool cannot be null." );
+        this.bufferPool = bufferPool;
+    }
+
+    public BufferPool getBufferPool()
+    {
+        return bufferPool;
+    }
+
     protected SelectorThread createSelectorThread()
     {
         return new SelectorThread();
@@ -124,22 +157,31 @@ public class SelectorKernel extends AbstractKernel
             throw new UnsupportedOperationException( "Unreliable send not supported by this kernel." );
 
         if( copy ) {
-            // Copy the data just once
-            byte[] temp = new byte[data.remaining()];
-            System.arraycopy(data.array(), data.position(), temp, 0, data.remaining());
-            data = ByteBuffer.wrap(temp);
-        }
-
-        // Hand it to all of the endpoints that match our routing
-        for( NioEndpoint p : endpoints.values() ) {
-            // Does it match the filter?
-            if( filter != null && !filter.apply(p) )
-                continue;
+            // Copy the data just once into a pooled buffer that
+            // every endpoint retains until it has been written
+            PooledBuffer shared = bufferPool.copyOf(data);
+            try {
+                for( NioEndpoint p : endpoints.values() ) {
+                    if( filter != null && !filter.apply(p) )
+                        continue;
+                    p.send( shared, false );
+                }
+            } finally {
+                // Let go of our own reference
+                shared.release();
+            }
+        } else {
+            // Hand it to all of the endpoints that match our routing
+            for( NioEndpoint p : endpoints.values() ) {
+                // Does it match the filter?
+                if( filter != null && !filter.apply(p) )
+                    continue;
 
-            // Give it the data... but let each endpoint track their
-            // own completion over the shared array of bytes by
-            // duplicating it
-            p.send( data.duplicate(), false, false );
+                // Give it the data... but let each endpoint track their
+                // own completion over the shared array of bytes by
+                // duplicating it
+                p.send( data.duplicate(), false, false );
+            }
         }
 
         // Wake up the selector so it can reinitialize its
@@ -147,6 +189,36 @@ public class SelectorKernel extends AbstractKernel
         wakeupSelector();
     }
 
+    @Override
+    public void send( Collection<? extends Endpoint> targets, ByteBuffer data, boolean reliable,
+                      boolean copy )
+    {
+        if( !reliable )
+            throw new UnsupportedOperationException( "Unreliable send not supported by this kernel." );
+
+        // Same as broadcast() but only visits the specified endpoints,
+        // each of them once
+        Set<Endpoint> visited = Collections.newSetFromMap(new IdentityHashMap<Endpoint, Boolean>());
+        PooledBuffer shared = copy ? bufferPool.copyOf(data) : null;
+        try {
+            for( Endpoint e : targets ) {
+                NioEndpoint p = endpoints.get(e.getId());
+                if( p != e || !visited.add(p) )
+                    continue;
+                if( shared != null ) {
+                    p.send( shared, false );
+                } else {
+                    p.send( data.duplicate(), false, false );
+                }
+            }
+        } finally {
+            if( shared != null )
+                shared.release();
+        }
+
+        wakeupSelector();
+    }
+
     protected NioEndpoint addEndpoint( SocketChannel c )
     {
         // Note: we purposely do NOT put the key in the endpoint.
@@ -192,6 +264,15 @@ public class SelectorKernel extends AbstractKernel
         thread.wakeupSelector();
     }
 
+    /**
+     *  Used internally by an endpoint to wakeup the selector
+     *  that manages it when it has data to send.
+     */
+    protected void wakeupSelector( NioEndpoint p )
+    {
+        wakeupSelector();
+    }
+
     protected void newData( NioEndpoint p, SocketChannel c, ByteBuffer shared, int size )
     {
         // Note: if ever desirable, it would be possible to accumulate
@@ -219,9 +300,10 @@ public class SelectorKernel extends AbstractKernel
     protected class SelectorThread extends Thread
     {
         private ServerSocketChannel serverChannel;
-        private Selector selector;
+        protected Selector selector;
         private AtomicBoolean go = new AtomicBoolean(true);
         private ByteBuffer working = ByteBuffer.allocate( 8192 );
+        private ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
 
         /**
          *  Because we want to keep the keys to ourselves, we'll do
@@ -260,7 +342,8 @@ public class SelectorKernel extends AbstractKernel
             go.set(false);
 
             // Make sure the channel is closed
-            serverChannel.close();
+            if( serverChannel != null )
+                serverChannel.close();
 
             // Force the selector to stop blocking
             wakeupSelector();
@@ -308,6 +391,15 @@ public class SelectorKernel extends AbstractKernel
             Socket sock = remoteChan.socket();
             sock.setTcpNoDelay(true);
 
+            register( remoteChan );
+        }
+
+        /**
+         *  Registers an accepted channel with this thread's selector
+         *  and creates its endpoint.  Must be called from this thread.
+         */
+        protected NioEndpoint register( SocketChannel remoteChan ) throws IOException
+        {
             // Let the selector know we're interested in reading
             // data from the channel
             SelectionKey endKey = remoteChan.register( selector, SelectionKey.OP_READ );
@@ -316,6 +408,15 @@ public class SelectorKernel extends AbstractKernel
             NioEndpoint p = addEndpoint( remoteChan );
             endKey.attach(p);
             endpointKeys.put(p, endKey);
+            return p;
+        }
+
+        /**
+         *  Returns the number of endpoints managed by this thread.
+         */
+        protected int getEndpointCount()
+        {
+            return endpointKeys.size();
         }
 
         protected void cancel( NioEndpoint p ) throws IOException
@@ -392,11 +493,27 @@ public class SelectorKernel extends AbstractKernel
                 return;
             }
 
-            c.write( current );
+            // Hand as many of the queued buffers as we can to a
+            // single gathering write
+            int count = p.gatherPending(gather);
+            if( count == 1 ) {
+                c.write( gather[0] );
+            } else if( count > 1 ) {
+                c.write( gather, 0, count );
+            }
 
-            // If we wrote all of that packet then we need to remove it
-            if( current.remaining() == 0 ) {
-                p.removePending();
+            // Remove every packet that we wrote completely
+            for( int i = 0; i < count; i++ ) {
+                boolean done = gather[i].remaining() == 0;
+                gather[i] = null;
+                if( done ) {
+                    p.removePending();
+                } else {
+                    // The socket buffer is full... the rest waits
+                    // for the next write
+                    Arrays.fill( gather, i, count, null );
+                    break;
+                }
             }
 
             // If we happened to empty the pending queue then let's read
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+import com.jme3.network.kernel.Connector;
+import com.jme3.network.kernel.ConnectorException;
+import com.jme3.network.kernel.NamedThreadFactory;
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ *  A Connector implementation for the client side of a channel
+ *  hosted by a ReliableUdpKernel.  Datagrams are processed on the
+ *  thread calling read(), which only returns complete messages, while
+ *  a small timer thread takes care of retransmission.
+ *
+ *  @version   $Revision$
+ */
+public class ReliableUdpConnector implements Connector
+{
+    private DatagramSocket sock;
+    private SocketAddress remoteAddress;
+    private UdpChannel channel;
+    private ScheduledExecutorService timer;
+    private byte[] buffer = new byte[65535];
+    private ArrayDeque<byte[]> ready = new ArrayDeque<byte[]>();
+    private List<byte[]> delivered = new ArrayList<byte[]>();
+    private AtomicBoolean connected = new AtomicBoolean(false);
+
+    public ReliableUdpConnector( InetAddress remote, int remotePort, UdpChannelMode mode ) throws IOException
+    {
+        this( remote, remotePort, mode, UdpChannel.DEFAULT_MAX_PACKET_SIZE );
+    }
+
+    public ReliableUdpConnector( InetAddress remote, int remotePort, UdpChannelMode mode,
+                                 int maxPacketSize ) throws IOException
+    {
+        InetSocketAddress localSocketAddress = new InetSocketAddress(0);
+        this.sock = new DatagramSocket( localSocketAddress );
+        remoteAddress = new InetSocketAddress( remote, remotePort );
+
+        // Setup to receive only from the remote address
+        sock.connect( remoteAddress );
+
+        final DatagramSocket socket = sock;
+        this.channel = new UdpChannel(mode, new UdpChannel.Transport() {
+                @Override
+                public void transmit( byte[] packet, int length ) throws IOException
+                {
+                    socket.send(new DatagramPacket(packet, length));
+                }
+            }, maxPacketSize);
+
+        timer = Executors.newSingleThreadScheduledExecutor(
+                        new NamedThreadFactory("ReliableUdpConnector@" + remoteAddress, true));
+        timer.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run()
+                {
+                    update();
+                }
+            }, ReliableUdpKernel.UPDATE_INTERVAL, ReliableUdpKernel.UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
+
+        connected.set(true);
+    }
+
+    public UdpChannel getChannel()
+    {
+        return channel;
+    }
+
+    /**
+     *  Sets the fraction of outgoing datagrams that are dropped on
+     *  purpose, for testing.
+     */
+    public void setSimulatedLoss( float simulatedLoss )
+    {
+        channel.setSimulatedLoss(simulatedLoss);
+    }
+
+    protected void checkClosed()
+    {
+        if( sock == null )
+            throw new ConnectorException( "Connection is closed:" + remoteAddress );
+    }
+
+    protected void update()
+    {
+        try {
+            channel.update(System.nanoTime());
+        } catch( IOException e ) {
+            // The reader will find out soon enough
+        }
+        DatagramSocket socket = sock;
+        if( channel.isFailed() && socket != null ) {
+            // Wake up the reader so it can report the failure
+            socket.close();
+        }
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        if( sock == null )
+            return false;
+        return sock.isConnected() && !channel.isFailed();
+    }
+
+    @Override
+    public void close()
+    {
+        checkClosed();
+        DatagramSocket temp = sock;
+        sock = null;
+        connected.set(false);
+        timer.shutdownNow();
+        temp.close();
+    }
+
+    /**
+     *  Returns true if a complete message is waiting.
+     */
+    @Override
+    public boolean available()
+    {
+        checkClosed();
+        synchronized( ready ) {
+            return !ready.isEmpty();
+        }
+    }
+
+    @Override
+    public ByteBuffer read()
+    {
+        DatagramSocket socket = sock;
+        if( socket == null )
+            throw new ConnectorException( "Connection is closed:" + remoteAddress );
+        DatagramPacket packet = new DatagramPacket( buffer, buffer.length );
+        while( true ) {
+            synchronized( ready ) {
+                byte[] next = ready.poll();
+                if( next != null ) {
+                    return ByteBuffer.wrap(next);
+                }
+            }
+
+            try {
+                packet.setLength( buffer.length );
+                socket.receive(packet);
+                channel.receive( buffer, packet.getOffset(), packet.getLength(), delivered );
+            } catch( IOException e ) {
+                if( channel.isFailed() ) {
+                    throw new ConnectorException( "Connection lost to:" + remoteAddress, e );
+                }
+                if( !connected.get() ) {
+                    // Nothing to see here... just move along
+                    return null;
+                }
+                throw new ConnectorException( "Error reading from connection to:" + remoteAddress, e );
+            }
+
+            if( !delivered.isEmpty() ) {
+                synchronized( ready ) {
+                    ready.addAll(delivered);
+                }
+                delivered.clear();
+            }
+        }
+    }
+
+    @Override
+    public void write( ByteBuffer data )
+    {
+        checkClosed();
+        try {
+            channel.send(data.duplicate());
+        } catch( IOException e ) {
+            throw new ConnectorException( "Error writing to connection:" + remoteAddress, e );
+        }
+    }
+}
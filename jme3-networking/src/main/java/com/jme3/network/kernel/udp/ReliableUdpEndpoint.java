@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+import com.jme3.network.kernel.Endpoint;
+import com.jme3.network.kernel.Kernel;
+import com.jme3.network.kernel.KernelException;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ *  Endpoint implementation for a ReliableUdpKernel that keeps the
+ *  UdpChannel state for one remote address.
+ *
+ *  @version   $Revision$
+ */
+public class ReliableUdpEndpoint implements Endpoint
+{
+    private long id;
+    private SocketAddress address;
+    private ReliableUdpKernel kernel;
+    private UdpChannel channel;
+    private volatile boolean connected = true;
+    private volatile boolean closing = false;
+
+    public ReliableUdpEndpoint( ReliableUdpKernel kernel, long id, SocketAddress address,
+                                final DatagramSocket socket, UdpChannelMode mode, int maxPacketSize )
+    {
+        this.id = id;
+        this.address = address;
+        this.kernel = kernel;
+        this.channel = new UdpChannel(mode, new UdpChannel.Transport() {
+                @Override
+                public void transmit( byte[] packet, int length ) throws IOException
+                {
+                    socket.send(new DatagramPacket(packet, length, ReliableUdpEndpoint.this.address));
+                }
+            }, maxPacketSize);
+    }
+
+    @Override
+    public Kernel getKernel()
+    {
+        return kernel;
+    }
+
+    public UdpChannel getChannel()
+    {
+        return channel;
+    }
+
+    protected SocketAddress getRemoteAddress()
+    {
+        return address;
+    }
+
+    protected boolean isClosing()
+    {
+        return closing;
+    }
+
+    @Override
+    public void close()
+    {
+        close( false );
+    }
+
+    /**
+     *  When flushing, the endpoint stays open until everything
+     *  sent so far was acknowledged or the channel failed.
+     */
+    @Override
+    public void close( boolean flush )
+    {
+        if( flush ) {
+            closing = true;
+            return;
+        }
+
+        try {
+            kernel.closeEndpoint(this);
+            connected = false;
+        } catch( IOException e ) {
+            throw new KernelException( "Error closing endpoint:" + address, e );
+        }
+    }
+
+    @Override
+    public long getId()
+    {
+        return id;
+    }
+
+    @Override
+    public String getAddress()
+    {
+        return String.valueOf(address);
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return connected;
+    }
+
+    @Override
+    public void send( ByteBuffer data )
+    {
+        if( !connected || closing ) {
+            throw new KernelException( "Endpoint is not connected:" + this );
+        }
+        try {
+            // The channel copies the data into its own datagrams
+            channel.send(data.duplicate());
+        } catch( IOException e ) {
+            throw new KernelException( "Error sending datagram to:" + address, e );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ReliableUdpEndpoint[" + id + ", " + address + ", " + channel.getMode() + "]";
+    }
+}
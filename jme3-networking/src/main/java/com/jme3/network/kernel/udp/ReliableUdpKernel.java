@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+import com.jme3.network.Filter;
+import com.jme3.network.kernel.*;
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *  A Kernel implementation that hosts a UDP channel with the delivery
+ *  guarantees of its UdpChannelMode.  Endpoints are created for each
+ *  remote address the first time a datagram arrives from it, like in
+ *  UdpKernel, and each keeps its own UdpChannel state.  A timer thread
+ *  drives retransmission and closes endpoints whose channel failed.
+ *
+ *  @version   $Revision$
+ */
+public class ReliableUdpKernel extends AbstractKernel
+{
+    static Logger log = Logger.getLogger(ReliableUdpKernel.class.getName());
+
+    /**
+     *  How often, in milliseconds, the channels check for overdue
+     *  acknowledgments.
+     */
+    public static final long UPDATE_INTERVAL = 10;
+
+    private InetSocketAddress address;
+    private UdpChannelMode mode;
+    private int maxPacketSize = UdpChannel.DEFAULT_MAX_PACKET_SIZE;
+    private float simulatedLoss;
+    private HostThread thread;
+    private ScheduledExecutorService timer;
+
+    private Map<SocketAddress,ReliableUdpEndpoint> socketEndpoints
+                            = new ConcurrentHashMap<SocketAddress,ReliableUdpEndpoint>();
+
+    public ReliableUdpKernel( InetAddress host, int port, UdpChannelMode mode )
+    {
+        this( new InetSocketAddress(host, port), mode );
+    }
+
+    public ReliableUdpKernel( int port, UdpChannelMode mode ) throws IOException
+    {
+        this( new InetSocketAddress(port), mode );
+    }
+
+    public ReliableUdpKernel( InetSocketAddress address, UdpChannelMode mode )
+    {
+        if( mode == null )
+            throw new IllegalArgumentException( "Mode cannot be null." );
+        this.address = address;
+        this.mode = mode;
+    }
+
+    public UdpChannelMode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     *  Sets the largest datagram that the channels of new endpoints
+     *  will send.  Larger messages are fragmented.
+     */
+    public void setMaxPacketSize( int maxPacketSize )
+    {
+        this.maxPacketSize = maxPacketSize;
+    }
+
+    public int getMaxPacketSize()
+    {
+        return maxPacketSize;
+    }
+
+    /**
+     *  Sets the fraction of outgoing datagrams that the channels of
+     *  new endpoints drop on purpose, for testing.
+     */
+    public void setSimulatedLoss( float simulatedLoss )
+    {
+        this.simulatedLoss = simulatedLoss;
+    }
+
+    public float getSimulatedLoss()
+    {
+        return simulatedLoss;
+    }
+
+    protected HostThread createHostThread()
+    {
+        return new HostThread();
+    }
+
+    @Override
+    public void initialize()
+    {
+        if( thread != null )
+            throw new IllegalStateException( "Kernel already initialized." );
+
+        thread = createHostThread();
+
+        try {
+            thread.connect();
+            thread.start();
+        } catch( IOException e ) {
+            throw new KernelException( "Error hosting:" + address, e );
+        }
+
+        timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(toString() + "-timer", true));
+        timer.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run()
+                {
+                    update();
+                }
+            }, UPDATE_INTERVAL, UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void terminate() throws InterruptedException
+    {
+        if( thread == null )
+            throw new IllegalStateException( "Kernel not initialized." );
+
+        try {
+            timer.shutdownNow();
+            thread.close();
+            thread = null;
+
+            // Need to let any caller waiting for a read() wakeup
+            wakeupReader();
+        } catch( IOException e ) {
+            throw new KernelException( "Error closing host connection:" + address, e );
+        }
+    }
+
+    @Override
+    public void broadcast( Filter<? super Endpoint> filter, ByteBuffer data, boolean reliable,
+                           boolean copy )
+    {
+        // The channels copy the data into their datagrams, the
+        // 'copy' and 'reliable' flags don't change anything here
+        for( ReliableUdpEndpoint p : socketEndpoints.values() ) {
+            if( filter != null && !filter.apply(p) )
+                continue;
+            if( p.isClosing() )
+                continue;
+            p.send( data );
+        }
+    }
+
+    protected ReliableUdpEndpoint getEndpoint( SocketAddress address, boolean create )
+    {
+        ReliableUdpEndpoint p = socketEndpoints.get(address);
+        if( p == null && create ) {
+            p = new ReliableUdpEndpoint( this, nextEndpointId(), address, thread.getSocket(),
+                                         mode, maxPacketSize );
+            if( simulatedLoss > 0 ) {
+                p.getChannel().setSimulatedLoss(simulatedLoss);
+            }
+            socketEndpoints.put( address, p );
+
+            // Add an event for it.
+            addEvent( EndpointEvent.createAdd( this, p ) );
+        }
+        return p;
+    }
+
+    /**
+     *  Called by the endpoints when they need to be closed.
+     */
+    protected void closeEndpoint( ReliableUdpEndpoint p ) throws IOException
+    {
+        if( socketEndpoints.remove( p.getRemoteAddress() ) == null )
+            return;
+
+        log.log( Level.FINE, "Closing endpoint:{0}.", p );
+        log.log( Level.FINE, "Socket endpoints size:{0}", socketEndpoints.size() );
+
+        addEvent( EndpointEvent.createRemove( this, p ) );
+
+        wakeupReader();
+    }
+
+    protected void newData( DatagramPacket packet, List<byte[]> delivered )
+    {
+        ReliableUdpEndpoint p = getEndpoint( packet.getSocketAddress(), true );
+        try {
+            p.getChannel().receive( packet.getData(), packet.getOffset(), packet.getLength(), delivered );
+        } catch( IOException e ) {
+            reportError( new KernelException( "Error acknowledging datagram from:" + p, e ) );
+        }
+
+        for( byte[] data : delivered ) {
+            addEnvelope( new Envelope( p, data, mode.isReliable() ) );
+        }
+        delivered.clear();
+    }
+
+    protected void update()
+    {
+        long time = System.nanoTime();
+        for( ReliableUdpEndpoint p : socketEndpoints.values() ) {
+            UdpChannel channel = p.getChannel();
+            try {
+                channel.update(time);
+            } catch( IOException e ) {
+                reportError( new KernelException( "Error resending datagram to:" + p, e ) );
+            }
+
+            if( channel.isFailed() ) {
+                log.log( Level.FINE, "Endpoint stopped acknowledging:{0}.", p );
+                p.close();
+            } else if( p.isClosing() && channel.getPendingCount() == 0 ) {
+                p.close();
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ReliableUdpKernel[" + address + ", " + mode + "]";
+    }
+
+    protected class HostThread extends Thread
+    {
+        private DatagramSocket socket;
+        private AtomicBoolean go = new AtomicBoolean(true);
+
+        private byte[] buffer = new byte[65535]; // slightly bigger than needed.
+        private List<byte[]> delivered = new ArrayList<byte[]>();
+
+        public HostThread()
+        {
+            setName( "Reliable UDP Host@" + address );
+            setDaemon(true);
+        }
+
+        protected DatagramSocket getSocket()
+        {
+            return socket;
+        }
+
+        public void connect() throws IOException
+        {
+            socket = new DatagramSocket( address );
+            log.log( Level.FINE, "Hosting reliable UDP connection:{0}.", address );
+        }
+
+        public void close() throws IOException, InterruptedException
+        {
+            // Set the thread to stop
+            go.set(false);
+
+            // Make sure the channel is closed
+            socket.close();
+
+            // And wait for it
+            join();
+        }
+
+        @Override
+        public void run()
+        {
+            log.log( Level.FINE, "Kernel started for connection:{0}.", address );
+
+            DatagramPacket packet = new DatagramPacket( buffer, buffer.length );
+            while( go.get() ) {
+                try {
+                    packet.setLength( buffer.length );
+                    socket.receive(packet);
+
+                    newData( packet, delivered );
+                } catch( IOException e ) {
+                    if( !go.get() )
+                        return;
+                    reportError( e );
+                }
+            }
+        }
+    }
+}
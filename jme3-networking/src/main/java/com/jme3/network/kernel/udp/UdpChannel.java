@@ -0,0 +1,596 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  The protocol state of one side of a UDP channel between two peers.
+ *  It splits outgoing data into datagrams, retransmits the reliable ones
+ *  until they are acknowledged, and reassembles and orders incoming
+ *  datagrams according to the channel's UdpChannelMode.  The kernel and
+ *  connector own the sockets and threads; they feed received datagrams
+ *  to receive() and call update() periodically to drive the timers.
+ *
+ *  <p>Each datagram starts with a type byte.  Data datagrams then carry an
+ *  int sequence number and the short index and count of the fragment
+ *  within its message.  Acknowledgments carry the cumulative sequence
+ *  number, meaning every reliable datagram before it arrived, followed by
+ *  a 64 bit mask of the datagrams received after it.</p>
+ *
+ *  <p>The number of unacknowledged datagrams is limited by a congestion
+ *  window that grows with every acknowledgment and is halved when a
+ *  datagram has to be resent.  The retransmit timeout follows the measured
+ *  round trip time.  A datagram that was resent too often marks the
+ *  channel as failed.</p>
+ *
+ *  <p>Even in Sequenced mode, the first message sent on a channel is
+ *  delivered reliably so that the channel's registration can not be lost.</p>
+ *
+ *  <p>All methods are thread safe.</p>
+ *
+ *  @version   $Revision$
+ */
+public class UdpChannel
+{
+    /**
+     *  Sends the finished datagrams to the peer.
+     */
+    public interface Transport
+    {
+        public void transmit( byte[] packet, int length ) throws IOException;
+    }
+
+    public static final int DEFAULT_MAX_PACKET_SIZE = 1200;
+
+    static final byte TYPE_RELIABLE = 1;
+    static final byte TYPE_SEQUENCED = 2;
+    static final byte TYPE_ACK = 3;
+
+    static final int HEADER_SIZE = 9;
+    static final int ACK_SIZE = 13;
+
+    /**
+     *  The maximum number of datagrams that can be in flight, which is
+     *  also how far ahead of the first missing datagram the receiver
+     *  accepts new ones.
+     */
+    static final int WINDOW = 1024;
+    private static final int MASK = WINDOW - 1;
+
+    private static final double INITIAL_CWND = 16;
+    private static final double MIN_CWND = 4;
+    private static final long INITIAL_RTO = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long MIN_RTO = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long MAX_RTO = TimeUnit.SECONDS.toNanos(2);
+    private static final int MAX_RETRIES = 12;
+    private static final int FAST_RETRANSMIT_GAP = 3;
+
+    private final UdpChannelMode mode;
+    private final Transport transport;
+    private final int maxPayload;
+    private final Random random = new Random();
+    private float simulatedLoss;
+    private boolean failed;
+
+    // Sending state
+    private boolean sentAny;
+    private int nextSeq;
+    private int nextTransmit;
+    private int sendBase;
+    private int nextSequenced;
+    private final ArrayDeque<Outgoing> queued = new ArrayDeque<Outgoing>();
+    private final Outgoing[] inFlight = new Outgoing[WINDOW];
+    private int inFlightCount;
+    private int highestAcked;
+    private boolean anyAcked;
+    private double cwnd = INITIAL_CWND;
+    private double ssthresh = WINDOW;
+    private long srtt = -1;
+    private long rttvar;
+    private long rto = INITIAL_RTO;
+
+    // Receiving state
+    private int expected;
+    private final boolean[] received = new boolean[WINDOW];
+    private final Map<Integer,Partial> partials = new HashMap<Integer,Partial>();
+    private int nextDeliver;
+    private int lastSequenced;
+    private boolean anySequenced;
+    private Partial sequencedPartial;
+
+    // Statistics
+    private long packetsSent;
+    private long packetsReceived;
+    private long retransmits;
+    private long duplicates;
+
+    public UdpChannel( UdpChannelMode mode, Transport transport )
+    {
+        this( mode, transport, DEFAULT_MAX_PACKET_SIZE );
+    }
+
+    public UdpChannel( UdpChannelMode mode, Transport transport, int maxPacketSize )
+    {
+        if( mode == null )
+            throw new IllegalArgumentException( "Mode cannot be null." );
+        if( maxPacketSize <= HEADER_SIZE || maxPacketSize < ACK_SIZE )
+            throw new IllegalArgumentException( "Packet size too small:" + maxPacketSize );
+        this.mode = mode;
+        this.transport = transport;
+        this.maxPayload = maxPacketSize - HEADER_SIZE;
+    }
+
+    public UdpChannelMode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     *  Sets the fraction of outgoing datagrams, acknowledgments included,
+     *  that are silently dropped.  Only meant for testing how an
+     *  application behaves over a lossy network.
+     */
+    public synchronized void setSimulatedLoss( float simulatedLoss )
+    {
+        if( simulatedLoss < 0 || simulatedLoss >= 1 )
+            throw new IllegalArgumentException( "Loss must be in [0, 1):" + simulatedLoss );
+        this.simulatedLoss = simulatedLoss;
+    }
+
+    public synchronized float getSimulatedLoss()
+    {
+        return simulatedLoss;
+    }
+
+    /**
+     *  Queues the remaining bytes of data as one message, fragmenting
+     *  it as needed, and transmits as much as the send window allows.
+     */
+    public synchronized void send( ByteBuffer data ) throws IOException
+    {
+        if( failed )
+            throw new IOException( "Channel has failed." );
+
+        int length = data.remaining();
+        int count = Math.max(1, (length + maxPayload - 1) / maxPayload);
+        if( count > Short.MAX_VALUE )
+            throw new IllegalArgumentException( "Message too large:" + length );
+
+        boolean reliable = mode.isReliable() || !sentAny;
+        sentAny = true;
+
+        int first = reliable ? nextSeq : nextSequenced;
+        for( int i = 0; i < count; i++ ) {
+            int size = Math.min(maxPayload, data.remaining());
+            byte[] packet = new byte[HEADER_SIZE + size];
+            ByteBuffer header = ByteBuffer.wrap(packet);
+            header.put(reliable ? TYPE_RELIABLE : TYPE_SEQUENCED);
+            header.putInt(first + i);
+            header.putShort((short)i);
+            header.putShort((short)count);
+            data.get(packet, HEADER_SIZE, size);
+
+            if( reliable ) {
+                queued.add(new Outgoing(first + i, packet));
+            } else {
+                transmit(packet);
+            }
+        }
+
+        if( reliable ) {
+            nextSeq += count;
+            pump(System.nanoTime());
+        } else {
+            nextSequenced += count;
+        }
+    }
+
+    /**
+     *  Processes one received datagram and adds any messages that it
+     *  completes to the delivered list.
+     */
+    public synchronized void receive( byte[] data, int offset, int length,
+                                      List<byte[]> delivered ) throws IOException
+    {
+        if( length < 1 )
+            return;
+        packetsReceived++;
+
+        ByteBuffer in = ByteBuffer.wrap(data, offset, length);
+        byte type = in.get();
+        if( type == TYPE_ACK ) {
+            if( length >= ACK_SIZE ) {
+                int cumulative = in.getInt();
+                long mask = in.getLong();
+                acknowledge(cumulative, mask, System.nanoTime());
+            }
+            return;
+        }
+
+        if( length < HEADER_SIZE )
+            return;
+        int seq = in.getInt();
+        int index = in.getShort();
+        int count = in.getShort();
+        if( count <= 0 || index < 0 || index >= count )
+            return;
+        byte[] payload = Arrays.copyOfRange(data, offset + HEADER_SIZE, offset + length);
+
+        if( type == TYPE_RELIABLE ) {
+            receiveReliable(seq, index, count, payload, delivered);
+            sendAck();
+        } else if( type == TYPE_SEQUENCED ) {
+            receiveSequenced(seq, index, count, payload, delivered);
+        }
+    }
+
+    /**
+     *  Resends the datagrams whose acknowledgment is overdue and
+     *  transmits queued ones the window now allows.
+     */
+    public synchronized void update( long nanoTime ) throws IOException
+    {
+        if( failed )
+            return;
+
+        boolean loss = false;
+        for( int seq = sendBase; seq != nextTransmit; seq++ ) {
+            Outgoing o = inFlight[seq & MASK];
+            if( o == null )
+                continue;
+
+            long timeout = Math.min(MAX_RTO, rto << Math.min(o.retries, 4));
+            boolean expired = nanoTime - o.sentTime >= timeout;
+            boolean skipped = o.retries == 0 && anyAcked && highestAcked - seq >= FAST_RETRANSMIT_GAP;
+            if( !expired && !skipped )
+                continue;
+
+            if( o.retries >= MAX_RETRIES ) {
+                failed = true;
+                return;
+            }
+            o.retries++;
+            o.sentTime = nanoTime;
+            retransmits++;
+            loss = true;
+            transmit(o.packet);
+        }
+
+        if( loss ) {
+            ssthresh = Math.max(cwnd / 2, MIN_CWND);
+            cwnd = ssthresh;
+        }
+        pump(nanoTime);
+    }
+
+    /**
+     *  Returns true if a reliable datagram went unacknowledged for so
+     *  many retries that the peer must be considered gone.
+     */
+    public synchronized boolean isFailed()
+    {
+        return failed;
+    }
+
+    /**
+     *  Returns the number of reliable datagrams that are queued or
+     *  still waiting for an acknowledgment.
+     */
+    public synchronized int getPendingCount()
+    {
+        return queued.size() + inFlightCount;
+    }
+
+    /**
+     *  Returns the smoothed round trip time in nanoseconds or -1 if
+     *  no round trip has been measured yet.
+     */
+    public synchronized long getRoundTripTime()
+    {
+        return srtt;
+    }
+
+    public synchronized double getCongestionWindow()
+    {
+        return cwnd;
+    }
+
+    public synchronized long getPacketsSent()
+    {
+        return packetsSent;
+    }
+
+    public synchronized long getPacketsReceived()
+    {
+        return packetsReceived;
+    }
+
+    public synchronized long getRetransmitCount()
+    {
+        return retransmits;
+    }
+
+    public synchronized long getDuplicateCount()
+    {
+        return duplicates;
+    }
+
+    private void pump( long nanoTime ) throws IOException
+    {
+        while( !queued.isEmpty() && inFlightCount < (int)cwnd && nextTransmit - sendBase < WINDOW ) {
+            Outgoing o = queued.poll();
+            inFlight[o.seq & MASK] = o;
+            inFlightCount++;
+            nextTransmit = o.seq + 1;
+            o.sentTime = nanoTime;
+            transmit(o.packet);
+        }
+    }
+
+    private void transmit( byte[] packet ) throws IOException
+    {
+        packetsSent++;
+        if( simulatedLoss > 0 && random.nextFloat() < simulatedLoss )
+            return;
+        transport.transmit(packet, packet.length);
+    }
+
+    private void acknowledge( int cumulative, long mask, long nanoTime ) throws IOException
+    {
+        if( cumulative - nextTransmit > 0 )
+            return;  // Not something we sent
+
+        for( int seq = sendBase; seq - cumulative < 0; seq++ ) {
+            acknowledge(seq, nanoTime);
+        }
+        for( int i = 0; i < 64 && mask != 0; i++ ) {
+            if( (mask & (1L << i)) == 0 )
+                continue;
+            int seq = cumulative + 1 + i;
+            if( seq - nextTransmit >= 0 )
+                break;
+            if( seq - sendBase >= 0 )
+                acknowledge(seq, nanoTime);
+        }
+
+        while( sendBase != nextTransmit && inFlight[sendBase & MASK] == null ) {
+            sendBase++;
+        }
+        pump(nanoTime);
+    }
+
+    private void acknowledge( int seq, long nanoTime )
+    {
+        Outgoing o = inFlight[seq & MASK];
+        if( o == null || o.seq != seq )
+            return;
+        inFlight[seq & MASK] = null;
+        inFlightCount--;
+
+        // Only unambiguous round trips count
+        if( o.retries == 0 ) {
+            sampleRoundTrip(nanoTime - o.sentTime);
+        }
+        if( !anyAcked || seq - highestAcked > 0 ) {
+            highestAcked = seq;
+            anyAcked = true;
+        }
+
+        if( cwnd < ssthresh ) {
+            cwnd += 1;
+        } else {
+            cwnd += 1 / cwnd;
+        }
+        cwnd = Math.min(cwnd, WINDOW);
+    }
+
+    private void sampleRoundTrip( long rtt )
+    {
+        if( srtt < 0 ) {
+            srtt = rtt;
+            rttvar = rtt / 2;
+        } else {
+            rttvar = (3 * rttvar + Math.abs(srtt - rtt)) / 4;
+            srtt = (7 * srtt + rtt) / 8;
+        }
+        rto = Math.max(MIN_RTO, Math.min(MAX_RTO, srtt + 4 * rttvar));
+    }
+
+    private void sendAck() throws IOException
+    {
+        long mask = 0;
+        for( int i = 0; i < 64; i++ ) {
+            if( received[(expected + 1 + i) & MASK] ) {
+                mask |= 1L << i;
+            }
+        }
+        byte[] packet = new byte[ACK_SIZE];
+        ByteBuffer.wrap(packet).put(TYPE_ACK).putInt(expected).putLong(mask);
+        transmit(packet);
+    }
+
+    private void receiveReliable( int seq, int index, int count, byte[] payload,
+                                  List<byte[]> delivered )
+    {
+        int ahead = seq - expected;
+        if( ahead < 0 || (ahead < WINDOW && received[seq & MASK]) ) {
+            // Already have it, the sender just missed our ack
+            duplicates++;
+            return;
+        }
+        if( ahead >= WINDOW ) {
+            // Too far ahead to track, it will be resent
+            return;
+        }
+        received[seq & MASK] = true;
+        while( received[expected & MASK] ) {
+            received[expected & MASK] = false;
+            expected++;
+        }
+
+        boolean ordered = mode.isOrdered() && mode.isReliable();
+        int first = seq - index;
+        if( count == 1 && (!ordered || first == nextDeliver) ) {
+            delivered.add(payload);
+            if( ordered ) {
+                nextDeliver++;
+                deliverOrdered(delivered);
+            }
+            return;
+        }
+
+        Partial p = partials.get(first);
+        if( p == null ) {
+            p = new Partial(first, count);
+            partials.put(first, p);
+        }
+        p.add(index, payload);
+
+        if( ordered ) {
+            deliverOrdered(delivered);
+        } else if( p.isComplete() ) {
+            partials.remove(first);
+            delivered.add(p.assemble());
+        }
+    }
+
+    private void deliverOrdered( List<byte[]> delivered )
+    {
+        Partial p;
+        while( (p = partials.get(nextDeliver)) != null && p.isComplete() ) {
+            partials.remove(nextDeliver);
+            delivered.add(p.assemble());
+            nextDeliver += p.parts.length;
+        }
+    }
+
+    private void receiveSequenced( int seq, int index, int count, byte[] payload,
+                                   List<byte[]> delivered )
+    {
+        int first = seq - index;
+        if( anySequenced && first - lastSequenced <= 0 ) {
+            duplicates++;
+            return;  // Stale
+        }
+
+        if( count == 1 ) {
+            sequencedPartial = null;
+        } else {
+            if( sequencedPartial == null || sequencedPartial.first != first ) {
+                if( sequencedPartial != null && first - sequencedPartial.first < 0 ) {
+                    return;  // Older than the one we are already assembling
+                }
+                sequencedPartial = new Partial(first, count);
+            }
+            sequencedPartial.add(index, payload);
+            if( !sequencedPartial.isComplete() )
+                return;
+            payload = sequencedPartial.assemble();
+            sequencedPartial = null;
+        }
+
+        lastSequenced = first;
+        anySequenced = true;
+        delivered.add(payload);
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "UdpChannel[" + mode + ", pending=" + (queued.size() + inFlightCount)
+                + ", cwnd=" + (int)cwnd + ", rtt=" + TimeUnit.NANOSECONDS.toMillis(srtt) + " ms]";
+    }
+
+    private static class Outgoing
+    {
+        final int seq;
+        final byte[] packet;
+        long sentTime;
+        int retries;
+
+        Outgoing( int seq, byte[] packet )
+        {
+            this.seq = seq;
+            this.packet = packet;
+        }
+    }
+
+    private static class Partial
+    {
+        final int first;
+        final byte[][] parts;
+        int received;
+
+        Partial( int first, int count )
+        {
+            this.first = first;
+            this.parts = new byte[count][];
+        }
+
+        void add( int index, byte[] payload )
+        {
+            if( index >= parts.length || parts[index] != null )
+                return;
+            parts[index] = payload;
+            received++;
+        }
+
+        boolean isComplete()
+        {
+            return received == parts.length;
+        }
+
+        byte[] assemble()
+        {
+            int size = 0;
+            for( byte[] part : parts ) {
+                size += part.length;
+            }
+            byte[] result = new byte[size];
+            int pos = 0;
+            for( byte[] part : parts ) {
+                System.arraycopy(part, 0, result, pos, part.length);
+                pos += part.length;
+            }
+            return result;
+        }
+    }
+}
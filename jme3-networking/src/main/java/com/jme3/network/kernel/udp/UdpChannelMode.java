@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+/**
+ *  The delivery guarantees of a channel that runs over UDP
+ *  through ReliableUdpKernel and ReliableUdpConnector.
+ *
+ *  @version   $Revision$
+ */
+public enum UdpChannelMode
+{
+    /**
+     *  Every message arrives, in the order it was sent.  A lost
+     *  datagram only holds back the messages sent after it on the
+     *  same channel.
+     */
+    ReliableOrdered( true, true ),
+
+    /**
+     *  Every message arrives but each one is delivered as soon as
+     *  it is complete, regardless of what was sent before it.
+     */
+    ReliableUnordered( true, false ),
+
+    /**
+     *  Messages may be lost but never arrive out of order: anything
+     *  older than the newest message already delivered is dropped.
+     *  Suited for state that is resent all the time anyway.
+     */
+    Sequenced( false, true );
+
+    private final boolean reliable;
+    private final boolean ordered;
+
+    private UdpChannelMode( boolean reliable, boolean ordered )
+    {
+        this.reliable = reliable;
+        this.ordered = ordered;
+    }
+
+    public boolean isReliable()
+    {
+        return reliable;
+    }
+
+    public boolean isOrdered()
+    {
+        return ordered;
+    }
+}
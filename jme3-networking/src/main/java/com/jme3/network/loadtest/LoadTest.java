@@ -0,0 +1,583 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.loadtest;
+
+import com.jme3.network.Client;
+import com.jme3.network.ClientStateListener;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageConnection;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Network;
+import com.jme3.network.Server;
+import com.jme3.network.base.DefaultClient;
+import com.jme3.network.base.TcpConnectorFactory;
+import com.jme3.network.kernel.Connector;
+import com.jme3.network.kernel.NamedThreadFactory;
+import com.jme3.network.kernel.tcp.SocketConnector;
+import com.jme3.network.kernel.udp.UdpConnector;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.stats.QueueGauge;
+import com.jme3.network.stats.TrafficStats;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *  A headless load test that starts a server and a number of simulated
+ *  clients over the loopback interface, drives a configurable mix of
+ *  client messages and server broadcasts at fixed rates, and reports
+ *  the server's throughput, the message latencies in both directions
+ *  and the garbage collection activity.
+ *
+ *  <p>The client messages are sent from a small shared scheduler
+ *  rather than from one thread per client.  The UDP path of each client
+ *  can be degraded with latency, jitter and packet loss, see
+ *  SimulatedConnector.</p>
+ *
+ *  <p>The clients run in the same process as the server, which keeps
+ *  the latency time stamps comparable but also means that they compete
+ *  with the server for CPU.  Each client still uses its own reader and
+ *  writer threads, so with many clients on few cores the clients' own
+ *  overhead will show up in the latencies first.</p>
+ *
+ *  <p>It can be run from the command line, for example:<br>
+ *  <code>java com.jme3.network.loadtest.LoadTest -clients 200 -rate 30
+ *  -latency 40 -jitter 10 -loss 0.02</code><br>
+ *  Run it with -help to see all options.</p>
+ *
+ *  @version   $Revision$
+ */
+public class LoadTest
+{
+    static final Logger log = Logger.getLogger(LoadTest.class.getName());
+
+    public static final String GAME_NAME = "jME3 Load Test";
+    public static final int VERSION = 1;
+
+    private int clientCount = 100;
+    private int port = 5110;
+    private double rate = 20;
+    private double broadcastRate = 20;
+    private int broadcastSize = 64;
+    private MessageMix mix = MessageMix.createDefault();
+    private long duration = 10000;
+    private long warmup = 2000;
+    private long latency;
+    private long jitter;
+    private double loss;
+    private boolean udp = true;
+    private int threads = 2;
+    private long connectTimeout = 30000;
+
+    private volatile boolean measuring;
+    private final LongAdder broadcastsReceived = new LongAdder();
+    private LoadTestReport report;
+
+    public LoadTest()
+    {
+        Serializer.registerClass(LoadTestMessage.class);
+    }
+
+    public void setClientCount( int clientCount )
+    {
+        this.clientCount = clientCount;
+    }
+
+    public int getClientCount()
+    {
+        return clientCount;
+    }
+
+    /**
+     *  Sets the TCP and UDP port of the server.
+     */
+    public void setPort( int port )
+    {
+        this.port = port;
+    }
+
+    public int getPort()
+    {
+        return port;
+    }
+
+    /**
+     *  Sets how many messages per second each client sends.
+     */
+    public void setRate( double rate )
+    {
+        this.rate = rate;
+    }
+
+    public double getRate()
+    {
+        return rate;
+    }
+
+    /**
+     *  Sets how many unreliable messages per second the server
+     *  broadcasts to all clients.  0 disables broadcasting.
+     */
+    public void setBroadcastRate( double broadcastRate )
+    {
+        this.broadcastRate = broadcastRate;
+    }
+
+    public double getBroadcastRate()
+    {
+        return broadcastRate;
+    }
+
+    public void setBroadcastSize( int broadcastSize )
+    {
+        this.broadcastSize = broadcastSize;
+    }
+
+    public int getBroadcastSize()
+    {
+        return broadcastSize;
+    }
+
+    public void setMessageMix( MessageMix mix )
+    {
+        this.mix = mix;
+    }
+
+    public MessageMix getMessageMix()
+    {
+        return mix;
+    }
+
+    /**
+     *  Sets the length of the measurement in milliseconds.
+     */
+    public void setDuration( long duration )
+    {
+        this.duration = duration;
+    }
+
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     *  Sets how long in milliseconds the load runs before the
+     *  measurement starts.
+     */
+    public void setWarmup( long warmup )
+    {
+        this.warmup = warmup;
+    }
+
+    public long getWarmup()
+    {
+        return warmup;
+    }
+
+    /**
+     *  Sets the simulated one way latency and the random jitter
+     *  on top of it, in milliseconds, of the clients' UDP traffic.
+     */
+    public void setLatency( long latency, long jitter )
+    {
+        this.latency = latency;
+        this.jitter = jitter;
+    }
+
+    public long getLatency()
+    {
+        return latency;
+    }
+
+    public long getJitter()
+    {
+        return jitter;
+    }
+
+    /**
+     *  Sets the fraction, 0 to 1, of the clients' UDP packets that
+     *  are dropped in each direction.
+     */
+    public void setLoss( double loss )
+    {
+        this.loss = loss;
+    }
+
+    public double getLoss()
+    {
+        return loss;
+    }
+
+    /**
+     *  Sets whether the server and clients use UDP for unreliable
+     *  messages.  Without UDP everything goes over TCP and the
+     *  latency and loss settings have no effect.
+     */
+    public void setUdp( boolean udp )
+    {
+        this.udp = udp;
+    }
+
+    public boolean isUdp()
+    {
+        return udp;
+    }
+
+    /**
+     *  Sets the number of threads that are shared by all of the
+     *  clients to send their messages.
+     */
+    public void setThreads( int threads )
+    {
+        this.threads = threads;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    public void setConnectTimeout( long connectTimeout )
+    {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public long getConnectTimeout()
+    {
+        return connectTimeout;
+    }
+
+    /**
+     *  Runs the load test and returns the results.  Blocks for
+     *  the connection setup, the warmup and the measurement.
+     */
+    public LoadTestReport run() throws IOException, InterruptedException
+    {
+        report = new LoadTestReport();
+        broadcastsReceived.reset();
+        report.clients = clientCount;
+
+        Server server = Network.createServer(GAME_NAME, VERSION, port, udp ? port : -1);
+        server.addMessageListener(new ServerListener(), LoadTestMessage.class);
+        server.start();
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(threads, 
+                                                new NamedThreadFactory("LoadTest", true));
+        List<Client> clients = new ArrayList<>();
+        try {
+            connectClients(clients, scheduler);
+            if( report.connected == 0 ) {
+                log.warning("No client connected, aborting.");
+                return report;
+            }
+            startLoad(server, clients, scheduler);
+
+            Thread.sleep(warmup);
+            measure(server);
+        } finally {
+            scheduler.shutdownNow();
+            for( Client c : clients ) {
+                // Also close the ones that never finished connecting,
+                // their threads would keep the VM alive
+                try {
+                    c.close();
+                } catch( RuntimeException e ) {
+                    log.log(Level.FINE, "Error closing:" + c, e);
+                }
+            }
+            server.close();
+        }
+        return report;
+    }
+
+    protected void connectClients( List<Client> clients, ScheduledExecutorService scheduler ) 
+        throws IOException, InterruptedException
+    {
+        InetAddress address = InetAddress.getLoopbackAddress();
+        final CountDownLatch connected = new CountDownLatch(clientCount);
+        final AtomicInteger errors = new AtomicInteger();
+        ClientStateListener stateListener = new ClientStateListener() {
+                @Override
+                public void clientConnected( Client c )
+                {
+                    connected.countDown();
+                }
+
+                @Override
+                public void clientDisconnected( Client c, DisconnectInfo info )
+                {
+                    if( info != null ) {
+                        log.log(Level.WARNING, "Client disconnected:{0}", info);
+                        errors.incrementAndGet();
+                    }
+                }
+            };
+        MessageListener<Client> broadcastListener = new ClientListener();
+
+        // The network impairments only start once everyone is connected
+        // so that the registration over UDP can't get lost
+        List<SimulatedConnector> simulated = new ArrayList<>();
+        long start = System.nanoTime();
+        for( int i = 0; i < clientCount; i++ ) {
+            Connector reliable = new SocketConnector(address, port);
+            Connector fast = null;
+            if( udp ) {
+                fast = new UdpConnector(address, port);
+                if( latency > 0 || jitter > 0 || loss > 0 ) {
+                    SimulatedConnector sc = new SimulatedConnector(fast, scheduler, latency, jitter, loss);
+                    sc.setEnabled(false);
+                    simulated.add(sc);
+                    fast = sc;
+                }
+            }
+            Client c = new DefaultClient(GAME_NAME, VERSION, reliable, fast, 
+                                         new TcpConnectorFactory(address));
+            c.addClientStateListener(stateListener);
+            c.addMessageListener(broadcastListener, LoadTestMessage.class);
+            c.start();
+            clients.add(c);
+        }
+        connected.await(connectTimeout, TimeUnit.MILLISECONDS);
+        report.connectNanos = System.nanoTime() - start;
+        report.connected = clientCount - (int)connected.getCount();
+        report.errors = errors.get();
+        for( SimulatedConnector sc : simulated ) {
+            sc.setEnabled(true);
+        }
+    }
+
+    protected void startLoad( final Server server, List<Client> clients, ScheduledExecutorService scheduler )
+    {
+        if( rate > 0 ) {
+            long period = (long)(1e9 / rate);
+            for( final Client c : clients ) {
+                if( !c.isConnected() ) 
+                    continue;
+                // Spread the clients over the period so that they
+                // don't all send at once
+                long offset = ThreadLocalRandom.current().nextLong(period);
+                scheduler.scheduleAtFixedRate(new Runnable() {
+                        @Override
+                        public void run()
+                        {
+                            if( !c.isConnected() )
+                                return;
+                            try {
+                                c.send(mix.next(ThreadLocalRandom.current()).createMessage());
+                            } catch( RuntimeException e ) {
+                                log.log(Level.WARNING, "Error sending from:" + c, e);
+                            }
+                        }
+                    }, offset, period, TimeUnit.NANOSECONDS);
+            }
+        }
+        if( broadcastRate > 0 ) {
+            final byte[] payload = new byte[broadcastSize];
+            scheduler.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        server.broadcast(new LoadTestMessage(System.nanoTime(), payload, false));
+                    }
+                }, 0, (long)(1e9 / broadcastRate), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    protected void measure( Server server ) throws InterruptedException
+    {
+        for( HostedConnection hc : server.getConnections() ) {
+            for( QueueGauge g : gauges(hc) ) {
+                g.resetHighWater();
+            }
+        }
+        TrafficStats totals = server.getStats().getTotals();
+        long received = totals.getMessagesReceived();
+        long receivedBytes = totals.getBytesReceived();
+        long sent = totals.getMessagesSent();
+        long sentBytes = totals.getBytesSent();
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+
+        long start = System.nanoTime();
+        measuring = true;
+        Thread.sleep(duration);
+        measuring = false;
+        report.measuredNanos = System.nanoTime() - start;
+
+        report.messagesReceived = totals.getMessagesReceived() - received;
+        report.bytesReceived = totals.getBytesReceived() - receivedBytes;
+        report.messagesSent = totals.getMessagesSent() - sent;
+        report.bytesSent = totals.getBytesSent() - sentBytes;
+        report.broadcastsReceived = broadcastsReceived.sum();
+        report.gcCount = gcCount() - gcCount;
+        report.gcMillis = gcMillis() - gcMillis;
+        report.heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        for( HostedConnection hc : server.getConnections() ) {
+            for( QueueGauge g : gauges(hc) ) {
+                report.maxOutboundQueue = Math.max(report.maxOutboundQueue, g.getHighWater());
+            }
+        }
+    }
+
+    private static List<QueueGauge> gauges( HostedConnection hc )
+    {
+        List<QueueGauge> result = new ArrayList<>();
+        int[] channels = { MessageConnection.CHANNEL_DEFAULT_RELIABLE, MessageConnection.CHANNEL_DEFAULT_UNRELIABLE };
+        for( int channel : channels ) {
+            QueueGauge g = hc.getStats().getOutboundQueue(channel);
+            if( g != null ) 
+                result.add(g);
+        }
+        return result;
+    }
+
+    private static long gcCount()
+    {
+        long result = 0;
+        for( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() ) {
+            result += Math.max(0, gc.getCollectionCount());
+        }
+        return result;
+    }
+
+    private static long gcMillis()
+    {
+        long result = 0;
+        for( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() ) {
+            result += Math.max(0, gc.getCollectionTime());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LoadTest[clients=" + clientCount + ", rate=" + rate + ", mix=" + mix
+                + ", broadcastRate=" + broadcastRate + ", broadcastSize=" + broadcastSize
+                + ", udp=" + udp + ", latency=" + latency + "+" + jitter + "ms, loss=" + loss
+                + ", threads=" + threads + ", warmup=" + warmup + "ms, duration=" + duration + "ms]";
+    }
+
+    private static void usage()
+    {
+        System.out.println("Usage: LoadTest [options]");
+        System.out.println("  -clients <n>          number of simulated clients (100)");
+        System.out.println("  -port <n>             server TCP and UDP port (5110)");
+        System.out.println("  -rate <n>             messages per second per client (20)");
+        System.out.println("  -mix <spec>           message mix, e.g. unreliable:8:24,reliable:1:128");
+        System.out.println("  -broadcastRate <n>    server broadcasts per second (20)");
+        System.out.println("  -broadcastSize <n>    broadcast payload bytes (64)");
+        System.out.println("  -latency <ms>         simulated UDP one way latency (0)");
+        System.out.println("  -jitter <ms>          simulated UDP jitter (0)");
+        System.out.println("  -loss <fraction>      simulated UDP packet loss (0)");
+        System.out.println("  -udp <true|false>     use UDP for unreliable messages (true)");
+        System.out.println("  -threads <n>          shared client sender threads (2)");
+        System.out.println("  -warmup <ms>          warmup before measuring (2000)");
+        System.out.println("  -duration <ms>        measurement length (10000)");
+    }
+
+    public static void main( String... args ) throws Exception
+    {
+        LoadTest test = new LoadTest();
+        long latency = 0;
+        long jitter = 0;
+        for( int i = 0; i < args.length; i++ ) {
+            String arg = args[i];
+            if( "-help".equals(arg) || i + 1 >= args.length ) {
+                usage();
+                return;
+            }
+            String value = args[++i];
+            switch( arg ) {
+                case "-clients": test.setClientCount(Integer.parseInt(value)); break;
+                case "-port": test.setPort(Integer.parseInt(value)); break;
+                case "-rate": test.setRate(Double.parseDouble(value)); break;
+                case "-mix": test.setMessageMix(MessageMix.parse(value)); break;
+                case "-broadcastRate": test.setBroadcastRate(Double.parseDouble(value)); break;
+                case "-broadcastSize": test.setBroadcastSize(Integer.parseInt(value)); break;
+                case "-latency": latency = Long.parseLong(value); break;
+                case "-jitter": jitter = Long.parseLong(value); break;
+                case "-loss": test.setLoss(Double.parseDouble(value)); break;
+                case "-udp": test.setUdp(Boolean.parseBoolean(value)); break;
+                case "-threads": test.setThreads(Integer.parseInt(value)); break;
+                case "-warmup": test.setWarmup(Long.parseLong(value)); break;
+                case "-duration": test.setDuration(Long.parseLong(value)); break;
+                default:
+                    System.out.println("Unknown option:" + arg);
+                    usage();
+                    return;
+            }
+        }
+        test.setLatency(latency, jitter);
+
+        System.out.println(test);
+        LoadTestReport result = test.run();
+        System.out.println(result);
+    }
+
+    private class ServerListener implements MessageListener<HostedConnection>
+    {
+        @Override
+        public void messageReceived( HostedConnection source, Message m )
+        {
+            if( measuring ) {
+                report.upstreamLatency.record(System.nanoTime() - ((LoadTestMessage)m).getTime());
+            }
+        }
+    }
+
+    private class ClientListener implements MessageListener<Client>
+    {
+        @Override
+        public void messageReceived( Client source, Message m )
+        {
+            if( measuring ) {
+                broadcastsReceived.increment();
+                report.downstreamLatency.record(System.nanoTime() - ((LoadTestMessage)m).getTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.loadtest;
+
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.serializing.Serializable;
+
+/**
+ *  The message sent by the simulated clients and broadcast by the
+ *  server during a load test.  The time stamp is the sender's
+ *  System.nanoTime(), which is comparable on the receiving side
+ *  because the clients and the server run in the same process.
+ *
+ *  @version   $Revision$
+ */
+@Serializable
+public class LoadTestMessage extends AbstractMessage
+{
+    private long time;
+    private byte[] payload;
+
+    public LoadTestMessage()
+    {
+    }
+
+    public LoadTestMessage( long time, byte[] payload, boolean reliable )
+    {
+        super(reliable);
+        this.time = time;
+        this.payload = payload;
+    }
+
+    public long getTime()
+    {
+        return time;
+    }
+
+    public byte[] getPayload()
+    {
+        return payload;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LoadTestMessage[time=" + time + ", size=" + (payload == null ? 0 : payload.length) 
+                + ", reliable=" + isReliable() + "]";
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.loadtest;
+
+import com.jme3.network.stats.Histogram;
+import java.util.Locale;
+
+/**
+ *  The results of a LoadTest run.  Latencies are in nanoseconds and
+ *  only cover the measurement period after the warmup.
+ *
+ *  @version   $Revision$
+ */
+public class LoadTestReport
+{
+    int clients;
+    int connected;
+    long connectNanos;
+    long measuredNanos;
+    long messagesReceived;
+    long bytesReceived;
+    long messagesSent;
+    long bytesSent;
+    long broadcastsReceived;
+    int maxOutboundQueue;
+    long gcCount;
+    long gcMillis;
+    long heapUsed;
+    int errors;
+    final Histogram upstreamLatency = new Histogram();
+    final Histogram downstreamLatency = new Histogram();
+
+    LoadTestReport()
+    {
+    }
+
+    /**
+     *  Returns the number of clients that were requested.
+     */
+    public int getClients()
+    {
+        return clients;
+    }
+
+    /**
+     *  Returns the number of clients that connected in time.
+     */
+    public int getConnected()
+    {
+        return connected;
+    }
+
+    /**
+     *  Returns how long it took to connect all of the clients.
+     */
+    public long getConnectNanos()
+    {
+        return connectNanos;
+    }
+
+    public long getMeasuredNanos()
+    {
+        return measuredNanos;
+    }
+
+    /**
+     *  Returns the number of messages the server received
+     *  during the measurement.
+     */
+    public long getMessagesReceived()
+    {
+        return messagesReceived;
+    }
+
+    public long getBytesReceived()
+    {
+        return bytesReceived;
+    }
+
+    /**
+     *  Returns the number of messages the server sent during the
+     *  measurement, counting each broadcast once per connection.
+     */
+    public long getMessagesSent()
+    {
+        return messagesSent;
+    }
+
+    public long getBytesSent()
+    {
+        return bytesSent;
+    }
+
+    /**
+     *  Returns the number of server broadcasts the clients
+     *  received during the measurement.
+     */
+    public long getBroadcastsReceived()
+    {
+        return broadcastsReceived;
+    }
+
+    /**
+     *  Returns the messages per second the server received.
+     */
+    public double getReceiveRate()
+    {
+        return perSecond(messagesReceived);
+    }
+
+    /**
+     *  Returns the messages per second the server sent.
+     */
+    public double getSendRate()
+    {
+        return perSecond(messagesSent);
+    }
+
+    private double perSecond( long count )
+    {
+        return measuredNanos == 0 ? 0 : count * 1e9 / measuredNanos;
+    }
+
+    /**
+     *  Returns the latency from the clients' sends to the server's
+     *  message listener.
+     */
+    public Histogram getUpstreamLatency()
+    {
+        return upstreamLatency;
+    }
+
+    /**
+     *  Returns the latency from the server's broadcasts to the
+     *  clients' message listeners.
+     */
+    public Histogram getDownstreamLatency()
+    {
+        return downstreamLatency;
+    }
+
+    /**
+     *  Returns the highest outbound queue depth seen on any
+     *  server connection.
+     */
+    public int getMaxOutboundQueue()
+    {
+        return maxOutboundQueue;
+    }
+
+    /**
+     *  Returns the number of garbage collections during the
+     *  measurement.
+     */
+    public long getGcCount()
+    {
+        return gcCount;
+    }
+
+    public long getGcMillis()
+    {
+        return gcMillis;
+    }
+
+    /**
+     *  Returns the used heap at the end of the measurement.
+     */
+    public long getHeapUsed()
+    {
+        return heapUsed;
+    }
+
+    /**
+     *  Returns the number of client errors and unexpected
+     *  disconnects.
+     */
+    public int getErrors()
+    {
+        return errors;
+    }
+
+    private static String millis( long nanos )
+    {
+        return String.format(Locale.ROOT, "%.2f ms", nanos / 1e6);
+    }
+
+    private static String latency( Histogram h )
+    {
+        if( h.getCount() == 0 )
+            return "n/a";
+        return "mean " + millis((long)h.getMean()) + ", p50 <" + millis(h.getPercentile(50))
+                + ", p99 <" + millis(h.getPercentile(99)) + ", p99.9 <" + millis(h.getPercentile(99.9))
+                + ", max " + millis(h.getMax());
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "Clients:     %d of %d connected in %s%n",
+                                connected, clients, millis(connectNanos)));
+        sb.append(String.format(Locale.ROOT, "Measured:    %.1f s%n", measuredNanos / 1e9));
+        sb.append(String.format(Locale.ROOT, "Received:    %d msgs, %.0f msgs/s, %.1f KB/s%n",
+                                messagesReceived, getReceiveRate(), perSecond(bytesReceived) / 1024));
+        sb.append(String.format(Locale.ROOT, "Sent:        %d msgs, %.0f msgs/s, %.1f KB/s%n",
+                                messagesSent, getSendRate(), perSecond(bytesSent) / 1024));
+        sb.append(String.format(Locale.ROOT, "Broadcasts:  %d received by clients%n", broadcastsReceived));
+        sb.append("Upstream:    ").append(latency(upstreamLatency)).append(String.format("%n"));
+        sb.append("Downstream:  ").append(latency(downstreamLatency)).append(String.format("%n"));
+        sb.append(String.format(Locale.ROOT, "Out queue:   %d max%n", maxOutboundQueue));
+        sb.append(String.format(Locale.ROOT, "GC:          %d collections, %d ms, %.1f MB heap used%n",
+                                gcCount, gcMillis, heapUsed / (1024.0 * 1024.0)));
+        sb.append(String.format(Locale.ROOT, "Errors:      %d", errors));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  A weighted mix of the messages that the simulated clients send.
+ *  Each entry has a payload size, a reliability and a weight, the
+ *  clients pick the next message at random according to the weights.
+ *
+ *  <p>A mix can be parsed from a string of comma separated
+ *  entries of the form reliable|unreliable:weight:size, for example
+ *  "unreliable:8:24,reliable:1:128".</p>
+ *
+ *  @version   $Revision$
+ */
+public class MessageMix
+{
+    private final List<Entry> entries = new ArrayList<>();
+    private int totalWeight;
+
+    public MessageMix()
+    {
+    }
+
+    /**
+     *  Returns the default mix: mostly small unreliable state updates
+     *  with the occasional larger reliable event.
+     */
+    public static MessageMix createDefault()
+    {
+        return new MessageMix().add(false, 8, 24).add(true, 1, 128);
+    }
+
+    public static MessageMix parse( String spec )
+    {
+        MessageMix result = new MessageMix();
+        for( String s : spec.split(",") ) {
+            String[] parts = s.trim().split(":");
+            if( parts.length != 3 )
+                throw new IllegalArgumentException( "Invalid mix entry:" + s );
+            boolean reliable;
+            if( "reliable".equals(parts[0]) ) {
+                reliable = true;
+            } else if( "unreliable".equals(parts[0]) ) {
+                reliable = false;
+            } else {
+                throw new IllegalArgumentException( "Invalid mix entry:" + s );
+            }
+            result.add(reliable, Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        }
+        return result;
+    }
+
+    /**
+     *  Adds an entry to this mix and returns the mix.
+     */
+    public MessageMix add( boolean reliable, int weight, int size )
+    {
+        if( weight <= 0 )
+            throw new IllegalArgumentException( "Weight must be positive:" + weight );
+        if( size < 0 || size > 32000 )
+            throw new IllegalArgumentException( "Invalid payload size:" + size );
+        entries.add(new Entry(reliable, weight, size));
+        totalWeight += weight;
+        return this;
+    }
+
+    public List<Entry> getEntries()
+    {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     *  Picks a random entry according to the weights.
+     */
+    public Entry next( Random random )
+    {
+        if( entries.isEmpty() )
+            throw new IllegalStateException( "Message mix is empty." );
+        int pick = random.nextInt(totalWeight);
+        for( Entry e : entries ) {
+            pick -= e.weight;
+            if( pick < 0 )
+                return e;
+        }
+        return entries.get(entries.size() - 1);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for( Entry e : entries ) {
+            if( sb.length() > 0 )
+                sb.append(",");
+            sb.append(e);
+        }
+        return sb.toString();
+    }
+
+    public static class Entry
+    {
+        private final boolean reliable;
+        private final int weight;
+        private final int size;
+        private final byte[] payload;
+
+        Entry( boolean reliable, int weight, int size )
+        {
+            this.reliable = reliable;
+            this.weight = weight;
+            this.size = size;
+            this.payload = new byte[size];
+        }
+
+        public boolean isReliable()
+        {
+            return reliable;
+        }
+
+        public int getWeight()
+        {
+            return weight;
+        }
+
+        public int getSize()
+        {
+            return size;
+        }
+
+        /**
+         *  Creates a message for this entry.  The payload array
+         *  is shared by all messages of the entry.
+         */
+        public LoadTestMessage createMessage()
+        {
+            return new LoadTestMessage(System.nanoTime(), payload, reliable);
+        }
+
+        @Override
+        public String toString()
+        {
+            return (reliable ? "reliable" : "unreliable") + ":" + weight + ":" + size;
+        }
+    }
+}
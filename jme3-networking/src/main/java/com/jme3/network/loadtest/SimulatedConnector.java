@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.loadtest;
+
+import com.jme3.network.kernel.Connector;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *  Wraps a Connector, usually a UdpConnector, and simulates a bad
+ *  network by dropping a fraction of the packets in both directions
+ *  and delaying the remaining ones by a latency with random jitter.
+ *  Jitter can reorder packets just like a real network would.
+ *
+ *  <p>Outbound packets are delayed on the shared scheduler.  Inbound
+ *  packets are read by a pump thread, only started when there is
+ *  latency to simulate, and handed to read() once they are due.</p>
+ *
+ *  @version   $Revision$
+ */
+public class SimulatedConnector implements Connector
+{
+    static final Logger log = Logger.getLogger(SimulatedConnector.class.getName());
+
+    private static final Packet CLOSED = new Packet(null, 0);
+
+    private final Connector delegate;
+    private final ScheduledExecutorService scheduler;
+    private final long latency;
+    private final long jitter;
+    private final double loss;
+    private final DelayQueue<Packet> inbound = new DelayQueue<>();
+    private volatile boolean enabled = true;
+    private Thread pump;
+
+    /**
+     *  Creates a connector that delays each packet by the latency
+     *  plus a random jitter, both in milliseconds, and drops the
+     *  specified fraction, 0 to 1, of the packets.
+     */
+    public SimulatedConnector( Connector delegate, ScheduledExecutorService scheduler,
+                               long latency, long jitter, double loss )
+    {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.latency = TimeUnit.MILLISECONDS.toNanos(latency);
+        this.jitter = TimeUnit.MILLISECONDS.toNanos(jitter);
+        this.loss = loss;
+        if( this.latency > 0 || this.jitter > 0 ) {
+            pump = new Thread( new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        pumpInbound();
+                    }
+                }, "SimulatedConnector-" + delegate );
+            pump.setDaemon(true);
+            pump.start();
+        }
+    }
+
+    /**
+     *  Turns the simulated latency and loss on or off.  When off,
+     *  packets pass through unchanged.
+     */
+    public void setEnabled( boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    private boolean drop()
+    {
+        return enabled && loss > 0 && ThreadLocalRandom.current().nextDouble() < loss;
+    }
+
+    private long delay()
+    {
+        if( !enabled )
+            return 0;
+        Random random = ThreadLocalRandom.current();
+        return latency + (jitter > 0 ? (long)(random.nextDouble() * jitter) : 0);
+    }
+
+    private static ByteBuffer copy( ByteBuffer data )
+    {
+        ByteBuffer result = ByteBuffer.allocate(data.remaining());
+        result.put(data);
+        result.flip();
+        return result;
+    }
+
+    private void pumpInbound()
+    {
+        try {
+            ByteBuffer data;
+            while( (data = delegate.read()) != null ) {
+                if( drop() )
+                    continue;
+                inbound.add(new Packet(copy(data), System.nanoTime() + delay()));
+            }
+        } catch( RuntimeException e ) {
+            log.log(Level.FINE, "Inbound pump stopped", e);
+        } finally {
+            inbound.add(CLOSED);
+        }
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return delegate.isConnected();
+    }
+
+    @Override
+    public void close()
+    {
+        delegate.close();
+    }
+
+    @Override
+    public boolean available()
+    {
+        if( pump == null )
+            return delegate.available();
+        return inbound.peek() != null && inbound.peek().getDelay(TimeUnit.NANOSECONDS) <= 0;
+    }
+
+    @Override
+    public ByteBuffer read()
+    {
+        if( pump == null ) {
+            ByteBuffer data;
+            while( (data = delegate.read()) != null ) {
+                if( !drop() )
+                    return data;
+            }
+            return null;
+        }
+        try {
+            Packet p = inbound.take();
+            if( p == CLOSED ) {
+                // Leave it for any other reader
+                inbound.add(CLOSED);
+                return null;
+            }
+            return p.data;
+        } catch( InterruptedException e ) {
+            return null;
+        }
+    }
+
+    @Override
+    public void write( final ByteBuffer data )
+    {
+        if( drop() ) {
+            data.position(data.limit());
+            return;
+        }
+        long delay = delay();
+        if( delay <= 0 ) {
+            delegate.write(data);
+            return;
+        }
+        final ByteBuffer copy = copy(data);
+        scheduler.schedule(new Runnable() {
+                @Override
+                public void run()
+                {
+                    try {
+                        delegate.write(copy);
+                    } catch( RuntimeException e ) {
+                        // Likely closed while the packet was in flight
+                        log.log(Level.FINE, "Error writing delayed packet", e);
+                    }
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SimulatedConnector[" + delegate + "]";
+    }
+
+    private static class Packet implements Delayed
+    {
+        final ByteBuffer data;
+        final long due;
+
+        Packet( ByteBuffer data, long due )
+        {
+            this.data = data;
+            this.due = due;
+        }
+
+        @Override
+        public long getDelay( TimeUnit unit )
+        {
+            return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo( Delayed o )
+        {
+            return Long.compare(due, ((Packet)o).due);
+        }
+    }
+}
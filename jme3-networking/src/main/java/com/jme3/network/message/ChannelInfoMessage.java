@@ -32,6 +32,7 @@
 package com.jme3.network.message;
 
 import com.jme3.network.AbstractMessage;
+import com.jme3.network.kernel.udp.UdpChannelMode;
 import com.jme3.network.serializing.Serializable;
 import java.util.Arrays;
 import java.util.List;
@@ -45,6 +46,7 @@ import java.util.List;
 public class ChannelInfoMessage extends AbstractMessage {
     private long id;
     private int[] ports;
+    private byte[] modes;
 
     public ChannelInfoMessage() {
         super( true );        
@@ -59,6 +61,23 @@ public class ChannelInfoMessage extends AbstractMessage {
         }        
     }
 
+    /**
+     *  Creates a channel info message that also tells the client which
+     *  channels run over UDP.  A null mode means a TCP channel.
+     */
+    public ChannelInfoMessage( long id, List<Integer> ports, List<UdpChannelMode> modes ) {
+        this( id, ports );
+        for( UdpChannelMode mode : modes ) {
+            if( mode == null )
+                continue;
+            this.modes = new byte[modes.size()];
+            for( int i = 0; i < modes.size(); i++ ) {
+                this.modes[i] = (byte)(modes.get(i) == null ? 0 : modes.get(i).ordinal() + 1);
+            }
+            break;
+        }
+    }
+
     public long getId() {
         return id;
     }
@@ -66,9 +85,20 @@ public class ChannelInfoMessage extends AbstractMessage {
     public int[] getPorts() {
         return ports;
     }
+
+    /**
+     *  Returns the UDP mode of the specified channel or null if
+     *  it is a TCP channel.
+     */
+    public UdpChannelMode getMode( int channel ) {
+        if( modes == null || modes[channel] == 0 )
+            return null;
+        return UdpChannelMode.values()[modes[channel] - 1];
+    }
     
     @Override
     public String toString() {
-        return "ChannelInfoMessage[" + id + ", " + Arrays.asList(ports) + "]";
+        return "ChannelInfoMessage[" + id + ", " + Arrays.toString(ports) 
+                + (modes == null ? "" : ", " + Arrays.toString(modes)) + "]";
     }
 }
@@ -76,22 +76,24 @@ public class RmiSerializer extends Serializer {
 
     private void writeType(ByteBuffer buffer, Class<?> clazz) throws IOException{
         if (clazz == void.class){
-            buffer.putShort((short)0);
+            Serializer.writeClassId(buffer, (short)0);
         } else {
             SerializerRegistration reg = Serializer.getSerializerRegistration(clazz);
             if (reg == null){
                 logger.log(Level.WARNING, "Unknown class: {0}", clazz);
                 throw new IOException(); // prevents message from being serialized
             }
-            buffer.putShort(reg.getId());
+            Serializer.writeClassId(buffer, reg.getId());
         }
     }
 
     private Class<?> readType(ByteBuffer buffer) throws IOException{
+        int start = buffer.position();
         SerializerRegistration reg = Serializer.readClass(buffer);
         if (reg == null){
             // either "void" or unknown val
-            short id = buffer.getShort(buffer.position()-2);
+            buffer.position(start);
+            short id = Serializer.readClassId(buffer);
             if (id == 0){
                 return void.class;
             } else{
@@ -64,6 +64,8 @@ public abstract class Serializer {
     private static final List<SerializerRegistration> registrations                 = new ArrayList<SerializerRegistration>();
 
     private static final Serializer                         fieldSerializer         = new FieldSerializer();
+    private static final Serializer                         generatedFieldSerializer = new GeneratedFieldSerializer();
+    private static final Serializer                         compactFieldSerializer  = new CompactFieldSerializer();
     private static final Serializer                         serializableSerializer  = new SerializableSerializer();
     private static final Serializer                         arraySerializer         = new ArraySerializer();
 
@@ -71,6 +73,10 @@ public abstract class Serializer {
 
     private static boolean strictRegistration = true;
 
+    private static boolean generatedFieldSerializers = false;
+
+    private static boolean compactClassIds = false;
+
     private static volatile boolean locked = false;
     
 
@@ -161,6 +167,42 @@ public abstract class Serializer {
         strictRegistration = b;
     }
 
+    /**
+     *  When set to true, classes that are registered without a serializer of
+     *  their own use the {@link GeneratedFieldSerializer} instead of the
+     *  reflection based {@link FieldSerializer}.  Both produce the same wire
+     *  format.  Defaults to false.  Only affects classes registered afterwards.
+     */
+    public static void setGeneratedFieldSerializers( boolean b ) {
+        generatedFieldSerializers = b;
+    }
+
+    public static boolean isGeneratedFieldSerializers() {
+        return generatedFieldSerializers;
+    }
+
+    /**
+     *  When set to true, class IDs are written as zig-zag variable length
+     *  integers instead of shorts.  The automatically assigned IDs and null
+     *  then take a single byte.  This changes the wire format of every
+     *  message, including the connection handshake, so clients and server
+     *  must agree on it.  Defaults to false.
+     */
+    public static void setCompactClassIds( boolean b ) {
+        compactClassIds = b;
+    }
+
+    public static boolean isCompactClassIds() {
+        return compactClassIds;
+    }
+
+    /**
+     *  Returns the serializer used for classes that do not specify their own.
+     */
+    private static Serializer getDefaultFieldSerializer() {
+        return generatedFieldSerializers ? generatedFieldSerializer : fieldSerializer;
+    }
+
     public static SerializerRegistration registerClass(Class cls) {
         return registerClass(cls, true);
     }
@@ -238,9 +280,16 @@ public abstract class Serializer {
             short classId = serializable.id();
             if (classId == 0) classId = nextId();
 
-            Serializer serializer = getSerializer(serializerClass, false);
+            Serializer serializer;
+            if (serializerClass == GeneratedFieldSerializer.class) {
+                serializer = generatedFieldSerializer;
+            } else if (serializerClass == CompactFieldSerializer.class) {
+                serializer = compactFieldSerializer;
+            } else {
+                serializer = getSerializer(serializerClass, false);
+            }
 
-            if (serializer == null) serializer = fieldSerializer;
+            if (serializer == null || serializer == fieldSerializer) serializer = getDefaultFieldSerializer();
 
             SerializerRegistration existingReg = getExactSerializerRegistration(cls);
 
@@ -371,7 +420,7 @@ public abstract class Serializer {
         if( failOnMiss ) {
             throw new IllegalArgumentException( "Class has not been registered:" + cls );
         }
-        return registerClass(cls, fieldSerializer);
+        return registerClass(cls, getDefaultFieldSerializer());
     }
 
 
@@ -385,7 +434,12 @@ public abstract class Serializer {
      * @return The SerializerRegistration, or null if non-existent.
      */
     public static SerializerRegistration readClass(ByteBuffer buffer) {
-        short classID = buffer.getShort();
+        short classID;
+        try {
+            classID = readClassId(buffer);
+        } catch (SerializerException e) {
+            return null;
+        }
         if (classID == -1) return NULL_CLASS;
         return idRegistrations.get(classID);
     }
@@ -421,10 +475,31 @@ public abstract class Serializer {
         if( log.isLoggable(Level.FINER) ) {
             log.log(Level.FINER, "writing class:{0} with ID:{1}", new Object[]{type, reg.getId()});
         }
-        buffer.putShort(reg.getId());
+        writeClassId(buffer, reg.getId());
         return reg;
     }
 
+    /**
+     * Writes a raw class ID in the current class ID encoding.
+     */
+    public static void writeClassId(ByteBuffer buffer, short id) {
+        if (compactClassIds) {
+            CompactEncoding.writeSignedVarInt(buffer, id);
+        } else {
+            buffer.putShort(id);
+        }
+    }
+
+    /**
+     * Reads a raw class ID written by writeClassId().
+     */
+    public static short readClassId(ByteBuffer buffer) throws SerializerException {
+        if (compactClassIds) {
+            return (short)CompactEncoding.readSignedVarInt(buffer);
+        }
+        return buffer.getShort();
+    }
+
     /**
      * Write the class and object.
      *
@@ -434,7 +509,7 @@ public abstract class Serializer {
      */
     public static void writeClassAndObject(ByteBuffer buffer, Object object) throws IOException {
         if (object == null) {
-            buffer.putShort((short)-1);
+            writeClassId(buffer, (short)-1);
             return;
         }
         SerializerRegistration reg = writeClass(buffer, object.getClass());
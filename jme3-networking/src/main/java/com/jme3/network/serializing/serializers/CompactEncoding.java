@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.network.serializing.SerializerException;
+import java.nio.ByteBuffer;
+
+/**
+ * Static helpers for the compact encodings: zig-zag variable length
+ *  integers, quantized floats and 32 bit smallest-three quaternions.
+ *
+ *  Variable length integers use seven bits per byte with the high bit
+ *  set on every byte but the last.  Zig-zag encoding maps small negative
+ *  values to small positive ones first, so -1 and 1 both take one byte.
+ */
+public final class CompactEncoding {
+
+    private static final float ROTATION_RANGE = FastMath.sqrt(2) / 2;
+    private static final int ROTATION_MASK = 0x3ff;
+    // Odd number of steps so that zero is exact
+    private static final int ROTATION_HALF_STEPS = 511;
+
+    private CompactEncoding() {
+    }
+
+    public static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes the value as an unsigned variable length integer.
+     */
+    public static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte)((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+
+    public static int readVarInt(ByteBuffer buffer) throws SerializerException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new SerializerException("Malformed variable length int");
+    }
+
+    public static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer.put((byte)((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+
+    public static long readVarLong(ByteBuffer buffer) throws SerializerException {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.get();
+            result |= (long)(b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new SerializerException("Malformed variable length long");
+    }
+
+    /**
+     * Writes a signed value as a zig-zag variable length integer.
+     */
+    public static void writeSignedVarInt(ByteBuffer buffer, int value) {
+        writeVarInt(buffer, zigZag(value));
+    }
+
+    public static int readSignedVarInt(ByteBuffer buffer) throws SerializerException {
+        return unZigZag(readVarInt(buffer));
+    }
+
+    public static void writeSignedVarLong(ByteBuffer buffer, long value) {
+        writeVarLong(buffer, zigZag(value));
+    }
+
+    public static long readSignedVarLong(ByteBuffer buffer) throws SerializerException {
+        return unZigZag(readVarLong(buffer));
+    }
+
+    /**
+     * Writes the value rounded to a multiple of the precision.
+     */
+    public static void writeQuantized(ByteBuffer buffer, float value, float precision) {
+        writeSignedVarInt(buffer, Math.round(value / precision));
+    }
+
+    public static float readQuantized(ByteBuffer buffer, float precision) throws SerializerException {
+        return readSignedVarInt(buffer) * precision;
+    }
+
+    /**
+     * Packs a rotation into 32 bits.  The largest component is dropped,
+     * after flipping the sign of the quaternion so that it is positive,
+     * and its index is kept in the top two bits.  The other three are
+     * in the range +/- sqrt(2)/2 and get ten bits each.
+     */
+    public static int packQuaternion(Quaternion q) {
+        float x = q.getX(), y = q.getY(), z = q.getZ(), w = q.getW();
+        float len = FastMath.sqrt(x * x + y * y + z * z + w * w);
+        if (len == 0) {
+            return packQuaternion(Quaternion.IDENTITY);
+        }
+        float[] c = { x / len, y / len, z / len, w / len };
+        int largest = 0;
+        for (int i = 1; i < 4; i++) {
+            if (Math.abs(c[i]) > Math.abs(c[largest])) {
+                largest = i;
+            }
+        }
+        float sign = c[largest] < 0 ? -1 : 1;
+        int result = largest;
+        for (int i = 0; i < 4; i++) {
+            if (i == largest) {
+                continue;
+            }
+            int bits = Math.round(c[i] * sign / ROTATION_RANGE * ROTATION_HALF_STEPS);
+            bits = Math.max(-ROTATION_HALF_STEPS, Math.min(ROTATION_HALF_STEPS, bits)) + ROTATION_HALF_STEPS;
+            result = (result << 10) | bits;
+        }
+        return result;
+    }
+
+    public static Quaternion unpackQuaternion(int packed, Quaternion store) {
+        if (store == null) {
+            store = new Quaternion();
+        }
+        int largest = (packed >>> 30) & 0x3;
+        float c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+        float sum = 0;
+        int shift = 20;
+        for (int i = 0; i < 4; i++) {
+            if (i == largest) {
+                continue;
+            }
+            int bits = (packed >>> shift) & ROTATION_MASK;
+            shift -= 10;
+            float v = (bits - ROTATION_HALF_STEPS) / (float)ROTATION_HALF_STEPS * ROTATION_RANGE;
+            sum += v * v;
+            switch (i) {
+                case 0: c0 = v; break;
+                case 1: c1 = v; break;
+                case 2: c2 = v; break;
+                default: c3 = v; break;
+            }
+        }
+        float rest = FastMath.sqrt(Math.max(0, 1 - sum));
+        switch (largest) {
+            case 0: c0 = rest; break;
+            case 1: c1 = rest; break;
+            case 2: c2 = rest; break;
+            default: c3 = rest; break;
+        }
+        return store.set(c0, c1, c2, c3);
+    }
+}
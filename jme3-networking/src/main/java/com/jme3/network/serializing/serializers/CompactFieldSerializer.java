@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.serializing.Quantize;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.serializing.SerializerException;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A field serializer that trades a little CPU for smaller messages.
+ *  Select it per class with {@code @Serializable(serializer=CompactFieldSerializer.class)}.
+ *
+ *  <p>Every object starts with a presence bitmask holding one bit per
+ *  field, in the same name order that the FieldSerializer uses.  Boolean
+ *  fields are stored in their bit directly.  For other fields the bit
+ *  tells whether a value follows: null references and zero primitives
+ *  are not written at all.  Present values are written as follows:</p>
+ *  <ul>
+ *  <li>short, int and long: zig-zag variable length integers.</li>
+ *  <li>char: variable length integer.</li>
+ *  <li>float, Vector3f and Quaternion: full precision, or quantized when
+ *      the field is annotated with {@link Quantize}.</li>
+ *  <li>String: through the CompactStringSerializer and its string table.</li>
+ *  <li>Anything else: like the FieldSerializer does.</li>
+ *  </ul>
+ */
+public class CompactFieldSerializer extends Serializer {
+
+    private static final int BOOLEAN = 0;
+    private static final int BYTE = 1;
+    private static final int SHORT = 2;
+    private static final int CHAR = 3;
+    private static final int INT = 4;
+    private static final int LONG = 5;
+    private static final int FLOAT = 6;
+    private static final int DOUBLE = 7;
+    private static final int VECTOR3 = 8;
+    private static final int QUATERNION = 9;
+    private static final int STRING = 10;
+    private static final int OBJECT = 11;
+
+    private static Map<Class<?>, CompactField[]> savedFields = new HashMap<Class<?>, CompactField[]>();
+    private static Map<Class<?>, Constructor<?>> savedCtors = new HashMap<Class<?>, Constructor<?>>();
+
+    @Override
+    public void initialize(Class clazz) {
+        try {
+            Constructor<?> ctor = ((Class<?>) clazz).getDeclaredConstructor();
+            ctor.setAccessible(true);
+            savedCtors.put(clazz, ctor);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Registration error: no-argument constructor not found on:" + clazz);
+        }
+
+        List<Field> fields = new ArrayList<Field>();
+        Class<?> processingClass = clazz;
+        while (processingClass != Object.class) {
+            Collections.addAll(fields, processingClass.getDeclaredFields());
+            processingClass = processingClass.getSuperclass();
+        }
+
+        List<CompactField> cachedFields = new ArrayList<CompactField>(fields.size());
+        for (Field field : fields) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isTransient(modifiers)) continue;
+            if (Modifier.isFinal(modifiers)) continue;
+            if (Modifier.isStatic(modifiers)) continue;
+            if (field.isSynthetic()) continue;
+            field.setAccessible(true);
+
+            CompactField cached = new CompactField();
+            cached.field = field;
+            Quantize quantize = field.getAnnotation(Quantize.class);
+            cached.quantized = quantize != null;
+            cached.precision = quantize != null ? quantize.value() : 0;
+
+            Class<?> type = field.getType();
+            if (type == boolean.class) cached.kind = BOOLEAN;
+            else if (type == byte.class) cached.kind = BYTE;
+            else if (type == short.class) cached.kind = SHORT;
+            else if (type == char.class) cached.kind = CHAR;
+            else if (type == int.class) cached.kind = INT;
+            else if (type == long.class) cached.kind = LONG;
+            else if (type == float.class) cached.kind = FLOAT;
+            else if (type == double.class) cached.kind = DOUBLE;
+            else if (type == Vector3f.class) cached.kind = VECTOR3;
+            else if (type == Quaternion.class) cached.kind = QUATERNION;
+            else if (type == String.class) cached.kind = STRING;
+            else {
+                cached.kind = OBJECT;
+                if (Modifier.isFinal(type.getModifiers())) {
+                    // Same nested registration as the FieldSerializer does
+                    cached.serializer = Serializer.getSerializer(type, false);
+                }
+            }
+            if (cached.quantized && cached.kind != FLOAT && cached.kind != VECTOR3
+                                 && cached.kind != QUATERNION) {
+                throw new RuntimeException("Registration error: @Quantize not supported on:" + field);
+            }
+            if (cached.quantized && cached.kind != QUATERNION && cached.precision <= 0) {
+                throw new RuntimeException("Registration error: @Quantize precision must be positive on:" + field);
+            }
+            cachedFields.add(cached);
+        }
+
+        Collections.sort(cachedFields, new Comparator<CompactField>() {
+            @Override
+            public int compare(CompactField o1, CompactField o2) {
+                return o1.field.getName().compareTo(o2.field.getName());
+            }
+        });
+        savedFields.put(clazz, cachedFields.toArray(new CompactField[cachedFields.size()]));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T readObject(ByteBuffer data, Class<T> c) throws IOException {
+        if (data.get() == 0x0)
+            return null;
+
+        CompactField[] fields = savedFields.get(c);
+        T object;
+        try {
+            Constructor<T> ctor = (Constructor<T>) savedCtors.get(c);
+            object = ctor.newInstance();
+        } catch (Exception e) {
+            throw new SerializerException("Error creating object of type:" + c, e);
+        }
+
+        byte[] mask = new byte[(fields.length + 7) >> 3];
+        data.get(mask);
+        for (int i = 0; i < fields.length; i++) {
+            boolean present = (mask[i >> 3] & (1 << (i & 7))) != 0;
+            try {
+                fields[i].read(data, object, present);
+            } catch (IllegalAccessException e) {
+                throw new SerializerException("Error reading object", e);
+            }
+        }
+        return object;
+    }
+
+    @Override
+    public void writeObject(ByteBuffer buffer, Object object) throws IOException {
+        buffer.put((byte)(object != null ? 0x1 : 0x0));
+        if (object == null) {
+            return;
+        }
+
+        CompactField[] fields = savedFields.get(object.getClass());
+        if (fields == null)
+            throw new IOException("The " + object.getClass() + " is not registered"
+                                + " in the serializer!");
+
+        // Reserve the mask and fill it in while writing the values
+        int maskStart = buffer.position();
+        int maskSize = (fields.length + 7) >> 3;
+        for (int i = 0; i < maskSize; i++) {
+            buffer.put((byte)0);
+        }
+        for (int i = 0; i < fields.length; i++) {
+            boolean present;
+            try {
+                present = fields[i].write(buffer, object);
+            } catch (BufferOverflowException boe) {
+                throw boe;
+            } catch (IllegalAccessException e) {
+                throw new SerializerException("Unable to access field:" + fields[i].field + " on:" + object, e);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SerializerException("Error writing object for field:" + fields[i].field, e);
+            }
+            if (present) {
+                int index = maskStart + (i >> 3);
+                buffer.put(index, (byte)(buffer.get(index) | (1 << (i & 7))));
+            }
+        }
+    }
+
+    private static final class CompactField {
+        Field field;
+        int kind;
+        boolean quantized;
+        float precision;
+        Serializer serializer;
+
+        /**
+         * Writes the value if it isn't the default and returns whether
+         * the presence bit should be set.
+         */
+        boolean write(ByteBuffer buffer, Object object) throws IOException, IllegalAccessException {
+            switch (kind) {
+                case BOOLEAN:
+                    return field.getBoolean(object);
+                case BYTE: {
+                    byte v = field.getByte(object);
+                    if (v == 0) return false;
+                    buffer.put(v);
+                    return true;
+                }
+                case SHORT: {
+                    short v = field.getShort(object);
+                    if (v == 0) return false;
+                    CompactEncoding.writeSignedVarInt(buffer, v);
+                    return true;
+                }
+                case CHAR: {
+                    char v = field.getChar(object);
+                    if (v == 0) return false;
+                    CompactEncoding.writeVarInt(buffer, v);
+                    return true;
+                }
+                case INT: {
+                    int v = field.getInt(object);
+                    if (v == 0) return false;
+                    CompactEncoding.writeSignedVarInt(buffer, v);
+                    return true;
+                }
+                case LONG: {
+                    long v = field.getLong(object);
+                    if (v == 0) return false;
+                    CompactEncoding.writeSignedVarLong(buffer, v);
+                    return true;
+                }
+                case FLOAT: {
+                    float v = field.getFloat(object);
+                    // Bit compare so that -0 and NaN survive
+                    if (Float.floatToRawIntBits(v) == 0) return false;
+                    if (quantized) {
+                        CompactEncoding.writeQuantized(buffer, v, precision);
+                    } else {
+                        buffer.putFloat(v);
+                    }
+                    return true;
+                }
+                case DOUBLE: {
+                    double v = field.getDouble(object);
+                    if (Double.doubleToRawLongBits(v) == 0) return false;
+                    buffer.putDouble(v);
+                    return true;
+                }
+                case VECTOR3: {
+                    Vector3f v = (Vector3f)field.get(object);
+                    if (v == null) return false;
+                    writeFloat(buffer, v.x);
+                    writeFloat(buffer, v.y);
+                    writeFloat(buffer, v.z);
+                    return true;
+                }
+                case QUATERNION: {
+                    Quaternion q = (Quaternion)field.get(object);
+                    if (q == null) return false;
+                    if (quantized) {
+                        buffer.putInt(CompactEncoding.packQuaternion(q));
+                    } else {
+                        buffer.putFloat(q.getX());
+                        buffer.putFloat(q.getY());
+                        buffer.putFloat(q.getZ());
+                        buffer.putFloat(q.getW());
+                    }
+                    return true;
+                }
+                case STRING: {
+                    String s = (String)field.get(object);
+                    if (s == null) return false;
+                    CompactStringSerializer.writeString(s, buffer);
+                    return true;
+                }
+                default: {
+                    Object v = field.get(object);
+                    if (v == null) return false;
+                    if (serializer != null) {
+                        serializer.writeObject(buffer, v);
+                    } else {
+                        Serializer.writeClassAndObject(buffer, v);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        void read(ByteBuffer data, Object object, boolean present) throws IOException, IllegalAccessException {
+            switch (kind) {
+                case BOOLEAN:
+                    field.setBoolean(object, present);
+                    return;
+                case BYTE:
+                    field.setByte(object, present ? data.get() : 0);
+                    return;
+                case SHORT:
+                    field.setShort(object, present ? (short)CompactEncoding.readSignedVarInt(data) : 0);
+                    return;
+                case CHAR:
+                    field.setChar(object, present ? (char)CompactEncoding.readVarInt(data) : 0);
+                    return;
+                case INT:
+                    field.setInt(object, present ? CompactEncoding.readSignedVarInt(data) : 0);
+                    return;
+                case LONG:
+                    field.setLong(object, present ? CompactEncoding.readSignedVarLong(data) : 0);
+                    return;
+                case FLOAT:
+                    field.setFloat(object, present ? readFloat(data) : 0);
+                    return;
+                case DOUBLE:
+                    field.setDouble(object, present ? data.getDouble() : 0);
+                    return;
+            }
+            if (!present) {
+                field.set(object, null);
+                return;
+            }
+            Object value;
+            switch (kind) {
+                case VECTOR3:
+                    value = new Vector3f(readFloat(data), readFloat(data), readFloat(data));
+                    break;
+                case QUATERNION:
+                    if (quantized) {
+                        value = CompactEncoding.unpackQuaternion(data.getInt(), null);
+                    } else {
+                        value = new Quaternion(data.getFloat(), data.getFloat(), data.getFloat(), data.getFloat());
+                    }
+                    break;
+                case STRING:
+                    value = CompactStringSerializer.readString(data);
+                    break;
+                default:
+                    if (serializer != null) {
+                        value = serializer.readObject(data, field.getType());
+                    } else {
+                        value = Serializer.readClassAndObject(data);
+                    }
+                    break;
+            }
+            field.set(object, value);
+        }
+
+        private void writeFloat(ByteBuffer buffer, float v) {
+            if (quantized) {
+                CompactEncoding.writeQuantized(buffer, v, precision);
+            } else {
+                buffer.putFloat(v);
+            }
+        }
+
+        private float readFloat(ByteBuffer data) throws IOException {
+            return quantized ? CompactEncoding.readQuantized(data, precision) : data.getFloat();
+        }
+    }
+}
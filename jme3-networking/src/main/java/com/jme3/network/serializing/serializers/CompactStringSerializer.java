@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * String serializer that replaces frequently sent strings with their
+ *  index in a shared string table and writes all other lengths as
+ *  variable length integers.
+ *
+ *  The table works like class registration: both ends must register
+ *  the same strings in the same order, usually right next to the
+ *  message class registrations.  Strings can not be registered while
+ *  messages are being sent.
+ *
+ *  Each string starts with a variable length integer: 0 for null, 1 for
+ *  a literal that follows as length and UTF-8 bytes, and 2 and up for
+ *  table entry value - 2.
+ */
+@SuppressWarnings("unchecked")
+public class CompactStringSerializer extends Serializer {
+
+    private static final List<String> table = new ArrayList<String>();
+    private static final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+    /**
+     * Adds the strings to the shared table, skipping any that are
+     * already in it.
+     */
+    public static synchronized void registerStrings(String... strings) {
+        for (String s : strings) {
+            if (s == null || indexes.containsKey(s)) {
+                continue;
+            }
+            indexes.put(s, table.size());
+            table.add(s);
+        }
+    }
+
+    public static synchronized int getStringCount() {
+        return table.size();
+    }
+
+    public static synchronized void clearStrings() {
+        table.clear();
+        indexes.clear();
+    }
+
+    private static synchronized Integer indexOf(String s) {
+        return indexes.get(s);
+    }
+
+    private static synchronized String get(int index) throws IOException {
+        if (index >= table.size()) {
+            throw new IOException("Unknown string table index:" + index);
+        }
+        return table.get(index);
+    }
+
+    public static void writeString(String s, ByteBuffer buffer) throws IOException {
+        if (s == null) {
+            buffer.put((byte)0);
+            return;
+        }
+        Integer index = indexOf(s);
+        if (index != null) {
+            CompactEncoding.writeVarInt(buffer, index + 2);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.put((byte)1);
+        CompactEncoding.writeVarInt(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    public static String readString(ByteBuffer data) throws IOException {
+        int code = CompactEncoding.readVarInt(data);
+        if (code == 0) {
+            return null;
+        } else if (code > 1) {
+            return get(code - 2);
+        }
+        int length = CompactEncoding.readVarInt(data);
+        if (length < 0 || length > data.remaining()) {
+            throw new IOException("Could not read String: Invalid length:" + length);
+        }
+        byte[] bytes = new byte[length];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String readObject(ByteBuffer data, Class c) throws IOException {
+        return readString(data);
+    }
+
+    @Override
+    public void writeObject(ByteBuffer buffer, Object object) throws IOException {
+        writeString((String)object, buffer);
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.serializing.SerializerException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drop-in replacement for the {@link FieldSerializer} that binds method
+ * handles for the constructor and every field when a class is registered,
+ * instead of going through reflection for every message.
+ * <p>
+ * Primitive fields are read and written through handles specialized to
+ * their type, so they are never boxed. The wire format is exactly the one
+ * of the {@link FieldSerializer}, both can be mixed freely between client
+ * and server.
+ * <p>
+ * Use it for single classes with
+ * <code>@Serializable(serializer=GeneratedFieldSerializer.class)</code> or
+ * {@link Serializer#registerClass(Class, Serializer)}, or for all classes
+ * without their own serializer with
+ * {@link Serializer#setGeneratedFieldSerializers(boolean)}.
+ */
+public class GeneratedFieldSerializer extends Serializer {
+
+    static final Logger log = Logger.getLogger(GeneratedFieldSerializer.class.getName());
+
+    private final Map<Class<?>, ClassAccess> classes = new HashMap<Class<?>, ClassAccess>();
+
+    @Override
+    public void initialize(Class clazz) {
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle ctor;
+        try {
+            ctor = lookup.unreflectConstructor(findConstructor(clazz))
+                         .asType(MethodType.methodType(Object.class));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Registration error: no-argument constructor not accessible on:" + clazz, e);
+        }
+
+        List<Field> fields = new ArrayList<Field>();
+
+        Class<?> processingClass = clazz;
+        while (processingClass != Object.class) {
+            Collections.addAll(fields, processingClass.getDeclaredFields());
+            processingClass = processingClass.getSuperclass();
+        }
+
+        List<FieldAccess> accessors = new ArrayList<FieldAccess>(fields.size());
+        for (Field field : fields) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isTransient(modifiers)) continue;
+            if (Modifier.isFinal(modifiers)) continue;
+            if (Modifier.isStatic(modifiers)) continue;
+            if (field.isSynthetic()) continue;
+            field.setAccessible(true);
+
+            // Same as the FieldSerializer, final types are written without
+            // their class id and get registered as a side effect.
+            Serializer serializer = null;
+            if (Modifier.isFinal(field.getType().getModifiers())) {
+                serializer = Serializer.getSerializer(field.getType(), false);
+            }
+
+            try {
+                accessors.add(createAccess(lookup, field, serializer));
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Registration error: field not accessible:" + field, e);
+            }
+        }
+
+        Collections.sort(accessors, new Comparator<FieldAccess>() {
+            @Override
+            public int compare(FieldAccess o1, FieldAccess o2) {
+                return o1.field.getName().compareTo(o2.field.getName());
+            }
+        });
+
+        classes.put(clazz, new ClassAccess(ctor, accessors.toArray(new FieldAccess[accessors.size()])));
+    }
+
+    private static Constructor<?> findConstructor(Class<?> clazz) {
+        try {
+            return clazz.getConstructor();
+        } catch (NoSuchMethodException e) {
+        }
+        try {
+            Constructor<?> ctor = clazz.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            return ctor;
+        } catch (NoSuchMethodException e) {
+        }
+        throw new RuntimeException("Registration error: no-argument constructor not found on:" + clazz);
+    }
+
+    /**
+     * Creates the accessor for a field. Primitive fields only get the
+     * specialized accessor if they use the default serializer of their
+     * type, anything else is handled like the FieldSerializer does.
+     */
+    private static FieldAccess createAccess(MethodHandles.Lookup lookup, Field field,
+                                            Serializer serializer) throws IllegalAccessException {
+        MethodHandle getter = lookup.unreflectGetter(field);
+        MethodHandle setter = lookup.unreflectSetter(field);
+        Class<?> type = field.getType();
+        Class<?> serializerType = serializer != null ? serializer.getClass() : null;
+
+        if (type == boolean.class && serializerType == BooleanSerializer.class) {
+            return new BooleanAccess(field, getter, setter);
+        } else if (type == byte.class && serializerType == ByteSerializer.class) {
+            return new ByteAccess(field, getter, setter);
+        } else if (type == char.class && serializerType == CharSerializer.class) {
+            return new CharAccess(field, getter, setter);
+        } else if (type == short.class && serializerType == ShortSerializer.class) {
+            return new ShortAccess(field, getter, setter);
+        } else if (type == int.class && serializerType == IntSerializer.class) {
+            return new IntAccess(field, getter, setter);
+        } else if (type == long.class && serializerType == LongSerializer.class) {
+            return new LongAccess(field, getter, setter);
+        } else if (type == float.class && serializerType == FloatSerializer.class) {
+            return new FloatAccess(field, getter, setter);
+        } else if (type == double.class && serializerType == DoubleSerializer.class) {
+            return new DoubleAccess(field, getter, setter);
+        }
+        return new ObjectAccess(field, serializer, getter, setter);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T readObject(ByteBuffer data, Class<T> c) throws IOException {
+
+        // Read the null/non-null marker
+        if (data.get() == 0x0)
+            return null;
+
+        ClassAccess access = classes.get(c);
+        if (access == null)
+            throw new SerializerException("The " + c + " is not registered in the serializer!");
+
+        Object object;
+        try {
+            object = access.ctor.invokeExact();
+        } catch (Throwable t) {
+            throw new SerializerException("Error creating object of type:" + c, t);
+        }
+
+        for (FieldAccess field : access.fields) {
+            if (log.isLoggable(Level.FINER)) {
+                log.log(Level.FINER, "Reading field:{0}", field.field);
+            }
+            try {
+                field.read(data, object);
+            } catch (IOException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new SerializerException("Error reading object for field:" + field.field, t);
+            }
+        }
+        return (T) object;
+    }
+
+    @Override
+    public void writeObject(ByteBuffer buffer, Object object) throws IOException {
+
+        // Add the null/non-null marker
+        buffer.put((byte)(object != null ? 0x1 : 0x0));
+        if (object == null) {
+            // Nothing left to do
+            return;
+        }
+
+        ClassAccess access = classes.get(object.getClass());
+        if (access == null)
+            throw new IOException("The " + object.getClass() + " is not registered"
+                                + " in the serializer!");
+
+        for (FieldAccess field : access.fields) {
+            if (log.isLoggable(Level.FINER)) {
+                log.log(Level.FINER, "Writing field:{0}", field.field);
+            }
+            try {
+                field.write(buffer, object);
+            } catch (BufferOverflowException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new SerializerException("Error writing object for field:" + field.field, t);
+            }
+        }
+    }
+
+    private static final class ClassAccess {
+        final MethodHandle ctor;
+        final FieldAccess[] fields;
+
+        ClassAccess(MethodHandle ctor, FieldAccess[] fields) {
+            this.ctor = ctor;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * Reads and writes one field, the handles are adapted to the exact
+     * signature used by the subclass so invokeExact() neither boxes nor
+     * casts.
+     */
+    private abstract static class FieldAccess {
+        final Field field;
+        final MethodHandle getter;
+        final MethodHandle setter;
+
+        FieldAccess(Field field, MethodHandle getter, MethodHandle setter, Class<?> type) {
+            this.field = field;
+            this.getter = getter.asType(MethodType.methodType(type, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, type));
+        }
+
+        abstract void read(ByteBuffer data, Object object) throws Throwable;
+
+        abstract void write(ByteBuffer buffer, Object object) throws Throwable;
+    }
+
+    private static final class BooleanAccess extends FieldAccess {
+        BooleanAccess(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter, boolean.class);
+        }
+
+        @Override
+        void read(ByteBuffer data, Object object) throws Throwable {
+            setter.invokeExact(object, data.get() == 1);
+        }
+
+        @Override
+        void write(ByteBuffer buffer, Object object) throws Throwable {
+            buffer.put((boolean) getter.invokeExact(object) ? (byte)1 : (byte)0);
+        }
+    }
+
+    private static final class ByteAccess extends FieldAccess {
+        ByteAccess(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter, byte.class);
+        }
+
+        @Override
+        void read(ByteBuffer data, Object object) throws Throwable {
+            setter.invokeExact(object, data.get());
+        }
+
+        @Override
+        void write(ByteBuffer buffer, Object object) throws Throwable {
+            buffer.put((byte) getter.invokeExact(object));
+        }
+    }
+
+    private static final class CharAccess extends FieldAccess {
+        CharAccess(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter, char.class);
+        }
+
+        @Override
+        void read(ByteBuffer data, Object object) throws Throwable {
+            setter.invokeExact(object, data.getChar());
+        }
+
+        @Override
+        void write(ByteBuffer buffer, Object object) throws Throwable {
+            buffer.putChar((char) getter.invokeExact(object));
+        }
+    }
+
+    private static final class ShortAccess extends FieldAccess {
+        ShortAccess(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter, short.class);
+        }
+
+        @Override
+        void read(ByteBuffer data, Object object) throws Throwable {
+            setter.invokeExact(object, data.getShort());
+        }
+
+        @Override
+        void write(ByteBuffer buffer, Object object) throws Throwable {
+            buffer.putShort((short) getter.invokeExact(object));
+        }
+    }
+
+    private static final class IntAccess extends FieldAccess {
+        IntAccess(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter, int.class);
+        }
+
+        @Override
+        void read(ByteBuffer data, Object object) throws Throwable {
+            setter.invokeExact(object, data.getInt());
+        }
+
+        @Override
+        void write(ByteBuffer buffer, Object object) throws Throwable {
+            buffer.putInt((int) getter.invokeExact(object));
+        }
+    }
+
+    private static final class LongAccess extends FieldAccess {
+        LongAccess(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter, long.class);
+        }
+
+        @Override
+        void read(ByteBuffer data, Object object) throws Throwable {
+            setter.invokeExact(object, data.getLong());
+        }
+
+        @Override
+        void write(ByteBuffer buffer, Object object) throws Throwable {
+            buffer.putLong((long) getter.invokeExact(object));
+        }
+    }
+
+    private static final class FloatAccess extends FieldAccess {
+        FloatAccess(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter, float.class);
+        }
+
+        @Override
+        void read(ByteBuffer data, Object object) throws Throwable {
+            setter.invokeExact(object, data.getFloat());
+        }
+
+        @Override
+        void write(ByteBuffer buffer, Object object) throws Throwable {
+            buffer.putFloat((float) getter.invokeExact(object));
+        }
+    }
+
+    private static final class DoubleAccess extends FieldAccess {
+        DoubleAccess(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter, double.class);
+        }
+
+        @Override
+        void read(ByteBuffer data, Object object) throws Throwable {
+            setter.invokeExact(object, data.getDouble());
+        }
+
+        @Override
+        void write(ByteBuffer buffer, Object object) throws Throwable {
+            buffer.putDouble((double) getter.invokeExact(object));
+        }
+    }
+
+    /**
+     * Fields of any other type, written with the serializer of their final
+     * type or with their class id like the FieldSerializer does.
+     */
+    private static final class ObjectAccess extends FieldAccess {
+        final Serializer serializer;
+
+        ObjectAccess(Field field, Serializer serializer, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter, Object.class);
+            this.serializer = serializer;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void read(ByteBuffer data, Object object) throws Throwable {
+            Object value;
+            if (serializer != null) {
+                value = serializer.readObject(data, field.getType());
+            } else {
+                value = Serializer.readClassAndObject(data);
+            }
+            setter.invokeExact(object, value);
+        }
+
+        @Override
+        void write(ByteBuffer buffer, Object object) throws Throwable {
+            Object value = getter.invokeExact(object);
+            if (serializer != null) {
+                serializer.writeObject(buffer, value);
+            } else {
+                Serializer.writeClassAndObject(buffer, value);
+            }
+        }
+    }
+}
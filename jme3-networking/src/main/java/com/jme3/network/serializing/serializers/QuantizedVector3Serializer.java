@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.math.Vector3f;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes each component of a Vector3f rounded to a multiple of the
+ *  precision as a variable length integer.  With the default precision
+ *  of 1/1000 a coordinate within +/-8 units takes two bytes instead
+ *  of four.
+ *
+ *  The serializer registrations sent to clients only carry the class
+ *  name, so a different precision should be given by a subclass with
+ *  a no-argument constructor to make sure both ends agree.
+ */
+@SuppressWarnings("unchecked")
+public class QuantizedVector3Serializer extends Serializer {
+
+    public static final float DEFAULT_PRECISION = 0.001f;
+
+    private final float precision;
+
+    public QuantizedVector3Serializer() {
+        this(DEFAULT_PRECISION);
+    }
+
+    protected QuantizedVector3Serializer(float precision) {
+        if (precision <= 0) {
+            throw new IllegalArgumentException("Precision must be positive:" + precision);
+        }
+        this.precision = precision;
+    }
+
+    public float getPrecision() {
+        return precision;
+    }
+
+    @Override
+    public Vector3f readObject(ByteBuffer data, Class c) throws IOException {
+        Vector3f vec3 = new Vector3f();
+        vec3.x = CompactEncoding.readQuantized(data, precision);
+        vec3.y = CompactEncoding.readQuantized(data, precision);
+        vec3.z = CompactEncoding.readQuantized(data, precision);
+        return vec3;
+    }
+
+    @Override
+    public void writeObject(ByteBuffer buffer, Object object) throws IOException {
+        Vector3f vec3 = (Vector3f) object;
+        CompactEncoding.writeQuantized(buffer, vec3.x, precision);
+        CompactEncoding.writeQuantized(buffer, vec3.y, precision);
+        CompactEncoding.writeQuantized(buffer, vec3.z, precision);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.heartbeat;
+
+import com.jme3.network.Client;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.kernel.NamedThreadFactory;
+import com.jme3.network.service.AbstractClientService;
+import com.jme3.network.service.ClientServiceManager;
+import com.jme3.network.service.heartbeat.msg.HeartbeatMessage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ *  Client side of the HeartbeatHostedService.  Answers the server's
+ *  pings and periodically pings the server, recording the round trip
+ *  times in Client.getStats().getRoundTripTimes().
+ */
+public class HeartbeatClientService extends AbstractClientService {
+
+    static final Logger log = Logger.getLogger(HeartbeatClientService.class.getName());
+
+    private final HeartbeatListener listener = new HeartbeatListener();
+    private volatile long interval = HeartbeatHostedService.DEFAULT_INTERVAL;
+    private volatile long lastRoundTrip = -1;
+    private ScheduledExecutorService timer;
+
+    public HeartbeatClientService() {
+    }
+
+    /**
+     *  Sets the time in milliseconds between pings.  Takes effect
+     *  the next time the service is started.
+     */
+    public void setInterval( long millis ) {
+        if( millis <= 0 ) {
+            throw new IllegalArgumentException("Interval must be positive:" + millis);
+        }
+        this.interval = millis;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     *  Returns the most recently measured round trip time in
+     *  nanoseconds or -1 if the server hasn't answered a ping yet.
+     */
+    public long getLastRoundTrip() {
+        return lastRoundTrip;
+    }
+
+    /**
+     *  Sends a ping to the server right away.  Called periodically
+     *  while the service is running.
+     */
+    public void ping() {
+        Client client = getClient();
+        if( client == null || !client.isConnected() ) {
+            return;
+        }
+        try {
+            client.send(new HeartbeatMessage(System.nanoTime(), false));
+        } catch( RuntimeException e ) {
+            // The connection is likely closing
+            log.log(Level.FINE, "Error pinging server", e);
+        }
+    }
+
+    @Override
+    protected void onInitialize( ClientServiceManager serviceManager ) {
+        Client client = serviceManager.getClient();
+        client.addMessageListener(listener, HeartbeatMessage.class);
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("HeartbeatClientService", true));
+        timer.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    ping();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if( timer != null ) {
+            timer.shutdownNow();
+            timer = null;
+        }
+        super.stop();
+    }
+
+    @Override
+    public void terminate( ClientServiceManager serviceManager ) {
+        Client client = serviceManager.getClient();
+        client.removeMessageListener(listener, HeartbeatMessage.class);
+    }
+
+    private class HeartbeatListener implements MessageListener<Client> {
+        @Override
+        public void messageReceived( Client source, Message m ) {
+            HeartbeatMessage msg = (HeartbeatMessage)m;
+            if( !msg.isResponse() ) {
+                source.send(msg.createResponse());
+                return;
+            }
+            long rtt = System.nanoTime() - msg.getTime();
+            lastRoundTrip = rtt;
+            source.getStats().recordRoundTrip(rtt);
+        }
+    }
+}
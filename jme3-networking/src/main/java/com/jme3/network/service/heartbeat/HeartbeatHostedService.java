@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.heartbeat;
+
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Server;
+import com.jme3.network.kernel.NamedThreadFactory;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.service.AbstractHostedConnectionService;
+import com.jme3.network.service.HostedServiceManager;
+import com.jme3.network.service.heartbeat.msg.HeartbeatMessage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ *  Periodically pings every hosted connection and records the round
+ *  trip times in the connection's NetworkStats, see
+ *  HostedConnection.getStats().getRoundTripTimes().  The server's stats
+ *  collect the round trip times of all connections.
+ *
+ *  <p>Pings from a HeartbeatClientService are answered by this service,
+ *  so each side measures the round trip with its own clock.  Pings are
+ *  sent unreliably when the connection has an unreliable channel, lost
+ *  pings are simply not counted.</p>
+ */
+public class HeartbeatHostedService extends AbstractHostedConnectionService {
+
+    static final Logger log = Logger.getLogger(HeartbeatHostedService.class.getName());
+
+    private static final String ATTRIBUTE_NAME = "heartbeatSession";
+
+    public static final long DEFAULT_INTERVAL = 1000;
+
+    private final HeartbeatListener listener = new HeartbeatListener();
+    private volatile long interval = DEFAULT_INTERVAL;
+    private ScheduledExecutorService timer;
+
+    /**
+     *  Creates a new heartbeat service that automatically starts
+     *  pinging every new connection.
+     */
+    public HeartbeatHostedService() {
+        this(true);
+    }
+
+    /**
+     *  Creates a new heartbeat service that will optionally start
+     *  pinging every new connection depending on the 'autoHost' flag.
+     */
+    public HeartbeatHostedService( boolean autoHost ) {
+        super(autoHost);
+
+        Serializer.registerClasses(HeartbeatMessage.class);
+    }
+
+    /**
+     *  Sets the time in milliseconds between pings.  Takes effect
+     *  the next time the service is started.
+     */
+    public void setInterval( long millis ) {
+        if( millis <= 0 ) {
+            throw new IllegalArgumentException("Interval must be positive:" + millis);
+        }
+        this.interval = millis;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     *  Returns the most recently measured round trip time of the
+     *  specified connection in nanoseconds or -1 if the connection
+     *  hasn't answered a ping yet.
+     */
+    public long getLastRoundTrip( HostedConnection hc ) {
+        HeartbeatSession session = hc.getAttribute(ATTRIBUTE_NAME);
+        return session == null ? -1 : session.lastRoundTrip;
+    }
+
+    /**
+     *  Sends a ping to every hosted connection right away.  Called
+     *  periodically while the service is running.
+     */
+    public void ping() {
+        Server server = getServer();
+        if( server == null ) {
+            return;
+        }
+        for( HostedConnection hc : server.getConnections() ) {
+            if( hc.getAttribute(ATTRIBUTE_NAME) == null ) {
+                continue;
+            }
+            try {
+                hc.send(new HeartbeatMessage(System.nanoTime(), false));
+            } catch( RuntimeException e ) {
+                // The connection is likely closing
+                log.log(Level.FINE, "Error pinging:" + hc, e);
+            }
+        }
+    }
+
+    @Override
+    protected void onInitialize( HostedServiceManager serviceManager ) {
+        Server server = serviceManager.getServer();
+        server.addMessageListener(listener, HeartbeatMessage.class);
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("HeartbeatHostedService", true));
+        timer.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    ping();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if( timer != null ) {
+            timer.shutdownNow();
+            timer = null;
+        }
+        super.stop();
+    }
+
+    @Override
+    public void startHostingOnConnection( HostedConnection hc ) {
+        if( log.isLoggable(Level.FINEST) ) {
+            log.log(Level.FINEST, "startHostingOnConnection:{0}", hc);
+        }
+        hc.setAttribute(ATTRIBUTE_NAME, new HeartbeatSession());
+    }
+
+    @Override
+    public void stopHostingOnConnection( HostedConnection hc ) {
+        if( log.isLoggable(Level.FINEST) ) {
+            log.log(Level.FINEST, "stopHostingOnConnection:{0}", hc);
+        }
+        hc.setAttribute(ATTRIBUTE_NAME, null);
+    }
+
+    @Override
+    public void terminate( HostedServiceManager serviceManager ) {
+        Server server = serviceManager.getServer();
+        server.removeMessageListener(listener, HeartbeatMessage.class);
+    }
+
+    private static class HeartbeatSession {
+        volatile long lastRoundTrip = -1;
+    }
+
+    private class HeartbeatListener implements MessageListener<HostedConnection> {
+        @Override
+        public void messageReceived( HostedConnection source, Message m ) {
+            HeartbeatMessage msg = (HeartbeatMessage)m;
+            if( !msg.isResponse() ) {
+                // Always answer, the client measures its own times
+                source.send(msg.createResponse());
+                return;
+            }
+            HeartbeatSession session = source.getAttribute(ATTRIBUTE_NAME);
+            if( session == null ) {
+                return;
+            }
+            long rtt = System.nanoTime() - msg.getTime();
+            session.lastRoundTrip = rtt;
+            source.getStats().recordRoundTrip(rtt);
+        }
+    }
+}
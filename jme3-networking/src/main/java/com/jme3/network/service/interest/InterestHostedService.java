@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.interest;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Vector3f;
+import com.jme3.network.CandidateFilter;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.service.AbstractHostedConnectionService;
+import com.jme3.network.service.HostedServiceManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ *  Tracks a position for each hosted connection in a SpatialGrid so
+ *  that broadcasts can be limited to the connections near a point or
+ *  inside a bounding volume.  The filters returned by inRange() and
+ *  within() are CandidateFilters, so the server only looks at the
+ *  connections in the grid cells that overlap the area instead of
+ *  testing every connection.
+ *
+ *  <p>The application updates the positions with setPosition(), usually
+ *  whenever the connection's player moves.  Connections without a
+ *  position are never in range.</p>
+ *
+ *  <pre>
+ *  server.broadcast(interest.inRange(explosion, 50), new ExplosionMessage(...));
+ *  </pre>
+ */
+public class InterestHostedService extends AbstractHostedConnectionService {
+
+    static final Logger log = Logger.getLogger(InterestHostedService.class.getName());
+
+    private static final String ATTRIBUTE_NAME = "interestPosition";
+
+    public static final float DEFAULT_CELL_SIZE = 64;
+
+    private final SpatialGrid<HostedConnection> grid;
+
+    /**
+     *  Creates a service with the default cell size that
+     *  automatically hosts all new connections.
+     */
+    public InterestHostedService() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     *  Creates a service with the specified grid cell size.  The cell
+     *  size is best about the size of a typical query radius.
+     */
+    public InterestHostedService( float cellSize ) {
+        super(true);
+        this.grid = new SpatialGrid<>(cellSize);
+    }
+
+    public float getCellSize() {
+        return grid.getCellSize();
+    }
+
+    /**
+     *  Sets the current position of the specified connection.
+     */
+    public void setPosition( HostedConnection hc, Vector3f position ) {
+        synchronized( grid ) {
+            Vector3f current = hc.getAttribute(ATTRIBUTE_NAME);
+            if( current == null ) {
+                if( hc.getServer() == null || hc.getServer().getConnection(hc.getId()) != hc ) {
+                    // Already gone, don't leak it into the grid
+                    return;
+                }
+                current = new Vector3f();
+                hc.setAttribute(ATTRIBUTE_NAME, current);
+            }
+            current.set(position);
+            grid.update(hc, position.x, position.y, position.z);
+        }
+    }
+
+    /**
+     *  Returns a copy of the connection's position or null if it
+     *  doesn't have one.
+     */
+    public Vector3f getPosition( HostedConnection hc ) {
+        synchronized( grid ) {
+            Vector3f current = hc.getAttribute(ATTRIBUTE_NAME);
+            return current == null ? null : current.clone();
+        }
+    }
+
+    /**
+     *  Removes the connection's position so that it is no longer
+     *  in range of anything.
+     */
+    public void clearPosition( HostedConnection hc ) {
+        synchronized( grid ) {
+            grid.remove(hc);
+            hc.setAttribute(ATTRIBUTE_NAME, null);
+        }
+    }
+
+    /**
+     *  Returns a filter accepting the connections within the specified
+     *  distance of the center.  The candidates are collected when the
+     *  filter is created.
+     */
+    public CandidateFilter<HostedConnection> inRange( Vector3f center, float radius ) {
+        return new RangeFilter(center.clone(), radius);
+    }
+
+    /**
+     *  Returns a filter accepting the connections whose position is
+     *  inside the specified BoundingBox or BoundingSphere.
+     */
+    public CandidateFilter<HostedConnection> within( BoundingVolume volume ) {
+        Vector3f extent;
+        if( volume instanceof BoundingBox ) {
+            extent = ((BoundingBox)volume).getExtent(null);
+        } else if( volume instanceof BoundingSphere ) {
+            float r = ((BoundingSphere)volume).getRadius();
+            extent = new Vector3f(r, r, r);
+        } else {
+            throw new IllegalArgumentException("Unsupported bounding volume:" + volume);
+        }
+        return new VolumeFilter(volume.clone(), volume.getCenter(), extent);
+    }
+
+    /**
+     *  Broadcasts the message to all connections within the specified
+     *  distance of the center.
+     */
+    public void broadcast( Vector3f center, float radius, Message message ) {
+        getServer().broadcast(inRange(center, radius), message);
+    }
+
+    /**
+     *  Broadcasts the message over the specified channel to all
+     *  connections within the specified distance of the center.
+     */
+    public void broadcast( int channel, Vector3f center, float radius, Message message ) {
+        getServer().broadcast(channel, inRange(center, radius), message);
+    }
+
+    @Override
+    protected void onInitialize( HostedServiceManager serviceManager ) {
+    }
+
+    @Override
+    public void startHostingOnConnection( HostedConnection hc ) {
+        // Nothing to set up until the application provides a position
+    }
+
+    @Override
+    public void stopHostingOnConnection( HostedConnection hc ) {
+        if( log.isLoggable(Level.FINEST) ) {
+            log.log(Level.FINEST, "stopHostingOnConnection:{0}", hc);
+        }
+        clearPosition(hc);
+    }
+
+    private Collection<HostedConnection> candidates( Vector3f center, Vector3f extent ) {
+        synchronized( grid ) {
+            return grid.query(center.x - extent.x, center.y - extent.y, center.z - extent.z,
+                              center.x + extent.x, center.y + extent.y, center.z + extent.z,
+                              new ArrayList<HostedConnection>());
+        }
+    }
+
+    private abstract class AreaFilter implements CandidateFilter<HostedConnection> {
+        private final Collection<HostedConnection> candidates;
+
+        protected AreaFilter( Vector3f center, Vector3f extent ) {
+            this.candidates = candidates(center, extent);
+        }
+
+        @Override
+        public Collection<HostedConnection> getCandidates() {
+            return candidates;
+        }
+
+        @Override
+        public boolean apply( HostedConnection input ) {
+            synchronized( grid ) {
+                Vector3f pos = input.getAttribute(ATTRIBUTE_NAME);
+                return pos != null && contains(pos);
+            }
+        }
+
+        protected abstract boolean contains( Vector3f pos );
+    }
+
+    private class RangeFilter extends AreaFilter {
+        private final Vector3f center;
+        private final float radiusSq;
+
+        public RangeFilter( Vector3f center, float radius ) {
+            super(center, new Vector3f(radius, radius, radius));
+            this.center = center;
+            this.radiusSq = radius * radius;
+        }
+
+        @Override
+        protected boolean contains( Vector3f pos ) {
+            return pos.distanceSquared(center) <= radiusSq;
+        }
+
+        @Override
+        public String toString() {
+            return "RangeFilter[center=" + center + ", radius=" + Math.sqrt(radiusSq) + "]";
+        }
+    }
+
+    private class VolumeFilter extends AreaFilter {
+        private final BoundingVolume volume;
+
+        public VolumeFilter( BoundingVolume volume, Vector3f center, Vector3f extent ) {
+            super(center, extent);
+            this.volume = volume;
+        }
+
+        @Override
+        protected boolean contains( Vector3f pos ) {
+            return volume.intersects(pos);
+        }
+
+        @Override
+        public String toString() {
+            return "VolumeFilter[" + volume + "]";
+        }
+    }
+}
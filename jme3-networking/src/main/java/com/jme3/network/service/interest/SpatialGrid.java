@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.interest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ *  A uniform grid that buckets values by position so that the values
+ *  near a point can be found by looking at a few cells instead of at
+ *  every value.  Cells are created on demand and removed when they
+ *  become empty so the grid is unbounded.  Cell coordinates are clamped
+ *  to 2^21 cells per axis, values further out share the border cells,
+ *  which only makes them show up as extra query results.  Not thread safe.
+ */
+public class SpatialGrid<T> {
+
+    private static final int COORD_BITS = 21;
+    private static final int COORD_MASK = (1 << COORD_BITS) - 1;
+    private static final int MIN_COORD = -(1 << (COORD_BITS - 1));
+    private static final int MAX_COORD = (1 << (COORD_BITS - 1)) - 1;
+
+    private final float cellSize;
+    private final Map<Long, Collection<T>> cells = new HashMap<>();
+    private final Map<T, Long> locations = new HashMap<>();
+
+    public SpatialGrid( float cellSize ) {
+        if( cellSize <= 0 ) {
+            throw new IllegalArgumentException("Cell size must be positive:" + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    public int size() {
+        return locations.size();
+    }
+
+    public int getCellCount() {
+        return cells.size();
+    }
+
+    /**
+     *  Adds the value at the specified position or moves it there
+     *  if it was already added.
+     */
+    public void update( T value, float x, float y, float z ) {
+        long key = key(cell(x), cell(y), cell(z));
+        Long old = locations.put(value, key);
+        if( old != null ) {
+            if( old == key ) {
+                return;
+            }
+            removeFromCell(old, value);
+        }
+        Collection<T> cell = cells.get(key);
+        if( cell == null ) {
+            cell = new ArrayList<>(4);
+            cells.put(key, cell);
+        }
+        cell.add(value);
+    }
+
+    public boolean remove( T value ) {
+        Long old = locations.remove(value);
+        if( old == null ) {
+            return false;
+        }
+        removeFromCell(old, value);
+        return true;
+    }
+
+    private void removeFromCell( long key, T value ) {
+        Collection<T> cell = cells.get(key);
+        cell.remove(value);
+        if( cell.isEmpty() ) {
+            cells.remove(key);
+        }
+    }
+
+    /**
+     *  Adds all values in cells overlapping the specified box to the
+     *  store and returns it.  The result may contain values slightly
+     *  outside of the box, up to a cell size away.
+     */
+    public <C extends Collection<? super T>> C query( float minX, float minY, float minZ,
+                                                      float maxX, float maxY, float maxZ,
+                                                      C store ) {
+        int x0 = cell(minX), y0 = cell(minY), z0 = cell(minZ);
+        int x1 = cell(maxX), y1 = cell(maxY), z1 = cell(maxZ);
+        long dx = (long)x1 - x0 + 1, dy = (long)y1 - y0 + 1, dz = (long)z1 - z0 + 1;
+        if( dx <= 0 || dy <= 0 || dz <= 0 ) {
+            return store;
+        }
+        // The whole range is 2^63 cells, too many for a long, so the
+        // cell count is compared without multiplying all three
+        if( dx * dy > cells.size() / dz ) {
+            // Cheaper to check the populated cells than all of the
+            // cells in the range
+            for( Map.Entry<Long, Collection<T>> e : cells.entrySet() ) {
+                long key = e.getKey();
+                int x = unpack(key, 2), y = unpack(key, 1), z = unpack(key, 0);
+                if( x >= x0 && x <= x1 && y >= y0 && y <= y1 && z >= z0 && z <= z1 ) {
+                    store.addAll(e.getValue());
+                }
+            }
+            return store;
+        }
+        for( int x = x0; x <= x1; x++ ) {
+            for( int y = y0; y <= y1; y++ ) {
+                for( int z = z0; z <= z1; z++ ) {
+                    Collection<T> cell = cells.get(key(x, y, z));
+                    if( cell != null ) {
+                        store.addAll(cell);
+                    }
+                }
+            }
+        }
+        return store;
+    }
+
+    private int cell( float v ) {
+        // Infinite and huge values saturate the int, clamp them to what
+        // the key can hold so the range loops always end
+        int c = (int)Math.floor(v / cellSize);
+        return Math.max(MIN_COORD, Math.min(MAX_COORD, c));
+    }
+
+    private static long key( int x, int y, int z ) {
+        return ((long)(x & COORD_MASK) << (COORD_BITS * 2))
+             | ((long)(y & COORD_MASK) << COORD_BITS)
+             | (z & COORD_MASK);
+    }
+
+    private static int unpack( long key, int index ) {
+        int v = (int)(key >>> (COORD_BITS * index)) & COORD_MASK;
+        // Sign extend
+        return (v << (32 - COORD_BITS)) >> (32 - COORD_BITS);
+    }
+}
@@ -45,6 +45,9 @@ import static java.lang.annotation.RetentionPolicy.*;
  *  is specified then remote method invocation is done over UDP
  *  instead of TCP, ie: unreliably... but faster.
  *
+ *  <p>When async batching is enabled on the RPC service, the calls
+ *  made between two flushes are sent together as one message.</p>
+ *
  *  @author    Paul Speed
  */
 @Retention(value=RUNTIME)
@@ -56,5 +56,15 @@ public enum CallType {
      *  but differs in that the call will be sent over UDP and so may
      *  not make it to the other end.
      */ 
-    Unreliable
+    Unreliable,
+
+    /**
+     *  Caller does not block but immediately gets a CompletableFuture
+     *  that completes when the response is received.  Used for methods
+     *  that return a CompletableFuture, CompletionStage or Future.  Many
+     *  such calls can be in flight at once.  The response is sent once
+     *  the returned future of the local call is done, for a plain Future 
+     *  the invoking thread waits for it.
+     */
+    Pipelined
 }
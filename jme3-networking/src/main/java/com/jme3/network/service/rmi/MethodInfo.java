@@ -36,6 +36,9 @@ import com.jme3.network.serializing.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
 
 
 /**
@@ -102,7 +105,12 @@ public final class MethodInfo {
     }
  
     public static CallType getCallType( Method m ) {
-        if( m.getReturnType() != Void.TYPE ) {
+        Class returnType = m.getReturnType();
+        if( returnType == CompletableFuture.class || returnType == CompletionStage.class 
+            || returnType == Future.class ) {
+            return CallType.Pipelined;
+        }
+        if( returnType != Void.TYPE ) {
             return CallType.Synchronous;
         }
         if( m.getAnnotation(Asynchronous.class) == null ) {
@@ -278,6 +278,9 @@ public class RmiRegistry {
                 log.finest("Sending unreliable asynchronous.");            
                 rpc.callAsync((byte)MessageConnection.CHANNEL_DEFAULT_UNRELIABLE, objectId, procId, args);
                 return null;
+            case Pipelined:
+                log.finest("Sending pipelined.");
+                return rpc.call(channel, objectId, procId, args);
             default:
             case Synchronous:                                           
                 log.finest("Sending synchronous.");            
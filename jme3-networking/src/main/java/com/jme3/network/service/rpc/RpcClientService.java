@@ -36,6 +36,7 @@ import com.jme3.network.Client;
 import com.jme3.network.util.ObjectMessageDelegator;
 import com.jme3.network.service.AbstractClientService;
 import com.jme3.network.service.ClientServiceManager;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -52,6 +53,7 @@ public class RpcClientService extends AbstractClientService {
 
     private RpcConnection rpc;
     private ObjectMessageDelegator delegator;
+    private boolean asyncBatching;
 
     /**
      *  Creates a new RpcClientService that can be registered
@@ -69,6 +71,31 @@ public class RpcClientService extends AbstractClientService {
         return rpc;
     }
 
+    /**
+     *  Enables or disables the batching of asynchronous calls.  When
+     *  enabled, the application should call flush() once per frame.
+     *  See RpcConnection.setAsyncBatching().
+     */
+    public void setAsyncBatching( boolean b ) {
+        this.asyncBatching = b;
+        if( rpc != null ) {
+            rpc.setAsyncBatching(b);
+        }
+    }
+
+    public boolean isAsyncBatching() {
+        return asyncBatching;
+    }
+
+    /**
+     *  Sends the batched asynchronous calls.
+     */
+    public void flush() {
+        if( rpc != null ) {
+            rpc.flush();
+        }
+    }
+
     /**
      *  Used internally to setup the RpcConnection and MessageDelegator.
      */
@@ -77,6 +104,7 @@ public class RpcClientService extends AbstractClientService {
     protected void onInitialize( ClientServiceManager serviceManager ) {        
         Client client = serviceManager.getClient();
         this.rpc = new RpcConnection(client);
+        rpc.setAsyncBatching(asyncBatching);
         
         delegator = new ObjectMessageDelegator(rpc, true);       
         client.addMessageListener(delegator, delegator.getMessageTypes());                   
@@ -111,6 +139,15 @@ public class RpcClientService extends AbstractClientService {
     public void callAsync( byte channel, short objId, short procId, Object... args ) {
         rpc.callAsync(channel, objId, procId, args);
     }
+
+    /**
+     *  Performs a call on the server against the specified object using
+     *  the specified procedure ID without waiting for the response.  The
+     *  returned future completes when the response arrives.
+     */
+    public CompletableFuture<Object> call( byte channel, short objId, short procId, Object... args ) {
+        return rpc.call(channel, objId, procId, args);
+    }
  
     /** 
      *  Register a handler that will be called when the server
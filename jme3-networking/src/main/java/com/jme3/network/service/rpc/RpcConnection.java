@@ -33,11 +33,25 @@
 package com.jme3.network.service.rpc;
 
 import com.jme3.network.MessageConnection;
+import com.jme3.network.service.rpc.msg.RpcBatchMessage;
 import com.jme3.network.service.rpc.msg.RpcCallMessage;
 import com.jme3.network.service.rpc.msg.RpcResponseMessage;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,11 +61,28 @@ import java.util.logging.Logger;
  *  is used internally by the RpcClientService and RpcHostedService to manage
  *  network messaging.
  *
+ *  <p>Any number of calls can be in flight at the same time.  Each call
+ *  carries a message ID that the response refers to, so call() can
+ *  return a future right away and callers can pipeline requests
+ *  instead of waiting a full round trip for each.</p>
+ *
+ *  <p>When async batching is enabled, asynchronous calls are collected
+ *  per channel and sent as one RpcBatchMessage on flush(), which is
+ *  generally called once per frame or server tick.  Pending calls are
+ *  also flushed before any call that expects a response so that the
+ *  call order is always kept.</p>
+ *
  *  @author    Paul Speed
  */
 public class RpcConnection {
 
     static final Logger log = Logger.getLogger(RpcConnection.class.getName());
+
+    /**
+     *  The maximum number of asynchronous calls collected per channel
+     *  before they are sent without waiting for flush().
+     */
+    public static final int MAX_BATCH_CALLS = 64;
  
     /**
      *  The underlying connection upon which RPC call messages are sent
@@ -79,6 +110,15 @@ public class RpcConnection {
      *  response or error set, thus releasing the waiting caller.
      */ 
     private Map<Long, ResponseHolder> responses = new ConcurrentHashMap<Long, ResponseHolder>(); 
+
+    private volatile boolean asyncBatching;
+    private final Map<Byte, List<RpcCallMessage>> pendingAsync = new LinkedHashMap<Byte, List<RpcCallMessage>>();
+
+    /**
+     *  When set, incoming calls that expect a response are executed
+     *  through this executor instead of on the thread that received them.
+     */
+    private volatile Executor executor;
  
     /**
      *  Creates a new RpcConnection for the specified network connection.
@@ -86,16 +126,62 @@ public class RpcConnection {
     public RpcConnection( MessageConnection connection ) {
         this.connection = connection;
     }
+
+    /**
+     *  Enables or disables the collection of asynchronous calls into
+     *  batches that are sent on flush().  Disabling it flushes any
+     *  pending calls.
+     */
+    public void setAsyncBatching( boolean b ) {
+        this.asyncBatching = b;
+        if( !b ) {
+            flush();
+        }
+    }
+
+    public boolean isAsyncBatching() {
+        return asyncBatching;
+    }
+
+    /**
+     *  Sets the executor that runs incoming calls expecting a response,
+     *  or null to run them on the thread that received them, which is the
+     *  default.  This keeps long running calls from stalling the other
+     *  messages of the connection.  Those calls may then run concurrently
+     *  and complete out of order.  Asynchronous calls still run in order
+     *  on the receiving thread.  Calls returning a Future that is not a
+     *  CompletionStage block the thread running them until the future
+     *  is done.
+     */
+    public void setExecutor( Executor executor ) {
+        this.executor = executor;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     *  Returns the number of calls that are still waiting for
+     *  a response.
+     */
+    public int getPendingCallCount() {
+        return responses.size();
+    }
  
     /**
      *  Clears any pending synchronous calls causing them to
      *  throw an exception with the message "Closing connection".
      */    
     public void close() {
+        synchronized( pendingAsync ) {
+            pendingAsync.clear();
+        }
         // Let any pending waits go free
         for( ResponseHolder holder : responses.values() ) {
             holder.release();
         }
+        responses.clear();
     }
  
     /**
@@ -104,7 +190,28 @@ public class RpcConnection {
      *  be sent on the specified channel.
      */
     public Object callAndWait( byte channel, short objId, short procId, Object... args ) {
-        
+        ResponseHolder holder = sendCall(channel, objId, procId, args);
+        try {
+            return holder.get();
+        } catch( InterruptedException e ) {
+            throw new RuntimeException("Interrupted waiting for respone to:" + holder.msg, e);
+        } catch( ExecutionException e ) {
+            throw (RuntimeException)e.getCause();
+        }
+    }
+
+    /**
+     *  Performs a remote procedure call with the specified arguments and
+     *  returns without waiting.  The returned future is completed with the
+     *  result when the response arrives, or completed exceptionally with
+     *  the remote error.  Both the outbound message and inbound response
+     *  will be sent on the specified channel.
+     */
+    public CompletableFuture<Object> call( byte channel, short objId, short procId, Object... args ) {
+        return sendCall(channel, objId, procId, args);
+    }
+
+    private ResponseHolder sendCall( byte channel, short objId, short procId, Object... args ) {
         RpcCallMessage msg = new RpcCallMessage(sequenceNumber.getAndIncrement(), 
                                                 channel, objId, procId, args);
         
@@ -116,6 +223,9 @@ public class RpcConnection {
         if( log.isLoggable(Level.FINEST) ) {
             log.log(Level.FINEST, "Sending:{0}  on channel:{1}", new Object[]{msg, channel});
         }
+
+        // Any batched calls were made before this one
+        flush();
         
         // Prevent non-async messages from being send as UDP
         // because there is a high probabilty that this would block
@@ -126,23 +236,86 @@ public class RpcConnection {
         } else {
             connection.send(msg);
         }
-                
-        return holder.getResponse();
+        return holder;
     }
 
     /**
      *  Performs a remote procedure call with the specified arguments but does
      *  not wait for a response.  The outbound message is sent on the specified channel.
-     *  There is no inbound response message. 
+     *  There is no inbound response message.  With async batching enabled the
+     *  call is sent with the next flush().
      */
     public void callAsync( byte channel, short objId, short procId, Object... args ) {
         
         RpcCallMessage msg = new RpcCallMessage(-1, channel, objId, procId, args);
+        if( asyncBatching ) {
+            RpcCallMessage[] full = null;
+            synchronized( pendingAsync ) {
+                List<RpcCallMessage> pending = pendingAsync.get(channel);
+                if( pending == null ) {
+                    pending = new ArrayList<RpcCallMessage>();
+                    pendingAsync.put(channel, pending);
+                }
+                pending.add(msg);
+                if( pending.size() >= MAX_BATCH_CALLS ) {
+                    full = pending.toArray(new RpcCallMessage[pending.size()]);
+                    pending.clear();
+                }
+            }
+            if( full != null ) {
+                sendBatch(channel, full);
+            }
+            return;
+        }
         if( log.isLoggable(Level.FINEST) ) {
             log.log(Level.FINEST, "Sending:{0}  on channel:{1}", new Object[]{msg, channel});
         }        
         connection.send(channel, msg);        
     }
+
+    /**
+     *  Sends the asynchronous calls collected since the last flush,
+     *  one message per channel.
+     */
+    public void flush() {
+        List<Map.Entry<Byte, RpcCallMessage[]>> batches = null;
+        synchronized( pendingAsync ) {
+            if( pendingAsync.isEmpty() ) {
+                return;
+            }
+            for( Iterator<Map.Entry<Byte, List<RpcCallMessage>>> it = pendingAsync.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Byte, List<RpcCallMessage>> e = it.next();
+                if( e.getValue().isEmpty() ) {
+                    it.remove();
+                    continue;
+                }
+                if( batches == null ) {
+                    batches = new ArrayList<Map.Entry<Byte, RpcCallMessage[]>>();
+                }
+                List<RpcCallMessage> calls = e.getValue();
+                batches.add(new AbstractMap.SimpleEntry<Byte, RpcCallMessage[]>(e.getKey(), 
+                                calls.toArray(new RpcCallMessage[calls.size()])));
+                calls.clear();
+            }
+        }
+        if( batches == null ) {
+            return;
+        }
+        for( Map.Entry<Byte, RpcCallMessage[]> e : batches ) {
+            sendBatch(e.getKey(), e.getValue());
+        }
+    }
+
+    private void sendBatch( byte channel, RpcCallMessage[] calls ) {
+        if( log.isLoggable(Level.FINEST) ) {
+            log.log(Level.FINEST, "Sending batch of:{0}  on channel:{1}", new Object[]{calls.length, channel});
+        }
+        if( calls.length == 1 ) {
+            connection.send(channel, calls[0]);
+        } else {
+            connection.send(channel, new RpcBatchMessage(calls));
+        }
+    }
     
     /** 
      *  Register a handler that can be called by the other end
@@ -180,20 +353,83 @@ public class RpcConnection {
      *  Called internally when an RpcCallMessage is received from 
      *  the remote connection.
      */ 
-    public void handleMessage( RpcCallMessage msg ) {
+    public void handleMessage( final RpcCallMessage msg ) {
     
         if( log.isLoggable(Level.FINEST) ) {
             log.log(Level.FINEST, "handleMessage({0})", msg);
         }
+        Executor exec = executor;
+        if( exec == null || msg.isAsync() ) {
+            invoke(msg);
+            return;
+        }
+        try {
+            exec.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        invoke(msg);
+                    }
+                });
+        } catch( RejectedExecutionException e ) {
+            send(msg.getChannel(), new RpcResponseMessage(msg.getMessageId(), e));
+        }
+    }
+
+    /**
+     *  Called internally when an RpcBatchMessage is received from
+     *  the remote connection.
+     */
+    public void handleMessage( RpcBatchMessage msg ) {
+        if( log.isLoggable(Level.FINEST) ) {
+            log.log(Level.FINEST, "handleMessage({0})", msg);
+        }
+        for( RpcCallMessage call : msg.getCalls() ) {
+            handleMessage(call);
+        }
+    }
+
+    private void invoke( final RpcCallMessage msg ) {
         RpcHandler handler = handlers.get(msg.getObjectId());
         try {
             if( handler == null ) {
                 throw new RuntimeException("Handler not found for objectID:" + msg.getObjectId());
             }
             Object result = handler.call(this, msg.getObjectId(), msg.getProcedureId(), msg.getArguments());
-            if( !msg.isAsync() ) {
-                send(msg.getChannel(), new RpcResponseMessage(msg.getMessageId(), result));
+            if( msg.isAsync() ) {
+                return;
             }
+            if( result instanceof CompletionStage ) {
+                // Respond when the local call has actually finished
+                ((CompletionStage<?>)result).whenComplete(new BiConsumer<Object, Throwable>() {
+                        @Override
+                        public void accept( Object value, Throwable error ) {
+                            if( error instanceof CompletionException && error.getCause() != null ) {
+                                error = error.getCause();
+                            }
+                            if( error != null ) {
+                                send(msg.getChannel(), new RpcResponseMessage(msg.getMessageId(), error));
+                            } else {
+                                send(msg.getChannel(), new RpcResponseMessage(msg.getMessageId(), value));
+                            }
+                        }
+                    });
+                return;
+            }
+            if( result instanceof Future ) {
+                // Other futures can't notify us, so wait for the value
+                // since the future itself can't be sent back
+                try {
+                    result = ((Future<?>)result).get();
+                } catch( ExecutionException e ) {
+                    Throwable error = e.getCause() != null ? e.getCause() : e;
+                    send(msg.getChannel(), new RpcResponseMessage(msg.getMessageId(), error));
+                    return;
+                } catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+            send(msg.getChannel(), new RpcResponseMessage(msg.getMessageId(), result));
         } catch( Exception e ) {
             if( !msg.isAsync() ) {
                 send(msg.getChannel(), new RpcResponseMessage(msg.getMessageId(), e));
@@ -219,52 +455,32 @@ public class RpcConnection {
     }
  
     /**
-     *  Sort of like a Future, holds a locked reference to a response
-     *  until the remote call has completed and returned a response.
+     *  Holds the future result of a remote call until the remote
+     *  call has completed and returned a response.
      */   
-    private class ResponseHolder {
-        private Object response;
-        private String error;
-        private Throwable exception;
-        private RpcCallMessage msg;
-        boolean received = false;
+    private class ResponseHolder extends CompletableFuture<Object> {
+        private final RpcCallMessage msg;
  
         public ResponseHolder( RpcCallMessage msg ) {
             this.msg = msg;
         }
         
-        public synchronized void setResponse( RpcResponseMessage msg ) {
-            this.response = msg.getResult();
-            this.error = msg.getError();
-            this.exception = msg.getThrowable();
-            this.received = true;
-            notifyAll();
-        }
-        
-        public synchronized Object getResponse() {
-            try {
-                while(!received) {
-                    wait();                
-                }
-            } catch( InterruptedException e ) {
-                throw new RuntimeException("Interrupted waiting for respone to:" + msg, e);
-            }
-            if( error != null ) {
-                throw new RuntimeException("Error calling remote procedure:" + msg + "\n" + error);
+        public void setResponse( RpcResponseMessage msg ) {
+            if( msg.getError() != null ) {
+                completeExceptionally(new RuntimeException("Error calling remote procedure:" + this.msg 
+                                                           + "\n" + msg.getError()));
+            } else if( msg.getThrowable() != null ) {
+                completeExceptionally(new RuntimeException("Error calling remote procedure:" + this.msg, 
+                                                           msg.getThrowable()));
+            } else {
+                complete(msg.getResult());
             }
-            if( exception != null ) {
-                throw new RuntimeException("Error calling remote procedure:" + msg, exception);
-            } 
-            return response;              
         }
         
-        public synchronized void release() {
-            if( received ) {
-                return;
-            }
-            // Else signal an error for the callers
-            this.error = "Closing connection";
-            this.received = true;
+        public void release() {
+            // Signal an error for the callers if not done yet
+            completeExceptionally(new RuntimeException("Error calling remote procedure:" + msg 
+                                                       + "\nClosing connection"));
         }
     }
 }
@@ -38,9 +38,11 @@ import com.jme3.network.serializing.Serializer;
 import com.jme3.network.service.AbstractHostedConnectionService;
 import com.jme3.network.util.SessionDataDelegator;
 import com.jme3.network.service.HostedServiceManager;
+import com.jme3.network.service.rpc.msg.RpcBatchMessage;
 import com.jme3.network.service.rpc.msg.RpcCallMessage;
 import com.jme3.network.service.rpc.msg.RpcResponseMessage;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -69,6 +71,8 @@ public class RpcHostedService extends AbstractHostedConnectionService {
     static final Logger log = Logger.getLogger(RpcHostedService.class.getName());
 
     private SessionDataDelegator delegator;
+    private volatile boolean asyncBatching;
+    private volatile Executor invocationExecutor;
 
     /**
      *  Creates a new RPC host service that can be registered
@@ -90,7 +94,72 @@ public class RpcHostedService extends AbstractHostedConnectionService {
         
         // This works for me... has to be different in
         // the general case
-        Serializer.registerClasses(RpcCallMessage.class, RpcResponseMessage.class);
+        Serializer.registerClasses(RpcCallMessage.class, RpcResponseMessage.class, RpcBatchMessage.class);
+    }
+
+    /**
+     *  Enables or disables async call batching for all current and future
+     *  connections.  When enabled, the application should call flush()
+     *  once per server tick.  See RpcConnection.setAsyncBatching().
+     */
+    public void setAsyncBatching( boolean b ) {
+        this.asyncBatching = b;
+        forEachConnection(new ConnectionTask() {
+                @Override
+                public void run( RpcConnection rpc ) {
+                    rpc.setAsyncBatching(asyncBatching);
+                }
+            });
+    }
+
+    public boolean isAsyncBatching() {
+        return asyncBatching;
+    }
+
+    /**
+     *  Sets the executor that runs the incoming calls expecting a response
+     *  for all current and future connections.  By default they run on the
+     *  connection's reader thread.  A thread pool keeps slow calls from
+     *  stalling the rest of the connection's messages.
+     *  See RpcConnection.setExecutor().
+     */
+    public void setInvocationExecutor( Executor executor ) {
+        this.invocationExecutor = executor;
+        forEachConnection(new ConnectionTask() {
+                @Override
+                public void run( RpcConnection rpc ) {
+                    rpc.setExecutor(invocationExecutor);
+                }
+            });
+    }
+
+    public Executor getInvocationExecutor() {
+        return invocationExecutor;
+    }
+
+    /**
+     *  Sends the batched asynchronous calls of all connections.
+     */
+    public void flush() {
+        forEachConnection(new ConnectionTask() {
+                @Override
+                public void run( RpcConnection rpc ) {
+                    rpc.flush();
+                }
+            });
+    }
+
+    private void forEachConnection( ConnectionTask task ) {
+        Server server = getServer();
+        if( server == null ) {
+            return;
+        }
+        for( HostedConnection hc : server.getConnections() ) {
+            RpcConnection rpc = getRpcConnection(hc);
+            if( rpc != null ) {
+                task.run(rpc);
+            }
+        }
     }
 
     /**
@@ -136,7 +205,10 @@ public class RpcHostedService extends AbstractHostedConnectionService {
         if( log.isLoggable(Level.FINEST) ) {
             log.log(Level.FINEST, "startHostingOnConnection:{0}", hc);
         }
-        hc.setAttribute(ATTRIBUTE_NAME, new RpcConnection(hc));
+        RpcConnection rpc = new RpcConnection(hc);
+        rpc.setAsyncBatching(asyncBatching);
+        rpc.setExecutor(invocationExecutor);
+        hc.setAttribute(ATTRIBUTE_NAME, rpc);
     }
 
     /**
@@ -171,5 +243,7 @@ public class RpcHostedService extends AbstractHostedConnectionService {
         server.removeMessageListener(delegator, delegator.getMessageTypes());
     }
 
+    private interface ConnectionTask {
+        public void run( RpcConnection rpc );
+    }
 }
-
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.sync;
+
+import com.jme3.math.Quaternion;
+import com.jme3.network.serializing.SerializerException;
+import com.jme3.network.serializing.serializers.CompactEncoding;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ *  Encodes the difference between two WorldSnapshots into a compact
+ *  byte array and applies it again on the other end.
+ *
+ *  <p>The encoding lists the entities that are new or changed, in ID
+ *  order, followed by the IDs of the removed ones.  IDs are written as
+ *  the zig-zag varint difference to the previous ID.  Each changed entity
+ *  has a flag byte telling which of its position and rotation follow.
+ *  Positions are written as zig-zag varint differences of the quantized
+ *  coordinates to the baseline, so entities that barely move cost a
+ *  few bytes.  Rotations use the 32 bit smallest-three form of
+ *  CompactEncoding.packQuaternion().</p>
+ */
+class SnapshotCodec {
+
+    private static final int FLAG_POSITION = 0x01;
+    private static final int FLAG_ROTATION = 0x02;
+
+    // Largest encoded sizes: a count, a changed entity with all
+    // of its fields and a removed ID
+    private static final int MAX_COUNT_BYTES = 5;
+    private static final int MAX_CHANGED_BYTES = 10 + 1 + 3 * 5 + 4;
+    private static final int MAX_REMOVED_BYTES = 10;
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     *  Returns the bytes that turn baseline into current.
+     */
+    public static byte[] encode( WorldSnapshot baseline, WorldSnapshot current ) {
+        long[] baseIds = baseline.ids();
+        int[] basePos = baseline.positions();
+        int[] baseRot = baseline.rotations();
+        long[] ids = current.ids();
+        int[] pos = current.positions();
+        int[] rot = current.rotations();
+
+        // First count the changed entities so the count can lead
+        int changed = 0;
+        int removed = 0;
+        for( int i = 0, j = 0; i < ids.length || j < baseIds.length; ) {
+            if( j == baseIds.length || (i < ids.length && ids[i] < baseIds[j]) ) {
+                changed++;
+                i++;
+            } else if( i == ids.length || baseIds[j] < ids[i] ) {
+                removed++;
+                j++;
+            } else {
+                if( flags(pos, rot, i, basePos, baseRot, j) != 0 ) {
+                    changed++;
+                }
+                i++;
+                j++;
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(MAX_COUNT_BYTES * 2 + changed * MAX_CHANGED_BYTES
+                                             + removed * MAX_REMOVED_BYTES);
+        CompactEncoding.writeVarInt(out, changed);
+        long lastId = 0;
+        for( int i = 0, j = 0; i < ids.length; i++ ) {
+            while( j < baseIds.length && baseIds[j] < ids[i] ) {
+                j++;
+            }
+            boolean existing = j < baseIds.length && baseIds[j] == ids[i];
+            int flags = existing ? flags(pos, rot, i, basePos, baseRot, j) : FLAG_POSITION | FLAG_ROTATION;
+            if( flags == 0 ) {
+                continue;
+            }
+            CompactEncoding.writeSignedVarLong(out, ids[i] - lastId);
+            lastId = ids[i];
+            out.put((byte)flags);
+            if( (flags & FLAG_POSITION) != 0 ) {
+                for( int k = 0; k < 3; k++ ) {
+                    int base = existing ? basePos[j * 3 + k] : 0;
+                    CompactEncoding.writeSignedVarInt(out, pos[i * 3 + k] - base);
+                }
+            }
+            if( (flags & FLAG_ROTATION) != 0 ) {
+                out.putInt(rot[i]);
+            }
+        }
+
+        CompactEncoding.writeVarInt(out, removed);
+        lastId = 0;
+        for( int i = 0, j = 0; j < baseIds.length; j++ ) {
+            while( i < ids.length && ids[i] < baseIds[j] ) {
+                i++;
+            }
+            if( i < ids.length && ids[i] == baseIds[j] ) {
+                continue;
+            }
+            CompactEncoding.writeSignedVarLong(out, baseIds[j] - lastId);
+            lastId = baseIds[j];
+        }
+
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     *  Applies the encoded changes to the baseline and returns the
+     *  resulting snapshot.  Throws IllegalArgumentException if the
+     *  data is truncated or malformed.
+     */
+    public static WorldSnapshot decode( WorldSnapshot baseline, int seq, long time, byte[] data ) {
+        try {
+            return decode(baseline, seq, time, ByteBuffer.wrap(data));
+        } catch( BufferUnderflowException e ) {
+            throw new IllegalArgumentException("Truncated snapshot data", e);
+        } catch( SerializerException | NegativeArraySizeException | IndexOutOfBoundsException e ) {
+            throw new IllegalArgumentException("Malformed snapshot data", e);
+        }
+    }
+
+    private static WorldSnapshot decode( WorldSnapshot baseline, int seq, long time, ByteBuffer in ) throws SerializerException {
+        long[] baseIds = baseline.ids();
+        int[] basePos = baseline.positions();
+        int[] baseRot = baseline.rotations();
+
+        int changed = CompactEncoding.readVarInt(in);
+        long[] changedIds = new long[changed];
+        int[] changedFlags = new int[changed];
+        int[] changedPos = new int[changed * 3];
+        int[] changedRot = new int[changed];
+        long lastId = 0;
+        for( int c = 0; c < changed; c++ ) {
+            lastId += CompactEncoding.readSignedVarLong(in);
+            changedIds[c] = lastId;
+            int flags = in.get();
+            changedFlags[c] = flags;
+            int j = Arrays.binarySearch(baseIds, lastId);
+            for( int k = 0; k < 3; k++ ) {
+                int base = j >= 0 ? basePos[j * 3 + k] : 0;
+                changedPos[c * 3 + k] = (flags & FLAG_POSITION) != 0 ? base + CompactEncoding.readSignedVarInt(in) : base;
+            }
+            changedRot[c] = (flags & FLAG_ROTATION) != 0 ? in.getInt() : (j >= 0 ? baseRot[j] : 0);
+        }
+
+        int removedCount = CompactEncoding.readVarInt(in);
+        long[] removed = new long[removedCount];
+        lastId = 0;
+        for( int r = 0; r < removedCount; r++ ) {
+            lastId += CompactEncoding.readSignedVarLong(in);
+            removed[r] = lastId;
+        }
+
+        // Merge the sorted baseline with the sorted changes, skipping the removed
+        int max = baseIds.length + changed;
+        long[] ids = new long[max];
+        int[] pos = new int[max * 3];
+        int[] rot = new int[max];
+        int size = 0;
+        for( int i = 0, c = 0, r = 0; i < baseIds.length || c < changed; ) {
+            boolean fromChange = i == baseIds.length || (c < changed && changedIds[c] <= baseIds[i]);
+            if( fromChange ) {
+                if( i < baseIds.length && changedIds[c] == baseIds[i] ) {
+                    i++;
+                }
+                ids[size] = changedIds[c];
+                System.arraycopy(changedPos, c * 3, pos, size * 3, 3);
+                rot[size] = changedRot[c];
+                size++;
+                c++;
+            } else {
+                while( r < removedCount && removed[r] < baseIds[i] ) {
+                    r++;
+                }
+                if( r == removedCount || removed[r] != baseIds[i] ) {
+                    ids[size] = baseIds[i];
+                    System.arraycopy(basePos, i * 3, pos, size * 3, 3);
+                    rot[size] = baseRot[i];
+                    size++;
+                }
+                i++;
+            }
+        }
+
+        return new WorldSnapshot(seq, time, Arrays.copyOf(ids, size),
+                                 Arrays.copyOf(pos, size * 3), Arrays.copyOf(rot, size));
+    }
+
+    private static int flags( int[] pos, int[] rot, int i, int[] basePos, int[] baseRot, int j ) {
+        int flags = 0;
+        if( pos[i * 3] != basePos[j * 3] || pos[i * 3 + 1] != basePos[j * 3 + 1]
+            || pos[i * 3 + 2] != basePos[j * 3 + 2] ) {
+            flags |= FLAG_POSITION;
+        }
+        if( rot[i] != baseRot[j] ) {
+            flags |= FLAG_ROTATION;
+        }
+        return flags;
+    }
+
+    public static int quantize( float value, float precision ) {
+        return Math.round(value / precision);
+    }
+
+    public static int packRotation( Quaternion q ) {
+        return CompactEncoding.packQuaternion(q);
+    }
+
+    public static Quaternion unpackRotation( int packed, Quaternion store ) {
+        return CompactEncoding.unpackQuaternion(packed, store);
+    }
+}
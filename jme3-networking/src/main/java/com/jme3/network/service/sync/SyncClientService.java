@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.sync;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.Client;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.service.AbstractClientService;
+import com.jme3.network.service.ClientServiceManager;
+import com.jme3.network.service.sync.msg.SnapshotAckMessage;
+import com.jme3.network.service.sync.msg.SnapshotMessage;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ *  Client side of the SyncHostedService.  Decodes the incoming snapshots
+ *  against the locally kept baselines, acknowledges them and provides
+ *  smoothly interpolated entity state for rendering.
+ *
+ *  <p>Rendering happens slightly in the past, by the interpolation delay,
+ *  so that there generally are two snapshots around the render time to
+ *  interpolate between even when some snapshots are lost.  The delay
+ *  should be a few server ticks long.  The server clock is estimated
+ *  from the snapshot time stamps.</p>
+ */
+public class SyncClientService extends AbstractClientService {
+
+    static final Logger log = Logger.getLogger(SyncClientService.class.getName());
+
+    public static final long DEFAULT_INTERPOLATION_DELAY = 100;
+
+    private final WorldSnapshot[] history = new WorldSnapshot[SyncHostedService.HISTORY_SIZE];
+    private final SnapshotListener listener = new SnapshotListener();
+    private final Quaternion tempRot = new Quaternion();
+    private final Vector3f tempPos = new Vector3f();
+    private volatile long interpolationDelay = DEFAULT_INTERPOLATION_DELAY * 1000000L;
+    private WorldSnapshot latest;
+    private float precision = SyncHostedService.DEFAULT_POSITION_PRECISION;
+    private long clockOffset;
+    private boolean clockInitialized;
+    private long received;
+    private long dropped;
+
+    public SyncClientService() {
+    }
+
+    /**
+     *  Sets how far in the past, in milliseconds, entities are rendered.
+     */
+    public void setInterpolationDelay( long millis ) {
+        this.interpolationDelay = millis * 1000000L;
+    }
+
+    public long getInterpolationDelay() {
+        return interpolationDelay / 1000000L;
+    }
+
+    /**
+     *  Returns the most recent snapshot received or null if none has
+     *  been received yet.
+     */
+    public synchronized WorldSnapshot getLatestSnapshot() {
+        return latest;
+    }
+
+    /**
+     *  Returns the IDs of the entities in the most recent snapshot.
+     */
+    public synchronized long[] getEntityIds() {
+        return latest == null ? new long[0] : latest.ids().clone();
+    }
+
+    /**
+     *  Returns the number of snapshots that were received and decoded.
+     */
+    public synchronized long getReceivedCount() {
+        return received;
+    }
+
+    /**
+     *  Returns the number of snapshots that were ignored because they
+     *  arrived late or their baseline wasn't known.
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     *  Returns the estimated current server time in nanoseconds.
+     */
+    public synchronized long getServerTime() {
+        return System.nanoTime() + clockOffset;
+    }
+
+    /**
+     *  Fills in the interpolated position and rotation of the specified
+     *  entity at the current render time.  Returns false if the entity
+     *  is unknown, in which case the stores are left untouched.
+     */
+    public synchronized boolean getInterpolated( long id, Vector3f posStore, Quaternion rotStore ) {
+        if( latest == null ) {
+            return false;
+        }
+        long renderTime = System.nanoTime() + clockOffset - interpolationDelay;
+
+        // Find the newest snapshot at or before the render time and
+        // the oldest one after it
+        WorldSnapshot before = null;
+        WorldSnapshot after = null;
+        for( WorldSnapshot s : history ) {
+            if( s == null || SyncHostedService.distance(latest.getSequence(), s.getSequence()) >= history.length ) {
+                continue;
+            }
+            if( s.getTime() <= renderTime ) {
+                if( before == null || s.getTime() > before.getTime() ) {
+                    before = s;
+                }
+            } else if( after == null || s.getTime() < after.getTime() ) {
+                after = s;
+            }
+        }
+
+        int afterIndex = after == null ? -1 : after.indexOf(id);
+        int beforeIndex = before == null ? -1 : before.indexOf(id);
+        if( beforeIndex < 0 ) {
+            if( afterIndex < 0 ) {
+                return false;
+            }
+            // Not there yet at render time, or render time is before
+            // the oldest snapshot... just show the first known state
+            after.getPosition(afterIndex, precision, posStore);
+            after.getRotation(afterIndex, rotStore);
+            return true;
+        }
+        before.getPosition(beforeIndex, precision, posStore);
+        before.getRotation(beforeIndex, rotStore);
+        if( afterIndex < 0 ) {
+            // Either the newest state or the entity was removed
+            // after render time.  No extrapolation.
+            return true;
+        }
+
+        float t = (float)(renderTime - before.getTime()) / (after.getTime() - before.getTime());
+        t = FastMath.clamp(t, 0, 1);
+        after.getPosition(afterIndex, precision, tempPos);
+        posStore.interpolateLocal(tempPos, t);
+        after.getRotation(afterIndex, tempRot);
+        rotStore.slerp(tempRot, t);
+        return true;
+    }
+
+    @Override
+    protected void onInitialize( ClientServiceManager serviceManager ) {
+        Client client = serviceManager.getClient();
+        client.addMessageListener(listener, SnapshotMessage.class);
+    }
+
+    @Override
+    public void terminate( ClientServiceManager serviceManager ) {
+        Client client = serviceManager.getClient();
+        client.removeMessageListener(listener, SnapshotMessage.class);
+    }
+
+    /**
+     *  Decodes the snapshot and returns true if it should be acknowledged.
+     */
+    protected synchronized boolean snapshotReceived( SnapshotMessage msg ) {
+        int seq = msg.getSequence();
+        if( seq < 0 || msg.getBaseline() < -1 ) {
+            if( log.isLoggable(Level.FINE) ) {
+                log.log(Level.FINE, "Invalid sequence for:{0}", msg);
+            }
+            dropped++;
+            return false;
+        }
+        if( latest != null && !SyncHostedService.isNewer(seq, latest.getSequence()) ) {
+            dropped++;
+            return false;
+        }
+
+        WorldSnapshot baseline = WorldSnapshot.EMPTY;
+        if( msg.getBaseline() >= 0 ) {
+            baseline = history[SyncHostedService.historyIndex(msg.getBaseline())];
+            if( baseline == null || baseline.getSequence() != msg.getBaseline() ) {
+                if( log.isLoggable(Level.FINE) ) {
+                    log.log(Level.FINE, "Unknown baseline for:{0}", msg);
+                }
+                dropped++;
+                return false;
+            }
+        }
+
+        WorldSnapshot snapshot;
+        try {
+            snapshot = SnapshotCodec.decode(baseline, seq, msg.getTime(), msg.getData());
+        } catch( IllegalArgumentException e ) {
+            log.log(Level.WARNING, "Error decoding:" + msg, e);
+            dropped++;
+            return false;
+        }
+
+        if( msg.getPrecision() != precision ) {
+            // Positions are relative to the precision so older
+            // snapshots can't be interpolated with anymore
+            for( int i = 0; i < history.length; i++ ) {
+                if( history[i] != baseline ) {
+                    history[i] = null;
+                }
+            }
+            precision = msg.getPrecision();
+        }
+
+        history[SyncHostedService.historyIndex(seq)] = snapshot;
+        latest = snapshot;
+        received++;
+
+        // Smooth the clock estimate so that jitter doesn't make the
+        // interpolation stutter.  Network delay only ever makes the
+        // sample smaller so a new higher sample is taken directly.
+        long sample = msg.getTime() - System.nanoTime();
+        if( !clockInitialized || sample > clockOffset ) {
+            clockOffset = sample;
+            clockInitialized = true;
+        } else {
+            clockOffset += (sample - clockOffset) / 16;
+        }
+        return true;
+    }
+
+    private class SnapshotListener implements MessageListener<Client> {
+        @Override
+        public void messageReceived( Client source, Message m ) {
+            SnapshotMessage msg = (SnapshotMessage)m;
+            if( snapshotReceived(msg) ) {
+                source.send(new SnapshotAckMessage(msg.getSequence()));
+            }
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.sync;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Server;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.service.AbstractHostedConnectionService;
+import com.jme3.network.service.HostedServiceManager;
+import com.jme3.network.service.sync.msg.SnapshotAckMessage;
+import com.jme3.network.service.sync.msg.SnapshotMessage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ *  Replicates the position and rotation of a set of entities to all
+ *  hosted connections using delta compressed snapshots.
+ *
+ *  <p>The application updates the entity state with setEntity() and
+ *  removeEntity() and calls sendSnapshot() once per server tick.  Each
+ *  snapshot is sent unreliably and acknowledged by the SyncClientService.
+ *  The next snapshot for that connection is then encoded against the
+ *  last one it acknowledged, so only entities that actually changed
+ *  since then are sent.  When a connection has not acknowledged any of
+ *  the recent snapshots it receives a full snapshot instead.  Lost
+ *  snapshots need no resending because the next one already contains
+ *  everything that changed since the acknowledged baseline.</p>
+ *
+ *  <p>Positions are quantized to the position precision and rotations
+ *  to 32 bits, see SnapshotCodec.</p>
+ */
+public class SyncHostedService extends AbstractHostedConnectionService {
+
+    static final Logger log = Logger.getLogger(SyncHostedService.class.getName());
+
+    private static final String ATTRIBUTE_NAME = "syncSession";
+
+    /**
+     *  The number of snapshots kept for use as baselines.  Must match
+     *  the client's history size and be a power of two.
+     */
+    static final int HISTORY_SIZE = 32;
+
+    /**
+     *  Sequence numbers count up to this and then start over at 0, so
+     *  they never collide with the -1 that marks a missing baseline.
+     */
+    static final int MAX_SEQUENCE = Integer.MAX_VALUE;
+
+    public static final float DEFAULT_POSITION_PRECISION = 0.001f;
+
+    /**
+     *  Snapshots larger than this are sent reliably because they would
+     *  likely be fragmented or dropped as UDP datagrams.
+     */
+    public static final int DEFAULT_MAX_UNRELIABLE_SIZE = 8192;
+
+    private final Map<Long, EntityState> entities = new TreeMap<>();
+    private final WorldSnapshot[] history = new WorldSnapshot[HISTORY_SIZE];
+    private final AckListener ackListener = new AckListener();
+    private float precision = DEFAULT_POSITION_PRECISION;
+    private int maxUnreliableSize = DEFAULT_MAX_UNRELIABLE_SIZE;
+    private int nextSequence = 0;
+    private long bytesSent;
+    private long fullSnapshots;
+
+    /**
+     *  Creates a new sync service that automatically starts
+     *  replicating to every new connection.
+     */
+    public SyncHostedService() {
+        this(true);
+    }
+
+    /**
+     *  Creates a new sync service that will optionally start
+     *  replicating to every new connection depending on the
+     *  'autoHost' flag.
+     */
+    public SyncHostedService( boolean autoHost ) {
+        super(autoHost);
+
+        Serializer.registerClasses(SnapshotMessage.class, SnapshotAckMessage.class);
+    }
+
+    /**
+     *  Sets the size of the position quantization step in world units.
+     *  Smaller values are more precise but cost more bytes per changed
+     *  coordinate.  Changing the precision resets all baselines.
+     */
+    public void setPositionPrecision( float precision ) {
+        if( precision <= 0 ) {
+            throw new IllegalArgumentException("Precision must be positive:" + precision);
+        }
+        synchronized( entities ) {
+            if( this.precision == precision ) {
+                return;
+            }
+            this.precision = precision;
+            for( EntityState state : entities.values() ) {
+                state.quantize(precision);
+            }
+            for( int i = 0; i < history.length; i++ ) {
+                history[i] = null;
+            }
+        }
+    }
+
+    public float getPositionPrecision() {
+        return precision;
+    }
+
+    public void setMaxUnreliableSize( int size ) {
+        this.maxUnreliableSize = size;
+    }
+
+    public int getMaxUnreliableSize() {
+        return maxUnreliableSize;
+    }
+
+    /**
+     *  Sets the current position and rotation of the specified entity,
+     *  adding it if it isn't replicated yet.  The values are copied.
+     */
+    public void setEntity( long id, Vector3f position, Quaternion rotation ) {
+        synchronized( entities ) {
+            EntityState state = entities.get(id);
+            if( state == null ) {
+                state = new EntityState();
+                entities.put(id, state);
+            }
+            state.position.set(position);
+            state.rotation.set(rotation);
+            state.quantize(precision);
+        }
+    }
+
+    /**
+     *  Stops replicating the specified entity.  Clients will remove
+     *  it with the next snapshot.
+     */
+    public void removeEntity( long id ) {
+        synchronized( entities ) {
+            entities.remove(id);
+        }
+    }
+
+    public int getEntityCount() {
+        synchronized( entities ) {
+            return entities.size();
+        }
+    }
+
+    /**
+     *  Returns the total number of snapshot payload bytes sent so far.
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     *  Returns the number of snapshots that had to be sent without
+     *  a baseline.
+     */
+    public long getFullSnapshotCount() {
+        return fullSnapshots;
+    }
+
+    /**
+     *  Captures the current entity state and sends it to every hosted
+     *  connection, delta encoded against that connection's last
+     *  acknowledged snapshot.  Generally called once per server tick.
+     */
+    public void sendSnapshot() {
+        WorldSnapshot current;
+        float snapshotPrecision;
+        synchronized( entities ) {
+            current = capture(nextSequence, System.nanoTime());
+            nextSequence = (nextSequence + 1) & MAX_SEQUENCE;
+            snapshotPrecision = precision;
+            history[historyIndex(current.getSequence())] = current;
+        }
+
+        // Many connections usually share the same baseline so each
+        // delta is only encoded once per snapshot.
+        Map<Integer, byte[]> encoded = new HashMap<>();
+        for( HostedConnection hc : getServer().getConnections() ) {
+            SyncSession session = hc.getAttribute(ATTRIBUTE_NAME);
+            if( session == null ) {
+                continue;
+            }
+            WorldSnapshot baseline = findBaseline(session.lastAcked, current.getSequence());
+            int baseSeq = baseline.getSequence();
+            byte[] data = encoded.get(baseSeq);
+            if( data == null ) {
+                data = SnapshotCodec.encode(baseline, current);
+                encoded.put(baseSeq, data);
+            }
+            if( baseSeq < 0 ) {
+                fullSnapshots++;
+            }
+            SnapshotMessage msg = new SnapshotMessage(current.getSequence(), baseSeq,
+                                                      current.getTime(), snapshotPrecision, data);
+            msg.setReliable(data.length > maxUnreliableSize);
+            hc.send(msg);
+            bytesSent += data.length;
+        }
+    }
+
+    private WorldSnapshot capture( int seq, long time ) {
+        int size = entities.size();
+        long[] ids = new long[size];
+        int[] positions = new int[size * 3];
+        int[] rotations = new int[size];
+        int i = 0;
+        for( Map.Entry<Long, EntityState> e : entities.entrySet() ) {
+            EntityState state = e.getValue();
+            ids[i] = e.getKey();
+            System.arraycopy(state.quantized, 0, positions, i * 3, 3);
+            rotations[i] = state.packedRotation;
+            i++;
+        }
+        return new WorldSnapshot(seq, time, ids, positions, rotations);
+    }
+
+    private WorldSnapshot findBaseline( int acked, int seq ) {
+        if( acked < 0 || distance(seq, acked) >= HISTORY_SIZE ) {
+            return WorldSnapshot.EMPTY;
+        }
+        WorldSnapshot result = history[historyIndex(acked)];
+        if( result == null || result.getSequence() != acked ) {
+            return WorldSnapshot.EMPTY;
+        }
+        return result;
+    }
+
+    /**
+     *  Returns the history slot of the specified sequence number.
+     */
+    static int historyIndex( int seq ) {
+        return seq & (HISTORY_SIZE - 1);
+    }
+
+    /**
+     *  Returns how many snapshots the first sequence number is after
+     *  the second one, taking the wrap around into account.
+     */
+    static int distance( int seq, int older ) {
+        return (seq - older) & MAX_SEQUENCE;
+    }
+
+    /**
+     *  Returns true if the first sequence number is newer than the
+     *  second one, which must be a sequence number or -1 for none.
+     */
+    static boolean isNewer( int seq, int than ) {
+        if( than < 0 ) {
+            return true;
+        }
+        int d = distance(seq, than);
+        return d != 0 && d <= MAX_SEQUENCE / 2;
+    }
+
+    @Override
+    protected void onInitialize( HostedServiceManager serviceManager ) {
+        Server server = serviceManager.getServer();
+        server.addMessageListener(ackListener, SnapshotAckMessage.class);
+    }
+
+    /**
+     *  Starts replicating to the specified connection.  Called
+     *  automatically for all new connections if autohost is true.
+     *  The first snapshot a connection receives is a full one.
+     */
+    @Override
+    public void startHostingOnConnection( HostedConnection hc ) {
+        if( log.isLoggable(Level.FINEST) ) {
+            log.log(Level.FINEST, "startHostingOnConnection:{0}", hc);
+        }
+        hc.setAttribute(ATTRIBUTE_NAME, new SyncSession());
+    }
+
+    @Override
+    public void stopHostingOnConnection( HostedConnection hc ) {
+        if( log.isLoggable(Level.FINEST) ) {
+            log.log(Level.FINEST, "stopHostingOnConnection:{0}", hc);
+        }
+        hc.setAttribute(ATTRIBUTE_NAME, null);
+    }
+
+    @Override
+    public void terminate( HostedServiceManager serviceManager ) {
+        Server server = serviceManager.getServer();
+        server.removeMessageListener(ackListener, SnapshotAckMessage.class);
+    }
+
+    private static class EntityState {
+        final Vector3f position = new Vector3f();
+        final Quaternion rotation = new Quaternion();
+        final int[] quantized = new int[3];
+        int packedRotation;
+
+        void quantize( float precision ) {
+            quantized[0] = SnapshotCodec.quantize(position.x, precision);
+            quantized[1] = SnapshotCodec.quantize(position.y, precision);
+            quantized[2] = SnapshotCodec.quantize(position.z, precision);
+            packedRotation = SnapshotCodec.packRotation(rotation);
+        }
+    }
+
+    private static class SyncSession {
+        volatile int lastAcked = -1;
+    }
+
+    private class AckListener implements MessageListener<HostedConnection> {
+        @Override
+        public void messageReceived( HostedConnection source, Message m ) {
+            SyncSession session = source.getAttribute(ATTRIBUTE_NAME);
+            if( session == null ) {
+                return;
+            }
+            int seq = ((SnapshotAckMessage)m).getSequence();
+            // Acks can arrive out of order, only ever move forward
+            if( seq >= 0 && isNewer(seq, session.lastAcked) ) {
+                session.lastAcked = seq;
+            }
+        }
+    }
+}
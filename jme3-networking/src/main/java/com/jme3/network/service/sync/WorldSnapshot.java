@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.sync;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+
+
+/**
+ *  An immutable, quantized copy of the replicated world at one point
+ *  in time.  Entities are kept sorted by ID so that two snapshots can
+ *  be compared in a single pass.  Positions are stored as integer
+ *  multiples of the snapshot's precision and rotations in the 32 bit
+ *  smallest-three form produced by SnapshotCodec.
+ */
+public final class WorldSnapshot {
+
+    static final WorldSnapshot EMPTY = new WorldSnapshot(-1, 0, new long[0], new int[0], new int[0]);
+
+    private final int seq;
+    private final long time;
+    private final long[] ids;
+    private final int[] positions;
+    private final int[] rotations;
+
+    WorldSnapshot( int seq, long time, long[] ids, int[] positions, int[] rotations ) {
+        this.seq = seq;
+        this.time = time;
+        this.ids = ids;
+        this.positions = positions;
+        this.rotations = rotations;
+    }
+
+    public int getSequence() {
+        return seq;
+    }
+
+    /**
+     *  Returns the server time in nanoseconds at which this
+     *  snapshot was taken.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long getId( int index ) {
+        return ids[index];
+    }
+
+    /**
+     *  Returns the index of the entity with the specified ID or
+     *  a negative value if the snapshot doesn't contain it.
+     */
+    public int indexOf( long id ) {
+        return Arrays.binarySearch(ids, id);
+    }
+
+    public Vector3f getPosition( int index, float precision, Vector3f store ) {
+        if( store == null ) {
+            store = new Vector3f();
+        }
+        int i = index * 3;
+        return store.set(positions[i] * precision, positions[i + 1] * precision, positions[i + 2] * precision);
+    }
+
+    public Quaternion getRotation( int index, Quaternion store ) {
+        return SnapshotCodec.unpackRotation(rotations[index], store);
+    }
+
+    long[] ids() {
+        return ids;
+    }
+
+    int[] positions() {
+        return positions;
+    }
+
+    int[] rotations() {
+        return rotations;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[seq=" + seq + ", entities=" + ids.length + "]";
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.sync.msg;
+
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.serializing.Serializable;
+
+
+/**
+ *  Carries one world snapshot from the server to a client, delta
+ *  encoded against an earlier snapshot that the client acknowledged.
+ */
+@Serializable
+public class SnapshotMessage extends AbstractMessage {
+
+    private int seq;
+    private int baseline;
+    private long time;
+    private float precision;
+    private byte[] data;
+
+    public SnapshotMessage() {
+        super(false);
+    }
+
+    /**
+     *  Creates a snapshot message.  A baseline of -1 means the data
+     *  is encoded against an empty world.
+     */
+    public SnapshotMessage( int seq, int baseline, long time, float precision, byte[] data ) {
+        super(false);
+        this.seq = seq;
+        this.baseline = baseline;
+        this.time = time;
+        this.precision = precision;
+        this.data = data;
+    }
+
+    public int getSequence() {
+        return seq;
+    }
+
+    public int getBaseline() {
+        return baseline;
+    }
+
+    /**
+     *  Returns the server time in nanoseconds at which the
+     *  snapshot was taken.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public float getPrecision() {
+        return precision;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[seq=" + seq + ", baseline=" + baseline
+                                          + ", size=" + (data == null ? 0 : data.length) + "]";
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  A lock-free histogram of non-negative long values, usually
+ *  nanosecond durations.  Each power of two range is split into
+ *  eight linear buckets, so recording is a few atomic adds and
+ *  percentiles are accurate to within 12.5%.
+ *
+ *  @version   $Revision$
+ */
+public class Histogram
+{
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public Histogram()
+    {
+    }
+
+    /**
+     *  Records a value.  Negative values are recorded as 0.
+     */
+    public void record( long value )
+    {
+        if( value < 0 )
+            value = 0;
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while( value > (current = max.get()) ) {
+            if( max.compareAndSet(current, value) )
+                break;
+        }
+    }
+
+    private static int bucket( long value )
+    {
+        if( value < SUB_COUNT )
+            return (int)value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     *  Returns the largest value that falls into the specified bucket.
+     */
+    private static long upperBound( int bucket )
+    {
+        if( bucket < SUB_COUNT )
+            return bucket;
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        int sub = bucket % SUB_COUNT;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB_COUNT + sub) * width) + width - 1;
+    }
+
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    public long getSum()
+    {
+        return sum.sum();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    public double getMean()
+    {
+        long n = count.sum();
+        return n == 0 ? 0 : (double)sum.sum() / n;
+    }
+
+    /**
+     *  Returns an upper bound for the specified percentile, 0 to 100,
+     *  of the recorded values.  Returns 0 if nothing was recorded.
+     */
+    public long getPercentile( double percentile )
+    {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for( int i = 0; i < BUCKETS; i++ ) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if( total == 0 )
+            return 0;
+        long target = (long)Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100.0);
+        long seen = 0;
+        for( int i = 0; i < BUCKETS; i++ ) {
+            seen += snapshot[i];
+            if( seen >= Math.max(1, target) ) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     *  Returns the number of recorded values in each bucket.  Buckets
+     *  0 to 7 count the values 0 to 7 and every following run of eight
+     *  buckets splits the next power of two range into equal parts.
+     */
+    public long[] getBuckets()
+    {
+        long[] result = new long[BUCKETS];
+        for( int i = 0; i < BUCKETS; i++ ) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    public void reset()
+    {
+        for( int i = 0; i < BUCKETS; i++ ) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Histogram[count=" + getCount() + ", mean=" + (long)getMean()
+                + ", p50=" + getPercentile(50) + ", p99=" + getPercentile(99)
+                + ", max=" + getMax() + "]";
+    }
+}
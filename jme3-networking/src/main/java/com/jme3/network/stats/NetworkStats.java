@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.stats;
+
+import com.jme3.network.MessageConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ *  Lock-free traffic counters for a Server, a HostedConnection or
+ *  a Client.  Everything is recorded with atomic adds so the stats are
+ *  always on.
+ *
+ *  <p>Per channel traffic and the outbound queues are tracked per
+ *  connection.  The server's stats hold the totals of all of its
+ *  connections.  Message types and serialization times are tracked
+ *  where the messages are serialized, on the server and the client.
+ *  A broadcast is serialized once and so counts once per type,
+ *  while the channel counters count it for each connection.</p>
+ *
+ *  <p>Round trip times are only recorded when the heartbeat services
+ *  are in use.</p>
+ *
+ *  @version   $Revision$
+ */
+public class NetworkStats
+{
+    // Channels are addressed like MessageConnection channels, the
+    // two default channels come first
+    private static final int CH_FIRST = 2;
+    private static final int MAX_CHANNELS = 256 + CH_FIRST;
+
+    /**
+     *  Shared stats that ignore everything recorded in them, for
+     *  connections that don't track their traffic.
+     */
+    public static final NetworkStats NONE = new NetworkStats(null, false);
+
+    private final NetworkStats parent;
+    private final boolean recording;
+    private final TrafficStats totals = new TrafficStats("total");
+    private final AtomicReferenceArray<TrafficStats> channels = new AtomicReferenceArray<>(MAX_CHANNELS);
+    private final AtomicReferenceArray<QueueGauge> queues = new AtomicReferenceArray<>(MAX_CHANNELS);
+    private final ConcurrentMap<Class, TrafficStats> types = new ConcurrentHashMap<>();
+    private final Histogram serializationTimes = new Histogram();
+    private final Histogram deserializationTimes = new Histogram();
+    private final Histogram roundTripTimes = new Histogram();
+
+    public NetworkStats()
+    {
+        this(null);
+    }
+
+    /**
+     *  Creates stats that also add all channel traffic and round trip
+     *  times to the specified parent.
+     */
+    public NetworkStats( NetworkStats parent )
+    {
+        this(parent, true);
+    }
+
+    private NetworkStats( NetworkStats parent, boolean recording )
+    {
+        this.parent = parent;
+        this.recording = recording;
+    }
+
+    /**
+     *  Returns false for NONE, which stays empty.
+     */
+    public boolean isRecording()
+    {
+        return recording;
+    }
+
+    private static int slot( int channel )
+    {
+        int slot = channel + CH_FIRST;
+        if( slot < 0 || slot >= MAX_CHANNELS )
+            throw new IllegalArgumentException( "Invalid channel:" + channel );
+        return slot;
+    }
+
+    private static String channelName( int channel )
+    {
+        if( channel == MessageConnection.CHANNEL_DEFAULT_RELIABLE )
+            return "reliable";
+        if( channel == MessageConnection.CHANNEL_DEFAULT_UNRELIABLE )
+            return "unreliable";
+        return "channel " + channel;
+    }
+
+    /**
+     *  Returns the traffic of the specified channel, which uses the
+     *  same numbering as MessageConnection.send(int, Message).
+     */
+    public TrafficStats getChannel( int channel )
+    {
+        int slot = slot(channel);
+        TrafficStats result = channels.get(slot);
+        if( result == null ) {
+            channels.compareAndSet(slot, null, new TrafficStats(channelName(channel)));
+            result = channels.get(slot);
+        }
+        return result;
+    }
+
+    /**
+     *  Returns the stats of the channels that have seen any traffic.
+     */
+    public List<TrafficStats> getChannels()
+    {
+        List<TrafficStats> result = new ArrayList<>();
+        for( int i = 0; i < MAX_CHANNELS; i++ ) {
+            TrafficStats s = channels.get(i);
+            if( s != null )
+                result.add(s);
+        }
+        return result;
+    }
+
+    /**
+     *  Returns the sum of the traffic of all channels.
+     */
+    public TrafficStats getTotals()
+    {
+        return totals;
+    }
+
+    public void recordSent( int channel, int messages, long bytes )
+    {
+        if( !recording )
+            return;
+        getChannel(channel).recordSent(messages, bytes);
+        totals.recordSent(messages, bytes);
+        if( parent != null )
+            parent.recordSent(channel, messages, bytes);
+    }
+
+    public void recordReceived( int channel, int messages, long bytes )
+    {
+        if( !recording )
+            return;
+        getChannel(channel).recordReceived(messages, bytes);
+        totals.recordReceived(messages, bytes);
+        if( parent != null )
+            parent.recordReceived(channel, messages, bytes);
+    }
+
+    /**
+     *  Returns the traffic stats for the specified message type,
+     *  creating them if needed.
+     */
+    public TrafficStats getMessageType( Class type )
+    {
+        TrafficStats result = types.get(type);
+        if( result == null ) {
+            TrafficStats created = new TrafficStats(type.getName());
+            result = types.putIfAbsent(type, created);
+            if( result == null )
+                result = created;
+        }
+        return result;
+    }
+
+    public Collection<TrafficStats> getMessageTypes()
+    {
+        return Collections.unmodifiableCollection(types.values());
+    }
+
+    /**
+     *  Records the serialization of one message.
+     */
+    public void recordSerialized( Class type, int bytes, long nanos )
+    {
+        if( !recording )
+            return;
+        getMessageType(type).recordSent(1, bytes);
+        serializationTimes.record(nanos);
+    }
+
+    /**
+     *  Records the deserialization of one message.
+     */
+    public void recordDeserialized( Class type, int bytes, long nanos )
+    {
+        if( !recording )
+            return;
+        getMessageType(type).recordReceived(1, bytes);
+        deserializationTimes.record(nanos);
+    }
+
+    public Histogram getSerializationTimes()
+    {
+        return serializationTimes;
+    }
+
+    public Histogram getDeserializationTimes()
+    {
+        return deserializationTimes;
+    }
+
+    public void recordRoundTrip( long nanos )
+    {
+        if( !recording )
+            return;
+        roundTripTimes.record(nanos);
+        if( parent != null )
+            parent.recordRoundTrip(nanos);
+    }
+
+    /**
+     *  Returns the round trip times in nanoseconds measured by the
+     *  heartbeat services.
+     */
+    public Histogram getRoundTripTimes()
+    {
+        return roundTripTimes;
+    }
+
+    /**
+     *  Associates the outbound queue gauge of the specified channel
+     *  with these stats.
+     */
+    public void setOutboundQueue( int channel, QueueGauge gauge )
+    {
+        if( !recording )
+            return;
+        queues.set(slot(channel), gauge);
+    }
+
+    /**
+     *  Returns the outbound queue gauge of the specified channel or
+     *  null if that channel's transport doesn't queue.
+     */
+    public QueueGauge getOutboundQueue( int channel )
+    {
+        return queues.get(slot(channel));
+    }
+
+    /**
+     *  Returns the total number of outbound messages or buffers
+     *  currently queued over all channels.
+     */
+    public int getOutboundQueueDepth()
+    {
+        int result = 0;
+        for( int i = 0; i < MAX_CHANNELS; i++ ) {
+            QueueGauge g = queues.get(i);
+            if( g != null )
+                result += g.getDepth();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "NetworkStats[" + totals + ", queued=" + getOutboundQueueDepth() 
+                + ", rtt=" + roundTripTimes + "]";
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.stats;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Tracks the current depth and the high-water mark of a queue
+ *  without touching the queue itself.  The owner of the queue calls
+ *  increment() when adding and decrement() when removing.
+ *
+ *  @version   $Revision$
+ */
+public class QueueGauge
+{
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger highWater = new AtomicInteger();
+
+    public QueueGauge()
+    {
+    }
+
+    public void increment()
+    {
+        int d = depth.incrementAndGet();
+        int current;
+        while( d > (current = highWater.get()) ) {
+            if( highWater.compareAndSet(current, d) )
+                break;
+        }
+    }
+
+    public void decrement()
+    {
+        depth.decrementAndGet();
+    }
+
+    public int getDepth()
+    {
+        return depth.get();
+    }
+
+    /**
+     *  Returns the largest depth seen since creation or since
+     *  the last resetHighWater().
+     */
+    public int getHighWater()
+    {
+        return highWater.get();
+    }
+
+    public void resetHighWater()
+    {
+        highWater.set(depth.get());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "QueueGauge[depth=" + getDepth() + ", highWater=" + getHighWater() + "]";
+    }
+}
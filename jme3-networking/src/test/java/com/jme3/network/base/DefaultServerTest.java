@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.base;
+
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.Client;
+import com.jme3.network.ConnectionListener;
+import com.jme3.network.Filters;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Network;
+import com.jme3.network.Server;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Verifies that broadcasts with a CandidateFilter reach each
+ *  accepted connection exactly once.
+ *
+ *  @version   $Revision$
+ */
+public class DefaultServerTest
+{
+    private static final String GAME_NAME = "DefaultServerTest";
+    private static final int VERSION = 1;
+
+    private Server server;
+    private final List<Client> clients = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        // Starting a server locks the registry, each test starts over
+        Serializer.initialize();
+        Serializer.registerClass(TestMessage.class);
+    }
+
+    @After
+    public void tearDown()
+    {
+        for( Client c : clients ) {
+            if( c.isConnected() ) {
+                c.close();
+            }
+        }
+        clients.clear();
+        if( server != null && server.isRunning() ) {
+            server.close();
+        }
+    }
+
+    private static int findFreePort() throws IOException
+    {
+        try( ServerSocket socket = new ServerSocket(0) ) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private List<HostedConnection> startServer( boolean batching, 
+                                                List<BlockingQueue<TestMessage>> received )
+        throws IOException, InterruptedException
+    {
+        int port = findFreePort();
+        server = Network.createServer(GAME_NAME, VERSION, port, -1);
+        ((DefaultServer)server).setMessageBatching(batching);
+        final CountDownLatch connected = new CountDownLatch(received.size());
+        server.addConnectionListener(new ConnectionListener() {
+                @Override
+                public void connectionAdded( Server server, HostedConnection conn )
+                {
+                    connected.countDown();
+                }
+
+                @Override
+                public void connectionRemoved( Server server, HostedConnection conn )
+                {
+                }
+            });
+        server.start();
+
+        for( final BlockingQueue<TestMessage> queue : received ) {
+            Client c = Network.connectToServer(GAME_NAME, VERSION, "127.0.0.1", port, -1);
+            c.addMessageListener(new MessageListener<Client>() {
+                    @Override
+                    public void messageReceived( Client source, Message m )
+                    {
+                        queue.add((TestMessage)m);
+                    }
+                }, TestMessage.class);
+            c.start();
+            clients.add(c);
+        }
+        assertTrue(connected.await(10, TimeUnit.SECONDS));
+        return new ArrayList<>(server.getConnections());
+    }
+
+    private void checkDuplicateCandidates( boolean batching ) throws Exception
+    {
+        List<BlockingQueue<TestMessage>> received = new ArrayList<>();
+        for( int i = 0; i < 3; i++ ) {
+            received.add(new LinkedBlockingQueue<TestMessage>());
+        }
+        List<HostedConnection> conns = startServer(batching, received);
+        HostedConnection first = conns.get(0);
+        HostedConnection second = conns.get(1);
+
+        // A list, not a set, so the filter's candidates contain duplicates
+        List<HostedConnection> targets = Arrays.asList(first, second, first, first, second);
+        server.broadcast(Filters.in(targets), new TestMessage(1));
+
+        // The marker is sent to everyone after the broadcasts over the 
+        // same reliable stream, once it arrives everything before it did too
+        server.broadcast(new TestMessage(0));
+        if( batching ) {
+            ((DefaultServer)server).flush();
+        }
+
+        for( int i = 0; i < clients.size(); i++ ) {
+            int id = clients.get(i).getId();
+            int expected = (id == first.getId() || id == second.getId()) ? 1 : 0;
+            assertEquals("Client " + id, expected, countUntilMarker(received.get(i)));
+        }
+    }
+
+    private static int countUntilMarker( BlockingQueue<TestMessage> queue ) throws InterruptedException
+    {
+        int count = 0;
+        for( TestMessage m; (m = queue.poll(10, TimeUnit.SECONDS)) != null; ) {
+            if( m.getValue() == 0 ) {
+                return count;
+            }
+            count++;
+        }
+        fail("Marker not received");
+        return count;
+    }
+
+    @Test
+    public void testCandidateBroadcastDeliversOnce() throws Exception
+    {
+        checkDuplicateCandidates(false);
+    }
+
+    @Test
+    public void testBatchedCandidateBroadcastDeliversOnce() throws Exception
+    {
+        checkDuplicateCandidates(true);
+    }
+
+    @Serializable
+    public static class TestMessage extends AbstractMessage
+    {
+        private int value;
+
+        public TestMessage()
+        {
+        }
+
+        public TestMessage( int value )
+        {
+            super(true);
+            this.value = value;
+        }
+
+        public int getValue()
+        {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Checks the size classes of the BufferPool and the reference
+ *  counting of its PooledBuffers.
+ *
+ *  @version   $Revision$
+ */
+public class BufferPoolTest
+{
+    @Test
+    public void testSizeClasses()
+    {
+        BufferPool pool = new BufferPool();
+        int[][] sizes = {
+            { 0, 256 }, { 1, 256 }, { 256, 256 }, { 257, 512 }, { 1000, 1024 },
+            { 1024, 1024 }, { 1025, 2048 }, { 65535, 65536 }, { 65536, 65536 }
+        };
+        for( int[] s : sizes ) {
+            PooledBuffer b = pool.acquire(s[0]);
+            assertEquals("Capacity for " + s[0], s[1], b.getBuffer().capacity());
+            assertEquals(0, b.getBuffer().position());
+            assertEquals(s[0], b.getBuffer().limit());
+            assertTrue(b.getBuffer().isDirect());
+            assertEquals(1, b.getRefCount());
+        }
+        assertEquals(sizes.length, pool.getAllocatedCount());
+    }
+
+    @Test
+    public void testMaximumSizeRoundsUp()
+    {
+        BufferPool pool = new BufferPool(1000, 4);
+        PooledBuffer b = pool.acquire(1000);
+        assertEquals(1024, b.getBuffer().capacity());
+        b.release();
+        assertEquals(1, pool.getFreeCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaximumSizeTooSmall()
+    {
+        new BufferPool(BufferPool.MIN_SIZE - 1, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSize()
+    {
+        new BufferPool().acquire(-1);
+    }
+
+    @Test
+    public void testReleasedBufferIsReused()
+    {
+        BufferPool pool = new BufferPool();
+        PooledBuffer b = pool.acquire(300);
+        b.getBuffer().put((byte)42);
+        assertTrue(b.release());
+        assertEquals(0, b.getRefCount());
+        assertEquals(1, pool.getFreeCount());
+
+        // Another size class doesn't take it
+        PooledBuffer other = pool.acquire(100);
+        assertNotSame(b, other);
+        assertEquals(2, pool.getAllocatedCount());
+
+        // The same class does, reset for the new size
+        PooledBuffer again = pool.acquire(400);
+        assertSame(b, again);
+        assertEquals(1, again.getRefCount());
+        assertEquals(0, again.getBuffer().position());
+        assertEquals(400, again.getBuffer().limit());
+        assertEquals(1, pool.getReusedCount());
+        assertEquals(0, pool.getFreeCount());
+    }
+
+    @Test
+    public void testOversizedBuffersAreNotPooled()
+    {
+        BufferPool pool = new BufferPool(1024, 4);
+        PooledBuffer b = pool.acquire(5000);
+        assertEquals(5000, b.getBuffer().capacity());
+        assertTrue(b.release());
+        assertEquals(0, pool.getFreeCount());
+        assertNotSame(b, pool.acquire(5000));
+    }
+
+    @Test
+    public void testFreeCountIsCapped()
+    {
+        BufferPool pool = new BufferPool(1024, 2);
+        PooledBuffer[] buffers = new PooledBuffer[5];
+        for( int i = 0; i < buffers.length; i++ )
+            buffers[i] = pool.acquire(512);
+        for( PooledBuffer b : buffers )
+            b.release();
+        assertEquals(2, pool.getFreeCount());
+
+        // Other size classes have their own limit
+        pool.acquire(100).release();
+        assertEquals(3, pool.getFreeCount());
+    }
+
+    @Test
+    public void testRetainAndRelease()
+    {
+        BufferPool pool = new BufferPool();
+        PooledBuffer b = pool.acquire(10);
+        assertSame(b, b.retain());
+        b.retain();
+        assertEquals(3, b.getRefCount());
+
+        assertFalse(b.release());
+        assertFalse(b.release());
+        assertEquals(0, pool.getFreeCount());
+        assertTrue(b.release());
+        assertEquals(1, pool.getFreeCount());
+    }
+
+    @Test
+    public void testDoubleRelease()
+    {
+        BufferPool pool = new BufferPool();
+        PooledBuffer b = pool.acquire(10);
+        b.release();
+        try {
+            b.release();
+            fail("Expected IllegalStateException");
+        } catch( IllegalStateException e ) {
+            // expected
+        }
+        try {
+            b.retain();
+            fail("Expected IllegalStateException");
+        } catch( IllegalStateException e ) {
+            // expected
+        }
+        // Recycled only once
+        assertEquals(1, pool.getFreeCount());
+    }
+
+    @Test
+    public void testCopyOfAndViews()
+    {
+        BufferPool pool = new BufferPool();
+        ByteBuffer source = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5 });
+        source.position(1);
+        PooledBuffer b = pool.copyOf(source);
+        assertEquals(1, source.position());
+        assertEquals(0, b.getBuffer().position());
+        assertEquals(4, b.getBuffer().remaining());
+
+        ByteBuffer first = b.view();
+        ByteBuffer second = b.view();
+        assertTrue(first.isReadOnly());
+        assertEquals(2, first.get());
+        assertEquals(3, first.get());
+        // Each view has its own position
+        assertEquals(2, second.get());
+        assertEquals(0, b.getBuffer().position());
+        try {
+            first.put((byte)0);
+            fail("Expected ReadOnlyBufferException");
+        } catch( ReadOnlyBufferException e ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentRelease() throws Exception
+    {
+        final BufferPool pool = new BufferPool();
+        for( int round = 0; round < 100; round++ ) {
+            final PooledBuffer b = pool.acquire(64);
+            final int threads = 8;
+            for( int i = 1; i < threads; i++ )
+                b.retain();
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicInteger last = new AtomicInteger();
+            Thread[] workers = new Thread[threads];
+            for( int i = 0; i < threads; i++ ) {
+                workers[i] = new Thread() {
+                        @Override
+                        public void run()
+                        {
+                            try {
+                                start.await();
+                            } catch( InterruptedException e ) {
+                                return;
+                            }
+                            if( b.release() )
+                                last.incrementAndGet();
+                        }
+                    };
+                workers[i].start();
+            }
+            start.countDown();
+            for( Thread t : workers )
+                t.join();
+            assertEquals(1, last.get());
+            assertEquals(0, b.getRefCount());
+        }
+        // The same buffer went back and forth every round
+        assertEquals(1, pool.getAllocatedCount());
+        assertEquals(1, pool.getFreeCount());
+    }
+}
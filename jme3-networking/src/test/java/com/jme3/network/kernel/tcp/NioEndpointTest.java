@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.tcp;
+
+import com.jme3.network.kernel.BufferPool;
+import com.jme3.network.kernel.EndpointEvent;
+import com.jme3.network.kernel.PooledBuffer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Queues far more data on a NioEndpoint than the socket can take
+ *  while the remote end isn't reading, so the selector has to do
+ *  partial gathered writes, and checks that everything arrives in
+ *  order and all pooled buffers are released afterwards.
+ *
+ *  @version   $Revision$
+ */
+public class NioEndpointTest
+{
+    private static final int MESSAGE_COUNT = SelectorKernel.MAX_GATHER * 4;
+    private static final int MAX_MESSAGE_SIZE = 32768;
+
+    private SelectorKernel kernel;
+    private SocketChannel client;
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if( client != null )
+            client.close();
+        if( kernel != null )
+            kernel.terminate();
+    }
+
+    private static int findFreePort() throws IOException
+    {
+        try( ServerSocket socket = new ServerSocket(0) ) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private NioEndpoint connect( BufferPool pool ) throws Exception
+    {
+        InetAddress host = InetAddress.getLoopbackAddress();
+        int port = findFreePort();
+        kernel = new SelectorKernel(host, port);
+        kernel.setBufferPool(pool);
+        kernel.initialize();
+
+        client = SocketChannel.open();
+        // A small window so the server's socket fills up quickly
+        client.socket().setReceiveBufferSize(4096);
+        client.connect(new InetSocketAddress(host, port));
+
+        long end = System.currentTimeMillis() + 10000;
+        while( System.currentTimeMillis() < end ) {
+            EndpointEvent event = kernel.nextEvent();
+            if( event != null && event.getType() == EndpointEvent.Type.ADD )
+                return (NioEndpoint)event.getEndpoint();
+            Thread.sleep(10);
+        }
+        fail("Endpoint not added");
+        return null;
+    }
+
+    private static byte[] message( Random random )
+    {
+        byte[] data = new byte[1 + random.nextInt(MAX_MESSAGE_SIZE)];
+        random.nextBytes(data);
+        return data;
+    }
+
+    @Test(timeout = 60000)
+    public void testPartialGatheredWrites() throws Exception
+    {
+        // Room for every buffer so all of them can be counted when free
+        BufferPool pool = new BufferPool(BufferPool.DEFAULT_MAX_SIZE, MESSAGE_COUNT);
+        NioEndpoint endpoint = connect(pool);
+
+        Random random = new Random(1);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for( int i = 0; i < MESSAGE_COUNT; i++ ) {
+            byte[] data = message(random);
+            expected.write(data);
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if( i % 3 == 0 ) {
+                // Shared pooled copy, the way broadcasts are queued
+                kernel.broadcast(null, buffer, true, true);
+            } else {
+                endpoint.send(buffer);
+                assertFalse(buffer.hasRemaining());
+            }
+        }
+
+        // Give the selector time to fill the socket, the rest must
+        // still be queued, more than fit in one gathered write
+        Thread.sleep(500);
+        int queued = endpoint.getOutboundQueue().getDepth();
+        assertTrue("Queued:" + queued, queued > 0);
+        assertTrue(endpoint.hasPending());
+
+        byte[] all = expected.toByteArray();
+        byte[] received = new byte[all.length];
+        ByteBuffer in = ByteBuffer.wrap(received);
+        while( in.hasRemaining() ) {
+            if( client.read(in) < 0 )
+                fail("Connection closed after " + in.position() + " bytes");
+        }
+        assertTrue("Received data differs", Arrays.equals(all, received));
+
+        // Every pooled buffer went back once its data was written
+        long end = System.currentTimeMillis() + 10000;
+        while( endpoint.hasPending() && System.currentTimeMillis() < end )
+            Thread.sleep(10);
+        assertFalse(endpoint.hasPending());
+        assertEquals(0, endpoint.getOutboundQueue().getDepth());
+        assertEquals(pool.getAllocatedCount(), pool.getFreeCount());
+        assertEquals(MESSAGE_COUNT, pool.getAllocatedCount() + pool.getReusedCount());
+    }
+
+    @Test
+    public void testGatherPending() throws Exception
+    {
+        // Never initialized, the endpoint only queues
+        SelectorKernel unused = new SelectorKernel(InetAddress.getLoopbackAddress(), 0);
+        NioEndpoint endpoint = new NioEndpoint(unused, 1, null);
+        PooledBuffer shared = unused.getBufferPool().copyOf(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+        ByteBuffer[] queued = new ByteBuffer[SelectorKernel.MAX_GATHER + 2];
+        for( int i = 0; i < queued.length; i++ ) {
+            queued[i] = ByteBuffer.allocate(4);
+            endpoint.send(queued[i], false, false);
+        }
+        endpoint.send(shared, false);
+        endpoint.send(NioEndpoint.CLOSE_MARKER, false, false);
+        endpoint.send(ByteBuffer.allocate(4), false, false);
+        assertEquals(2, shared.getRefCount());
+
+        // Limited by the array size
+        ByteBuffer[] gather = new ByteBuffer[SelectorKernel.MAX_GATHER];
+        assertEquals(SelectorKernel.MAX_GATHER, endpoint.gatherPending(gather));
+        for( int i = 0; i < gather.length; i++ )
+            assertSame(queued[i], gather[i]);
+
+        // Gathering doesn't remove anything
+        assertEquals(queued.length + 3, endpoint.getOutboundQueue().getDepth());
+        for( int i = 0; i < SelectorKernel.MAX_GATHER; i++ )
+            assertSame(queued[i], endpoint.removePending());
+
+        // Stops at the close marker
+        Arrays.fill(gather, null);
+        assertEquals(3, endpoint.gatherPending(gather));
+        assertSame(queued[queued.length - 1], gather[1]);
+        assertEquals(3, gather[2].remaining());
+        endpoint.removePending();
+        endpoint.removePending();
+        endpoint.removePending();
+        // Written out, the endpoint lets go of the shared buffer
+        assertEquals(1, shared.getRefCount());
+        assertSame(NioEndpoint.CLOSE_MARKER, endpoint.peekPending());
+        assertEquals(0, endpoint.gatherPending(gather));
+    }
+}
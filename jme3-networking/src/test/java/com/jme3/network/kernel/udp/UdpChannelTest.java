@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Runs two UdpChannels against each other over an in-memory
+ *  loopback, with simulated loss on both sides.
+ *
+ *  @version   $Revision$
+ */
+public class UdpChannelTest
+{
+    // Longer than the maximum retransmit timeout so that every
+    // datagram still in flight is resent
+    private static final long TIMEOUT_STEP = TimeUnit.SECONDS.toNanos(3);
+
+    private static final int MESSAGE_COUNT = 200;
+
+    /**
+     *  Collects the datagrams one side transmits until the test
+     *  hands them to the other side.
+     */
+    private static class Loopback implements UdpChannel.Transport
+    {
+        final ArrayDeque<byte[]> packets = new ArrayDeque<byte[]>();
+        int maxLength;
+
+        @Override
+        public void transmit( byte[] packet, int length )
+        {
+            packets.add(Arrays.copyOf(packet, length));
+            maxLength = Math.max(maxLength, length);
+        }
+    }
+
+    private final Loopback toReceiver = new Loopback();
+    private final Loopback toSender = new Loopback();
+    private long clock;
+
+    private UdpChannel createSender( UdpChannelMode mode, float loss )
+    {
+        UdpChannel channel = new UdpChannel(mode, toReceiver);
+        channel.setSimulatedLoss(loss);
+        return channel;
+    }
+
+    private UdpChannel createReceiver( UdpChannelMode mode, float loss )
+    {
+        UdpChannel channel = new UdpChannel(mode, toSender);
+        channel.setSimulatedLoss(loss);
+        return channel;
+    }
+
+    private static byte[] message( int id, int size )
+    {
+        byte[] data = new byte[size];
+        new Random(id).nextBytes(data);
+        ByteBuffer.wrap(data).putInt(id);
+        return data;
+    }
+
+    private static int idOf( byte[] data )
+    {
+        return ByteBuffer.wrap(data).getInt();
+    }
+
+    /**
+     *  Exchanges datagrams until the sender has nothing left to resend,
+     *  forcing the retransmit timers whenever the link runs dry.
+     */
+    private void exchange( UdpChannel sender, UdpChannel receiver, 
+                           List<byte[]> delivered ) throws IOException
+    {
+        List<byte[]> ignored = new ArrayList<byte[]>();
+        for( int round = 0; round < 1000; round++ ) {
+            while( !toReceiver.packets.isEmpty() || !toSender.packets.isEmpty() ) {
+                byte[] packet = toReceiver.packets.poll();
+                if( packet != null ) {
+                    receiver.receive(packet, 0, packet.length, delivered);
+                }
+                packet = toSender.packets.poll();
+                if( packet != null ) {
+                    sender.receive(packet, 0, packet.length, ignored);
+                }
+            }
+            if( sender.getPendingCount() == 0 ) {
+                return;
+            }
+            assertFalse(sender.isFailed());
+            clock += TIMEOUT_STEP;
+            sender.update(System.nanoTime() + clock);
+        }
+        fail("Still pending:" + sender);
+    }
+
+    private List<byte[]> sendUnderLoss( UdpChannelMode mode, int size ) throws IOException
+    {
+        UdpChannel sender = createSender(mode, 0.2f);
+        UdpChannel receiver = createReceiver(mode, 0.2f);
+        List<byte[]> delivered = new ArrayList<byte[]>();
+        for( int i = 0; i < MESSAGE_COUNT; i++ ) {
+            sender.send(ByteBuffer.wrap(message(i, size)));
+        }
+        exchange(sender, receiver, delivered);
+
+        assertTrue(sender.getRetransmitCount() > 0);
+        assertEquals(MESSAGE_COUNT, delivered.size());
+        for( byte[] data : delivered ) {
+            assertArrayEquals(message(idOf(data), size), data);
+        }
+        return delivered;
+    }
+
+    @Test
+    public void testReliableOrderedUnderLoss() throws IOException
+    {
+        List<byte[]> delivered = sendUnderLoss(UdpChannelMode.ReliableOrdered, 100);
+        for( int i = 0; i < MESSAGE_COUNT; i++ ) {
+            assertEquals(i, idOf(delivered.get(i)));
+        }
+    }
+
+    @Test
+    public void testReliableUnorderedUnderLoss() throws IOException
+    {
+        List<byte[]> delivered = sendUnderLoss(UdpChannelMode.ReliableUnordered, 100);
+        Set<Integer> ids = new HashSet<Integer>();
+        for( byte[] data : delivered ) {
+            assertTrue(ids.add(idOf(data)));
+        }
+    }
+
+    @Test
+    public void testOrderedHoldsBackLaterMessages() throws IOException
+    {
+        UdpChannel sender = createSender(UdpChannelMode.ReliableOrdered, 0);
+        UdpChannel receiver = createReceiver(UdpChannelMode.ReliableOrdered, 0);
+        for( int i = 0; i < 3; i++ ) {
+            sender.send(ByteBuffer.wrap(message(i, 10)));
+        }
+
+        List<byte[]> delivered = new ArrayList<byte[]>();
+        byte[][] packets = toReceiver.packets.toArray(new byte[0][]);
+        toReceiver.packets.clear();
+        receiver.receive(packets[2], 0, packets[2].length, delivered);
+        receiver.receive(packets[1], 0, packets[1].length, delivered);
+        assertTrue(delivered.isEmpty());
+
+        receiver.receive(packets[0], 0, packets[0].length, delivered);
+        assertEquals(3, delivered.size());
+        for( int i = 0; i < 3; i++ ) {
+            assertEquals(i, idOf(delivered.get(i)));
+        }
+    }
+
+    @Test
+    public void testUnorderedDeliversImmediately() throws IOException
+    {
+        UdpChannel sender = createSender(UdpChannelMode.ReliableUnordered, 0);
+        UdpChannel receiver = createReceiver(UdpChannelMode.ReliableUnordered, 0);
+        for( int i = 0; i < 3; i++ ) {
+            sender.send(ByteBuffer.wrap(message(i, 10)));
+        }
+
+        List<byte[]> delivered = new ArrayList<byte[]>();
+        byte[][] packets = toReceiver.packets.toArray(new byte[0][]);
+        toReceiver.packets.clear();
+        for( int i = 2; i >= 0; i-- ) {
+            receiver.receive(packets[i], 0, packets[i].length, delivered);
+            assertEquals(i, idOf(delivered.get(delivered.size() - 1)));
+        }
+        assertEquals(3, delivered.size());
+    }
+
+    @Test
+    public void testSequencedDropsStaleMessages() throws IOException
+    {
+        UdpChannel sender = createSender(UdpChannelMode.Sequenced, 0);
+        UdpChannel receiver = createReceiver(UdpChannelMode.Sequenced, 0);
+        List<byte[]> delivered = new ArrayList<byte[]>();
+
+        // The first message is always reliable
+        sender.send(ByteBuffer.wrap(message(0, 10)));
+        exchange(sender, receiver, delivered);
+        assertEquals(1, delivered.size());
+        delivered.clear();
+
+        for( int i = 1; i <= 4; i++ ) {
+            sender.send(ByteBuffer.wrap(message(i, 10)));
+        }
+        assertEquals(0, sender.getPendingCount());
+        byte[][] packets = toReceiver.packets.toArray(new byte[0][]);
+        toReceiver.packets.clear();
+        assertEquals(4, packets.length);
+
+        // 2 arrives, then the older 1, then 4 and the older 3
+        receiver.receive(packets[1], 0, packets[1].length, delivered);
+        receiver.receive(packets[0], 0, packets[0].length, delivered);
+        receiver.receive(packets[3], 0, packets[3].length, delivered);
+        receiver.receive(packets[2], 0, packets[2].length, delivered);
+        receiver.receive(packets[3], 0, packets[3].length, delivered);
+
+        assertEquals(2, delivered.size());
+        assertEquals(2, idOf(delivered.get(0)));
+        assertEquals(4, idOf(delivered.get(1)));
+        assertEquals(3, receiver.getDuplicateCount());
+    }
+
+    @Test
+    public void testLargeMessagesAreSplit() throws IOException
+    {
+        int size = 5000;
+        for( UdpChannelMode mode : new UdpChannelMode[] { UdpChannelMode.ReliableOrdered,
+                                                          UdpChannelMode.ReliableUnordered } ) {
+            toReceiver.packets.clear();
+            toSender.packets.clear();
+            toReceiver.maxLength = 0;
+            sendUnderLoss(mode, size);
+            assertTrue(mode.toString(), toReceiver.maxLength <= UdpChannel.DEFAULT_MAX_PACKET_SIZE);
+        }
+    }
+
+    @Test
+    public void testSequencedLargeMessagesAreSplit() throws IOException
+    {
+        UdpChannel sender = createSender(UdpChannelMode.Sequenced, 0);
+        UdpChannel receiver = createReceiver(UdpChannelMode.Sequenced, 0);
+        List<byte[]> delivered = new ArrayList<byte[]>();
+
+        sender.send(ByteBuffer.wrap(message(0, 10)));
+        exchange(sender, receiver, delivered);
+        delivered.clear();
+
+        byte[] data = message(1, 5000);
+        sender.send(ByteBuffer.wrap(data));
+        assertTrue(toReceiver.packets.size() > 1);
+        assertTrue(toReceiver.maxLength <= UdpChannel.DEFAULT_MAX_PACKET_SIZE);
+        exchange(sender, receiver, delivered);
+
+        assertEquals(1, delivered.size());
+        assertArrayEquals(data, delivered.get(0));
+    }
+
+    @Test
+    public void testFailsAfterMaxRetries() throws IOException
+    {
+        UdpChannel sender = createSender(UdpChannelMode.ReliableOrdered, 0);
+        sender.send(ByteBuffer.wrap(message(0, 10)));
+
+        // Nothing ever reaches the peer
+        int updates = 0;
+        while( !sender.isFailed() && updates < 100 ) {
+            toReceiver.packets.clear();
+            clock += TIMEOUT_STEP;
+            sender.update(System.nanoTime() + clock);
+            updates++;
+        }
+
+        assertTrue(sender.isFailed());
+        assertEquals(sender.getRetransmitCount() + 1, updates);
+        assertEquals(1, sender.getPendingCount());
+        try {
+            sender.send(ByteBuffer.wrap(message(1, 10)));
+            fail("Send on a failed channel");
+        } catch( IOException e ) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.serializing.SerializerException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trip and boundary tests for the {@link CompactEncoding} helpers.
+ */
+public class CompactEncodingTest {
+
+    private static final int[] INTS = {
+        0, 1, -1, 2, -2, 63, -64, 64, 127, 128, 255, 16383, 16384,
+        -100000, 100000, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1
+    };
+
+    private static final long[] LONGS = {
+        0, 1, -1, 127, 128, -129, 1L << 35, -(1L << 35), 1L << 62, 
+        Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE
+    };
+
+    @Test
+    public void testZigZag() {
+        assertEquals(0, CompactEncoding.zigZag(0));
+        assertEquals(1, CompactEncoding.zigZag(-1));
+        assertEquals(2, CompactEncoding.zigZag(1));
+        assertEquals(3, CompactEncoding.zigZag(-2));
+        assertEquals(-1, CompactEncoding.zigZag(Integer.MIN_VALUE));
+        assertEquals(-2, CompactEncoding.zigZag(Integer.MAX_VALUE));
+        assertEquals(-1L, CompactEncoding.zigZag(Long.MIN_VALUE));
+        assertEquals(-2L, CompactEncoding.zigZag(Long.MAX_VALUE));
+
+        for (int v : INTS) {
+            assertEquals(v, CompactEncoding.unZigZag(CompactEncoding.zigZag(v)));
+        }
+        for (long v : LONGS) {
+            assertEquals(v, CompactEncoding.unZigZag(CompactEncoding.zigZag(v)));
+        }
+    }
+
+    private static int sizeOfVarInt(int value) {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        CompactEncoding.writeVarInt(buffer, value);
+        return buffer.position();
+    }
+
+    @Test
+    public void testVarIntSizes() {
+        assertEquals(1, sizeOfVarInt(0));
+        assertEquals(1, sizeOfVarInt(127));
+        assertEquals(2, sizeOfVarInt(128));
+        assertEquals(2, sizeOfVarInt(16383));
+        assertEquals(3, sizeOfVarInt(16384));
+        assertEquals(5, sizeOfVarInt(Integer.MAX_VALUE));
+        // Negative values are unsigned and always take five bytes
+        assertEquals(5, sizeOfVarInt(-1));
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        CompactEncoding.writeSignedVarInt(buffer, -1);
+        assertEquals(1, buffer.position());
+
+        buffer.clear();
+        CompactEncoding.writeVarLong(buffer, Long.MIN_VALUE);
+        assertEquals(10, buffer.position());
+    }
+
+    @Test
+    public void testVarIntRoundTrip() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        for (int v : INTS) {
+            CompactEncoding.writeVarInt(buffer, v);
+            CompactEncoding.writeSignedVarInt(buffer, v);
+        }
+        for (long v : LONGS) {
+            CompactEncoding.writeVarLong(buffer, v);
+            CompactEncoding.writeSignedVarLong(buffer, v);
+        }
+        buffer.flip();
+        for (int v : INTS) {
+            assertEquals(v, CompactEncoding.readVarInt(buffer));
+            assertEquals(v, CompactEncoding.readSignedVarInt(buffer));
+        }
+        for (long v : LONGS) {
+            assertEquals(v, CompactEncoding.readVarLong(buffer));
+            assertEquals(v, CompactEncoding.readSignedVarLong(buffer));
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test(expected = SerializerException.class)
+    public void testVarIntOverflow() throws Exception {
+        // An int never takes more than five bytes
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { -1, -1, -1, -1, -1, 0 });
+        CompactEncoding.readVarInt(buffer);
+    }
+
+    @Test(expected = SerializerException.class)
+    public void testVarLongOverflow() throws Exception {
+        byte[] data = new byte[11];
+        Arrays.fill(data, (byte)0x80);
+        CompactEncoding.readVarLong(ByteBuffer.wrap(data));
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void testTruncatedVarInt() throws Exception {
+        CompactEncoding.readVarInt(ByteBuffer.wrap(new byte[] { (byte)0x80, (byte)0x80 }));
+    }
+
+    @Test
+    public void testQuantize() throws Exception {
+        float precision = 0.01f;
+        float[] values = { 0, 0.004f, -0.004f, 0.006f, 1.234f, -1.234f, 5000.5f, -5000.5f };
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        for (float v : values) {
+            CompactEncoding.writeQuantized(buffer, v, precision);
+        }
+        buffer.flip();
+        for (float v : values) {
+            float read = CompactEncoding.readQuantized(buffer, precision);
+            assertEquals(v, read, precision / 2 + Math.ulp(v) * 4);
+        }
+        assertFalse(buffer.hasRemaining());
+
+        // Small values cost a single byte
+        buffer.clear();
+        CompactEncoding.writeQuantized(buffer, 0.5f, precision);
+        assertEquals(1, buffer.position());
+    }
+
+    private static void assertSameRotation(Quaternion expected, Quaternion actual, float tolerance) {
+        Quaternion e = expected.clone();
+        e.normalizeLocal();
+        // q and -q are the same rotation
+        float dot = e.dot(actual);
+        float sign = dot < 0 ? -1 : 1;
+        assertEquals(e.getX() * sign, actual.getX(), tolerance);
+        assertEquals(e.getY() * sign, actual.getY(), tolerance);
+        assertEquals(e.getZ() * sign, actual.getZ(), tolerance);
+        assertEquals(e.getW() * sign, actual.getW(), tolerance);
+        assertEquals(1, actual.norm(), 0.001f);
+    }
+
+    @Test
+    public void testQuaternionIdentityAndZero() {
+        Quaternion q = CompactEncoding.unpackQuaternion(CompactEncoding.packQuaternion(Quaternion.IDENTITY), null);
+        assertEquals(Quaternion.IDENTITY, q);
+
+        // A zero quaternion can't be normalized and becomes the identity
+        int zero = CompactEncoding.packQuaternion(new Quaternion(0, 0, 0, 0));
+        assertEquals(CompactEncoding.packQuaternion(Quaternion.IDENTITY), zero);
+    }
+
+    @Test
+    public void testQuaternionLargestComponent() {
+        // Each component in turn is the dropped one, with both signs
+        for (int i = 0; i < 4; i++) {
+            for (float sign : new float[] { 1, -1 }) {
+                float[] c = { 0.1f, -0.2f, 0.3f, -0.1f };
+                c[i] = 0.9f * sign;
+                Quaternion q = new Quaternion(c[0], c[1], c[2], c[3]);
+                int packed = CompactEncoding.packQuaternion(q);
+                assertEquals(i, packed >>> 30);
+                assertSameRotation(q, CompactEncoding.unpackQuaternion(packed, null), 0.002f);
+
+                // Negating the quaternion gives the same encoding
+                Quaternion negated = new Quaternion(-c[0], -c[1], -c[2], -c[3]);
+                assertEquals(packed, CompactEncoding.packQuaternion(negated));
+            }
+        }
+    }
+
+    @Test
+    public void testQuaternionBoundaries() {
+        // Two equal largest components sit right at the edge of the range
+        float h = FastMath.sqrt(2) / 2;
+        Quaternion[] edges = {
+            new Quaternion(h, h, 0, 0),
+            new Quaternion(0, -h, 0, h),
+            new Quaternion(0.5f, 0.5f, 0.5f, 0.5f),
+            new Quaternion(-0.5f, 0.5f, -0.5f, 0.5f)
+        };
+        for (Quaternion q : edges) {
+            assertSameRotation(q, CompactEncoding.unpackQuaternion(CompactEncoding.packQuaternion(q), null), 0.002f);
+        }
+
+        // Unnormalized input is normalized first
+        Quaternion scaled = new Quaternion(0.2f, 0.4f, -0.6f, 1.6f);
+        assertSameRotation(scaled, CompactEncoding.unpackQuaternion(CompactEncoding.packQuaternion(scaled), null), 0.002f);
+    }
+
+    @Test
+    public void testQuaternionRandomRoundTrip() {
+        Random random = new Random(1234);
+        Quaternion store = new Quaternion();
+        Vector3f axis = new Vector3f();
+        for (int i = 0; i < 10000; i++) {
+            axis.set(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+            if (axis.lengthSquared() == 0) {
+                continue;
+            }
+            axis.normalizeLocal();
+            Quaternion q = new Quaternion().fromAngleNormalAxis(random.nextFloat() * FastMath.TWO_PI, axis);
+            assertSame(store, CompactEncoding.unpackQuaternion(CompactEncoding.packQuaternion(q), store));
+            assertSameRotation(q, store, 0.002f);
+        }
+    }
+}
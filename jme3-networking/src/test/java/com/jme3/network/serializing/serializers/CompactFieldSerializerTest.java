@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.serializing.Quantize;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the presence bitmask of the {@link CompactFieldSerializer},
+ * that defaults are skipped and that values read back unchanged.
+ */
+public class CompactFieldSerializerTest {
+
+    private CompactFieldSerializer serializer;
+
+    @Serializable
+    public static class Nested {
+        private String name;
+        private int value;
+
+        public Nested() {
+        }
+
+        Nested(String name, int value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    public static class TestMessage {
+        public boolean booleanValue;
+        public byte byteValue;
+        public char charValue;
+        public short shortValue;
+        public int intValue;
+        public long longValue;
+        public float floatValue;
+        public double doubleValue;
+
+        public Vector3f vector;
+        @Quantize(0.01f)
+        public Vector3f quantizedVector;
+        @Quantize(0.01f)
+        public float quantizedFloat;
+        public Quaternion rotation;
+        @Quantize
+        public Quaternion quantizedRotation;
+
+        public String text;
+        public Integer intWrapper;
+        public ArrayList<String> list;
+        public Nested nested;
+
+        private int privateValue;
+        public transient int transientValue;
+
+        public TestMessage() {
+        }
+    }
+
+    /**
+     * Four fields, sorted by name into bits 0 to 3 of the mask.
+     */
+    public static class Small {
+        public int a;
+        public boolean b;
+        public String c;
+        public long d;
+
+        public Small() {
+        }
+    }
+
+    public static class BadQuantize {
+        @Quantize
+        public int value;
+
+        public BadQuantize() {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Serializer.initialize();
+        Serializer.registerClass(Nested.class);
+
+        serializer = new CompactFieldSerializer();
+        serializer.initialize(TestMessage.class);
+        serializer.initialize(Small.class);
+    }
+
+    @After
+    public void tearDown() {
+        CompactStringSerializer.clearStrings();
+    }
+
+    private byte[] write(Object object) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        serializer.writeObject(buffer, object);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private <T> T read(byte[] bytes, Class<T> type) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        T result = serializer.readObject(data, type);
+        assertFalse(data.hasRemaining());
+        return result;
+    }
+
+    private static TestMessage createMessage() {
+        TestMessage m = new TestMessage();
+        m.booleanValue = true;
+        m.byteValue = -12;
+        m.charValue = 'x';
+        m.shortValue = -1234;
+        m.intValue = 123456789;
+        m.longValue = -1234567890123L;
+        m.floatValue = 1.5f;
+        m.doubleValue = -2.25;
+        m.vector = new Vector3f(1.5f, -2.25f, 1e10f);
+        m.quantizedVector = new Vector3f(1.234f, -5.678f, 0);
+        m.quantizedFloat = 3.14159f;
+        m.rotation = new Quaternion(0.1f, 0.2f, 0.3f, 0.9f);
+        m.quantizedRotation = new Quaternion().fromAngles(0.5f, 1, 1.5f);
+        m.text = "Hello";
+        m.intWrapper = 42;
+        m.list = new ArrayList<String>(Arrays.asList("one", "two"));
+        m.nested = new Nested("nested", 7);
+        m.privateValue = 99;
+        m.transientValue = 5;
+        return m;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        TestMessage m = createMessage();
+        TestMessage read = read(write(m), TestMessage.class);
+
+        assertEquals(m.booleanValue, read.booleanValue);
+        assertEquals(m.byteValue, read.byteValue);
+        assertEquals(m.charValue, read.charValue);
+        assertEquals(m.shortValue, read.shortValue);
+        assertEquals(m.intValue, read.intValue);
+        assertEquals(m.longValue, read.longValue);
+        assertEquals(m.floatValue, read.floatValue, 0);
+        assertEquals(m.doubleValue, read.doubleValue, 0);
+        assertEquals(m.vector, read.vector);
+        assertEquals(m.quantizedVector.x, read.quantizedVector.x, 0.005f);
+        assertEquals(m.quantizedVector.y, read.quantizedVector.y, 0.005f);
+        assertEquals(m.quantizedVector.z, read.quantizedVector.z, 0);
+        assertEquals(m.quantizedFloat, read.quantizedFloat, 0.005f);
+        assertEquals(m.rotation, read.rotation);
+        assertEquals(1, Math.abs(m.quantizedRotation.dot(read.quantizedRotation)), 0.0001f);
+        assertEquals(m.text, read.text);
+        assertEquals(m.intWrapper, read.intWrapper);
+        assertEquals(m.list, read.list);
+        assertEquals(m.nested.name, read.nested.name);
+        assertEquals(m.nested.value, read.nested.value);
+        assertEquals(m.privateValue, read.privateValue);
+        assertEquals(0, read.transientValue);
+    }
+
+    @Test
+    public void testBoundaryValues() throws IOException {
+        TestMessage m = new TestMessage();
+        m.byteValue = Byte.MIN_VALUE;
+        m.charValue = Character.MAX_VALUE;
+        m.shortValue = Short.MIN_VALUE;
+        m.intValue = Integer.MIN_VALUE;
+        m.longValue = Long.MIN_VALUE;
+        m.floatValue = Float.NaN;
+        m.doubleValue = Double.MAX_VALUE;
+        TestMessage read = read(write(m), TestMessage.class);
+        assertEquals(Byte.MIN_VALUE, read.byteValue);
+        assertEquals(Character.MAX_VALUE, read.charValue);
+        assertEquals(Short.MIN_VALUE, read.shortValue);
+        assertEquals(Integer.MIN_VALUE, read.intValue);
+        assertEquals(Long.MIN_VALUE, read.longValue);
+        assertTrue(Float.isNaN(read.floatValue));
+        assertEquals(Double.MAX_VALUE, read.doubleValue, 0);
+
+        m.shortValue = Short.MAX_VALUE;
+        m.intValue = Integer.MAX_VALUE;
+        m.longValue = Long.MAX_VALUE;
+        m.floatValue = -0f;
+        read = read(write(m), TestMessage.class);
+        assertEquals(Short.MAX_VALUE, read.shortValue);
+        assertEquals(Integer.MAX_VALUE, read.intValue);
+        assertEquals(Long.MAX_VALUE, read.longValue);
+        // Negative zero isn't skipped like zero is
+        assertEquals(Float.floatToRawIntBits(-0f), Float.floatToRawIntBits(read.floatValue));
+    }
+
+    @Test
+    public void testDefaultsAreSkipped() throws IOException {
+        // Only the non-null flag and the mask of 18 fields
+        byte[] bytes = write(new TestMessage());
+        assertEquals(1 + 3, bytes.length);
+        assertArrayEquals(new byte[] { 1, 0, 0, 0 }, bytes);
+
+        TestMessage read = read(bytes, TestMessage.class);
+        assertFalse(read.booleanValue);
+        assertEquals(0, read.intValue);
+        assertNull(read.vector);
+        assertNull(read.rotation);
+        assertNull(read.text);
+        assertNull(read.intWrapper);
+        assertNull(read.list);
+        assertNull(read.nested);
+    }
+
+    @Test
+    public void testPresenceBits() throws IOException {
+        Small m = new Small();
+        m.b = true;
+        // Booleans live in their bit and write nothing else
+        assertArrayEquals(new byte[] { 1, 0x2 }, write(m));
+
+        m.b = false;
+        m.a = -1;
+        assertArrayEquals(new byte[] { 1, 0x1, 1 }, write(m));
+
+        m.a = 0;
+        m.c = "";
+        // An empty string is present, unlike null
+        assertArrayEquals(new byte[] { 1, 0x4, 1, 0 }, write(m));
+
+        m.c = null;
+        m.d = 64;
+        assertArrayEquals(new byte[] { 1, 0x8, (byte)0x80, 1 }, write(m));
+
+        m.a = 1;
+        m.b = true;
+        m.c = "x";
+        Small read = read(write(m), Small.class);
+        assertEquals(1, read.a);
+        assertTrue(read.b);
+        assertEquals("x", read.c);
+        assertEquals(64, read.d);
+    }
+
+    @Test
+    public void testStringTable() throws IOException {
+        Small m = new Small();
+        m.c = "registered";
+        byte[] literal = write(m);
+
+        CompactStringSerializer.registerStrings("other", "registered");
+        byte[] indexed = write(m);
+        // Table index 1 is written as 3
+        assertArrayEquals(new byte[] { 1, 0x4, 3 }, indexed);
+        assertTrue(indexed.length < literal.length);
+        assertEquals("registered", read(indexed, Small.class).c);
+    }
+
+    @Test
+    public void testNull() throws IOException {
+        byte[] bytes = write(null);
+        assertArrayEquals(new byte[] { 0 }, bytes);
+        assertNull(read(bytes, TestMessage.class));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testQuantizeOnUnsupportedType() {
+        serializer.initialize(BadQuantize.class);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.serializing.SerializerException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that the {@link GeneratedFieldSerializer} writes exactly the
+ * same bytes as the {@link FieldSerializer} and reads them back.
+ */
+public class GeneratedFieldSerializerTest {
+
+    private FieldSerializer fieldSerializer;
+    private GeneratedFieldSerializer generatedSerializer;
+
+    @Serializable
+    public static class Nested {
+        private String name;
+        private int value;
+
+        public Nested() {
+        }
+
+        Nested(String name, int value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    public static class TestMessage {
+        public boolean booleanValue;
+        public byte byteValue;
+        public char charValue;
+        public short shortValue;
+        public int intValue;
+        public long longValue;
+        public float floatValue;
+        public double doubleValue;
+
+        public Boolean booleanWrapper;
+        public Integer intWrapper;
+        public Long longWrapper;
+        public Double doubleWrapper;
+
+        public String text;
+        public String nullText;
+        public ArrayList<String> list;
+        public HashMap<String, Integer> map;
+        public Nested nested;
+        public Nested nullNested;
+
+        private int privateValue;
+        private String privateText;
+        public transient int transientValue;
+        public transient String transientText;
+
+        public TestMessage() {
+        }
+
+        int getPrivateValue() {
+            return privateValue;
+        }
+
+        String getPrivateText() {
+            return privateText;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Serializer.initialize();
+        Serializer.registerClass(Nested.class);
+
+        fieldSerializer = new FieldSerializer();
+        fieldSerializer.initialize(TestMessage.class);
+        generatedSerializer = new GeneratedFieldSerializer();
+        generatedSerializer.initialize(TestMessage.class);
+    }
+
+    private static TestMessage createMessage() {
+        TestMessage m = new TestMessage();
+        m.booleanValue = true;
+        m.byteValue = -12;
+        m.charValue = 'x';
+        m.shortValue = -1234;
+        m.intValue = 123456789;
+        m.longValue = -1234567890123L;
+        m.floatValue = 1.5f;
+        m.doubleValue = -2.25;
+
+        m.booleanWrapper = Boolean.TRUE;
+        m.intWrapper = 42;
+        m.longWrapper = 1L << 40;
+        m.doubleWrapper = Math.PI;
+
+        m.text = "Hello";
+        m.list = new ArrayList<String>(Arrays.asList("one", "two", "three"));
+        m.map = new HashMap<String, Integer>();
+        m.map.put("a", 1);
+        m.map.put("b", 2);
+        m.nested = new Nested("nested", 7);
+
+        m.privateValue = 99;
+        m.privateText = "private";
+        m.transientValue = 5;
+        m.transientText = "transient";
+        return m;
+    }
+
+    private static byte[] write(Serializer serializer, Object object) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        serializer.writeObject(buffer, object);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testSameBytesAsFieldSerializer() throws IOException {
+        TestMessage m = createMessage();
+        byte[] expected = write(fieldSerializer, m);
+        byte[] actual = write(generatedSerializer, m);
+        assertArrayEquals(expected, actual);
+
+        assertArrayEquals(write(fieldSerializer, null), write(generatedSerializer, null));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        TestMessage m = createMessage();
+        byte[] bytes = write(generatedSerializer, m);
+
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        TestMessage read = generatedSerializer.readObject(data, TestMessage.class);
+        assertFalse(data.hasRemaining());
+
+        assertEquals(m.booleanValue, read.booleanValue);
+        assertEquals(m.byteValue, read.byteValue);
+        assertEquals(m.charValue, read.charValue);
+        assertEquals(m.shortValue, read.shortValue);
+        assertEquals(m.intValue, read.intValue);
+        assertEquals(m.longValue, read.longValue);
+        assertEquals(m.floatValue, read.floatValue, 0);
+        assertEquals(m.doubleValue, read.doubleValue, 0);
+
+        assertEquals(m.booleanWrapper, read.booleanWrapper);
+        assertEquals(m.intWrapper, read.intWrapper);
+        assertEquals(m.longWrapper, read.longWrapper);
+        assertEquals(m.doubleWrapper, read.doubleWrapper);
+
+        assertEquals(m.text, read.text);
+        assertNull(read.nullText);
+        assertEquals(m.list, read.list);
+        assertEquals(m.map, read.map);
+        assertEquals(m.nested.name, read.nested.name);
+        assertEquals(m.nested.value, read.nested.value);
+        assertNull(read.nullNested);
+
+        assertEquals(m.getPrivateValue(), read.getPrivateValue());
+        assertEquals(m.getPrivateText(), read.getPrivateText());
+        assertEquals(0, read.transientValue);
+        assertNull(read.transientText);
+
+        // Both serializers read each other's data
+        TestMessage fromField = fieldSerializer.readObject(ByteBuffer.wrap(bytes), TestMessage.class);
+        assertArrayEquals(bytes, write(fieldSerializer, fromField));
+    }
+
+    @Test
+    public void testReadNull() throws IOException {
+        byte[] bytes = write(generatedSerializer, null);
+        assertNull(generatedSerializer.readObject(ByteBuffer.wrap(bytes), TestMessage.class));
+    }
+
+    @Test(expected = SerializerException.class)
+    public void testTruncatedDataThrowsSerializerException() throws IOException {
+        byte[] bytes = write(generatedSerializer, createMessage());
+        ByteBuffer data = ByteBuffer.wrap(bytes, 0, 6);
+        generatedSerializer.readObject(data, TestMessage.class);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.interest;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Checks the SpatialGrid queries, including boxes that cover
+ *  everything and values far outside of the key range.
+ *
+ *  @version   $Revision$
+ */
+public class SpatialGridTest {
+
+    private static final float INF = Float.POSITIVE_INFINITY;
+
+    private SpatialGrid<String> createGrid() {
+        SpatialGrid<String> grid = new SpatialGrid<>(10);
+        grid.update("origin", 0, 0, 0);
+        grid.update("near", 15, -5, 3);
+        grid.update("far", 5000, 0, -5000);
+        grid.update("huge", 1e30f, -1e30f, 1e30f);
+        return grid;
+    }
+
+    @Test
+    public void testQueryBox() {
+        SpatialGrid<String> grid = createGrid();
+        Set<String> result = grid.query(-5, -5, -5, 5, 5, 5, new HashSet<String>());
+        assertEquals(new HashSet<>(Arrays.asList("origin")), result);
+
+        result = grid.query(-5, -15, -5, 25, 5, 5, new HashSet<String>());
+        assertEquals(new HashSet<>(Arrays.asList("origin", "near")), result);
+    }
+
+    @Test(timeout = 10000)
+    public void testQueryEverything() {
+        SpatialGrid<String> grid = createGrid();
+        Set<String> expected = new HashSet<>(Arrays.asList("origin", "near", "far", "huge"));
+
+        assertEquals(expected, grid.query(-INF, -INF, -INF, INF, INF, INF, new HashSet<String>()));
+        assertEquals(expected, grid.query(-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE,
+                                          Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+                                          new HashSet<String>()));
+    }
+
+    @Test(timeout = 10000)
+    public void testQueryEdgeOfRange() {
+        SpatialGrid<String> grid = createGrid();
+
+        // Only one cell wide but at the border, where the far out
+        // values are clamped to
+        Set<String> result = grid.query(INF, -INF, INF, INF, -INF, INF, new HashSet<String>());
+        assertEquals(new HashSet<>(Arrays.asList("huge")), result);
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        SpatialGrid<String> grid = createGrid();
+        assertEquals(4, grid.size());
+        assertEquals(4, grid.getCellCount());
+
+        grid.update("near", 1, 1, 1);
+        assertEquals(3, grid.getCellCount());
+        assertEquals(new HashSet<>(Arrays.asList("origin", "near")),
+                     grid.query(-5, -5, -5, 5, 5, 5, new HashSet<String>()));
+
+        assertTrue(grid.remove("origin"));
+        assertFalse(grid.remove("origin"));
+        assertEquals(new HashSet<>(Arrays.asList("near")),
+                     grid.query(-5, -5, -5, 5, 5, 5, new HashSet<String>()));
+    }
+}
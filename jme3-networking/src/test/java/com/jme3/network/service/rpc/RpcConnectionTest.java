@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.rpc;
+
+import com.jme3.network.Message;
+import com.jme3.network.MessageConnection;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.service.rpc.msg.RpcBatchMessage;
+import com.jme3.network.service.rpc.msg.RpcCallMessage;
+import com.jme3.network.service.rpc.msg.RpcResponseMessage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Runs two RpcConnections against each other over an in-memory
+ *  loopback that only delivers messages when the test says so, to
+ *  check pipelining, response matching, batching and errors.
+ *
+ *  @version   $Revision$
+ */
+public class RpcConnectionTest {
+
+    private static final byte CHANNEL = (byte)MessageConnection.CHANNEL_DEFAULT_RELIABLE;
+    private static final short OBJ_ID = 1;
+    private static final short PROC_DOUBLE = 1;
+    private static final short PROC_FAIL = 2;
+    private static final short PROC_DEFERRED = 3;
+    private static final short PROC_RECORD = 4;
+
+    /**
+     *  Queues the messages sent by one side after passing them
+     *  through the serializer like a real connection would.
+     */
+    private static class Loopback implements MessageConnection {
+        final ArrayDeque<Message> messages = new ArrayDeque<Message>();
+
+        @Override
+        public void send( Message message ) {
+            ByteBuffer buffer = ByteBuffer.allocate(65536);
+            try {
+                Serializer.writeClassAndObject(buffer, message);
+                buffer.flip();
+                messages.add((Message)Serializer.readClassAndObject(buffer));
+            } catch( IOException e ) {
+                throw new RuntimeException("Error serializing:" + message, e);
+            }
+        }
+
+        @Override
+        public void send( int channel, Message message ) {
+            send(message);
+        }
+
+        /**
+         *  Hands all queued messages to the specified connection.
+         */
+        int deliverTo( RpcConnection target ) {
+            int count = 0;
+            for( Message m; (m = messages.poll()) != null; count++ ) {
+                if( m instanceof RpcCallMessage ) {
+                    target.handleMessage((RpcCallMessage)m);
+                } else if( m instanceof RpcBatchMessage ) {
+                    target.handleMessage((RpcBatchMessage)m);
+                } else {
+                    target.handleMessage((RpcResponseMessage)m);
+                }
+            }
+            return count;
+        }
+    }
+
+    private final Loopback toServer = new Loopback();
+    private final Loopback toClient = new Loopback();
+    private final RpcConnection client = new RpcConnection(toServer);
+    private final RpcConnection server = new RpcConnection(toClient);
+    private final List<Object> recorded = new ArrayList<Object>();
+    private final List<CompletableFuture<Object>> deferred = new ArrayList<CompletableFuture<Object>>();
+
+    @Before
+    public void setUp() {
+        Serializer.initialize();
+        Serializer.registerClasses(RpcCallMessage.class, RpcResponseMessage.class, RpcBatchMessage.class);
+
+        server.registerHandler(OBJ_ID, new RpcHandler() {
+                @Override
+                public Object call( RpcConnection conn, short objectId, short procId, Object... args ) {
+                    switch( procId ) {
+                        case PROC_DOUBLE:
+                            return (Integer)args[0] * 2;
+                        case PROC_FAIL:
+                            throw new IllegalStateException("Failing on purpose:" + args[0]);
+                        case PROC_DEFERRED:
+                            CompletableFuture<Object> result = new CompletableFuture<Object>();
+                            deferred.add(result);
+                            return result;
+                        case PROC_RECORD:
+                            recorded.add(args[0]);
+                            return null;
+                        default:
+                            throw new IllegalArgumentException("Unknown procedure:" + procId);
+                    }
+                }
+            });
+    }
+
+    private static Object get( CompletableFuture<Object> future ) throws Exception {
+        assertTrue("Not completed:" + future, future.isDone());
+        return future.get(0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPipelinedCallsAnsweredInOrder() throws Exception {
+        List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+        for( int i = 0; i < 20; i++ ) {
+            futures.add(client.call(CHANNEL, OBJ_ID, PROC_DOUBLE, i));
+        }
+
+        // Every call is on the wire before any response came back
+        assertEquals(20, toServer.messages.size());
+        assertEquals(20, client.getPendingCallCount());
+        for( CompletableFuture<Object> f : futures ) {
+            assertFalse(f.isDone());
+        }
+
+        assertEquals(20, toServer.deliverTo(server));
+        long last = -1;
+        for( Message m : toClient.messages ) {
+            long id = ((RpcResponseMessage)m).getMessageId();
+            assertTrue("Response " + id + " after " + last, id > last);
+            last = id;
+        }
+        assertEquals(20, toClient.deliverTo(client));
+
+        assertEquals(0, client.getPendingCallCount());
+        for( int i = 0; i < futures.size(); i++ ) {
+            assertEquals(i * 2, get(futures.get(i)));
+        }
+    }
+
+    @Test
+    public void testResponsesMatchedOutOfOrder() throws Exception {
+        List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+        for( int i = 0; i < 5; i++ ) {
+            futures.add(client.call(CHANNEL, OBJ_ID, PROC_DEFERRED, i));
+        }
+        toServer.deliverTo(server);
+        assertEquals(5, deferred.size());
+        assertTrue(toClient.messages.isEmpty());
+
+        // Complete the local calls backwards, each response still
+        // has to find its own caller
+        for( int i = deferred.size() - 1; i >= 0; i-- ) {
+            deferred.get(i).complete("result " + i);
+            assertEquals(1, toClient.deliverTo(client));
+            assertTrue(futures.get(i).isDone());
+            if( i > 0 ) {
+                assertFalse(futures.get(i - 1).isDone());
+            }
+        }
+        for( int i = 0; i < futures.size(); i++ ) {
+            assertEquals("result " + i, get(futures.get(i)));
+        }
+    }
+
+    @Test
+    public void testAsyncCallsBatchedUntilFlush() throws Exception {
+        client.setAsyncBatching(true);
+        for( int i = 0; i < 5; i++ ) {
+            client.callAsync(CHANNEL, OBJ_ID, PROC_RECORD, i);
+        }
+        assertTrue(toServer.messages.isEmpty());
+
+        client.flush();
+        assertEquals(1, toServer.messages.size());
+        RpcBatchMessage batch = (RpcBatchMessage)toServer.messages.peek();
+        assertEquals(5, batch.getCalls().length);
+        toServer.deliverTo(server);
+        assertEquals(Arrays.<Object>asList(0, 1, 2, 3, 4), recorded);
+        // Asynchronous calls are never answered
+        assertTrue(toClient.messages.isEmpty());
+
+        // Nothing left to send
+        client.flush();
+        assertTrue(toServer.messages.isEmpty());
+    }
+
+    @Test
+    public void testCallFlushesPendingAsyncCalls() throws Exception {
+        client.setAsyncBatching(true);
+        client.callAsync(CHANNEL, OBJ_ID, PROC_RECORD, "first");
+        client.callAsync(CHANNEL, OBJ_ID, PROC_RECORD, "second");
+        CompletableFuture<Object> f = client.call(CHANNEL, OBJ_ID, PROC_DOUBLE, 21);
+
+        // The batch goes out ahead of the call that was made after it
+        assertEquals(2, toServer.messages.size());
+        assertTrue(toServer.messages.peekFirst() instanceof RpcBatchMessage);
+        assertTrue(toServer.messages.peekLast() instanceof RpcCallMessage);
+
+        toServer.deliverTo(server);
+        toClient.deliverTo(client);
+        assertEquals(Arrays.<Object>asList("first", "second"), recorded);
+        assertEquals(42, get(f));
+    }
+
+    @Test
+    public void testFullBatchSentWithoutFlush() throws Exception {
+        client.setAsyncBatching(true);
+        for( int i = 0; i < RpcConnection.MAX_BATCH_CALLS + 1; i++ ) {
+            client.callAsync(CHANNEL, OBJ_ID, PROC_RECORD, i);
+        }
+        assertEquals(1, toServer.messages.size());
+        assertEquals(RpcConnection.MAX_BATCH_CALLS,
+                     ((RpcBatchMessage)toServer.messages.peek()).getCalls().length);
+
+        // A single remaining call isn't wrapped in a batch
+        client.flush();
+        assertEquals(2, toServer.messages.size());
+        assertTrue(toServer.messages.peekLast() instanceof RpcCallMessage);
+
+        toServer.deliverTo(server);
+        assertEquals(RpcConnection.MAX_BATCH_CALLS + 1, recorded.size());
+        for( int i = 0; i < recorded.size(); i++ ) {
+            assertEquals(i, recorded.get(i));
+        }
+    }
+
+    @Test
+    public void testDisablingBatchingFlushes() throws Exception {
+        client.setAsyncBatching(true);
+        client.callAsync(CHANNEL, OBJ_ID, PROC_RECORD, 1);
+        assertTrue(toServer.messages.isEmpty());
+        client.setAsyncBatching(false);
+        assertEquals(1, toServer.messages.size());
+
+        client.callAsync(CHANNEL, OBJ_ID, PROC_RECORD, 2);
+        assertEquals(2, toServer.messages.size());
+        toServer.deliverTo(server);
+        assertEquals(Arrays.<Object>asList(1, 2), recorded);
+    }
+
+    private static void assertFailed( CompletableFuture<Object> future, String message ) throws Exception {
+        assertTrue(future.isDone());
+        assertTrue(future.isCompletedExceptionally());
+        try {
+            future.get();
+            fail("Expected failure");
+        } catch( ExecutionException e ) {
+            assertTrue(e.getCause() instanceof RuntimeException);
+            String text = String.valueOf(e.getCause().getMessage())
+                          + (e.getCause().getCause() == null ? "" : e.getCause().getCause().getMessage());
+            assertTrue("Missing '" + message + "' in:" + text, text.contains(message));
+        }
+    }
+
+    @Test
+    public void testExceptionalCompletion() throws Exception {
+        CompletableFuture<Object> thrown = client.call(CHANNEL, OBJ_ID, PROC_FAIL, "thrown");
+        CompletableFuture<Object> ok = client.call(CHANNEL, OBJ_ID, PROC_DOUBLE, 4);
+        CompletableFuture<Object> failed = client.call(CHANNEL, OBJ_ID, PROC_DEFERRED, 0);
+        CompletableFuture<Object> unknown = client.call(CHANNEL, (short)99, PROC_DOUBLE, 0);
+        toServer.deliverTo(server);
+        deferred.get(0).completeExceptionally(new IllegalStateException("Deferred failure"));
+        toClient.deliverTo(client);
+
+        assertFailed(thrown, "Failing on purpose:thrown");
+        assertFailed(failed, "Deferred failure");
+        assertFailed(unknown, "Handler not found for objectID:99");
+        // A failure doesn't affect the other calls in flight
+        assertEquals(8, get(ok));
+        assertEquals(0, client.getPendingCallCount());
+    }
+
+    @Test
+    public void testCloseFailsPendingCalls() throws Exception {
+        CompletableFuture<Object> f = client.call(CHANNEL, OBJ_ID, PROC_DOUBLE, 1);
+        client.close();
+        assertFailed(f, "Closing connection");
+        assertEquals(0, client.getPendingCallCount());
+
+        // A late response is ignored
+        toServer.deliverTo(server);
+        toClient.deliverTo(client);
+        assertFailed(f, "Closing connection");
+    }
+}
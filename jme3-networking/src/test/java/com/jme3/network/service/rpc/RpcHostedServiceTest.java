@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.rpc;
+
+import com.jme3.network.Client;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageConnection;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Network;
+import com.jme3.network.Server;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.service.rpc.msg.RpcBatchMessage;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Runs RPC calls between a real server and client over the
+ *  loopback interface, pipelining calls from both ends.
+ *
+ *  @version   $Revision$
+ */
+public class RpcHostedServiceTest {
+
+    private static final String GAME_NAME = "RpcHostedServiceTest";
+    private static final int VERSION = 1;
+    private static final byte CHANNEL = (byte)MessageConnection.CHANNEL_DEFAULT_RELIABLE;
+    private static final short OBJ_ID = 1;
+    private static final short PROC_ECHO = 1;
+    private static final short PROC_FAIL = 2;
+    private static final short PROC_RECORD = 3;
+    private static final short PROC_SLOW = 4;
+
+    private Server server;
+    private Client client;
+    private RpcHostedService hosted;
+    private RpcClientService clientRpc;
+    private ExecutorService executor;
+    private final List<Object> serverRecorded = Collections.synchronizedList(new ArrayList<Object>());
+    private final List<Object> clientRecorded = Collections.synchronizedList(new ArrayList<Object>());
+    private final AtomicInteger batchesReceived = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        // Starting a server locks the registry, each test starts over
+        Serializer.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        if( client != null && client.isConnected() ) {
+            client.close();
+        }
+        if( server != null && server.isRunning() ) {
+            server.close();
+        }
+        if( executor != null ) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int findFreePort() throws IOException {
+        try( ServerSocket socket = new ServerSocket(0) ) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static RpcHandler createHandler( final List<Object> recorded ) {
+        return new RpcHandler() {
+            @Override
+            public Object call( RpcConnection conn, short objectId, short procId, Object... args ) {
+                switch( procId ) {
+                    case PROC_ECHO:
+                        return args[0];
+                    case PROC_FAIL:
+                        throw new IllegalStateException("Failing on purpose:" + args[0]);
+                    case PROC_RECORD:
+                        recorded.add(args[0]);
+                        return null;
+                    case PROC_SLOW:
+                        try {
+                            Thread.sleep((Integer)args[0]);
+                        } catch( InterruptedException e ) {
+                            throw new RuntimeException(e);
+                        }
+                        return args[0];
+                    default:
+                        throw new IllegalArgumentException("Unknown procedure:" + procId);
+                }
+            }
+        };
+    }
+
+    /**
+     *  Starts the server and one client, both with RPC services
+     *  and the test handler, and returns the server side RPC
+     *  connection to the client.
+     */
+    private RpcConnection connect() throws Exception {
+        int port = findFreePort();
+        server = Network.createServer(GAME_NAME, VERSION, port, -1);
+        hosted = new RpcHostedService();
+        server.getServices().addService(hosted);
+        server.addMessageListener(new MessageListener<HostedConnection>() {
+                @Override
+                public void messageReceived( HostedConnection source, Message m ) {
+                    batchesReceived.incrementAndGet();
+                }
+            }, RpcBatchMessage.class);
+        server.start();
+
+        client = Network.connectToServer(GAME_NAME, VERSION, "127.0.0.1", port, -1);
+        clientRpc = new RpcClientService();
+        client.getServices().addService(clientRpc);
+        clientRpc.registerHandler(OBJ_ID, createHandler(clientRecorded));
+        client.start();
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while( System.nanoTime() < end ) {
+            for( HostedConnection hc : server.getConnections() ) {
+                RpcConnection rpc = hosted.getRpcConnection(hc);
+                if( rpc != null ) {
+                    rpc.registerHandler(OBJ_ID, createHandler(serverRecorded));
+                    return rpc;
+                }
+            }
+            Thread.sleep(10);
+        }
+        fail("Client did not connect");
+        return null;
+    }
+
+    private static Object await( CompletableFuture<Object> future ) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test(timeout = 30000)
+    public void testPipelinedCallsFromServer() throws Exception {
+        RpcConnection rpc = connect();
+
+        final List<Integer> completed = Collections.synchronizedList(new ArrayList<Integer>());
+        List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+        for( int i = 0; i < 50; i++ ) {
+            final int index = i;
+            CompletableFuture<Object> f = rpc.call(CHANNEL, OBJ_ID, PROC_ECHO, "value " + i);
+            f.thenRun(new Runnable() {
+                    @Override
+                    public void run() {
+                        completed.add(index);
+                    }
+                });
+            futures.add(f);
+        }
+        for( int i = 0; i < futures.size(); i++ ) {
+            assertEquals("value " + i, await(futures.get(i)));
+        }
+
+        // The client answers on its reader thread in the order of the calls
+        for( int i = 0; i < completed.size(); i++ ) {
+            assertEquals(Integer.valueOf(i), completed.get(i));
+        }
+        assertEquals(0, rpc.getPendingCallCount());
+    }
+
+    @Test(timeout = 30000)
+    public void testPipelinedCallsFromClientWithExecutor() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        RpcConnection rpc = connect();
+        hosted.setInvocationExecutor(executor);
+        assertSame(executor, rpc.getExecutor());
+
+        // A slow call doesn't hold up the ones after it
+        CompletableFuture<Object> slow = clientRpc.call(CHANNEL, OBJ_ID, PROC_SLOW, 500);
+        List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+        for( int i = 0; i < 20; i++ ) {
+            futures.add(clientRpc.call(CHANNEL, OBJ_ID, PROC_ECHO, i));
+        }
+        for( int i = 0; i < futures.size(); i++ ) {
+            assertEquals(i, await(futures.get(i)));
+        }
+        assertFalse(slow.isDone());
+        assertEquals(500, await(slow));
+    }
+
+    @Test(timeout = 30000)
+    public void testBatchedAsyncCallsKeepOrder() throws Exception {
+        RpcConnection rpc = connect();
+        clientRpc.setAsyncBatching(true);
+        hosted.setAsyncBatching(true);
+        assertTrue(rpc.isAsyncBatching());
+
+        for( int i = 0; i < 10; i++ ) {
+            clientRpc.callAsync(CHANNEL, OBJ_ID, PROC_RECORD, i);
+            rpc.callAsync(CHANNEL, OBJ_ID, PROC_RECORD, i);
+        }
+        clientRpc.flush();
+        hosted.flush();
+
+        // The responses arrive after the batches sent before the calls
+        assertNull(await(clientRpc.call(CHANNEL, OBJ_ID, PROC_RECORD, "last")));
+        assertNull(await(rpc.call(CHANNEL, OBJ_ID, PROC_RECORD, "last")));
+        assertEquals(1, batchesReceived.get());
+        for( List<Object> recorded : Arrays.asList(serverRecorded, clientRecorded) ) {
+            assertEquals(11, recorded.size());
+            for( int i = 0; i < 10; i++ ) {
+                assertEquals(i, recorded.get(i));
+            }
+            assertEquals("last", recorded.get(10));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testRemoteFailureCompletesExceptionally() throws Exception {
+        RpcConnection rpc = connect();
+
+        CompletableFuture<Object> failed = clientRpc.call(CHANNEL, OBJ_ID, PROC_FAIL, "client");
+        CompletableFuture<Object> ok = clientRpc.call(CHANNEL, OBJ_ID, PROC_ECHO, "ok");
+        CompletableFuture<Object> failedFromServer = rpc.call(CHANNEL, OBJ_ID, PROC_FAIL, "server");
+        for( CompletableFuture<Object> f : Arrays.asList(failed, failedFromServer) ) {
+            try {
+                await(f);
+                fail("Expected failure");
+            } catch( ExecutionException e ) {
+                assertTrue(e.getCause().getMessage().contains("Failing on purpose"));
+            }
+        }
+        assertEquals("ok", await(ok));
+        assertEquals(0, rpc.getPendingCallCount());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.sync;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Round-trips WorldSnapshots through the SnapshotCodec delta encoding.
+ *
+ *  @version   $Revision$
+ */
+public class SnapshotCodecTest {
+
+    private static int rotation( float angle ) {
+        return SnapshotCodec.packRotation(new Quaternion().fromAngleAxis(angle, Vector3f.UNIT_Y));
+    }
+
+    private static WorldSnapshot snapshot( int seq, long[] ids, int[] positions, int[] rotations ) {
+        return new WorldSnapshot(seq, seq * 1000L, ids, positions, rotations);
+    }
+
+    private static void assertSnapshotEquals( WorldSnapshot expected, WorldSnapshot actual ) {
+        assertEquals(expected.getSequence(), actual.getSequence());
+        assertEquals(expected.getTime(), actual.getTime());
+        assertArrayEquals(expected.ids(), actual.ids());
+        assertArrayEquals(expected.positions(), actual.positions());
+        assertArrayEquals(expected.rotations(), actual.rotations());
+    }
+
+    private static WorldSnapshot roundTrip( WorldSnapshot baseline, WorldSnapshot current ) {
+        byte[] data = SnapshotCodec.encode(baseline, current);
+        return SnapshotCodec.decode(baseline, current.getSequence(), current.getTime(), data);
+    }
+
+    private final WorldSnapshot first = snapshot(1,
+            new long[] { 3, 10, 11, 1L << 40 },
+            new int[] { 0, 0, 0,  100, -200, 300,  -5000000, 7, 42,  1, 2, 3 },
+            new int[] { rotation(0), rotation(1), rotation(FastMath.PI), rotation(-2) });
+
+    @Test
+    public void testFullSnapshot() {
+        WorldSnapshot decoded = roundTrip(WorldSnapshot.EMPTY, first);
+        assertSnapshotEquals(first, decoded);
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        WorldSnapshot empty = snapshot(2, new long[0], new int[0], new int[0]);
+        assertSnapshotEquals(empty, roundTrip(WorldSnapshot.EMPTY, empty));
+        assertSnapshotEquals(empty, roundTrip(first, empty));
+    }
+
+    @Test
+    public void testUnchangedSnapshotIsSmall() {
+        WorldSnapshot same = snapshot(2, first.ids(), first.positions(), first.rotations());
+        byte[] data = SnapshotCodec.encode(first, same);
+        // Just the changed and removed counts
+        assertEquals(2, data.length);
+        assertSnapshotEquals(same, roundTrip(first, same));
+    }
+
+    @Test
+    public void testChangedEntities() {
+        int[] positions = first.positions().clone();
+        positions[4] += 1;
+        positions[9] -= 1000000;
+        int[] rotations = first.rotations().clone();
+        rotations[2] = rotation(0.5f);
+        WorldSnapshot second = snapshot(2, first.ids(), positions, rotations);
+
+        byte[] delta = SnapshotCodec.encode(first, second);
+        byte[] full = SnapshotCodec.encode(WorldSnapshot.EMPTY, second);
+        assertTrue(delta.length < full.length);
+        assertSnapshotEquals(second, roundTrip(first, second));
+    }
+
+    @Test
+    public void testAddedAndRemovedEntities() {
+        // 3 and 1L << 40 removed, 5 and 12 added, 10 moved
+        WorldSnapshot second = snapshot(2,
+                new long[] { 5, 10, 11, 12 },
+                new int[] { 9, 9, 9,  101, -200, 300,  -5000000, 7, 42,  -1, -1, -1 },
+                new int[] { rotation(3), rotation(1), rotation(FastMath.PI), rotation(0) });
+        assertSnapshotEquals(second, roundTrip(first, second));
+
+        WorldSnapshot third = snapshot(3, new long[] { 11 }, new int[] { 0, 0, 0 },
+                                       new int[] { rotation(0) });
+        assertSnapshotEquals(third, roundTrip(second, third));
+    }
+
+    @Test
+    public void testBaselineMismatch() {
+        int[] positions = first.positions().clone();
+        positions[0] = 50;
+        WorldSnapshot second = snapshot(2, first.ids(), positions, first.rotations());
+        byte[] delta = SnapshotCodec.encode(first, second);
+
+        // Only the changed entity is in the delta, applied to the wrong
+        // baseline the unchanged ones are missing
+        WorldSnapshot decoded = SnapshotCodec.decode(WorldSnapshot.EMPTY, 2, 2000L, delta);
+        assertArrayEquals(new long[] { 3 }, decoded.ids());
+        assertFalse(Arrays.equals(second.ids(), decoded.ids()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedData() {
+        byte[] data = SnapshotCodec.encode(WorldSnapshot.EMPTY, first);
+        SnapshotCodec.decode(WorldSnapshot.EMPTY, 1, 0, Arrays.copyOf(data, data.length / 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedCount() {
+        // A changed count that decodes to a negative number
+        byte[] data = { (byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff, 0x0f };
+        SnapshotCodec.decode(WorldSnapshot.EMPTY, 1, 0, data);
+    }
+
+    @Test
+    public void testRotationPacking() {
+        Quaternion q = new Quaternion().fromAngles(0.3f, -1.2f, 2.5f);
+        Quaternion unpacked = SnapshotCodec.unpackRotation(SnapshotCodec.packRotation(q), null);
+        assertEquals(1, Math.abs(q.dot(unpacked)), 0.001f);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.sync;
+
+import com.jme3.network.service.sync.msg.SnapshotMessage;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Feeds snapshot messages straight into the SyncClientService to
+ *  check the baseline handling and the sequence number wrap around.
+ *
+ *  @version   $Revision$
+ */
+public class SyncClientServiceTest {
+
+    private static final float PRECISION = SyncHostedService.DEFAULT_POSITION_PRECISION;
+
+    private static WorldSnapshot snapshot( int seq, int x ) {
+        return new WorldSnapshot(seq, 0, new long[] { 1 }, new int[] { x, 0, 0 }, new int[] { 0 });
+    }
+
+    private static SnapshotMessage message( WorldSnapshot baseline, WorldSnapshot current ) {
+        return new SnapshotMessage(current.getSequence(), baseline.getSequence(), current.getTime(),
+                                   PRECISION, SnapshotCodec.encode(baseline, current));
+    }
+
+    @Test
+    public void testDeltaAgainstKnownBaseline() {
+        SyncClientService client = new SyncClientService();
+        WorldSnapshot first = snapshot(0, 10);
+        WorldSnapshot second = snapshot(1, 20);
+        assertTrue(client.snapshotReceived(message(WorldSnapshot.EMPTY, first)));
+        assertTrue(client.snapshotReceived(message(first, second)));
+        assertArrayEquals(second.positions(), client.getLatestSnapshot().positions());
+
+        // Stale and unknown baselines are dropped
+        assertFalse(client.snapshotReceived(message(WorldSnapshot.EMPTY, first)));
+        assertFalse(client.snapshotReceived(message(snapshot(100, 0), snapshot(101, 0))));
+        assertEquals(2, client.getReceivedCount());
+        assertEquals(2, client.getDroppedCount());
+    }
+
+    @Test
+    public void testInvalidMessagesAreDropped() {
+        SyncClientService client = new SyncClientService();
+        assertFalse(client.snapshotReceived(new SnapshotMessage(5, -7, 0, PRECISION, new byte[] { 0, 0 })));
+        assertFalse(client.snapshotReceived(new SnapshotMessage(-3, -1, 0, PRECISION, new byte[] { 0, 0 })));
+        assertFalse(client.snapshotReceived(new SnapshotMessage(5, -1, 0, PRECISION, new byte[] { 1 })));
+        assertNull(client.getLatestSnapshot());
+        assertEquals(3, client.getDroppedCount());
+    }
+
+    @Test
+    public void testSequenceWrapAround() {
+        SyncClientService client = new SyncClientService();
+        WorldSnapshot before = snapshot(SyncHostedService.MAX_SEQUENCE, 10);
+        WorldSnapshot after = snapshot(0, 20);
+        WorldSnapshot next = snapshot(1, 30);
+        assertTrue(client.snapshotReceived(message(WorldSnapshot.EMPTY, before)));
+        assertTrue(client.snapshotReceived(message(before, after)));
+        assertTrue(client.snapshotReceived(message(after, next)));
+        assertFalse(client.snapshotReceived(message(WorldSnapshot.EMPTY, before)));
+        assertArrayEquals(next.positions(), client.getLatestSnapshot().positions());
+    }
+
+    @Test
+    public void testSequenceHelpers() {
+        int max = SyncHostedService.MAX_SEQUENCE;
+        assertTrue(SyncHostedService.isNewer(0, -1));
+        assertTrue(SyncHostedService.isNewer(1, 0));
+        assertFalse(SyncHostedService.isNewer(0, 0));
+        assertFalse(SyncHostedService.isNewer(0, 1));
+        assertTrue(SyncHostedService.isNewer(0, max));
+        assertFalse(SyncHostedService.isNewer(max, 0));
+        assertEquals(2, SyncHostedService.distance(1, max));
+        for( int seq : new int[] { 0, 31, 32, max - 1, max } ) {
+            int index = SyncHostedService.historyIndex(seq);
+            assertTrue(index >= 0 && index < SyncHostedService.HISTORY_SIZE);
+        }
+    }
+}
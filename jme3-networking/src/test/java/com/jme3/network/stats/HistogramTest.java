@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.stats;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Checks that Histogram percentiles stay within the bucket accuracy
+ *  for small, large and boundary values.
+ *
+ *  @version   $Revision$
+ */
+public class HistogramTest {
+
+    private static void assertWithinBucket( long expected, long actual ) {
+        assertTrue("Expected at least " + expected + " but was " + actual, actual >= expected);
+        assertTrue("Expected at most 12.5% above " + expected + " but was " + actual,
+                   actual <= expected + expected / 8);
+    }
+
+    @Test
+    public void testEmpty() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getPercentile(50));
+        assertEquals(0, h.getPercentile(100));
+        assertEquals(0, h.getMean(), 0);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        Histogram h = new Histogram();
+        for( int i = 0; i < 8; i++ ) {
+            h.record(i);
+        }
+        assertEquals(0, h.getPercentile(0));
+        assertEquals(0, h.getPercentile(12.5));
+        assertEquals(3, h.getPercentile(50));
+        assertEquals(7, h.getPercentile(100));
+        assertEquals(3.5, h.getMean(), 0.0001);
+    }
+
+    @Test
+    public void testZerosAndNegatives() {
+        Histogram h = new Histogram();
+        h.record(0);
+        h.record(-5);
+        assertEquals(2, h.getCount());
+        assertEquals(0, h.getSum());
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getPercentile(100));
+        assertEquals(2, h.getBuckets()[0]);
+    }
+
+    @Test
+    public void testPercentilesWithinBucketAccuracy() {
+        Random random = new Random(42);
+        long[] values = new long[10000];
+        Histogram h = new Histogram();
+        for( int i = 0; i < values.length; i++ ) {
+            // Spread over many powers of two, like latencies in nanoseconds
+            values[i] = (long)Math.exp(random.nextDouble() * 25);
+            h.record(values[i]);
+        }
+        Arrays.sort(values);
+        for( double p : new double[] { 1, 10, 50, 90, 99, 99.9 } ) {
+            long expected = values[(int)Math.ceil(values.length * p / 100) - 1];
+            assertWithinBucket(expected, h.getPercentile(p));
+        }
+        assertEquals(values[values.length - 1], h.getPercentile(100));
+        assertEquals(values[values.length - 1], h.getMax());
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        for( int shift = 3; shift < 63; shift++ ) {
+            long power = 1L << shift;
+            for( long value : new long[] { power - 1, power, power + 1, power + power / 8 - 1, power + power / 8 } ) {
+                Histogram h = new Histogram();
+                h.record(value);
+                // A single value is capped by the max
+                assertEquals(value, h.getPercentile(50));
+
+                // With a larger value present the bucket bound is returned
+                h.record(Long.MAX_VALUE);
+                assertWithinBucket(value, h.getPercentile(50));
+            }
+        }
+    }
+
+    @Test
+    public void testLargestValues() {
+        Histogram h = new Histogram();
+        h.record(Long.MAX_VALUE);
+        h.record(Long.MAX_VALUE - 1);
+        assertEquals(Long.MAX_VALUE, h.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, h.getPercentile(100));
+        assertEquals(2, h.getBuckets()[h.getBuckets().length - 1]);
+    }
+
+    @Test
+    public void testBucketCounts() {
+        Histogram h = new Histogram();
+        h.record(8);
+        h.record(9);
+        h.record(15);
+        h.record(16);
+        h.record(17);
+        h.record(18);
+        long[] buckets = h.getBuckets();
+        // 8 to 15 are one value per bucket, 16 to 31 two values per bucket
+        assertEquals(1, buckets[8]);
+        assertEquals(1, buckets[9]);
+        assertEquals(1, buckets[15]);
+        assertEquals(2, buckets[16]);
+        assertEquals(1, buckets[17]);
+        assertEquals(6, Arrays.stream(buckets).sum());
+    }
+
+    @Test
+    public void testReset() {
+        Histogram h = new Histogram();
+        h.record(100);
+        h.record(1000);
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getSum());
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getPercentile(99));
+        assertEquals(0, Arrays.stream(h.getBuckets()).sum());
+
+        h.record(5);
+        assertEquals(5, h.getPercentile(50));
+    }
+}
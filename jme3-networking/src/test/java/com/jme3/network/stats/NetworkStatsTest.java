@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.stats;
+
+import com.jme3.network.MessageConnection;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Checks that connection stats add up into their parent and that
+ *  the shared NONE stats stay empty.
+ *
+ *  @version   $Revision$
+ */
+public class NetworkStatsTest {
+
+    private static final int RELIABLE = MessageConnection.CHANNEL_DEFAULT_RELIABLE;
+
+    @Test
+    public void testChildRecordsIntoParent() {
+        NetworkStats server = new NetworkStats();
+        NetworkStats conn = new NetworkStats(server);
+        conn.recordSent(RELIABLE, 2, 100);
+        conn.recordReceived(0, 1, 30);
+        conn.recordRoundTrip(5000);
+
+        assertTrue(conn.isRecording());
+        for( NetworkStats stats : new NetworkStats[] { server, conn } ) {
+            assertEquals(2, stats.getChannel(RELIABLE).getMessagesSent());
+            assertEquals(100, stats.getTotals().getBytesSent());
+            assertEquals(30, stats.getChannel(0).getBytesReceived());
+            assertEquals(1, stats.getRoundTripTimes().getCount());
+        }
+    }
+
+    @Test
+    public void testNoneStaysEmpty() {
+        NetworkStats none = NetworkStats.NONE;
+        assertFalse(none.isRecording());
+        none.recordSent(RELIABLE, 1, 10);
+        none.recordReceived(RELIABLE, 1, 10);
+        none.recordSerialized(String.class, 10, 100);
+        none.recordDeserialized(String.class, 10, 100);
+        none.recordRoundTrip(1000);
+        none.setOutboundQueue(RELIABLE, new QueueGauge());
+
+        assertEquals(0, none.getTotals().getMessagesSent());
+        assertEquals(0, none.getTotals().getMessagesReceived());
+        assertTrue(none.getMessageTypes().isEmpty());
+        assertEquals(0, none.getSerializationTimes().getCount());
+        assertEquals(0, none.getRoundTripTimes().getCount());
+        assertNull(none.getOutboundQueue(RELIABLE));
+
+        // Connections that record into NONE as their parent still count
+        NetworkStats child = new NetworkStats(none);
+        child.recordRoundTrip(1000);
+        assertEquals(1, child.getRoundTripTimes().getCount());
+        assertEquals(0, none.getRoundTripTimes().getCount());
+    }
+}